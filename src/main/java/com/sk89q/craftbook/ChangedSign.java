@@ -12,6 +12,7 @@ import com.sk89q.craftbook.bukkit.commands.VariableCommands;
 import com.sk89q.craftbook.bukkit.util.BukkitUtil;
 import com.sk89q.craftbook.util.ParsingUtil;
 import com.sk89q.craftbook.util.RegexUtil;
+import com.sk89q.craftbook.util.VariableTemplate;
 import com.sk89q.worldedit.BlockWorldVector;
 import com.sk89q.worldedit.LocalWorld;
 
@@ -19,6 +20,7 @@ public class ChangedSign {
 
     private Sign sign;
     private String[] lines;
+    private VariableTemplate[] templates;
 
     public ChangedSign(Sign sign, String[] lines, LocalPlayer player) {
 
@@ -109,7 +111,15 @@ public class ChangedSign {
 
     public String getLine(int index) throws IndexOutOfBoundsException {
 
-        return ParsingUtil.parseLine(lines[index], null);
+        if(templates == null || templates.length != lines.length)
+            templates = new VariableTemplate[lines.length];
+
+        // The line may have been changed directly through getLines().
+        VariableTemplate template = templates[index];
+        if(template == null || !template.getSource().equals(lines[index]))
+            templates[index] = template = new VariableTemplate(lines[index]);
+
+        return template.render(null);
     }
 
     public void setLine(int index, String line) throws IndexOutOfBoundsException {
@@ -32,6 +32,7 @@ public abstract class LocalConfiguration {
     public boolean ICSavePersistentData;
     public boolean ICMidiUsePercussion;
     public boolean ICBreakOnError;
+    public int ICPlcSaveInterval;
     // Circuits - Wiring
     public boolean netherrackEnabled;
     public boolean pumpkinsEnabled;
@@ -62,6 +63,8 @@ public abstract class LocalConfiguration {
     public boolean areaShortenNames;
     public int areaMaxAreaSize;
     public int areaMaxAreaPerUser;
+    public int areaBlocksPerTick;
+    public int areaMaxCacheSize;
     // Mechanics - BetterLeads
     public boolean leadsEnabled;
     public boolean leadsStopTarget;
@@ -204,6 +207,7 @@ public abstract class LocalConfiguration {
     public boolean snowJumpTrample;
     public List<ItemInfo> snowRealisticReplacables;
     public int snowFallAnimationSpeed;
+    public int snowTickBudget;
     // Mechanics - Teleporter
     public boolean teleporterEnabled;
     public boolean teleporterRequireSign;
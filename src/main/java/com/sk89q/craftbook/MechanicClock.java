@@ -17,12 +17,14 @@
 package com.sk89q.craftbook;
 
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import com.sk89q.craftbook.util.EntityIndex;
 
 public class MechanicClock implements Runnable {
 
     @Override
     public void run() {
 
+        EntityIndex.nextTick();
         CraftBookPlugin.inst().getSelfTriggerManager().think();
     }
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.sk89q.craftbook;
+
+/**
+ * A pre-resolved handle to a self triggering mechanic. Handles are attached to a registered location in the
+ * {@link SelfTriggeringManager}, which then calls them directly rather than dispatching a think event.
+ */
+public interface SelfTriggerHandle {
+
+    /**
+     * Checks whether this handle still represents the mechanic at its location. Invalid handles are discarded, and the
+     * location falls back to being resolved through the event system.
+     *
+     * @return if the handle is still valid
+     */
+    public boolean isValid();
+
+    /**
+     * Causes the mechanic to think.
+     */
+    public void think();
+
+    /**
+     * Gets the amount of ticks between each think of this mechanic.
+     *
+     * @return The think interval in ticks, or 0 to use the configured default
+     */
+    public int getThinkInterval();
+}
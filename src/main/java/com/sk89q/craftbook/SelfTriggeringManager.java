@@ -1,17 +1,23 @@
 package com.sk89q.craftbook;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.logging.Level;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockState;
+import org.bukkit.plugin.RegisteredListener;
 
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.BukkitUtil;
+import com.sk89q.craftbook.util.LocationUtil;
 import com.sk89q.craftbook.util.events.SelfTriggerPingEvent;
 import com.sk89q.craftbook.util.events.SelfTriggerThinkEvent;
 import com.sk89q.craftbook.util.events.SelfTriggerUnregisterEvent;
@@ -20,15 +26,52 @@ import com.sk89q.craftbook.util.events.SelfTriggerUnregisterEvent.UnregisterReas
 public class SelfTriggeringManager {
 
     /**
-     * List of mechanics that think on a routine basis.
+     * The amount of slots in the tick wheel. Must be a power of two.
      */
-    public final Set<Location> thinkingMechanics = new HashSet<Location>();
+    private static final int WHEEL_SIZE = 64;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    /**
+     * Buckets of self triggering mechanics, keyed by world and then by packed chunk position.
+     */
+    private final Map<UUID, Map<Long, ChunkBucket>> buckets = new HashMap<UUID, Map<Long, ChunkBucket>>();
+
+    /**
+     * The tick wheel. Each slot contains the mechanics that are due to think on ticks that map to that slot.
+     */
+    private final List<Entry>[] wheel;
+
+    /**
+     * Mechanics that were due, but could not think within the time budget of their tick.
+     */
+    private List<Entry> deferred = new ArrayList<Entry>();
+
+    private List<Entry> spareSlot = new ArrayList<Entry>();
+    private List<Entry> spareDeferred = new ArrayList<Entry>();
+
+    /**
+     * The amount of mechanics that are currently registered.
+     */
+    private int registered = 0;
+
+    private long currentTick = 0;
+    private int lastDeferred = 0;
+    private long totalDeferred = 0;
+
+    @SuppressWarnings("unchecked")
+    public SelfTriggeringManager() {
+
+        wheel = new List[WHEEL_SIZE];
+        for(int i = 0; i < WHEEL_SIZE; i++)
+            wheel[i] = new ArrayList<Entry>();
+    }
 
     public void registerSelfTrigger(Chunk chunk) {
         try {
+            ChunkBucket bucket = getBucket(chunk.getWorld(), chunk.getX(), chunk.getZ(), false);
             for(BlockState state : chunk.getTileEntities()) {
+                if(bucket != null && bucket.contains(LocationUtil.packBlockPosition(state.getX(), state.getY(), state.getZ()))) continue;
                 Block block = state.getBlock();
-                if(thinkingMechanics.contains(block.getLocation())) continue;
                 SelfTriggerPingEvent event = new SelfTriggerPingEvent(block);
                 Bukkit.getServer().getPluginManager().callEvent(event);
             }
@@ -41,72 +84,407 @@ public class SelfTriggeringManager {
 
     public void registerSelfTrigger(Location location) {
 
-        if(thinkingMechanics.contains(location)) return;
-        hasChanged = true;
-        thinkingMechanics.add(location);
+        ChunkBucket bucket = getBucket(location.getWorld(), location.getBlockX() >> 4, location.getBlockZ() >> 4, true);
+        long position = LocationUtil.packBlockPosition(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        if(bucket.contains(position)) return;
+
+        Entry entry = new Entry(bucket, position);
+        bucket.add(entry);
+        registered++;
+
+        // Spread newly registered mechanics over the wheel, rather than having them all think on the same tick.
+        int interval = entry.getInterval(getDefaultInterval());
+        schedule(entry, 1 + ((int) (position ^ position >>> 32) & Integer.MAX_VALUE) % interval);
+    }
+
+    /**
+     * Attaches a {@link SelfTriggerHandle} to an already registered location, allowing it to think without a
+     * {@link SelfTriggerThinkEvent} being dispatched.
+     *
+     * @param location The registered location
+     * @param handle The handle, or null to clear it
+     */
+    public void setHandle(Location location, SelfTriggerHandle handle) {
+
+        ChunkBucket bucket = getBucket(location.getWorld(), location.getBlockX() >> 4, location.getBlockZ() >> 4, false);
+        if(bucket == null) return;
+        Entry entry = bucket.get(LocationUtil.packBlockPosition(location.getBlockX(), location.getBlockY(), location.getBlockZ()));
+        if(entry != null)
+            entry.handle = handle;
     }
 
     public void unregisterSelfTrigger(Location location, UnregisterReason reason) {
 
-        if(!thinkingMechanics.contains(location)) return;
-        SelfTriggerUnregisterEvent event = new SelfTriggerUnregisterEvent(location.getBlock(), reason);
-        Bukkit.getServer().getPluginManager().callEvent(event);
-        if(!event.isCancelled()) {
-            hasChanged = true;
-            thinkingMechanics.remove(location);
-        }
+        ChunkBucket bucket = getBucket(location.getWorld(), location.getBlockX() >> 4, location.getBlockZ() >> 4, false);
+        if(bucket == null) return;
+        unregisterSelfTrigger(bucket, LocationUtil.packBlockPosition(location.getBlockX(), location.getBlockY(), location.getBlockZ()), reason);
     }
 
     public void unregisterSelfTrigger(Chunk chunk) {
 
-        if(thinkingMechanics.size() == 0) return; //Skip the checks this round. Save a little CPU with the array creation.
+        if(registered == 0) return; //Skip the checks this round.
+
+        ChunkBucket bucket = getBucket(chunk.getWorld(), chunk.getX(), chunk.getZ(), false);
+        if(bucket == null) return;
+
+        bucket.iterating = true;
+        try {
+            for(int i = 0; i < bucket.size; i++) {
+                long position = bucket.positions[i];
+                if(position != ChunkBucket.EMPTY)
+                    unregisterSelfTrigger(bucket, position, UnregisterReason.UNLOAD);
+            }
+        } finally {
+            bucket.iterating = false;
+            bucket.compact();
+            if(bucket.isEmpty())
+                removeBucket(bucket);
+        }
+    }
+
+    private void unregisterSelfTrigger(ChunkBucket bucket, long position, UnregisterReason reason) {
+
+        Entry entry = bucket.get(position);
+        if(entry == null) return;
+        SelfTriggerUnregisterEvent event = new SelfTriggerUnregisterEvent(getBlock(bucket, position), reason);
+        Bukkit.getServer().getPluginManager().callEvent(event);
+        if(event.isCancelled() || !bucket.remove(position)) return;
+
+        // The entry is dropped from the wheel the next time its slot comes around.
+        entry.removed = true;
+        registered--;
+        if(!bucket.iterating && bucket.isEmpty())
+            removeBucket(bucket);
+    }
+
+    private static Block getBlock(ChunkBucket bucket, long position) {
+
+        return bucket.world.getBlockAt(LocationUtil.unpackBlockX(position), LocationUtil.unpackBlockY(position), LocationUtil.unpackBlockZ(position));
+    }
+
+    /**
+     * Gets the amount of mechanics that are currently registered to think.
+     *
+     * @return The amount of registered mechanics
+     */
+    public int getRegisteredCount() {
+
+        return registered;
+    }
 
-        Location[] registeredLocations;
+    /**
+     * Gets the amount of mechanics that were carried over to the next tick, as the last tick ran out of time.
+     *
+     * @return The amount of deferred mechanics
+     */
+    public int getDeferredCount() {
 
-        synchronized (this) {
-            // Copy to array to get rid of concurrency snafus
-            registeredLocations = thinkingMechanics.toArray(new Location[thinkingMechanics.size()]);
+        return lastDeferred;
+    }
+
+    /**
+     * Gets the total amount of times a mechanic has been carried over to the next tick.
+     *
+     * @return The total amount of deferrals
+     */
+    public long getTotalDeferredCount() {
+
+        return totalDeferred;
+    }
+
+    /**
+     * Gets the bucket for the given chunk.
+     *
+     * @param world The world of the chunk
+     * @param chunkX The chunk X
+     * @param chunkZ The chunk Z
+     * @param create Whether to create the bucket if it does not exist
+     * @return The bucket, or null if it does not exist and create was false
+     */
+    private ChunkBucket getBucket(World world, int chunkX, int chunkZ, boolean create) {
+
+        Map<Long, ChunkBucket> worldBuckets = buckets.get(world.getUID());
+        if(worldBuckets == null) {
+            if(!create) return null;
+            worldBuckets = new HashMap<Long, ChunkBucket>();
+            buckets.put(world.getUID(), worldBuckets);
         }
 
-        for (Location location : registeredLocations) {
-            if(location.getChunk().equals(chunk))
-                unregisterSelfTrigger(location, UnregisterReason.UNLOAD);
+        Long key = LocationUtil.packChunkPosition(chunkX, chunkZ);
+        ChunkBucket bucket = worldBuckets.get(key);
+        if(bucket == null && create) {
+            bucket = new ChunkBucket(world, chunkX, chunkZ);
+            worldBuckets.put(key, bucket);
         }
+
+        return bucket;
+    }
+
+    private void removeBucket(ChunkBucket bucket) {
+
+        Map<Long, ChunkBucket> worldBuckets = buckets.get(bucket.world.getUID());
+        if(worldBuckets == null) return;
+        Long key = LocationUtil.packChunkPosition(bucket.chunkX, bucket.chunkZ);
+        if(worldBuckets.get(key) == bucket)
+            worldBuckets.remove(key);
+        if(worldBuckets.isEmpty())
+            buckets.remove(bucket.world.getUID());
+    }
+
+    private static int getDefaultInterval() {
+
+        return Math.max(1, CraftBookPlugin.inst().getConfiguration().stThinkRate);
+    }
+
+    /**
+     * Places an entry into the wheel, to think after the given amount of ticks.
+     *
+     * @param entry The entry
+     * @param delay The delay in ticks
+     */
+    private void schedule(Entry entry, int delay) {
+
+        entry.dueTick = currentTick + Math.max(1, delay);
+        wheel[(int) (entry.dueTick & WHEEL_MASK)].add(entry);
     }
 
-    Location[] registeredLocations;
-    private boolean hasChanged = false;
+    /**
+     * Checks whether anything other than CraftBook itself is listening for {@link SelfTriggerThinkEvent}s.
+     *
+     * @return if there are external listeners
+     */
+    private static boolean hasExternalThinkListeners() {
+
+        for(RegisteredListener listener : SelfTriggerThinkEvent.getHandlerList().getRegisteredListeners())
+            if(listener.getPlugin() != CraftBookPlugin.inst())
+                return true;
+        return false;
+    }
 
     /**
-     * Causes all thinking mechanics to think.
+     * Advances the tick wheel by one tick, causing all mechanics that are due to think. Mechanics that do not fit
+     * within the configured time budget are carried over to the next tick.
      */
     public void think() {
 
-        if(thinkingMechanics.size() == 0) return; //Skip the checks this round. Save a little CPU with the array creation.
+        currentTick++;
 
-        if(hasChanged || registeredLocations == null) {
-            synchronized (this) {
-                // Copy to array to get rid of concurrency snafus
-                registeredLocations = thinkingMechanics.toArray(new Location[thinkingMechanics.size()]);
-            }
+        long budget = CraftBookPlugin.inst().getConfiguration().stThinkBudget * 1000L;
+        long start = budget > 0 ? System.nanoTime() : 0;
+        boolean externalListeners = hasExternalThinkListeners();
+        int defaultInterval = getDefaultInterval();
+
+        List<Entry> carried = deferred;
+        deferred = spareDeferred;
+
+        int slot = (int) (currentTick & WHEEL_MASK);
+        List<Entry> due = wheel[slot];
+        wheel[slot] = spareSlot;
+
+        // Work carried over from previous ticks goes first, so that it cannot be starved.
+        boolean exhausted = think(carried, false, externalListeners, defaultInterval, start, budget);
+        think(due, exhausted, externalListeners, defaultInterval, start, budget);
+
+        carried.clear();
+        spareDeferred = carried;
+        due.clear();
+        spareSlot = due;
+
+        lastDeferred = deferred.size();
+        if(lastDeferred > 0) {
+            totalDeferred += lastDeferred;
+            CraftBookPlugin.logDebugMessage("Deferred " + lastDeferred + " ST mechanic(s) to the next tick.", "st-scheduler");
         }
+    }
+
+    private boolean think(List<Entry> entries, boolean exhausted, boolean externalListeners, int defaultInterval, long start, long budget) {
+
+        for(int i = 0; i < entries.size(); i++) {
 
-        for (Location location : registeredLocations) {
-            if(!location.getWorld().isChunkLoaded(location.getBlockX() >> 4, location.getBlockZ() >> 4)) {
-                unregisterSelfTrigger(location, UnregisterReason.UNLOAD);
+            Entry entry = entries.get(i);
+            if(entry.removed) continue;
+
+            if(entry.dueTick > currentTick) {
+                // Due on a later rotation of the wheel.
+                wheel[(int) (entry.dueTick & WHEEL_MASK)].add(entry);
                 continue;
             }
-            try {
-                SelfTriggerThinkEvent event = new SelfTriggerThinkEvent(location.getBlock());
-                Bukkit.getServer().getPluginManager().callEvent(event);
-                if(!event.isHandled()) {
-                    unregisterSelfTrigger(location, UnregisterReason.UNKNOWN);
+
+            if(exhausted) {
+                deferred.add(entry);
+                continue;
+            }
+
+            think(entry, externalListeners);
+            if(!entry.removed)
+                schedule(entry, entry.getInterval(defaultInterval));
+
+            if(budget > 0 && System.nanoTime() - start > budget)
+                exhausted = true;
+        }
+
+        return exhausted;
+    }
+
+    private void think(Entry entry, boolean externalListeners) {
+
+        ChunkBucket bucket = entry.bucket;
+        long position = entry.position;
+
+        if(!bucket.world.isChunkLoaded(bucket.chunkX, bucket.chunkZ)) {
+            unregisterSelfTrigger(bucket, position, UnregisterReason.UNLOAD);
+            return;
+        }
+
+        try {
+            SelfTriggerHandle handle = entry.handle;
+            if(handle != null && !handle.isValid()) {
+                entry.handle = null;
+                handle = null;
+            }
+            if(handle != null) {
+                handle.think();
+                if(externalListeners) {
+                    SelfTriggerThinkEvent event = new SelfTriggerThinkEvent(getBlock(bucket, position));
+                    event.setHandled(true);
+                    Bukkit.getServer().getPluginManager().callEvent(event);
+                }
+                return;
+            }
+            SelfTriggerThinkEvent event = new SelfTriggerThinkEvent(getBlock(bucket, position));
+            Bukkit.getServer().getPluginManager().callEvent(event);
+            if(!event.isHandled()) {
+                unregisterSelfTrigger(bucket, position, UnregisterReason.UNKNOWN);
+            }
+        } catch (Throwable t) { // Mechanic failed to think for some reason
+            CraftBookPlugin.logger().log(Level.WARNING, "CraftBook mechanic: Failed to think for " + getBlock(bucket, position).getLocation().toString());
+            BukkitUtil.printStacktrace(t);
+            unregisterSelfTrigger(bucket, position, UnregisterReason.ERROR);
+        }
+    }
+
+    /**
+     * A single registered self triggering mechanic.
+     */
+    private static final class Entry {
+
+        final ChunkBucket bucket;
+        final long position;
+
+        SelfTriggerHandle handle;
+        long dueTick;
+        boolean removed = false;
+
+        Entry(ChunkBucket bucket, long position) {
+
+            this.bucket = bucket;
+            this.position = position;
+        }
+
+        int getInterval(int defaultInterval) {
+
+            if(handle == null) return defaultInterval;
+            int interval = handle.getThinkInterval();
+            return interval > 0 ? interval : defaultInterval;
+        }
+    }
+
+    /**
+     * The self triggering mechanics within a single chunk, stored as packed block positions alongside their entries.
+     */
+    private static final class ChunkBucket {
+
+        /**
+         * Marks a removed slot whilst the bucket is being iterated.
+         */
+        static final long EMPTY = Long.MIN_VALUE;
+
+        final World world;
+        final int chunkX;
+        final int chunkZ;
+
+        long[] positions = new long[4];
+        Entry[] entries = new Entry[4];
+        int size = 0;
+        int removed = 0;
+        boolean iterating = false;
+
+        ChunkBucket(World world, int chunkX, int chunkZ) {
+
+            this.world = world;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        boolean isEmpty() {
+
+            return size - removed == 0;
+        }
+
+        boolean contains(long position) {
+
+            return indexOf(position) >= 0;
+        }
+
+        int indexOf(long position) {
+
+            for(int i = 0; i < size; i++)
+                if(positions[i] == position)
+                    return i;
+            return -1;
+        }
+
+        Entry get(long position) {
+
+            int index = indexOf(position);
+            return index < 0 ? null : entries[index];
+        }
+
+        void add(Entry entry) {
+
+            if(size == positions.length) {
+                long[] grown = new long[size * 2];
+                System.arraycopy(positions, 0, grown, 0, size);
+                positions = grown;
+                Entry[] grownEntries = new Entry[size * 2];
+                System.arraycopy(entries, 0, grownEntries, 0, size);
+                entries = grownEntries;
+            }
+            entries[size] = entry;
+            positions[size++] = entry.position;
+        }
+
+        boolean remove(long position) {
+
+            int index = indexOf(position);
+            if(index < 0) return false;
+            if(iterating) {
+                // Keep the indexes stable for the current iteration, and compact afterwards.
+                positions[index] = EMPTY;
+                entries[index] = null;
+                removed++;
+            } else {
+                positions[index] = positions[--size];
+                entries[index] = entries[size];
+                entries[size] = null;
+            }
+            return true;
+        }
+
+        void compact() {
+
+            if(removed == 0) return;
+            int j = 0;
+            for(int i = 0; i < size; i++) {
+                if(positions[i] != EMPTY) {
+                    entries[j] = entries[i];
+                    positions[j++] = positions[i];
                 }
-            } catch (Throwable t) { // Mechanic failed to think for some reason
-                CraftBookPlugin.logger().log(Level.WARNING, "CraftBook mechanic: Failed to think for " + location.toString());
-                BukkitUtil.printStacktrace(t);
-                unregisterSelfTrigger(location, UnregisterReason.ERROR);
             }
+            for(int i = j; i < size; i++)
+                entries[i] = null;
+            size = j;
+            removed = 0;
         }
     }
-}
\ No newline at end of file
+}
@@ -23,6 +23,7 @@ public class BukkitConfiguration extends YAMLConfiguration {
     public boolean useBlockDistance;
     public boolean safeDestruction;
     public int stThinkRate;
+    public int stThinkBudget;
     public boolean obeyWorldguard;
     public boolean advancedBlockChecks;
     public boolean pedanticBlockChecks;
@@ -40,6 +41,7 @@ public class BukkitConfiguration extends YAMLConfiguration {
     public List<String> debugFlags;
 
     public String persistentStorageType;
+    public int persistentStorageSnapshotInterval;
 
     public BukkitConfiguration(YAMLProcessor config, Logger logger) {
 
@@ -79,6 +81,9 @@ public class BukkitConfiguration extends YAMLConfiguration {
         config.setComment("st-think-ticks", "WARNING! Changing this can result in all ST mechanics acting very weirdly, only change this if you know what you are doing!");
         stThinkRate = config.getInt("st-think-ticks", 2);
 
+        config.setComment("st-think-budget", "The maximum time in microseconds that ST mechanics may think for each tick. Any mechanics left over are carried over to the next tick. Set to 0 for no limit.");
+        stThinkBudget = config.getInt("st-think-budget", 0);
+
         config.setComment("notify-updates", "Enables the update notifier. This checks for updates on start, and notifies anyone with the permission when they join. They can then use /cb update to download the update.");
         updateNotifier = config.getBoolean("notify-updates", true);
 
@@ -127,9 +132,12 @@ public class BukkitConfiguration extends YAMLConfiguration {
         config.setComment("show-permission-messages", "Show messages when a player does not have permission to do something.");
         showPermissionMessages = config.getBoolean("show-permission-messages", true);
 
-        config.setComment("persistent-storage-type", "PersistentStorage stores data that can be accessed across server restart. Method of PersistentStorage storage (Note: DUMMY is practically off, and may cause issues). Can currently be any of the following: YAML, DUMMY");
+        config.setComment("persistent-storage-type", "PersistentStorage stores data that can be accessed across server restart. Method of PersistentStorage storage (Note: DUMMY is practically off, and may cause issues). Can currently be any of the following: YAML, BINARY, DUMMY");
         persistentStorageType = config.getString("persistent-storage-type", "YAML");
 
+        config.setComment("persistent-storage-snapshot-interval", "How often (in seconds) the BINARY PersistentStorage writes changed data files. Changes in between are kept safe in a journal.");
+        persistentStorageSnapshotInterval = config.getInt("persistent-storage-snapshot-interval", 300);
+
         super.load();
     }
 }
\ No newline at end of file
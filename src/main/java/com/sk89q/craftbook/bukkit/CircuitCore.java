@@ -160,6 +160,7 @@ import com.sk89q.craftbook.circuits.ic.families.FamilySI3O;
 import com.sk89q.craftbook.circuits.ic.families.FamilySI5O;
 import com.sk89q.craftbook.circuits.ic.families.FamilySISO;
 import com.sk89q.craftbook.circuits.ic.families.FamilyVIVO;
+import com.sk89q.craftbook.circuits.jinglenote.JingleScheduler;
 import com.sk89q.craftbook.circuits.pipe.Pipes;
 import com.sk89q.craftbook.circuits.plc.PlcFactory;
 import com.sk89q.craftbook.circuits.plc.lang.Perlstone;
@@ -229,6 +230,7 @@ public class CircuitCore implements LocalComponent {
                 factory.getFactory().unload();
             }
         }
+        JingleScheduler.stopAll();
         icConfiguration = null;
         ICManager.emptyCache();
         instance = null;
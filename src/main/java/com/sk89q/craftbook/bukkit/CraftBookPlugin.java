@@ -290,6 +290,7 @@ public class CraftBookPlugin extends JavaPlugin {
         createDefaultConfiguration(new File(getDataFolder(), "ru_RU.yml"), "ru_RU.yml");
         languageManager = new LanguageManager();
         languageManager.init();
+        getServer().getPluginManager().registerEvents(languageManager, this);
 
         getServer().getScheduler().runTask(this, new Runnable() {
 
@@ -588,8 +589,8 @@ public class CraftBookPlugin extends JavaPlugin {
 
         getLogger().info(numChunks + " chunk(s) for " + numWorlds + " world(s) processed " + "(" + time + "ms elapsed)");
 
-        // Set up the clock for self-triggered ICs.
-        getServer().getScheduler().runTaskTimer(this, mechanicClock, 0, getConfiguration().stThinkRate);
+        // Set up the clock for self-triggered ICs. It ticks every tick, and each mechanic thinks on its own interval.
+        getServer().getScheduler().runTaskTimer(this, mechanicClock, 0, 1);
     }
 
     /**
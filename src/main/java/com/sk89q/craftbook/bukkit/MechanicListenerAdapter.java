@@ -293,10 +293,14 @@ public class MechanicListenerAdapter implements Listener {
 
             @Override
             public void run () {
+                if(!VehicleCore.isEnabled())
+                    return;
                 try {
                     CartMechanismBlocks cmb = CartMechanismBlocks.find(event.getBlock());
+                    if(!VehicleCore.inst().isMechanism(cmb) && CartBlockRedstoneEvent.getHandlerList().getRegisteredListeners().length == 0)
+                        return;
                     CartBlockRedstoneEvent ev = new CartBlockRedstoneEvent(event.getBlock(), event.getSource(), event.getOldCurrent(), event.getNewCurrent(), cmb, CartBlockMechanism.getCart(cmb.rail));
-                    CraftBookPlugin.inst().getServer().getPluginManager().callEvent(ev);
+                    VehicleCore.inst().dispatchEvent(ev);
                 } catch (InvalidMechanismException ignored) {
                 }
             }
@@ -306,11 +310,13 @@ public class MechanicListenerAdapter implements Listener {
     @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGHEST)
     public void onVehicleMove(VehicleMoveEvent event) {
 
-        if(event.getVehicle() instanceof Minecart) {
+        if(event.getVehicle() instanceof Minecart && VehicleCore.isEnabled()) {
             try {
                 Minecart cart = (Minecart) event.getVehicle();
                 CartMechanismBlocks cmb;
-                cmb = CartMechanismBlocks.findByRail(event.getTo().getBlock());
+                cmb = VehicleCore.inst().getMechanismCache().findByRail(event.getTo().getBlock());
+                if(cmb == null) //Plain track
+                    return;
                 cmb.setFromBlock(event.getFrom().getBlock());
                 Location from = event.getFrom();
                 Location to = event.getTo();
@@ -318,7 +324,7 @@ public class MechanicListenerAdapter implements Listener {
                     return;
                 boolean crossesBlockBoundary = from.getBlockX() == to.getBlockX() && from.getBlockY() == to.getBlockY() && from.getBlockZ() == to.getBlockZ();
                 CartBlockImpactEvent ev = new CartBlockImpactEvent(cart, from, to, cmb, crossesBlockBoundary);
-                CraftBookPlugin.inst().getServer().getPluginManager().callEvent(ev);
+                VehicleCore.inst().dispatchEvent(ev);
             } catch (InvalidMechanismException ignored) {
             }
         }
@@ -330,14 +336,16 @@ public class MechanicListenerAdapter implements Listener {
         if(!event.getVehicle().getWorld().isChunkLoaded(event.getVehicle().getLocation().getBlockX() >> 4, event.getVehicle().getLocation().getBlockZ() >> 4))
             return;
 
-        if(event.getVehicle() instanceof Minecart) {
+        if(event.getVehicle() instanceof Minecart && VehicleCore.isEnabled()) {
             try {
                 Minecart cart = (Minecart) event.getVehicle();
                 Block block = event.getVehicle().getLocation().getBlock();
-                CartMechanismBlocks cmb = CartMechanismBlocks.findByRail(block);
+                CartMechanismBlocks cmb = VehicleCore.inst().getMechanismCache().findByRail(block);
+                if(cmb == null) //Plain track
+                    return;
                 cmb.setFromBlock(block); // WAI
                 CartBlockEnterEvent ev = new CartBlockEnterEvent(cart, event.getEntered(), cmb);
-                CraftBookPlugin.inst().getServer().getPluginManager().callEvent(ev);
+                VehicleCore.inst().dispatchEvent(ev);
                 if(ev.isCancelled())
                     event.setCancelled(true);
             } catch (InvalidMechanismException ignored) {
@@ -179,7 +179,8 @@ public class ReportWriter {
         for(LocalComponent comp : CraftBookPlugin.inst().getComponents())
             i += comp.getMechanics().size();
         log.put("Mechanics Loaded", "%d", i);
-        log.put("ST Mechanics Loaded", "%d", plugin.getSelfTriggerManager().thinkingMechanics.size());
+        log.put("ST Mechanics Loaded", "%d", plugin.getSelfTriggerManager().getRegisteredCount());
+        log.put("ST Mechanics Deferred", "%d (%d total)", plugin.getSelfTriggerManager().getDeferredCount(), plugin.getSelfTriggerManager().getTotalDeferredCount());
 
         append(log);
         appendln();
@@ -1,5 +1,6 @@
 package com.sk89q.craftbook.bukkit;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -8,6 +9,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
+import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.block.Sign;
 import org.bukkit.event.EventHandler;
@@ -20,6 +22,7 @@ import com.sk89q.craftbook.LocalComponent;
 import com.sk89q.craftbook.LocalPlayer;
 import com.sk89q.craftbook.bukkit.commands.VehicleCommands;
 import com.sk89q.craftbook.bukkit.util.BukkitUtil;
+import com.sk89q.craftbook.util.ItemInfo;
 import com.sk89q.craftbook.util.exceptions.InsufficientPermissionsException;
 import com.sk89q.craftbook.vehicles.boat.Drops;
 import com.sk89q.craftbook.vehicles.boat.ExitRemover;
@@ -36,6 +39,8 @@ import com.sk89q.craftbook.vehicles.cart.CartEjector;
 import com.sk89q.craftbook.vehicles.cart.CartExitRemover;
 import com.sk89q.craftbook.vehicles.cart.CartLift;
 import com.sk89q.craftbook.vehicles.cart.CartMaxSpeed;
+import com.sk89q.craftbook.vehicles.cart.CartMechanismBlocks;
+import com.sk89q.craftbook.vehicles.cart.CartMechanismCache;
 import com.sk89q.craftbook.vehicles.cart.CartMessenger;
 import com.sk89q.craftbook.vehicles.cart.CartRemoveEntities;
 import com.sk89q.craftbook.vehicles.cart.CartReverser;
@@ -55,6 +60,9 @@ import com.sk89q.craftbook.vehicles.cart.NoCollide;
 import com.sk89q.craftbook.vehicles.cart.PlaceAnywhere;
 import com.sk89q.craftbook.vehicles.cart.RailPlacer;
 import com.sk89q.craftbook.vehicles.cart.VisionSteering;
+import com.sk89q.craftbook.vehicles.cart.events.CartBlockEnterEvent;
+import com.sk89q.craftbook.vehicles.cart.events.CartBlockImpactEvent;
+import com.sk89q.craftbook.vehicles.cart.events.CartBlockRedstoneEvent;
 
 /**
  * Author: Turtle9598
@@ -69,6 +77,14 @@ public class VehicleCore implements LocalComponent, Listener {
 
     private List<CraftBookMechanic> mechanics;
 
+    private CartMechanismCache mechanismCache;
+
+    // The cart mechanisms of each base block, keyed by getRouteKey.
+    private Map<Integer, List<CartBlockMechanism>> routes;
+
+    // The mechanism of each sign tag, lower case and in brackets.
+    private Map<String, CartBlockMechanism> signTags;
+
     public static boolean isEnabled() {
 
         return instance != null;
@@ -102,6 +118,11 @@ public class VehicleCore implements LocalComponent, Listener {
         for(CraftBookMechanic mech : mechanics)
             mech.disable();
         mechanics = null;
+        if(mechanismCache != null)
+            mechanismCache.clear();
+        mechanismCache = null;
+        routes = null;
+        signTags = null;
         stationSelection = null;
         instance = null;
     }
@@ -179,9 +200,117 @@ public class VehicleCore implements LocalComponent, Listener {
             plugin.getServer().getPluginManager().registerEvents(mech, plugin);
         }
 
+        routes = new HashMap<Integer, List<CartBlockMechanism>>();
+        signTags = new HashMap<String, CartBlockMechanism>();
+        List<ItemInfo> materials = new ArrayList<ItemInfo>();
+        for(CartBlockMechanism mech : cartBlockMechanisms) {
+            if(!mechanics.contains(mech)) continue;
+            int key = getRouteKey(mech.getMaterial().getType(), mech.getMaterial().getData());
+            List<CartBlockMechanism> route = routes.get(key);
+            if(route == null) {
+                route = new ArrayList<CartBlockMechanism>(1);
+                routes.put(key, route);
+                materials.add(mech.getMaterial());
+            }
+            route.add(mech);
+            if(mech.getApplicableSigns() != null)
+                for(String sign : mech.getApplicableSigns())
+                    signTags.put("[" + sign.toLowerCase(Locale.ENGLISH) + "]", mech);
+        }
+        mechanismCache = new CartMechanismCache(materials);
+        plugin.getServer().getPluginManager().registerEvents(mechanismCache, plugin);
+
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
     }
 
+    /**
+     * Gets the cache of the mechanism blocks under each rail.
+     *
+     * @return The cache
+     */
+    public CartMechanismCache getMechanismCache() {
+
+        return mechanismCache;
+    }
+
+    private static int getRouteKey(Material type, int data) {
+
+        return type.ordinal() << 8 | data & 0xFF;
+    }
+
+    private List<CartBlockMechanism> getRoute(CartMechanismBlocks blocks) {
+
+        if(routes == null || blocks.base == null)
+            return Collections.emptyList();
+        List<CartBlockMechanism> route = routes.get(getRouteKey(blocks.base.getType(), blocks.base.getData()));
+        return route == null ? Collections.<CartBlockMechanism>emptyList() : route;
+    }
+
+    /**
+     * Checks if the base block of the given blocks belongs to any cart mechanism.
+     *
+     * @param blocks The mechanism blocks
+     * @return true if there is a mechanism for the base block
+     */
+    public boolean isMechanism(CartMechanismBlocks blocks) {
+
+        return !getRoute(blocks).isEmpty();
+    }
+
+    /**
+     * Passes the event to the mechanisms of the base block of the event, rather than to every listener. The event is
+     * then called for the listeners of other plugins.
+     *
+     * @param event The event
+     */
+    public void dispatchEvent(CartBlockImpactEvent event) {
+
+        for(CartBlockMechanism mech : getRoute(event.getBlocks())) {
+            try {
+                mech.onVehicleImpact(event);
+            } catch(Throwable t) {
+                BukkitUtil.printStacktrace(t);
+            }
+        }
+        plugin.getServer().getPluginManager().callEvent(event);
+    }
+
+    /**
+     * Passes the event to the mechanisms of the base block of the event, rather than to every listener. The event is
+     * then called for the listeners of other plugins.
+     *
+     * @param event The event
+     */
+    public void dispatchEvent(CartBlockRedstoneEvent event) {
+
+        for(CartBlockMechanism mech : getRoute(event.getBlocks())) {
+            try {
+                mech.onBlockRedstone(event);
+            } catch(Throwable t) {
+                BukkitUtil.printStacktrace(t);
+            }
+        }
+        plugin.getServer().getPluginManager().callEvent(event);
+    }
+
+    /**
+     * Passes the event to the mechanisms of the base block of the event, rather than to every listener. The event is
+     * then called for the listeners of other plugins.
+     *
+     * @param event The event
+     */
+    public void dispatchEvent(CartBlockEnterEvent event) {
+
+        for(CartBlockMechanism mech : getRoute(event.getBlocks())) {
+            try {
+                mech.onVehicleEnter(event);
+            } catch(Throwable t) {
+                BukkitUtil.printStacktrace(t);
+            }
+        }
+        plugin.getServer().getPluginManager().callEvent(event);
+    }
+
     public String getStation(String playerName) {
 
         return stationSelection.get(playerName);
@@ -200,25 +329,19 @@ public class VehicleCore implements LocalComponent, Listener {
         LocalPlayer player = plugin.wrapPlayer(event.getPlayer());
 
         try {
-            for (CartBlockMechanism mech : cartBlockMechanisms) {
-                if (mech.getApplicableSigns() == null || mech.getApplicableSigns().length == 0) continue;
-                boolean found = false;
+            for (int lineNum = 1; lineNum >= 0; lineNum--) {
+                CartBlockMechanism mech = signTags.get(lines[lineNum].toLowerCase(Locale.ENGLISH));
+                if (mech == null) continue;
+                // Only the messager can be on the first line, and only if it is not already on the second.
+                if (lineNum == 0 && (!mech.getName().equalsIgnoreCase("messager") || signTags.get(lines[1].toLowerCase(Locale.ENGLISH)) == mech))
+                    continue;
                 String lineFound = null;
-                int lineNum = 1;
                 for (String sign : mech.getApplicableSigns()) {
-                    if (lines[1].equalsIgnoreCase("[" + sign + "]")) {
-                        found = true;
-                        lineFound = sign;
-                        lineNum = 1;
-                        break;
-                    } else if (mech.getName().equalsIgnoreCase("messager") && lines[0].equalsIgnoreCase("[" + sign + "]")) {
-                        found = true;
+                    if (lines[lineNum].equalsIgnoreCase("[" + sign + "]")) {
                         lineFound = sign;
-                        lineNum = 0;
                         break;
                     }
                 }
-                if (!found) continue;
                 if (!mech.verify(BukkitUtil.toChangedSign((Sign) event.getBlock().getState(), lines, player), player)) {
                     block.breakNaturally();
                     event.setCancelled(true);
@@ -20,9 +20,9 @@ import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.MechanicalCore;
 import com.sk89q.craftbook.bukkit.util.BukkitUtil;
 import com.sk89q.craftbook.mech.area.Area;
+import com.sk89q.craftbook.mech.area.CompressedCuboidCopy;
 import com.sk89q.craftbook.mech.area.CopyManager;
 import com.sk89q.craftbook.mech.area.CuboidCopy;
-import com.sk89q.craftbook.mech.area.FlatCuboidCopy;
 import com.sk89q.craftbook.mech.area.MCEditCuboidCopy;
 import com.sk89q.craftbook.util.ArrayUtil;
 import com.sk89q.craftbook.util.SignUtil;
@@ -115,7 +115,7 @@ public class AreaCommands {
             if (config.areaUseSchematics) {
                 copy = new MCEditCuboidCopy(min, size, world);
             } else {
-                copy = new FlatCuboidCopy(min, size, world);
+                copy = new CompressedCuboidCopy(min, size, world);
             }
 
             copy.copy();
@@ -296,9 +296,6 @@ public class AreaCommands {
             deleteAll = true;
         } else throw new CommandException("You need to define an area or -a to delete all areas.");
 
-        // add the area suffix
-        areaId = areaId + (config.areaUseSchematics ? ".schematic" : ".cbcopy");
-
         File areas = null;
         try {
             areas = new File(plugin.getDataFolder(), "areas/" + namespace);
@@ -309,13 +306,18 @@ public class AreaCommands {
             throw new CommandException("The namespace " + namespace + " does not exist.");
 
         if (deleteAll) {
-            if (deleteDir(areas)) {
+            boolean deleted = deleteDir(areas);
+            CopyManager.getInstance().evict(namespace, null);
+            if (deleted) {
                 player.print("All areas in the namespace " + namespace + " have been deleted.");
             }
         } else {
-            File file = new File(areas, areaId);
-            if (file.delete()) {
-                player.print("The area '" + areaId + " in the namespace '" + namespace + "' has been deleted.");
+            try {
+                if (CopyManager.getInstance().delete(((Player) sender).getWorld(), namespace, areaId)) {
+                    player.print("The area '" + areaId + "' in the namespace '" + namespace + "' has been deleted.");
+                }
+            } catch (IOException e) {
+                throw new CommandException("Failed to delete the area '" + areaId + "': " + e.getMessage());
             }
         }
     }
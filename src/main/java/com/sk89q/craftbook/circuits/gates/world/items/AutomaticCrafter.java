@@ -1,6 +1,8 @@
 package com.sk89q.craftbook.circuits.gates.world.items;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -54,9 +56,26 @@ public class AutomaticCrafter extends AbstractSelfTriggeredIC implements PipeInp
         return "AUTO CRAFT";
     }
 
+    /**
+     * Every crafting recipe of the server, keyed by {@link #getRecipeKey(Recipe)}. Shared by all crafters.
+     */
+    private static Map<String, List<IndexedRecipe>> recipeIndex;
+
+    /**
+     * The amount of recipes the server had when the index was built, and when that was last checked.
+     */
+    private static int recipeCount;
+    private static long recipeCheckTime;
+
     // Cache the recipe - makes it faster
     private Recipe recipe;
 
+    // The contents of the inventory that the recipe was found for.
+    private long[] fingerprint;
+
+    // The recipe index that the recipe was found in.
+    private Map<String, List<IndexedRecipe>> fingerprintIndex;
+
     @Override
     public void trigger(ChipState chip) {
 
@@ -74,35 +93,29 @@ public class AutomaticCrafter extends AbstractSelfTriggeredIC implements PipeInp
     public boolean craft(InventoryHolder disp) {
 
         Inventory inv = disp.getInventory();
-        for (ItemStack it : inv.getContents()) {
+        ItemStack[] contents = inv.getContents();
+        for (ItemStack it : contents) {
             if (!ItemUtil.isStackValid(it))
                 continue;
             if (it.getAmount() < 2) return false;
         }
 
-        if (recipe == null) {
-
-            Iterator<Recipe> recipes = Bukkit.recipeIterator();
+        // The recipe only has to be found again if the items in the inventory or the recipes of the server have changed.
+        long[] current = getFingerprint(contents);
+        Map<String, List<IndexedRecipe>> index = getRecipeIndex();
+        if (index != fingerprintIndex || !Arrays.equals(current, fingerprint)) {
+            fingerprint = current;
+            fingerprintIndex = index;
+            recipe = null;
             try {
-                while (recipes.hasNext()) {
-                    Recipe temprecipe = recipes.next();
-                    if (isValidRecipe(temprecipe, inv)) {
-                        recipe = temprecipe;
-                    }
-                }
+                recipe = findRecipe(index, inv, contents);
             } catch (Exception e) {
                 BukkitUtil.printStacktrace(e);
-                disp.getInventory().setContents(inv.getContents());
             }
         }
 
         if (recipe == null) return false;
 
-        if (!isValidRecipe(recipe, inv)) {
-            recipe = null;
-            return craft(disp);
-        }
-
         ItemStack result = CustomCrafting.craftItem(recipe);
 
         if(!ItemUtil.isStackValid(result)) {
@@ -110,16 +123,6 @@ public class AutomaticCrafter extends AbstractSelfTriggeredIC implements PipeInp
             return false;
         }
 
-        ItemStack[] replace = new ItemStack[9];
-        for (int i = 0; i < disp.getInventory().getContents().length; i++) {
-            if (disp.getInventory().getContents()[i] == null) {
-                continue;
-            }
-            replace[i] = new ItemStack(disp.getInventory().getContents()[i]);
-            replace[i].setAmount(replace[i].getAmount() - 1);
-        }
-        disp.getInventory().clear();
-
         CraftBookPlugin.logDebugMessage("AutoCrafter is dispensing a " + result.getType().name() + " with data: " + result.getDurability() + " and amount: " + result.getAmount(), "ic-mc1219");
 
         List<ItemStack> items = new ArrayList<ItemStack>();
@@ -133,20 +136,179 @@ public class AutomaticCrafter extends AbstractSelfTriggeredIC implements PipeInp
 
         items = event.getItems();
 
-        if(!items.isEmpty()) {
-            for(ItemStack stack : items) {
-                if(disp.getInventory().addItem(stack).isEmpty())
-                    for(int i = 0; i < stack.getAmount(); i++)
-                        if(disp instanceof Dispenser)
-                            ((Dispenser) disp).dispense();
-                        else if(disp instanceof Dropper)
-                            ((Dropper) disp).drop();
+        if(items.isEmpty()) {
+            // Nothing is dispensed, so the ingredients can be taken from their slots directly.
+            for (int i = 0; i < contents.length; i++) {
+                if (contents[i] == null)
+                    continue;
+                contents[i].setAmount(contents[i].getAmount() - 1);
+                inv.setItem(i, contents[i]);
             }
+            return true;
+        }
+
+        // Whatever the pipe did not take is dispensed, which needs the result to be the only item in the inventory.
+        ItemStack[] replace = new ItemStack[contents.length];
+        for (int i = 0; i < contents.length; i++) {
+            if (contents[i] == null) {
+                continue;
+            }
+            replace[i] = new ItemStack(contents[i]);
+            replace[i].setAmount(replace[i].getAmount() - 1);
         }
-        disp.getInventory().setContents(replace);
+        inv.clear();
+
+        for(ItemStack stack : items) {
+            if(inv.addItem(stack).isEmpty())
+                for(int i = 0; i < stack.getAmount(); i++)
+                    if(disp instanceof Dispenser)
+                        ((Dispenser) disp).dispense();
+                    else if(disp instanceof Dropper)
+                        ((Dropper) disp).drop();
+        }
+        inv.setContents(replace);
         return true;
     }
 
+    /**
+     * Finds the recipe that can be crafted from an inventory. Only the recipes with the same key as the inventory are
+     * checked.
+     *
+     * @param inv The inventory.
+     * @param contents The contents of the inventory.
+     * @return The recipe, or null if there is none.
+     */
+    private Recipe findRecipe(Map<String, List<IndexedRecipe>> index, Inventory inv, ItemStack[] contents) {
+
+        // If several recipes match, the last one the server lists is used.
+        IndexedRecipe found = null;
+        for (String key : new String[] {getShapedKey(contents), getShapelessKey(contents)}) {
+            List<IndexedRecipe> candidates = index.get(key);
+            if (candidates == null)
+                continue;
+            for (IndexedRecipe candidate : candidates)
+                if ((found == null || candidate.order > found.order) && isValidRecipe(candidate.recipe, inv))
+                    found = candidate;
+        }
+
+        return found == null ? null : found.recipe;
+    }
+
+    private static Map<String, List<IndexedRecipe>> getRecipeIndex() {
+
+        // Plugins can add recipes at any time, so the index is built again once the amount of recipes changes.
+        long now = System.currentTimeMillis();
+        if (recipeIndex != null && now - recipeCheckTime >= 1000) {
+            recipeCheckTime = now;
+            int count = 0;
+            for (Iterator<Recipe> recipes = Bukkit.recipeIterator(); recipes.hasNext(); recipes.next())
+                count++;
+            if (count != recipeCount)
+                recipeIndex = null;
+        }
+
+        if (recipeIndex == null) {
+            recipeIndex = new HashMap<String, List<IndexedRecipe>>();
+            recipeCount = 0;
+            recipeCheckTime = now;
+            Iterator<Recipe> recipes = Bukkit.recipeIterator();
+            int order = 0;
+            while (recipes.hasNext()) {
+                Recipe recipe = recipes.next();
+                recipeCount++;
+                String key = getRecipeKey(recipe);
+                if (key == null)
+                    continue;
+                List<IndexedRecipe> list = recipeIndex.get(key);
+                if (list == null) {
+                    list = new ArrayList<IndexedRecipe>(1);
+                    recipeIndex.put(key, list);
+                }
+                list.add(new IndexedRecipe(recipe, order++));
+            }
+        }
+
+        return recipeIndex;
+    }
+
+    /**
+     * Forgets the recipes of the server, so that they are read again the next time a crafter needs them.
+     */
+    public static void clearRecipeIndex() {
+
+        recipeIndex = null;
+    }
+
+    /**
+     * Gets a key that is the same for a recipe and every inventory that it can be crafted from. For shaped recipes, it
+     * holds the material of each slot of the 3x3 grid. For shapeless recipes, it holds the sorted materials of the
+     * ingredients.
+     *
+     * @param recipe The recipe.
+     * @return The key, or null if the recipe can not be crafted.
+     */
+    private static String getRecipeKey(Recipe recipe) {
+
+        if (recipe instanceof ShapedRecipe) {
+            ShapedRecipe shaped = (ShapedRecipe) recipe;
+            Map<Character, ItemStack> ingredientMap = shaped.getIngredientMap();
+            String[] shape = shaped.getShape();
+            ItemStack[] grid = new ItemStack[9];
+            for (int row = 0; row < 3 && row < shape.length; row++)
+                for (int col = 0; col < 3 && col < shape[row].length(); col++)
+                    if (shape[row].charAt(col) != ' ')
+                        grid[row * 3 + col] = ingredientMap.get(shape[row].charAt(col));
+            return getShapedKey(grid);
+        } else if (recipe instanceof ShapelessRecipe)
+            return getShapelessKey(((ShapelessRecipe) recipe).getIngredientList().toArray(new ItemStack[0]));
+        else
+            return null;
+    }
+
+    private static String getShapedKey(ItemStack[] grid) {
+
+        StringBuilder key = new StringBuilder("S");
+        for (int slot = 0; slot < 9; slot++) {
+            ItemStack stack = slot < grid.length ? grid[slot] : null;
+            key.append(':').append(ItemUtil.isStackValid(stack) ? stack.getType().ordinal() : -1);
+        }
+        return key.toString();
+    }
+
+    private static String getShapelessKey(ItemStack[] ingredients) {
+
+        int[] types = new int[ingredients.length];
+        int count = 0;
+        for (ItemStack stack : ingredients)
+            if (ItemUtil.isStackValid(stack))
+                types[count++] = stack.getType().ordinal();
+        Arrays.sort(types, 0, count);
+
+        StringBuilder key = new StringBuilder("L");
+        for (int i = 0; i < count; i++)
+            key.append(':').append(types[i]);
+        return key.toString();
+    }
+
+    /**
+     * Gets a fingerprint of the items in an inventory. It holds the material, data and item meta of every slot, but
+     * not the amounts, as these do not change which recipe can be crafted.
+     */
+    private static long[] getFingerprint(ItemStack[] contents) {
+
+        long[] fingerprint = new long[contents.length];
+        for (int i = 0; i < contents.length; i++) {
+            ItemStack stack = contents[i];
+            if (!ItemUtil.isStackValid(stack)) {
+                fingerprint[i] = -1;
+                continue;
+            }
+            long item = stack.getType().ordinal() << 16 | stack.getDurability() & 0xFFFF;
+            fingerprint[i] = item << 32 | (stack.hasItemMeta() ? stack.getItemMeta().hashCode() : 0) & 0xFFFFFFFFL;
+        }
+        return fingerprint;
+    }
+
     public boolean collect(InventoryHolder disp) {
 
         for (Item item : ItemUtil.getItemsAtBlock(BukkitUtil.toSign(getSign()).getBlock())) {
@@ -287,6 +449,13 @@ public class AutomaticCrafter extends AbstractSelfTriggeredIC implements PipeInp
             return new AutomaticCrafter(getServer(), sign, this);
         }
 
+        @Override
+        public void unload() {
+
+            super.unload();
+            clearRecipeIndex();
+        }
+
         @Override
         public String getShortDescription() {
 
@@ -300,6 +469,20 @@ public class AutomaticCrafter extends AbstractSelfTriggeredIC implements PipeInp
         }
     }
 
+    private static final class IndexedRecipe {
+
+        private final Recipe recipe;
+
+        // The position of the recipe in the list of recipes of the server.
+        private final int order;
+
+        private IndexedRecipe(Recipe recipe, int order) {
+
+            this.recipe = recipe;
+            this.order = order;
+        }
+    }
+
     @Override
     public void onPipeTransfer(PipePutEvent event) {
 
@@ -337,4 +520,4 @@ public class AutomaticCrafter extends AbstractSelfTriggeredIC implements PipeInp
             event.setItems(newItems);
         }
     }
-}
+}
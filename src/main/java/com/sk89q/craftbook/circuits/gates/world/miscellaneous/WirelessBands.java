@@ -0,0 +1,314 @@
+package com.sk89q.craftbook.circuits.gates.world.miscellaneous;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import com.sk89q.craftbook.bukkit.util.BukkitUtil;
+
+/**
+ * The states of all wireless bands. Receivers subscribe to their band, and are updated on the next tick after a
+ * transmitter changes it, rather than checking it every tick.
+ *
+ * Changed bands are appended to a log file in batches off the main thread. The log is rewritten once it grows much
+ * larger than the set of active bands.
+ */
+public class WirelessBands {
+
+    private static final String GLOBAL = "global";
+
+    private static final int SAVE_INTERVAL = 100;
+
+    private static final Set<String> active = new LinkedHashSet<String>();
+    private static final Map<String, Set<WirelessReceiver>> receivers = new HashMap<String, Set<WirelessReceiver>>();
+
+    private static final Set<WirelessReceiver> pending = new LinkedHashSet<WirelessReceiver>();
+    private static BukkitTask updateTask;
+
+    private static final Map<String, Boolean> changed = new LinkedHashMap<String, Boolean>();
+    private static BukkitTask saveTask;
+    private static final Object writeLock = new Object();
+    private static volatile boolean writing = false;
+    private static long generation = 0;
+    // The newest batch in the log file. Guarded by the write lock.
+    private static long writtenGeneration = 0;
+    // Records in the log file, once the current writes are done.
+    private static int logRecords = 0;
+    // If the log ends in a record that was cut off, so the next save has to rewrite it rather than append to it.
+    private static boolean logTorn = false;
+
+    private static boolean loaded = false;
+
+    /**
+     * Gets the key of a band.
+     *
+     * @param name The name of the band
+     * @param owner The player that owns the band, or an empty string for a global band.
+     * @return The band key
+     */
+    public static String getBand(String name, String owner) {
+
+        return (owner == null || owner.trim().isEmpty() ? GLOBAL : owner) + "|" + name;
+    }
+
+    /**
+     * Gets the key of a band given as "name" or "namespace|name".
+     *
+     * @param band The band
+     * @return The band key
+     */
+    public static String parseBand(String band) {
+
+        return band.contains("|") ? band : getBand(band, null);
+    }
+
+    public static boolean getValue(String band) {
+
+        load();
+        return active.contains(band);
+    }
+
+    public static void setValue(String band, boolean value) {
+
+        load();
+        if(!(value ? active.add(band) : active.remove(band)))
+            return;
+
+        if(CraftBookPlugin.inst().getConfiguration().ICSavePersistentData) {
+            changed.put(band, value);
+            if(saveTask == null) {
+                saveTask = Bukkit.getScheduler().runTaskTimer(CraftBookPlugin.inst(), new Runnable() {
+
+                    @Override
+                    public void run() {
+
+                        save(false);
+                    }
+                }, SAVE_INTERVAL, SAVE_INTERVAL);
+            }
+        }
+
+        Set<WirelessReceiver> subscribers = receivers.get(band);
+        if(subscribers == null || subscribers.isEmpty())
+            return;
+        pending.addAll(subscribers);
+        if(updateTask == null) {
+            updateTask = Bukkit.getScheduler().runTask(CraftBookPlugin.inst(), new Runnable() {
+
+                @Override
+                public void run() {
+
+                    updateTask = null;
+                    List<WirelessReceiver> due = new ArrayList<WirelessReceiver>(pending);
+                    pending.clear();
+                    for(WirelessReceiver receiver : due)
+                        receiver.update();
+                }
+            });
+        }
+    }
+
+    public static void subscribe(String band, WirelessReceiver receiver) {
+
+        Set<WirelessReceiver> subscribers = receivers.get(band);
+        if(subscribers == null) {
+            subscribers = new LinkedHashSet<WirelessReceiver>();
+            receivers.put(band, subscribers);
+        }
+        subscribers.add(receiver);
+    }
+
+    public static void unsubscribe(String band, WirelessReceiver receiver) {
+
+        Set<WirelessReceiver> subscribers = receivers.get(band);
+        if(subscribers == null)
+            return;
+        subscribers.remove(receiver);
+        if(subscribers.isEmpty())
+            receivers.remove(band);
+        pending.remove(receiver);
+    }
+
+    private static File getLogFile() {
+
+        return new File(CraftBookPlugin.inst().getDataFolder(), "wireless-bands.log");
+    }
+
+    private static void load() {
+
+        if(loaded) return;
+        loaded = true;
+
+        if(!CraftBookPlugin.inst().getConfiguration().ICSavePersistentData)
+            return;
+
+        File log = getLogFile();
+        File legacy = new File(CraftBookPlugin.inst().getDataFolder(), "wireless-bands.dat");
+        try {
+            if(log.exists()) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(log)));
+                try {
+                    while(true) {
+                        // Stop at the end of the log first, so that running out of bytes below means a torn record.
+                        in.mark(1);
+                        if(in.read() < 0)
+                            break;
+                        in.reset();
+                        String band = in.readUTF();
+                        if(in.readBoolean())
+                            active.add(band);
+                        else
+                            active.remove(band);
+                        logRecords++;
+                    }
+                } catch(EOFException e) {
+                    // A record that was cut off by a crash. Records appended after it would be read out of line.
+                    logTorn = true;
+                } finally {
+                    in.close();
+                }
+            } else if(legacy.exists()) {
+                // The old format stored the name and owner of a band joined together, so they can not be told apart.
+                DataInputStream in = new DataInputStream(new FileInputStream(legacy));
+                try {
+                    int length = in.readInt();
+                    for(int i = 0; i < length; i++)
+                        active.add(getBand(in.readUTF(), null));
+                } finally {
+                    in.close();
+                }
+                write(null, new ArrayList<String>(active), ++generation);
+                logRecords = active.size();
+            }
+        } catch(IOException e) {
+            CraftBookPlugin.logger().severe("An invalid wireless band save file was found!");
+            BukkitUtil.printStacktrace(e);
+        }
+    }
+
+    /**
+     * Writes all changed bands to disk.
+     *
+     * @param sync If true, the bands are written before this returns. Otherwise they are written asynchronously.
+     */
+    public static void save(boolean sync) {
+
+        if(changed.isEmpty()) return;
+        if(!sync && writing) return;
+
+        final Map<String, Boolean> batch = new LinkedHashMap<String, Boolean>(changed);
+        changed.clear();
+
+        // Rewrite the whole log when most of it is outdated, or when there may still be an older batch in flight.
+        final long batchGeneration = ++generation;
+        final List<String> snapshot = sync || logTorn || logRecords + batch.size() > active.size() * 4 + 64 ? new ArrayList<String>(active) : null;
+        logRecords = snapshot != null ? snapshot.size() : logRecords + batch.size();
+        if(snapshot != null)
+            logTorn = false;
+
+        if(sync) {
+            write(batch, snapshot, batchGeneration);
+        } else {
+            writing = true;
+            Bukkit.getScheduler().runTaskAsynchronously(CraftBookPlugin.inst(), new Runnable() {
+
+                @Override
+                public void run() {
+
+                    try {
+                        write(batch, snapshot, batchGeneration);
+                    } finally {
+                        writing = false;
+                    }
+                }
+            });
+        }
+    }
+
+    private static void write(Map<String, Boolean> batch, List<String> snapshot, long batchGeneration) {
+
+        synchronized (writeLock) {
+            // An asynchronous batch may only get here after the full rewrite on unload, which already contains it.
+            if(batchGeneration < writtenGeneration)
+                return;
+            writtenGeneration = batchGeneration;
+
+            File log = getLogFile();
+            try {
+                log.getParentFile().mkdirs();
+                if(snapshot != null) {
+                    File temp = new File(log.getParentFile(), log.getName() + ".tmp");
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+                    try {
+                        for(String band : snapshot) {
+                            out.writeUTF(band);
+                            out.writeBoolean(true);
+                        }
+                    } finally {
+                        out.close();
+                    }
+                    if(!temp.renameTo(log)) {
+                        log.delete();
+                        if(!temp.renameTo(log))
+                            throw new IOException("Failed to replace " + log.getName());
+                    }
+                } else {
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(log, true)));
+                    try {
+                        for(Map.Entry<String, Boolean> entry : batch.entrySet()) {
+                            out.writeUTF(entry.getKey());
+                            out.writeBoolean(entry.getValue());
+                        }
+                    } finally {
+                        out.close();
+                    }
+                }
+            } catch(IOException e) {
+                CraftBookPlugin.logger().severe("Failed to save wireless bands at " + log.getName());
+                BukkitUtil.printStacktrace(e);
+            }
+        }
+    }
+
+    /**
+     * Writes all changed bands to disk, and forgets all bands and receivers.
+     */
+    public static void unload() {
+
+        if(!loaded) return;
+
+        if(saveTask != null) {
+            saveTask.cancel();
+            saveTask = null;
+        }
+        if(updateTask != null) {
+            updateTask.cancel();
+            updateTask = null;
+        }
+        save(true);
+
+        active.clear();
+        receivers.clear();
+        pending.clear();
+        logRecords = 0;
+        logTorn = false;
+        loaded = false;
+    }
+}
@@ -16,23 +16,35 @@
 
 package com.sk89q.craftbook.circuits.gates.world.miscellaneous;
 
+import org.bukkit.Location;
 import org.bukkit.Server;
 
 import com.sk89q.craftbook.ChangedSign;
 import com.sk89q.craftbook.LocalPlayer;
+import com.sk89q.craftbook.bukkit.util.BukkitUtil;
 import com.sk89q.craftbook.circuits.ic.AbstractICFactory;
 import com.sk89q.craftbook.circuits.ic.AbstractSelfTriggeredIC;
 import com.sk89q.craftbook.circuits.ic.ChipState;
 import com.sk89q.craftbook.circuits.ic.ConfigurableIC;
 import com.sk89q.craftbook.circuits.ic.IC;
 import com.sk89q.craftbook.circuits.ic.ICFactory;
+import com.sk89q.craftbook.circuits.ic.ICManager;
 import com.sk89q.craftbook.circuits.ic.ICVerificationException;
+import com.sk89q.craftbook.circuits.ic.ThinkIntervalIC;
 import com.sk89q.util.yaml.YAMLProcessor;
 
-public class WirelessReceiver extends AbstractSelfTriggeredIC {
+public class WirelessReceiver extends AbstractSelfTriggeredIC implements ThinkIntervalIC {
+
+    /**
+     * How often a subscribed receiver still checks its band, in case it missed an update.
+     */
+    private static final int RESYNC_INTERVAL = 1200;
 
     private String band;
 
+    private ChipState chip;
+    private boolean subscribed = false;
+
     public WirelessReceiver(Server server, ChangedSign sign, ICFactory factory) {
 
         super(server, sign, factory);
@@ -41,9 +53,17 @@ public class WirelessReceiver extends AbstractSelfTriggeredIC {
     @Override
     public void load() {
 
-        band = getSign().getLine(2);
-        if (!getLine(3).trim().isEmpty())
-            band = band + getSign().getLine(3);
+        band = WirelessBands.getBand(getSign().getLine(2), getLine(3));
+    }
+
+    @Override
+    public void unload() {
+
+        if (subscribed) {
+            WirelessBands.unsubscribe(band, this);
+            subscribed = false;
+        }
+        chip = null;
     }
 
     @Override
@@ -69,19 +89,41 @@ public class WirelessReceiver extends AbstractSelfTriggeredIC {
 
     public boolean getOutput() {
 
-        Boolean val = WirelessTransmitter.getValue(band);
+        return WirelessBands.getValue(band);
+    }
 
-        if (val == null) {
-            return false;
+    @Override
+    public void think(ChipState chip) {
+
+        // From now on the band tells this receiver when it changes.
+        this.chip = chip;
+        if (!subscribed) {
+            WirelessBands.subscribe(band, this);
+            subscribed = true;
         }
+        chip.setOutput(0, getOutput());
+    }
+
+    /**
+     * Called by {@link WirelessBands} when the band of this receiver has changed.
+     */
+    public void update() {
+
+        if (chip == null) return;
 
-        return val;
+        Location location = BukkitUtil.toSign(getSign()).getLocation();
+        if (ICManager.getCachedIC(location) != this) {
+            // This IC has been replaced or removed.
+            unload();
+            return;
+        }
+        chip.setOutput(0, getOutput());
     }
 
     @Override
-    public void think(ChipState chip) {
+    public int getThinkInterval() {
 
-        chip.setOutput(0, getOutput());
+        return subscribed ? RESYNC_INTERVAL : 0;
     }
 
     public static class Factory extends AbstractICFactory implements ConfigurableIC {
@@ -16,20 +16,12 @@
 
 package com.sk89q.craftbook.circuits.gates.world.miscellaneous;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.File;
-import java.io.IOException;
-import java.util.LinkedHashSet;
-import java.util.Set;
-
 import org.bukkit.ChatColor;
 import org.bukkit.Server;
 import org.bukkit.command.CommandSender;
 
 import com.sk89q.craftbook.ChangedSign;
 import com.sk89q.craftbook.LocalPlayer;
-import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.circuits.ic.AbstractIC;
 import com.sk89q.craftbook.circuits.ic.AbstractICFactory;
 import com.sk89q.craftbook.circuits.ic.ChipState;
@@ -38,14 +30,11 @@ import com.sk89q.craftbook.circuits.ic.ConfigurableIC;
 import com.sk89q.craftbook.circuits.ic.IC;
 import com.sk89q.craftbook.circuits.ic.ICFactory;
 import com.sk89q.craftbook.circuits.ic.ICVerificationException;
-import com.sk89q.craftbook.circuits.ic.PersistentDataIC;
 import com.sk89q.minecraft.util.commands.CommandContext;
 import com.sk89q.util.yaml.YAMLProcessor;
 
 public class WirelessTransmitter extends AbstractIC {
 
-    protected static final Set<String> memory = new LinkedHashSet<String>();
-
     protected String band;
 
     public WirelessTransmitter(Server server, ChangedSign sign, ICFactory factory) {
@@ -56,9 +45,7 @@ public class WirelessTransmitter extends AbstractIC {
     @Override
     public void load() {
 
-        band = getSign().getLine(2);
-        if (!getLine(3).trim().isEmpty())
-            band = band + getSign().getLine(3);
+        band = WirelessBands.getBand(getSign().getLine(2), getLine(3));
     }
 
     @Override
@@ -82,18 +69,15 @@ public class WirelessTransmitter extends AbstractIC {
 
     public static Boolean getValue(String band) {
 
-        return memory.contains(band);
+        return WirelessBands.getValue(band);
     }
 
     public static void setValue(String band, boolean val) {
 
-        if(!val) //List preening
-            memory.remove(band);
-        else
-            memory.add(band);
+        WirelessBands.setValue(band, val);
     }
 
-    public static class Factory extends AbstractICFactory implements PersistentDataIC, ConfigurableIC, CommandIC {
+    public static class Factory extends AbstractICFactory implements ConfigurableIC, CommandIC {
 
         public boolean requirename;
 
@@ -134,27 +118,9 @@ public class WirelessTransmitter extends AbstractIC {
         }
 
         @Override
-        public void loadPersistentData (DataInputStream stream) throws IOException {
-
-            memory.clear();
-            int length = stream.readInt();
-            for(int i = 0; i < length; i++)
-                memory.add(stream.readUTF());
-            stream.close();
-        }
-
-        @Override
-        public void savePersistentData (DataOutputStream stream) throws IOException {
-            stream.writeInt(memory.size());
-            for(String band : memory) {
-                stream.writeUTF(band);
-            }
-            stream.close();
-        }
+        public void unload () {
 
-        @Override
-        public File getStorageFile () {
-            return new File(CraftBookPlugin.inst().getDataFolder(), "wireless-bands.dat");
+            WirelessBands.unload();
         }
 
         @Override
@@ -162,16 +128,16 @@ public class WirelessTransmitter extends AbstractIC {
 
             if (args.getString(1).equalsIgnoreCase("get")) {
 
-                if(memory.contains(args.getString(1)))
+                if(WirelessBands.getValue(WirelessBands.parseBand(args.getString(2))))
                     sender.sendMessage("Wireless-Band-State: TRUE");
                 else
                     sender.sendMessage("Wireless-Band-State: FALSE");
             } else if (args.getString(1).equalsIgnoreCase("set") && args.argsLength() > 3) {
 
                 if (args.getString(3).equalsIgnoreCase("true"))
-                    memory.add(args.getString(2));
+                    WirelessBands.setValue(WirelessBands.parseBand(args.getString(2)), true);
                 else if (args.getString(3).equalsIgnoreCase("false"))
-                    memory.remove(args.getString(2));
+                    WirelessBands.setValue(WirelessBands.parseBand(args.getString(2)), false);
                 else
                     sender.sendMessage(ChatColor.RED + "Invalid Boolean Argument!");
             } else
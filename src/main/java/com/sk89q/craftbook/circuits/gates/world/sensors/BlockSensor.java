@@ -11,12 +11,13 @@ import com.sk89q.craftbook.circuits.ic.ConfigurableIC;
 import com.sk89q.craftbook.circuits.ic.IC;
 import com.sk89q.craftbook.circuits.ic.ICFactory;
 import com.sk89q.craftbook.circuits.ic.ICVerificationException;
+import com.sk89q.craftbook.circuits.ic.ThinkIntervalIC;
 import com.sk89q.craftbook.util.ICUtil;
 import com.sk89q.craftbook.util.ItemInfo;
 import com.sk89q.craftbook.util.RegexUtil;
 import com.sk89q.util.yaml.YAMLProcessor;
 
-public class BlockSensor extends AbstractSelfTriggeredIC {
+public class BlockSensor extends AbstractSelfTriggeredIC implements ThinkIntervalIC {
 
     private Block center;
     private ItemInfo item;
@@ -69,6 +70,12 @@ public class BlockSensor extends AbstractSelfTriggeredIC {
         return item.isSame(center);
     }
 
+    @Override
+    public int getThinkInterval() {
+
+        return SENSOR_THINK_INTERVAL;
+    }
+
     public static class Factory extends AbstractICFactory implements ConfigurableIC {
 
         boolean invert;
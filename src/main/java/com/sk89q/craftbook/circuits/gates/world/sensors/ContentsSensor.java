@@ -13,11 +13,12 @@ import com.sk89q.craftbook.circuits.ic.ChipState;
 import com.sk89q.craftbook.circuits.ic.IC;
 import com.sk89q.craftbook.circuits.ic.ICFactory;
 import com.sk89q.craftbook.circuits.ic.ICVerificationException;
+import com.sk89q.craftbook.circuits.ic.ThinkIntervalIC;
 import com.sk89q.craftbook.util.ICUtil;
 import com.sk89q.craftbook.util.ItemSyntax;
 import com.sk89q.craftbook.util.ItemUtil;
 
-public class ContentsSensor extends AbstractSelfTriggeredIC {
+public class ContentsSensor extends AbstractSelfTriggeredIC implements ThinkIntervalIC {
 
     public ContentsSensor (Server server, ChangedSign sign, ICFactory factory) {
         super(server, sign, factory);
@@ -100,6 +101,12 @@ public class ContentsSensor extends AbstractSelfTriggeredIC {
         return false;
     }
 
+    @Override
+    public int getThinkInterval() {
+
+        return SENSOR_THINK_INTERVAL;
+    }
+
     public static class Factory extends AbstractICFactory {
 
         public Factory(Server server) {
@@ -24,8 +24,9 @@ import com.sk89q.craftbook.circuits.ic.AbstractSelfTriggeredIC;
 import com.sk89q.craftbook.circuits.ic.ChipState;
 import com.sk89q.craftbook.circuits.ic.IC;
 import com.sk89q.craftbook.circuits.ic.ICFactory;
+import com.sk89q.craftbook.circuits.ic.ThinkIntervalIC;
 
-public class DaySensor extends AbstractSelfTriggeredIC {
+public class DaySensor extends AbstractSelfTriggeredIC implements ThinkIntervalIC {
 
     public DaySensor(Server server, ChangedSign sign, ICFactory factory) {
 
@@ -98,6 +99,12 @@ public class DaySensor extends AbstractSelfTriggeredIC {
         return time < night;
     }
 
+    @Override
+    public int getThinkInterval() {
+
+        return SENSOR_THINK_INTERVAL;
+    }
+
     public static class Factory extends AbstractICFactory {
 
         public Factory(Server server) {
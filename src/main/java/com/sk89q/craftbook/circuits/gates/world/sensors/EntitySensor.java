@@ -4,7 +4,6 @@ import java.util.Locale;
 import java.util.Set;
 
 import org.bukkit.Server;
-import org.bukkit.entity.Entity;
 
 import com.sk89q.craftbook.ChangedSign;
 import com.sk89q.craftbook.bukkit.util.BukkitUtil;
@@ -14,13 +13,14 @@ import com.sk89q.craftbook.circuits.ic.ChipState;
 import com.sk89q.craftbook.circuits.ic.IC;
 import com.sk89q.craftbook.circuits.ic.ICFactory;
 import com.sk89q.craftbook.circuits.ic.ICVerificationException;
+import com.sk89q.craftbook.circuits.ic.ThinkIntervalIC;
 import com.sk89q.craftbook.util.EntityType;
 import com.sk89q.craftbook.util.SearchArea;
 
 /**
  * @author Silthus
  */
-public class EntitySensor extends AbstractSelfTriggeredIC {
+public class EntitySensor extends AbstractSelfTriggeredIC implements ThinkIntervalIC {
 
     private Set<EntityType> types;
 
@@ -102,13 +102,7 @@ public class EntitySensor extends AbstractSelfTriggeredIC {
 
     protected boolean isDetected() {
 
-        short cur = 0;
-
-        for (Entity entity : area.getEntitiesInArea(types))
-            if (entity.isValid())
-                for (EntityType type : types) // Check Type
-                    if (type.is(entity)) // Check Radius
-                        cur++;
+        int cur = area.countEntitiesInArea(types);
 
         if(minMode == 0 && cur >= minimum)
             return true;
@@ -124,6 +118,12 @@ public class EntitySensor extends AbstractSelfTriggeredIC {
         return false;
     }
 
+    @Override
+    public int getThinkInterval() {
+
+        return SENSOR_THINK_INTERVAL;
+    }
+
     public static class Factory extends AbstractICFactory {
 
         public Factory(Server server) {
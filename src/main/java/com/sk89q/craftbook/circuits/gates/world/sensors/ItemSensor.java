@@ -14,6 +14,7 @@ import com.sk89q.craftbook.circuits.ic.ChipState;
 import com.sk89q.craftbook.circuits.ic.IC;
 import com.sk89q.craftbook.circuits.ic.ICFactory;
 import com.sk89q.craftbook.circuits.ic.ICVerificationException;
+import com.sk89q.craftbook.circuits.ic.ThinkIntervalIC;
 import com.sk89q.craftbook.util.EntityType;
 import com.sk89q.craftbook.util.ICUtil;
 import com.sk89q.craftbook.util.ItemSyntax;
@@ -23,7 +24,7 @@ import com.sk89q.craftbook.util.SearchArea;
 /**
  * @author Silthus
  */
-public class ItemSensor extends AbstractSelfTriggeredIC {
+public class ItemSensor extends AbstractSelfTriggeredIC implements ThinkIntervalIC {
 
     private ItemStack item;
 
@@ -76,6 +77,12 @@ public class ItemSensor extends AbstractSelfTriggeredIC {
         return false;
     }
 
+    @Override
+    public int getThinkInterval() {
+
+        return SENSOR_THINK_INTERVAL;
+    }
+
     public static class Factory extends AbstractICFactory {
 
         public Factory(Server server) {
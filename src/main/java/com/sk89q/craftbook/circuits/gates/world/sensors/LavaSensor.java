@@ -27,9 +27,10 @@ import com.sk89q.craftbook.circuits.ic.ChipState;
 import com.sk89q.craftbook.circuits.ic.IC;
 import com.sk89q.craftbook.circuits.ic.ICFactory;
 import com.sk89q.craftbook.circuits.ic.ICVerificationException;
+import com.sk89q.craftbook.circuits.ic.ThinkIntervalIC;
 import com.sk89q.craftbook.util.ICUtil;
 
-public class LavaSensor extends AbstractSelfTriggeredIC {
+public class LavaSensor extends AbstractSelfTriggeredIC implements ThinkIntervalIC {
 
     private Block center;
 
@@ -82,6 +83,12 @@ public class LavaSensor extends AbstractSelfTriggeredIC {
         return blockID == Material.LAVA || blockID == Material.STATIONARY_LAVA;
     }
 
+    @Override
+    public int getThinkInterval() {
+
+        return SENSOR_THINK_INTERVAL;
+    }
+
     public static class Factory extends AbstractICFactory {
 
         public Factory(Server server) {
@@ -26,10 +26,11 @@ import com.sk89q.craftbook.circuits.ic.AbstractSelfTriggeredIC;
 import com.sk89q.craftbook.circuits.ic.ChipState;
 import com.sk89q.craftbook.circuits.ic.IC;
 import com.sk89q.craftbook.circuits.ic.ICFactory;
+import com.sk89q.craftbook.circuits.ic.ThinkIntervalIC;
 import com.sk89q.craftbook.util.ICUtil;
 import com.sk89q.craftbook.util.SignUtil;
 
-public class LightSensor extends AbstractSelfTriggeredIC {
+public class LightSensor extends AbstractSelfTriggeredIC implements ThinkIntervalIC {
 
     public LightSensor(Server server, ChangedSign sign, ICFactory factory) {
 
@@ -97,6 +98,12 @@ public class LightSensor extends AbstractSelfTriggeredIC {
         return lightLevel >= min;
     }
 
+    @Override
+    public int getThinkInterval() {
+
+        return SENSOR_THINK_INTERVAL;
+    }
+
     public static class Factory extends AbstractICFactory {
 
         public Factory(Server server) {
@@ -13,6 +13,7 @@ import com.sk89q.craftbook.circuits.ic.AbstractSelfTriggeredIC;
 import com.sk89q.craftbook.circuits.ic.ChipState;
 import com.sk89q.craftbook.circuits.ic.IC;
 import com.sk89q.craftbook.circuits.ic.ICFactory;
+import com.sk89q.craftbook.circuits.ic.ThinkIntervalIC;
 import com.sk89q.craftbook.util.EntityType;
 import com.sk89q.craftbook.util.ICUtil;
 import com.sk89q.craftbook.util.LocationUtil;
@@ -24,7 +25,7 @@ import com.sk89q.worldedit.Vector;
  *
  * @author Me4502
  */
-public class MovementSensor extends AbstractSelfTriggeredIC {
+public class MovementSensor extends AbstractSelfTriggeredIC implements ThinkIntervalIC {
 
     public MovementSensor(Server server, ChangedSign sign, ICFactory factory) {
 
@@ -107,6 +108,12 @@ public class MovementSensor extends AbstractSelfTriggeredIC {
         return false;
     }
 
+    @Override
+    public int getThinkInterval() {
+
+        return SENSOR_THINK_INTERVAL;
+    }
+
     public static class Factory extends AbstractICFactory {
 
         public Factory(Server server) {
@@ -12,12 +12,13 @@ import com.sk89q.craftbook.circuits.ic.ChipState;
 import com.sk89q.craftbook.circuits.ic.IC;
 import com.sk89q.craftbook.circuits.ic.ICFactory;
 import com.sk89q.craftbook.circuits.ic.RestrictedIC;
+import com.sk89q.craftbook.circuits.ic.ThinkIntervalIC;
 import com.sk89q.craftbook.util.ItemSyntax;
 import com.sk89q.craftbook.util.ItemUtil;
 import com.sk89q.craftbook.util.RegexUtil;
 import com.sk89q.craftbook.util.SearchArea;
 
-public class PlayerInventorySensor extends AbstractSelfTriggeredIC {
+public class PlayerInventorySensor extends AbstractSelfTriggeredIC implements ThinkIntervalIC {
 
     public PlayerInventorySensor (Server server, ChangedSign sign, ICFactory factory) {
         super(server, sign, factory);
@@ -113,6 +114,12 @@ public class PlayerInventorySensor extends AbstractSelfTriggeredIC {
         return false;
     }
 
+    @Override
+    public int getThinkInterval() {
+
+        return SENSOR_THINK_INTERVAL;
+    }
+
     public static class Factory extends AbstractICFactory implements RestrictedIC {
 
         public Factory(Server server) {
@@ -13,13 +13,14 @@ import com.sk89q.craftbook.circuits.ic.IC;
 import com.sk89q.craftbook.circuits.ic.ICFactory;
 import com.sk89q.craftbook.circuits.ic.ICVerificationException;
 import com.sk89q.craftbook.circuits.ic.RestrictedIC;
+import com.sk89q.craftbook.circuits.ic.ThinkIntervalIC;
 import com.sk89q.craftbook.util.PlayerType;
 import com.sk89q.craftbook.util.SearchArea;
 
 /**
  * @author Me4502
  */
-public class PlayerSensor extends AbstractSelfTriggeredIC {
+public class PlayerSensor extends AbstractSelfTriggeredIC implements ThinkIntervalIC {
 
     public PlayerSensor(Server server, ChangedSign block, ICFactory factory) {
 
@@ -93,6 +94,12 @@ public class PlayerSensor extends AbstractSelfTriggeredIC {
         return false;
     }
 
+    @Override
+    public int getThinkInterval() {
+
+        return SENSOR_THINK_INTERVAL;
+    }
+
     public static class Factory extends AbstractICFactory implements RestrictedIC {
 
         public Factory(Server server) {
@@ -10,12 +10,13 @@ import com.sk89q.craftbook.circuits.ic.ChipState;
 import com.sk89q.craftbook.circuits.ic.IC;
 import com.sk89q.craftbook.circuits.ic.ICFactory;
 import com.sk89q.craftbook.circuits.ic.ICVerificationException;
+import com.sk89q.craftbook.circuits.ic.ThinkIntervalIC;
 import com.sk89q.craftbook.util.ICUtil;
 
 /**
  * @author Silthus
  */
-public class PowerSensor extends AbstractSelfTriggeredIC {
+public class PowerSensor extends AbstractSelfTriggeredIC implements ThinkIntervalIC {
 
     private Block center;
 
@@ -61,6 +62,12 @@ public class PowerSensor extends AbstractSelfTriggeredIC {
         return center.isBlockPowered() || center.isBlockIndirectlyPowered();
     }
 
+    @Override
+    public int getThinkInterval() {
+
+        return SENSOR_THINK_INTERVAL;
+    }
+
     public static class Factory extends AbstractICFactory {
 
         public Factory(Server server) {
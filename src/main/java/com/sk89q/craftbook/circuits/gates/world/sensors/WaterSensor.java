@@ -27,9 +27,10 @@ import com.sk89q.craftbook.circuits.ic.ChipState;
 import com.sk89q.craftbook.circuits.ic.IC;
 import com.sk89q.craftbook.circuits.ic.ICFactory;
 import com.sk89q.craftbook.circuits.ic.ICVerificationException;
+import com.sk89q.craftbook.circuits.ic.ThinkIntervalIC;
 import com.sk89q.craftbook.util.ICUtil;
 
-public class WaterSensor extends AbstractSelfTriggeredIC {
+public class WaterSensor extends AbstractSelfTriggeredIC implements ThinkIntervalIC {
 
     Block center;
 
@@ -82,6 +83,12 @@ public class WaterSensor extends AbstractSelfTriggeredIC {
         return blockID == Material.WATER || blockID == Material.STATIONARY_WATER;
     }
 
+    @Override
+    public int getThinkInterval() {
+
+        return SENSOR_THINK_INTERVAL;
+    }
+
     public static class Factory extends AbstractICFactory {
 
         public Factory(Server server) {
@@ -3,11 +3,12 @@ package com.sk89q.craftbook.circuits.ic;
 import org.apache.commons.lang.Validate;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
-import org.bukkit.material.Lever;
+import org.bukkit.block.BlockFace;
 
 import com.sk89q.craftbook.ChangedSign;
 import com.sk89q.craftbook.bukkit.util.BukkitUtil;
 import com.sk89q.craftbook.util.ICUtil;
+import com.sk89q.craftbook.util.LocationUtil;
 import com.sk89q.craftbook.util.SignUtil;
 import com.sk89q.worldedit.BlockWorldVector;
 
@@ -16,11 +17,26 @@ import com.sk89q.worldedit.BlockWorldVector;
  */
 public abstract class AbstractChipState implements ChipState {
 
+    /**
+     * The packed position of a pin that does not exist.
+     */
+    private static final long NO_PIN = Long.MIN_VALUE;
+
     protected final ChangedSign sign;
     protected final BlockWorldVector source;
     protected final boolean selfTriggered;
+    protected final Block signBlock;
+    protected final BlockFace back;
     protected final Block icBlock;
 
+    private final long sourcePosition;
+
+    /**
+     * The blocks of each pin, and their packed positions. These are resolved once, on first use.
+     */
+    private Block[] pins;
+    private long[] pinPositions;
+
     protected AbstractChipState(BlockWorldVector source, ChangedSign sign, boolean selfTriggered) {
 
         // Check this here to prevent and handle future NPEs
@@ -28,25 +44,60 @@ public abstract class AbstractChipState implements ChipState {
         this.sign = sign;
         this.source = source;
         this.selfTriggered = selfTriggered;
-        icBlock = SignUtil.getBackBlock(BukkitUtil.toSign(sign).getBlock());
+        signBlock = BukkitUtil.toSign(sign).getBlock();
+        back = SignUtil.getBack(signBlock);
+        icBlock = signBlock.getRelative(back);
+        sourcePosition = LocationUtil.packBlockPosition(source.getBlockX(), source.getBlockY(), source.getBlockZ());
     }
 
+    /**
+     * Resolves the block of a pin. This is only called once per pin, and the result is cached.
+     *
+     * @param pin The pin
+     * @return The block of the pin, or null if there is no such pin
+     */
     protected abstract Block getBlock(int pin);
 
+    /**
+     * Gets the cached block of a pin.
+     *
+     * @param pin The pin
+     * @return The block of the pin, or null if there is no such pin
+     */
+    protected Block getPin(int pin) {
+
+        if(pins == null) loadPins();
+        return pin < 0 || pin >= pins.length ? null : pins[pin];
+    }
+
+    private void loadPins() {
+
+        int count = getInputCount() + getOutputCount();
+        Block[] blocks = new Block[count];
+        long[] positions = new long[count];
+        for(int i = 0; i < count; i++) {
+            blocks[i] = getBlock(i);
+            positions[i] = blocks[i] == null ? NO_PIN : LocationUtil.packBlockPosition(blocks[i].getX(), blocks[i].getY(), blocks[i].getZ());
+        }
+        pinPositions = positions;
+        pins = blocks;
+    }
+
     @Override
     public boolean get(int pin) {
 
-        Block block = getBlock(pin);
+        Block block = getPin(pin);
         if(block == null) return false;
-        if(block.getType() == Material.LEVER)
-            return ((Lever) block.getState().getData()).isPowered();
-        return block.isBlockIndirectlyPowered() || block.getType() == Material.DIODE_BLOCK_ON;
+        Material type = block.getType();
+        if(type == Material.LEVER)
+            return (block.getData() & 0x8) > 0;
+        return type == Material.DIODE_BLOCK_ON || block.isBlockIndirectlyPowered();
     }
 
     @Override
     public void set(int pin, boolean value) {
 
-        Block block = getBlock(pin);
+        Block block = getPin(pin);
         if (block != null) {
             ICUtil.setState(block, value, icBlock);
         }
@@ -55,17 +106,19 @@ public abstract class AbstractChipState implements ChipState {
     @Override
     public boolean isTriggered(int pin) {
 
-        Block block = getBlock(pin);
-        return block != null && BukkitUtil.toWorldVector(block).equals(source);
+        if(pins == null) loadPins();
+        return pin >= 0 && pin < pinPositions.length && pinPositions[pin] != NO_PIN && pinPositions[pin] == sourcePosition;
     }
 
     @Override
     public boolean isValid(int pin) {
 
-        Block block = getBlock(pin);
-        if (block != null)
-            if (block.getType() == Material.REDSTONE_WIRE || block.getType() == Material.DIODE_BLOCK_OFF || block.getType() == Material.DIODE_BLOCK_ON || block.getType() == Material.LEVER)
+        Block block = getPin(pin);
+        if (block != null) {
+            Material type = block.getType();
+            if (type == Material.REDSTONE_WIRE || type == Material.DIODE_BLOCK_OFF || type == Material.DIODE_BLOCK_ON || type == Material.LEVER)
                 return true;
+        }
         return false;
     }
 }
@@ -6,6 +6,11 @@ import com.sk89q.craftbook.ChangedSign;
 
 public abstract class AbstractSelfTriggeredIC extends AbstractIC implements SelfTriggeredIC {
 
+    /**
+     * The think interval of sensor ICs, which can notice a change in the world a moment late.
+     */
+    protected static final int SENSOR_THINK_INTERVAL = 20;
+
     public AbstractSelfTriggeredIC (Server server, ChangedSign sign, ICFactory factory) {
         super(server, sign, factory);
     }
@@ -0,0 +1,74 @@
+package com.sk89q.craftbook.circuits.ic;
+
+/**
+ * A {@link ChipState} that merges the states of multiple input edges on the same IC, so that they can be handled by a
+ * single trigger. A pin is considered triggered if any of the merged states consider it triggered, and everything
+ * else is read from the first state.
+ */
+public class CoalescedChipState implements ChipState {
+
+    private final ChipState[] states;
+
+    public CoalescedChipState(ChipState ... states) {
+
+        if(states.length == 0) throw new IllegalArgumentException("At least one ChipState is required!");
+        this.states = states;
+    }
+
+    @Override
+    public boolean get(int pin) {
+
+        return states[0].get(pin);
+    }
+
+    @Override
+    public boolean getInput(int inputIndex) {
+
+        return states[0].getInput(inputIndex);
+    }
+
+    @Override
+    public boolean getOutput(int outputIndex) {
+
+        return states[0].getOutput(outputIndex);
+    }
+
+    @Override
+    public void set(int pin, boolean value) {
+
+        states[0].set(pin, value);
+    }
+
+    @Override
+    public void setOutput(int outputIndex, boolean value) {
+
+        states[0].setOutput(outputIndex, value);
+    }
+
+    @Override
+    public boolean isTriggered(int pin) {
+
+        for(ChipState state : states)
+            if(state.isTriggered(pin))
+                return true;
+        return false;
+    }
+
+    @Override
+    public boolean isValid(int pin) {
+
+        return states[0].isValid(pin);
+    }
+
+    @Override
+    public int getInputCount() {
+
+        return states[0].getInputCount();
+    }
+
+    @Override
+    public int getOutputCount() {
+
+        return states[0].getOutputCount();
+    }
+}
@@ -20,6 +20,7 @@ import java.util.Locale;
 import java.util.regex.Matcher;
 
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.block.Sign;
@@ -58,6 +59,11 @@ public class ICMechanic extends AbstractCraftBookMechanic {
      */
     protected final ICManager manager;
 
+    /**
+     * Queue of pending redstone triggers.
+     */
+    protected final ICTriggerQueue triggerQueue = new ICTriggerQueue();
+
     //protected final String id;
     //protected final ICFamily family;
     //protected final IC ic;
@@ -190,33 +196,8 @@ public class ICMechanic extends AbstractCraftBookMechanic {
             // abort if the sign is the source or the block the sign is attached to
             if (SignUtil.getBackBlock(block).equals(source) || block.equals(source)) return;
 
-
-            Runnable runnable = new Runnable() {
-
-                @Override
-                public void run() {
-
-                    if (block.getType() != Material.WALL_SIGN) return;
-                    try {
-                        ChipState chipState = ((ICFamily) icData[1]).detect(BukkitUtil.toWorldVector(source), BukkitUtil.toChangedSign(block));
-                        int cnt = 0;
-                        for (int i = 0; i < chipState.getInputCount(); i++) {
-                            if (chipState.isTriggered(i)) {
-                                cnt++;
-                            }
-                        }
-                        if (cnt > 0) {
-                            ((IC) icData[2]).trigger(chipState);
-                        }
-                    } catch (IllegalArgumentException ex) {
-                        // Exclude these exceptions so that we don't spam consoles because of Bukkit
-                        if (!ex.getMessage().contains("Null ChangedSign found")) throw ex;
-                    }
-                }
-            };
-            // FIXME: these should be registered with a global scheduler so we can end up with one runnable actually
-            // running per set of inputs in a given time window.
-            CraftBookPlugin.server().getScheduler().runTaskLater(CraftBookPlugin.inst(), runnable, 2);
+            // Edges for the same IC on the same tick are merged into a single trigger.
+            triggerQueue.queue(block, source, (ICFamily) icData[1], (IC) icData[2]);
         }
     }
 
@@ -267,6 +248,9 @@ public class ICMechanic extends AbstractCraftBookMechanic {
     @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGH)
     public void onThink(SelfTriggerThinkEvent event) {
 
+        // Already thought through a SelfTriggerHandle.
+        if(event.isHandled()) return;
+
         final Object[] icData = setupIC(event.getBlock());
 
         if(icData == null) return;
@@ -274,6 +258,12 @@ public class ICMechanic extends AbstractCraftBookMechanic {
         if((IC) icData[2] instanceof SelfTriggeredIC) {
             event.setHandled(true);
             ChipState chipState = ((ICFamily) icData[1]).detectSelfTriggered(BukkitUtil.toWorldVector(event.getBlock()), ((IC) icData[2]).getSign());
+            Location location = event.getBlock().getLocation();
+            if(ICManager.getCachedIC(location) == icData[2]) {
+                // Resolve the IC once, and let the manager think it directly from now on.
+                ICThinkHandle handle = new ICThinkHandle(location, (SelfTriggeredIC) icData[2], (ICFamily) icData[1], chipState);
+                CraftBookPlugin.inst().getSelfTriggerManager().setHandle(location, handle);
+            }
             ((SelfTriggeredIC) icData[2]).think(chipState);
         } else
             CraftBookPlugin.inst().getSelfTriggerManager().unregisterSelfTrigger(event.getBlock().getLocation(), UnregisterReason.UNKNOWN);
@@ -308,6 +298,9 @@ public class ICMechanic extends AbstractCraftBookMechanic {
     @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGH)
     public void onSignChange(SignChangeEvent event) {
 
+        // The sign is about to change, so the IC has to be resolved from it again before it next thinks.
+        CraftBookPlugin.inst().getSelfTriggerManager().setHandle(event.getBlock().getLocation(), null);
+
         initializeIC(event.getBlock(), CraftBookPlugin.inst().wrapPlayer(event.getPlayer()), event, false);
     }
 
@@ -0,0 +1,61 @@
+package com.sk89q.craftbook.circuits.ic;
+
+import org.bukkit.Location;
+
+import com.sk89q.craftbook.SelfTriggerHandle;
+import com.sk89q.worldedit.blocks.BlockID;
+
+/**
+ * A {@link SelfTriggerHandle} for an already resolved {@link SelfTriggeredIC}, which skips the sign parsing of
+ * {@link ICMechanic#setupIC(org.bukkit.block.Block)} whilst the IC remains in the cache. The handle is dropped when the
+ * sign is edited, so that the edited sign goes through setupIC again.
+ */
+public class ICThinkHandle implements SelfTriggerHandle {
+
+    private final Location location;
+    private final SelfTriggeredIC ic;
+    private final ICFamily family;
+    private final ChipState chipState;
+
+    public ICThinkHandle(Location location, SelfTriggeredIC ic, ICFamily family, ChipState chipState) {
+
+        this.location = location;
+        this.ic = ic;
+        this.family = family;
+        this.chipState = chipState;
+    }
+
+    public SelfTriggeredIC getIC() {
+
+        return ic;
+    }
+
+    public ICFamily getFamily() {
+
+        return family;
+    }
+
+    public ChipState getChipState() {
+
+        return chipState;
+    }
+
+    @Override
+    public boolean isValid() {
+
+        if(location.getWorld().getBlockTypeIdAt(location) != BlockID.WALL_SIGN) return false;
+        return ICManager.getCachedIC(location) == ic;
+    }
+
+    @Override
+    public void think() {
+
+        ic.think(chipState);
+    }
+
+    @Override
+    public int getThinkInterval() {
+
+        return ic instanceof ThinkIntervalIC ? ((ThinkIntervalIC) ic).getThinkInterval() : 0;
+    }
+}
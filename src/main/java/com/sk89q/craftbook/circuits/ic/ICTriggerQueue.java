@@ -0,0 +1,137 @@
+package com.sk89q.craftbook.circuits.ic;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.scheduler.BukkitTask;
+
+import com.sk89q.craftbook.ChangedSign;
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import com.sk89q.craftbook.bukkit.util.BukkitUtil;
+import com.sk89q.worldedit.BlockWorldVector;
+
+/**
+ * Collects the redstone input edges of ICs, and triggers each IC {@link #WINDOW} ticks after the edge, once for all of
+ * the edges that arrived for it on the same tick. The whole queue is drained by a single repeating task.
+ */
+public class ICTriggerQueue implements Runnable {
+
+    /**
+     * The amount of ticks between an edge and the trigger of its IC.
+     */
+    public static final int WINDOW = 2;
+
+    // The pending triggers, keyed by the tick they are due on.
+    private final Map<Long, Map<Location, PendingTrigger>> pending = new HashMap<Long, Map<Location, PendingTrigger>>();
+    private long currentTick = 0;
+    private BukkitTask task = null;
+
+    /**
+     * Queues an input edge for the IC at the given block.
+     *
+     * @param block The sign block of the IC
+     * @param source The block that caused the edge
+     * @param family The family of the IC
+     * @param ic The IC
+     */
+    public void queue(Block block, Block source, ICFamily family, IC ic) {
+
+        long due = currentTick + WINDOW;
+        Map<Location, PendingTrigger> bucket = pending.get(due);
+        if(bucket == null) {
+            bucket = new LinkedHashMap<Location, PendingTrigger>();
+            pending.put(due, bucket);
+        }
+
+        Location location = block.getLocation();
+        PendingTrigger trigger = bucket.get(location);
+        if(trigger == null) {
+            trigger = new PendingTrigger(block);
+            bucket.put(location, trigger);
+        }
+        trigger.family = family;
+        trigger.ic = ic;
+
+        BlockWorldVector vector = BukkitUtil.toWorldVector(source);
+        if(!trigger.sources.contains(vector))
+            trigger.sources.add(vector);
+
+        if(task == null)
+            task = CraftBookPlugin.server().getScheduler().runTaskTimer(CraftBookPlugin.inst(), this, 1, 1);
+    }
+
+    @Override
+    public void run() {
+
+        currentTick++;
+        // Take the bucket out first, so edges caused by these triggers are queued for a later tick.
+        Map<Location, PendingTrigger> triggers = pending.remove(currentTick);
+        if(pending.isEmpty()) {
+            task.cancel();
+            task = null;
+        }
+        if(triggers == null)
+            return;
+
+        for(PendingTrigger trigger : triggers.values()) {
+            try {
+                trigger.trigger();
+            } catch (IllegalArgumentException ex) {
+                // Exclude these exceptions so that we don't spam consoles because of Bukkit
+                if (ex.getMessage() == null || !ex.getMessage().contains("Null ChangedSign found"))
+                    logFailure(trigger, ex);
+            } catch (Throwable t) {
+                logFailure(trigger, t);
+            }
+        }
+    }
+
+    private static void logFailure(PendingTrigger trigger, Throwable t) {
+
+        CraftBookPlugin.logger().log(Level.WARNING, "CraftBook IC: Failed to trigger at " + trigger.block.getLocation().toString());
+        BukkitUtil.printStacktrace(t);
+    }
+
+    private static final class PendingTrigger {
+
+        final Block block;
+        final List<BlockWorldVector> sources = new ArrayList<BlockWorldVector>(3);
+        ICFamily family;
+        IC ic;
+
+        PendingTrigger(Block block) {
+
+            this.block = block;
+        }
+
+        void trigger() {
+
+            if (block.getType() != Material.WALL_SIGN) return;
+
+            ChangedSign sign = BukkitUtil.toChangedSign(block);
+            ChipState chipState;
+            if(sources.size() == 1)
+                chipState = family.detect(sources.get(0), sign);
+            else {
+                ChipState[] states = new ChipState[sources.size()];
+                for(int i = 0; i < states.length; i++)
+                    states[i] = family.detect(sources.get(i), sign);
+                chipState = new CoalescedChipState(states);
+            }
+
+            for (int i = 0; i < chipState.getInputCount(); i++) {
+                if (chipState.isTriggered(i)) {
+                    ic.trigger(chipState);
+                    return;
+                }
+            }
+        }
+    }
+}
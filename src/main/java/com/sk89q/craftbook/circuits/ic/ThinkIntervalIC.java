@@ -0,0 +1,16 @@
+package com.sk89q.craftbook.circuits.ic;
+
+/**
+ * A {@link SelfTriggeredIC} that chooses how often it thinks. Self-triggered ICs that don't implement this think every
+ * st-think-ticks.
+ */
+public interface ThinkIntervalIC extends SelfTriggeredIC {
+
+    /**
+     * Gets the amount of ticks between each time this {@link IC} thinks. For example, a sensor may only need to think
+     * every 20 ticks, whereas a clock needs to think as often as possible.
+     *
+     * @return the think interval in ticks, or 0 to use the configured st-think-ticks.
+     */
+    public int getThinkInterval();
+}
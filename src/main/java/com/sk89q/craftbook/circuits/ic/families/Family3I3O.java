@@ -17,10 +17,8 @@
 package com.sk89q.craftbook.circuits.ic.families;
 
 import org.bukkit.block.Block;
-import org.bukkit.block.BlockFace;
 
 import com.sk89q.craftbook.ChangedSign;
-import com.sk89q.craftbook.bukkit.util.BukkitUtil;
 import com.sk89q.craftbook.circuits.ic.AbstractChipState;
 import com.sk89q.craftbook.circuits.ic.AbstractICFamily;
 import com.sk89q.craftbook.circuits.ic.ChipState;
@@ -62,22 +60,21 @@ public class Family3I3O extends AbstractICFamily {
         @Override
         protected Block getBlock(int pin) {
 
-            BlockFace fback = SignUtil.getBack(BukkitUtil.toSign(sign).getBlock());
-            Block backBlock = BukkitUtil.toSign(sign).getBlock().getRelative(fback, 2);
+            Block backBlock = signBlock.getRelative(back, 2);
 
             switch (pin) {
                 case 0:
-                    return SignUtil.getFrontBlock(BukkitUtil.toSign(sign).getBlock());
+                    return SignUtil.getFrontBlock(signBlock);
                 case 1:
-                    return SignUtil.getLeftBlock(BukkitUtil.toSign(sign).getBlock());
+                    return SignUtil.getLeftBlock(signBlock);
                 case 2:
-                    return SignUtil.getRightBlock(BukkitUtil.toSign(sign).getBlock());
+                    return SignUtil.getRightBlock(signBlock);
                 case 3:
-                    return backBlock.getRelative(fback);
+                    return backBlock.getRelative(back);
                 case 4:
-                    return backBlock.getRelative(SignUtil.getCounterClockWise(fback));
+                    return backBlock.getRelative(SignUtil.getCounterClockWise(back));
                 case 5:
-                    return backBlock.getRelative(SignUtil.getClockWise(fback));
+                    return backBlock.getRelative(SignUtil.getClockWise(back));
                 default:
                     return null;
 
@@ -106,9 +103,9 @@ public class Family3I3O extends AbstractICFamily {
         @Override
         public void set(int pin, boolean value) {
 
-            Block block = getBlock(pin);
+            Block block = getPin(pin);
             if (block != null) {
-                ICUtil.setState(block, value, icBlock.getRelative(SignUtil.getBack(BukkitUtil.toSign(sign).getBlock())));
+                ICUtil.setState(block, value, icBlock.getRelative(back));
             }
         }
 
@@ -17,10 +17,8 @@
 package com.sk89q.craftbook.circuits.ic.families;
 
 import org.bukkit.block.Block;
-import org.bukkit.block.BlockFace;
 
 import com.sk89q.craftbook.ChangedSign;
-import com.sk89q.craftbook.bukkit.util.BukkitUtil;
 import com.sk89q.craftbook.circuits.ic.AbstractChipState;
 import com.sk89q.craftbook.circuits.ic.AbstractICFamily;
 import com.sk89q.craftbook.circuits.ic.ChipState;
@@ -69,14 +67,13 @@ public class FamilyAISO extends AbstractICFamily {
 
             switch (pin) {
                 case 0:
-                    return SignUtil.getFrontBlock(BukkitUtil.toSign(sign).getBlock());
+                    return SignUtil.getFrontBlock(signBlock);
                 case 1:
-                    return SignUtil.getLeftBlock(BukkitUtil.toSign(sign).getBlock());
+                    return SignUtil.getLeftBlock(signBlock);
                 case 2:
-                    return SignUtil.getRightBlock(BukkitUtil.toSign(sign).getBlock());
+                    return SignUtil.getRightBlock(signBlock);
                 case 3:
-                    BlockFace face = SignUtil.getBack(BukkitUtil.toSign(sign).getBlock());
-                    return BukkitUtil.toSign(sign).getBlock().getRelative(face).getRelative(face);
+                    return signBlock.getRelative(back, 2);
                 default:
                     return null;
             }
@@ -17,10 +17,8 @@
 package com.sk89q.craftbook.circuits.ic.families;
 
 import org.bukkit.block.Block;
-import org.bukkit.block.BlockFace;
 
 import com.sk89q.craftbook.ChangedSign;
-import com.sk89q.craftbook.bukkit.util.BukkitUtil;
 import com.sk89q.craftbook.circuits.ic.AbstractChipState;
 import com.sk89q.craftbook.circuits.ic.AbstractICFamily;
 import com.sk89q.craftbook.circuits.ic.ChipState;
@@ -61,18 +59,15 @@ public class FamilySI3O extends AbstractICFamily {
         @Override
         protected Block getBlock(int pin) {
 
-            Block bsign = BukkitUtil.toSign(sign).getBlock();
-            BlockFace fback = SignUtil.getBack(bsign);
-
             switch (pin) {
                 case 0:
-                    return SignUtil.getFrontBlock(bsign);
+                    return SignUtil.getFrontBlock(signBlock);
                 case 1:
-                    return bsign.getRelative(fback).getRelative(fback);
+                    return signBlock.getRelative(back).getRelative(back);
                 case 2:
-                    return bsign.getRelative(fback).getRelative(SignUtil.getCounterClockWise(fback));
+                    return signBlock.getRelative(back).getRelative(SignUtil.getCounterClockWise(back));
                 case 3:
-                    return bsign.getRelative(fback).getRelative(SignUtil.getClockWise(fback));
+                    return signBlock.getRelative(back).getRelative(SignUtil.getClockWise(back));
                 default:
                     return null;
             }
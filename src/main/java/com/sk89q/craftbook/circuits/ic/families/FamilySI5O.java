@@ -1,10 +1,8 @@
 package com.sk89q.craftbook.circuits.ic.families;
 
 import org.bukkit.block.Block;
-import org.bukkit.block.BlockFace;
 
 import com.sk89q.craftbook.ChangedSign;
-import com.sk89q.craftbook.bukkit.util.BukkitUtil;
 import com.sk89q.craftbook.circuits.ic.AbstractChipState;
 import com.sk89q.craftbook.circuits.ic.AbstractICFamily;
 import com.sk89q.craftbook.circuits.ic.ChipState;
@@ -41,23 +39,22 @@ public class FamilySI5O extends AbstractICFamily {
         @Override
         protected Block getBlock(int pin) {
 
-            BlockFace fback = SignUtil.getBack(BukkitUtil.toSign(sign).getBlock());
-            Block backBlock = SignUtil.getBackBlock(BukkitUtil.toSign(sign).getBlock()).getRelative(fback);
-            Block farBlock = backBlock.getRelative(fback);
+            Block backBlock = icBlock.getRelative(back);
+            Block farBlock = backBlock.getRelative(back);
 
             switch (pin) {
                 case 0:
-                    return SignUtil.getFrontBlock(BukkitUtil.toSign(sign).getBlock());
+                    return SignUtil.getFrontBlock(signBlock);
                 case 1:
-                    return farBlock.getRelative(fback);
+                    return farBlock.getRelative(back);
                 case 2:
-                    return farBlock.getRelative(SignUtil.getCounterClockWise(fback));
+                    return farBlock.getRelative(SignUtil.getCounterClockWise(back));
                 case 3:
-                    return farBlock.getRelative(SignUtil.getClockWise(fback));
+                    return farBlock.getRelative(SignUtil.getClockWise(back));
                 case 4:
-                    return backBlock.getRelative(SignUtil.getCounterClockWise(fback));
+                    return backBlock.getRelative(SignUtil.getCounterClockWise(back));
                 case 5:
-                    return backBlock.getRelative(SignUtil.getClockWise(fback));
+                    return backBlock.getRelative(SignUtil.getClockWise(back));
                 default:
                     return null;
             }
@@ -85,12 +82,12 @@ public class FamilySI5O extends AbstractICFamily {
         @Override
         public void set(int pin, boolean value) {
 
-            Block block = getBlock(pin);
+            Block block = getPin(pin);
             if (block != null) {
                 if(pin == 1 || pin == 2 || pin == 3)
-                    ICUtil.setState(block, value, icBlock.getRelative(SignUtil.getBack(BukkitUtil.toSign(sign).getBlock()), 2));
+                    ICUtil.setState(block, value, icBlock.getRelative(back, 2));
                 else
-                    ICUtil.setState(block, value, icBlock.getRelative(SignUtil.getBack(BukkitUtil.toSign(sign).getBlock())));
+                    ICUtil.setState(block, value, icBlock.getRelative(back));
             }
         }
 
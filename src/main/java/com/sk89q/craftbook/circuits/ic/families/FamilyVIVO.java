@@ -17,10 +17,8 @@
 package com.sk89q.craftbook.circuits.ic.families;
 
 import org.bukkit.block.Block;
-import org.bukkit.block.BlockFace;
 
 import com.sk89q.craftbook.ChangedSign;
-import com.sk89q.craftbook.bukkit.util.BukkitUtil;
 import com.sk89q.craftbook.circuits.ic.AbstractChipState;
 import com.sk89q.craftbook.circuits.ic.AbstractICFamily;
 import com.sk89q.craftbook.circuits.ic.ChipState;
@@ -61,22 +59,21 @@ public class FamilyVIVO extends AbstractICFamily {
         @Override
         protected Block getBlock(int pin) {
 
-            BlockFace fback = SignUtil.getBack(BukkitUtil.toSign(sign).getBlock());
-            Block backBlock = BukkitUtil.toSign(sign).getBlock().getRelative(fback);
+            Block backBlock = signBlock.getRelative(back);
 
             switch (pin) {
                 case 0:
-                    return SignUtil.getFrontBlock(BukkitUtil.toSign(sign).getBlock());
+                    return SignUtil.getFrontBlock(signBlock);
                 case 1:
-                    return SignUtil.getLeftBlock(BukkitUtil.toSign(sign).getBlock());
+                    return SignUtil.getLeftBlock(signBlock);
                 case 2:
-                    return SignUtil.getRightBlock(BukkitUtil.toSign(sign).getBlock());
+                    return SignUtil.getRightBlock(signBlock);
                 case 3:
-                    return backBlock.getRelative(fback);
+                    return backBlock.getRelative(back);
                 case 4:
-                    return backBlock.getRelative(SignUtil.getCounterClockWise(fback));
+                    return backBlock.getRelative(SignUtil.getCounterClockWise(back));
                 case 5:
-                    return backBlock.getRelative(SignUtil.getClockWise(fback));
+                    return backBlock.getRelative(SignUtil.getClockWise(back));
                 default:
                     return null;
 
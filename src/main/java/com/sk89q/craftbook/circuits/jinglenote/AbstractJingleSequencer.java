@@ -0,0 +1,76 @@
+package com.sk89q.craftbook.circuits.jinglenote;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A sequencer that is driven by the {@link JingleScheduler}, and plays each tick's notes to all of its listeners at
+ * once.
+ */
+public abstract class AbstractJingleSequencer implements JingleSequencer {
+
+    private final Set<JingleNotePlayer> players = new LinkedHashSet<JingleNotePlayer>();
+    private final List<Note> batch = new ArrayList<Note>();
+
+    private boolean playing = false;
+
+    @Override
+    public void play(JingleNotePlayer player) {
+
+        players.add(player);
+        if(!playing) {
+            playing = true;
+            reset();
+            JingleScheduler.start(this);
+        }
+    }
+
+    @Override
+    public void stop(JingleNotePlayer player) {
+
+        players.remove(player);
+        if(players.isEmpty())
+            stop();
+    }
+
+    @Override
+    public void stop() {
+
+        if(!playing) return;
+        playing = false;
+        players.clear();
+        JingleScheduler.stop(this);
+    }
+
+    @Override
+    public boolean isSongPlaying() {
+
+        return playing;
+    }
+
+    @Override
+    public boolean tick() {
+
+        batch.clear();
+        boolean playing = nextNotes(batch);
+        if(!batch.isEmpty())
+            for(JingleNotePlayer player : players)
+                player.play(batch);
+        return playing;
+    }
+
+    /**
+     * Called when the sequencer starts playing, to move back to the start of the song.
+     */
+    protected abstract void reset();
+
+    /**
+     * Gets the notes of the current tick, and advances by one tick.
+     *
+     * @param notes The list to add the notes to.
+     * @return false once the song has ended.
+     */
+    protected abstract boolean nextNotes(List<Note> notes);
+}
@@ -5,6 +5,7 @@
 
 package com.sk89q.craftbook.circuits.jinglenote;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -33,13 +34,8 @@ public class JingleNoteManager {
         }
 
         JingleNotePlayer notePlayer = new BukkitJingleNotePlayer(player, sequencer, area);
-        Thread thread = new Thread(notePlayer);
-        thread.setDaemon(true);
-        thread.setPriority(Thread.MAX_PRIORITY);
-        thread.setName("JingleNotePlayer for " + player);
-        thread.start();
-
         instances.put(player, notePlayer);
+        notePlayer.start();
     }
 
     public boolean stop(String player) {
@@ -56,7 +52,8 @@ public class JingleNoteManager {
 
     public void stopAll() {
 
-        for (JingleNotePlayer notePlayer : instances.values()) {
+        // Stopping the last listener of a sequencer stops it, so work on a copy.
+        for (JingleNotePlayer notePlayer : new ArrayList<JingleNotePlayer>(instances.values())) {
             notePlayer.stop();
         }
 
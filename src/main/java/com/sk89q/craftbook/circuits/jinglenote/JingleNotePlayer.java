@@ -5,11 +5,12 @@
 
 package com.sk89q.craftbook.circuits.jinglenote;
 
-import com.sk89q.craftbook.bukkit.util.BukkitUtil;
+import java.util.List;
+
 import com.sk89q.craftbook.circuits.jinglenote.JingleSequencer.Note;
 import com.sk89q.craftbook.util.SearchArea;
 
-public abstract class JingleNotePlayer implements Runnable {
+public abstract class JingleNotePlayer {
 
     protected final String player;
     protected JingleSequencer sequencer;
@@ -29,25 +30,13 @@ public abstract class JingleNotePlayer implements Runnable {
         this.area = area;
     }
 
-    @Override
-    public void run() {
-
-        if(sequencer == null)
-            return;
-        try {
-            try {
-                sequencer.run(this);
-            } catch (Throwable t) {
-                BukkitUtil.printStacktrace(t);
-            }
-
-            Thread.sleep(500);
-        } catch (InterruptedException e) {
-            BukkitUtil.printStacktrace(e);
-        } finally {
-            sequencer.stop();
-            sequencer = null;
-        }
+    /**
+     * Starts listening to the sequencer.
+     */
+    public void start() {
+
+        if (sequencer != null)
+            sequencer.play(this);
     }
 
     public String getPlayer() {
@@ -58,9 +47,21 @@ public abstract class JingleNotePlayer implements Runnable {
     public void stop() {
 
         if (sequencer != null) {
-            sequencer.stop();
+            sequencer.stop(this);
+            sequencer = null;
         }
     }
 
     public abstract void play(Note note);
+
+    /**
+     * Plays all notes of a single tick.
+     * 
+     * @param notes The notes
+     */
+    public void play(List<Note> notes) {
+
+        for (Note note : notes)
+            play(note);
+    }
 }
\ No newline at end of file
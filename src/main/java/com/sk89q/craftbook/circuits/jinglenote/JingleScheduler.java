@@ -0,0 +1,78 @@
+package com.sk89q.craftbook.circuits.jinglenote;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import com.sk89q.craftbook.bukkit.util.BukkitUtil;
+
+/**
+ * Drives every playing {@link JingleSequencer} from a single task on the main thread, once per server tick.
+ */
+public class JingleScheduler {
+
+    private static final List<JingleSequencer> sequencers = new ArrayList<JingleSequencer>();
+
+    private static BukkitTask task;
+
+    static void start(JingleSequencer sequencer) {
+
+        if(!sequencers.contains(sequencer))
+            sequencers.add(sequencer);
+
+        if(task == null) {
+            task = Bukkit.getScheduler().runTaskTimer(CraftBookPlugin.inst(), new Runnable() {
+
+                @Override
+                public void run() {
+
+                    tick();
+                }
+            }, 1, 1);
+        }
+    }
+
+    static void stop(JingleSequencer sequencer) {
+
+        sequencers.remove(sequencer);
+
+        if(sequencers.isEmpty() && task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    private static void tick() {
+
+        // Sequencers may stop whilst playing.
+        for(JingleSequencer sequencer : sequencers.toArray(new JingleSequencer[sequencers.size()])) {
+            try {
+                if(!sequencer.tick())
+                    sequencer.stop();
+            } catch(Throwable t) {
+                BukkitUtil.printStacktrace(t);
+                sequencer.stop();
+            }
+        }
+    }
+
+    /**
+     * Stops all sequencers, and forgets all cached songs.
+     */
+    public static void stopAll() {
+
+        for(JingleSequencer sequencer : sequencers.toArray(new JingleSequencer[sequencers.size()]))
+            sequencer.stop();
+        sequencers.clear();
+
+        if(task != null) {
+            task.cancel();
+            task = null;
+        }
+
+        MidiTimeline.clearCache();
+    }
+}
@@ -13,10 +13,31 @@ package com.sk89q.craftbook.circuits.jinglenote;
  */
 public interface JingleSequencer {
 
-    public void run(JingleNotePlayer player) throws InterruptedException;
+    /**
+     * Adds a player to the listeners of this sequencer, and starts playing if it is not already.
+     * 
+     * @param player The player
+     */
+    public void play(JingleNotePlayer player);
+
+    /**
+     * Removes a player from the listeners of this sequencer. The sequencer stops once nobody is listening.
+     * 
+     * @param player The player
+     */
+    public void stop(JingleNotePlayer player);
 
     public void stop();
 
+    public boolean isSongPlaying();
+
+    /**
+     * Plays the notes of the current server tick, and advances by one tick.
+     * 
+     * @return false once the song has ended.
+     */
+    public boolean tick();
+
     public class Note {
 
         Instrument instrument;
@@ -7,27 +7,16 @@ package com.sk89q.craftbook.circuits.jinglenote;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 import javax.sound.midi.InvalidMidiDataException;
-import javax.sound.midi.MidiMessage;
-import javax.sound.midi.MidiSystem;
-import javax.sound.midi.MidiUnavailableException;
-import javax.sound.midi.Receiver;
-import javax.sound.midi.Sequence;
-import javax.sound.midi.Sequencer;
-import javax.sound.midi.ShortMessage;
-
-import com.sk89q.craftbook.bukkit.CraftBookPlugin;
-import com.sk89q.craftbook.bukkit.util.BukkitUtil;
 
 /**
- * A sequencer that reads MIDI files.
+ * A sequencer that plays MIDI files.
  *
  * @author sk89q
  */
-public class MidiJingleSequencer implements JingleSequencer {
+public class MidiJingleSequencer extends AbstractJingleSequencer {
 
     private static final int[] instruments = {
         0, 0, 0, 0, 0, 0, 0, 5, // 8
@@ -61,106 +50,39 @@ public class MidiJingleSequencer implements JingleSequencer {
 
 
     protected final File midiFile;
-    private Sequencer sequencer = null;
+    private final MidiTimeline timeline;
+    private final boolean loop;
 
-    public MidiJingleSequencer(File midiFile, boolean loop) throws MidiUnavailableException, InvalidMidiDataException, IOException {
+    private int tick;
+    private int index;
 
-        this.midiFile = midiFile;
+    public MidiJingleSequencer(File midiFile, boolean loop) throws InvalidMidiDataException, IOException {
 
-        try {
-            sequencer = MidiSystem.getSequencer(false);
-            sequencer.open();
-            Sequence seq = MidiSystem.getSequence(midiFile);
-            sequencer.setSequence(seq);
-            if(loop)
-                sequencer.setLoopCount(Sequencer.LOOP_CONTINUOUSLY);
-        } catch (MidiUnavailableException e) {
-            if (sequencer != null && sequencer.isOpen())
-                sequencer.close();
-            throw e;
-        } catch (InvalidMidiDataException e) {
-            if (sequencer != null && sequencer.isOpen())
-                sequencer.close();
-            throw e;
-        } catch (IOException e) {
-            if (sequencer != null && sequencer.isOpen())
-                sequencer.close();
-            throw e;
-        }
+        this.midiFile = midiFile;
+        this.loop = loop;
+        timeline = MidiTimeline.get(midiFile);
     }
 
     @Override
-    public void run(final JingleNotePlayer notePlayer) throws InterruptedException {
-
-        final Map<Integer, Integer> patches = new HashMap<Integer, Integer>();
-
-        try {
-            if(sequencer.getSequence() == null)
-                return;
-            if (!sequencer.isOpen()) {
-                sequencer.open();
-            }
-            sequencer.getTransmitter().setReceiver(new Receiver() {
-
-                @Override
-                public void send(MidiMessage message, long timeStamp) {
-
-                    if ((message.getStatus() & 0xF0) == ShortMessage.PROGRAM_CHANGE) {
-
-                        ShortMessage msg = (ShortMessage) message;
-                        int chan = msg.getChannel();
-                        int patch = msg.getData1();
-                        patches.put(chan, patch);
-                    } else if ((message.getStatus() & 0xF0) == ShortMessage.NOTE_ON) {
-
-                        ShortMessage msg = (ShortMessage) message;
-                        int chan = msg.getChannel();
-                        int n = msg.getData1();
-                        if (chan == 9) { // Percussion
-                            // Sounds like utter crap
-                            if(CraftBookPlugin.inst().getConfiguration().ICMidiUsePercussion)
-                                notePlayer.play(new Note(toMCSound(toMCPercussion(patches.get(chan))), toMCNote(n),  10 * (msg.getData2() / 127f)));
-                        } else {
-                            notePlayer.play(new Note(toMCSound(toMCInstrument(patches.get(chan))), toMCNote(n), 10 * (msg.getData2() / 127f)));
-                        }
-                    }
-                }
-
-                @Override
-                public void close() {
-
-                }
-            });
-
-            try {
-                if (sequencer.isOpen()) {
-                    sequencer.start();
-                }
-            }
-            catch(Exception ignored){}
-
-            while (sequencer.isRunning()) {
-                Thread.sleep(1000);
-            }
-
-            if (sequencer.isRunning()) {
-                sequencer.stop();
-            }
-        } catch (MidiUnavailableException e) {
-            BukkitUtil.printStacktrace(e);
-        } finally {
-            if (sequencer.isOpen()) {
-                sequencer.close();
-            }
-        }
+    protected void reset() {
+
+        tick = 0;
+        index = 0;
     }
 
     @Override
-    public void stop() {
+    protected boolean nextNotes(List<Note> notes) {
+
+        while (index < timeline.size() && timeline.getTick(index) <= tick)
+            notes.add(timeline.getNote(index++));
 
-        if (sequencer != null && sequencer.isOpen()) {
-            sequencer.close();
+        tick++;
+        if (tick >= timeline.getLength()) {
+            if (!loop)
+                return false;
+            reset();
         }
+        return true;
     }
 
     protected static byte toMCNote(int n) {
@@ -179,7 +101,7 @@ public class MidiJingleSequencer implements JingleSequencer {
         return (byte) instruments[patch];
     }
 
-    protected Instrument toMCSound(byte instrument) {
+    protected static Instrument toMCSound(byte instrument) {
 
         switch (instrument) {
             case 1:
@@ -211,14 +133,4 @@ public class MidiJingleSequencer implements JingleSequencer {
 
         return (byte) percussion[i];
     }
-
-
-    public boolean isSongPlaying() {
-
-        return sequencer.isRunning();
-    }
-
-    public Sequencer getSequencer() {
-        return sequencer;
-    }
 }
\ No newline at end of file
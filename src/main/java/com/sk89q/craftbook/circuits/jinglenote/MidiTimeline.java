@@ -0,0 +1,165 @@
+package com.sk89q.craftbook.circuits.jinglenote;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import com.sk89q.craftbook.circuits.jinglenote.JingleSequencer.Note;
+
+/**
+ * The notes of a MIDI file, rendered ahead of time and ordered by the server tick they are played on.
+ */
+public class MidiTimeline {
+
+    private static final int MICROSECONDS_PER_TICK = 50000;
+    private static final int DEFAULT_TEMPO = 500000;
+    private static final int META_TEMPO = 0x51;
+    private static final int PERCUSSION_CHANNEL = 9;
+
+    private static final Map<File, MidiTimeline> cache = new HashMap<File, MidiTimeline>();
+
+    private final long lastModified;
+
+    private final int[] ticks;
+    private final Note[] notes;
+    private final int length;
+
+    /**
+     * Gets the timeline of a MIDI file, reading it only if it has not been read before or has changed since.
+     *
+     * @param file The MIDI file
+     * @return The timeline
+     */
+    public static MidiTimeline get(File file) throws InvalidMidiDataException, IOException {
+
+        File key = file.getAbsoluteFile();
+        MidiTimeline timeline = cache.get(key);
+        if(timeline == null || timeline.lastModified != file.lastModified()) {
+            timeline = new MidiTimeline(MidiSystem.getSequence(file), file.lastModified(), CraftBookPlugin.inst().getConfiguration().ICMidiUsePercussion);
+            cache.put(key, timeline);
+        }
+        return timeline;
+    }
+
+    public static void clearCache() {
+
+        cache.clear();
+    }
+
+    private MidiTimeline(Sequence sequence, long lastModified, boolean percussion) {
+
+        this.lastModified = lastModified;
+
+        // All tracks share the same tempo, so their events are played back in a single pass.
+        List<MidiEvent> events = new ArrayList<MidiEvent>();
+        for(Track track : sequence.getTracks())
+            for(int i = 0; i < track.size(); i++)
+                events.add(track.get(i));
+        Collections.sort(events, new Comparator<MidiEvent>() {
+
+            @Override
+            public int compare(MidiEvent o1, MidiEvent o2) {
+
+                return o1.getTick() < o2.getTick() ? -1 : o1.getTick() > o2.getTick() ? 1 : 0;
+            }
+        });
+
+        boolean ppq = sequence.getDivisionType() == Sequence.PPQ;
+        double microsPerMidiTick = ppq ? (double) DEFAULT_TEMPO / sequence.getResolution() : 1000000.0 / (sequence.getDivisionType() * sequence.getResolution());
+
+        List<Integer> noteTicks = new ArrayList<Integer>();
+        List<Note> noteList = new ArrayList<Note>();
+        Integer[] patches = new Integer[16];
+
+        long lastMidiTick = 0;
+        double micros = 0;
+        for(MidiEvent event : events) {
+
+            micros += (event.getTick() - lastMidiTick) * microsPerMidiTick;
+            lastMidiTick = event.getTick();
+
+            MidiMessage message = event.getMessage();
+            if(message instanceof MetaMessage) {
+                MetaMessage meta = (MetaMessage) message;
+                if(ppq && meta.getType() == META_TEMPO && meta.getData().length >= 3) {
+                    byte[] data = meta.getData();
+                    int tempo = (data[0] & 0xFF) << 16 | (data[1] & 0xFF) << 8 | data[2] & 0xFF;
+                    microsPerMidiTick = (double) tempo / sequence.getResolution();
+                }
+            } else if(message instanceof ShortMessage) {
+                ShortMessage msg = (ShortMessage) message;
+                int chan = msg.getChannel();
+                if(msg.getCommand() == ShortMessage.PROGRAM_CHANGE) {
+                    patches[chan] = msg.getData1();
+                } else if(msg.getCommand() == ShortMessage.NOTE_ON && msg.getData2() > 0) {
+                    Note note;
+                    if(chan == PERCUSSION_CHANNEL) {
+                        // Sounds like utter crap
+                        if(!percussion) continue;
+                        note = new Note(MidiJingleSequencer.toMCSound(MidiJingleSequencer.toMCPercussion(patches[chan])), MidiJingleSequencer.toMCNote(msg.getData1()), 10 * (msg.getData2() / 127f));
+                    } else
+                        note = new Note(MidiJingleSequencer.toMCSound(MidiJingleSequencer.toMCInstrument(patches[chan])), MidiJingleSequencer.toMCNote(msg.getData1()), 10 * (msg.getData2() / 127f));
+                    noteTicks.add((int) (micros / MICROSECONDS_PER_TICK));
+                    noteList.add(note);
+                }
+            }
+        }
+
+        ticks = new int[noteTicks.size()];
+        for(int i = 0; i < ticks.length; i++)
+            ticks[i] = noteTicks.get(i);
+        notes = noteList.toArray(new Note[noteList.size()]);
+        length = (int) (micros / MICROSECONDS_PER_TICK) + 1;
+    }
+
+    /**
+     * Gets the amount of notes in this timeline.
+     *
+     * @return The amount of notes
+     */
+    public int size() {
+
+        return notes.length;
+    }
+
+    /**
+     * Gets the server tick, counted from the start of the song, that a note is played on.
+     *
+     * @param index The index of the note
+     * @return The tick
+     */
+    public int getTick(int index) {
+
+        return ticks[index];
+    }
+
+    public Note getNote(int index) {
+
+        return notes[index];
+    }
+
+    /**
+     * Gets the length of the song.
+     *
+     * @return The length in server ticks
+     */
+    public int getLength() {
+
+        return length;
+    }
+}
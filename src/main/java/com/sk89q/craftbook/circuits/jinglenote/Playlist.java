@@ -13,7 +13,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 
 import javax.sound.midi.InvalidMidiDataException;
-import javax.sound.midi.MidiUnavailableException;
 
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
@@ -28,8 +27,8 @@ public class Playlist {
 
     String playlist;
 
-    protected volatile Map<String, SearchArea> players; // Super safe code here.. this is going to be accessed across threads.
-    private volatile Map<String, SearchArea> lastPlayers;
+    protected Map<String, SearchArea> players;
+    private Map<String, SearchArea> lastPlayers;
 
     int position;
 
@@ -37,9 +36,8 @@ public class Playlist {
 
     BukkitTask task;
 
-    volatile JingleNoteManager jNote = new JingleNoteManager();
-    volatile MidiJingleSequencer midiSequencer;
-    volatile StringJingleSequencer stringSequencer;
+    JingleNoteManager jNote = new JingleNoteManager();
+    JingleSequencer sequencer;
 
     boolean stopping = false;
 
@@ -81,18 +79,21 @@ public class Playlist {
         position = 0;
         if (task != null)
             task.cancel();
-        Runnable show = new PlaylistInterpreter();
-        task = Bukkit.getScheduler().runTaskAsynchronously(CraftBookPlugin.inst(), show);
+        task = Bukkit.getScheduler().runTaskTimer(CraftBookPlugin.inst(), new PlaylistInterpreter(), 0L, 20L);
     }
 
     public void stopPlaylist() {
 
         lastPlayers.clear();
         jNote.stopAll();
+        if (sequencer != null)
+            sequencer.stop();
+        sequencer = null;
         players.clear();
         position = 0;
         if (task != null)
             task.cancel();
+        task = null;
         stopping = true;
     }
 
@@ -116,84 +117,47 @@ public class Playlist {
             this.players.remove(player);
     }
 
+    /**
+     * Works through the playlist on the main thread. It runs every second, and does nothing whilst a song is playing
+     * other than keeping the listeners up to date.
+     */
     private class PlaylistInterpreter implements Runnable {
 
         @Override
         public void run () {
 
-            while (position < lines.size() && !stopping) {
-
-                if(midiSequencer != null) {
-
-                    while(midiSequencer != null && midiSequencer.isSongPlaying()) {
-
-                        if(!areIdentical(players, lastPlayers)) {
-
-                            for(Entry<String, SearchArea> p : lastPlayers.entrySet()) {
-
-                                if(players.containsKey(p.getKey()))
-                                    continue;
+            if (stopping) return;
 
-                                jNote.stop(p.getKey());
-                            }
+            if (sequencer != null) {
 
-                            for(Entry<String, SearchArea> p : players.entrySet()) {
+                if (sequencer.isSongPlaying()) {
 
-                                if(lastPlayers.containsKey(p.getKey()))
-                                    continue;
+                    if(!areIdentical(players, lastPlayers)) {
 
-                                jNote.play(p.getKey(), midiSequencer, p.getValue());
-                            }
+                        for(Entry<String, SearchArea> p : lastPlayers.entrySet()) {
 
-                            lastPlayers = new HashMap<String, SearchArea>(players);
-                        }
+                            if(players.containsKey(p.getKey()))
+                                continue;
 
-                        try {
-                            Thread.sleep(1000L);
-                        } catch (InterruptedException e) {
-                            BukkitUtil.printStacktrace(e);
+                            jNote.stop(p.getKey());
                         }
-                    }
-                    midiSequencer = null;
-                }
-                if(stringSequencer != null) {
-
-                    while(stringSequencer != null && stringSequencer.isSongPlaying()) {
-
-                        if(!lastPlayers.equals(players)) {
-
-                            for(Entry<String, SearchArea> p : lastPlayers.entrySet()) {
 
-                                if(players.containsKey(p.getKey()))
-                                    continue;
+                        for(Entry<String, SearchArea> p : players.entrySet()) {
 
-                                jNote.stop(p.getKey());
-                            }
+                            if(lastPlayers.containsKey(p.getKey()))
+                                continue;
 
-                            for(Entry<String, SearchArea> p : players.entrySet()) {
-
-                                if(lastPlayers.containsKey(p.getKey()))
-                                    continue;
-
-                                jNote.play(p.getKey(), stringSequencer, p.getValue());
-                            }
-
-                            lastPlayers = new HashMap<String, SearchArea>(players);
+                            jNote.play(p.getKey(), sequencer, p.getValue());
                         }
 
-                        try {
-                            Thread.sleep(1000L);
-                        } catch (InterruptedException e) {
-                            BukkitUtil.printStacktrace(e);
-                        }
+                        lastPlayers = new HashMap<String, SearchArea>(players);
                     }
-                    stringSequencer = null;
+                    return;
                 }
+                sequencer = null;
+            }
 
-                if(position >= lines.size()) {
-                    CraftBookPlugin.inst().getLogger().warning("Playlist: " + playlist + " ended unexpectedly! Is your playlist file correct?");
-                    break; //He's dead, Jim
-                }
+            while (position < lines.size() && !stopping) {
 
                 String line = lines.get(position);
                 position++;
@@ -202,21 +166,13 @@ public class Playlist {
 
                 if (line.startsWith("wait ")) {
 
-                    if(!stopping) {
-                        PlaylistInterpreter show = new PlaylistInterpreter();
-                        task = Bukkit.getScheduler().runTaskLaterAsynchronously(CraftBookPlugin.inst(), show, Long.parseLong(line.replace("wait ", "")));
-                    }
+                    task.cancel();
+                    task = Bukkit.getScheduler().runTaskTimer(CraftBookPlugin.inst(), new PlaylistInterpreter(), Long.parseLong(line.replace("wait ", "")), 20L);
                     return;
                 } else if (line.startsWith("midi ")) {
 
-                    if(players.isEmpty()) {
-                        try {
-                            Thread.sleep(1000L);
-                        } catch (InterruptedException e) {
-                            BukkitUtil.printStacktrace(e);
-                        }
-                        continue;
-                    }
+                    if(players.isEmpty())
+                        return;
                     File file = null;
                     String midiName = line.replace("midi ", "");
 
@@ -241,58 +197,27 @@ public class Playlist {
                     }
 
                     try {
-                        midiSequencer = new MidiJingleSequencer(file, false);
-                        if (!midiSequencer.getSequencer().isOpen()) {
-                            midiSequencer.getSequencer().open();
-                        }
-
-                        for(Entry<String, SearchArea> player : players.entrySet())
-                            jNote.play(player.getKey(), midiSequencer, player.getValue());
-
-                        try {
-                            Thread.sleep(1000L);
-                        } catch (InterruptedException e) {
-                            BukkitUtil.printStacktrace(e);
-                        }
-                    } catch (MidiUnavailableException e) {
-                        BukkitUtil.printStacktrace(e);
+                        play(new MidiJingleSequencer(file, false));
                     } catch (InvalidMidiDataException e) {
                         BukkitUtil.printStacktrace(e);
+                        continue;
                     } catch (IOException e) {
                         BukkitUtil.printStacktrace(e);
+                        continue;
                     }
+                    return;
                 } else if (line.startsWith("tune ")) {
 
-                    if(players.isEmpty()) {
-                        try {
-                            Thread.sleep(1000L);
-                        } catch (InterruptedException e) {
-                            BukkitUtil.printStacktrace(e);
-                        }
-                        continue;
-                    }
+                    if(players.isEmpty())
+                        return;
                     String tune = line.replace("tune ", "");
 
-                    stringSequencer = new StringJingleSequencer(tune, 0);
-
-                    for(Entry<String, SearchArea> player : players.entrySet())
-                        jNote.play(player.getKey(), stringSequencer, player.getValue());
-
-                    try {
-                        Thread.sleep(1000L);
-                    } catch (InterruptedException e) {
-                        BukkitUtil.printStacktrace(e);
-                    }
+                    play(new StringJingleSequencer(tune, 0));
+                    return;
                 } else if (line.startsWith("send ")) {
 
-                    if(players.isEmpty()) {
-                        try {
-                            Thread.sleep(1000L);
-                        } catch (InterruptedException e) {
-                            BukkitUtil.printStacktrace(e);
-                        }
-                        continue;
-                    }
+                    if(players.isEmpty())
+                        return;
                     String message = line.replace("send ", "");
 
                     for(String player : players.keySet()) {
@@ -305,6 +230,18 @@ public class Playlist {
                     position = Integer.parseInt(line.replace("goto ", ""));
                 }
             }
+
+            if (task != null)
+                task.cancel();
+            task = null;
+        }
+
+        private void play(JingleSequencer sequencer) {
+
+            Playlist.this.sequencer = sequencer;
+            for(Entry<String, SearchArea> player : players.entrySet())
+                jNote.play(player.getKey(), sequencer, player.getValue());
+            lastPlayers = new HashMap<String, SearchArea>(players);
         }
     }
 
@@ -3,20 +3,15 @@ package com.sk89q.craftbook.circuits.jinglenote;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.bukkit.Bukkit;
-
-import com.sk89q.craftbook.bukkit.CraftBookPlugin;
-
 /**
  * @author Me4502 with code borrowed from CraftBook Extra
  */
-public class StringJingleSequencer implements JingleSequencer {
+public class StringJingleSequencer extends AbstractJingleSequencer {
 
     String tune;
     int delay;
     int position;
-    int taskID;
-    boolean isPlaying = false;
+    int wait;
 
     List<Note> song;
 
@@ -28,28 +23,28 @@ public class StringJingleSequencer implements JingleSequencer {
     }
 
     @Override
-    public void run(final JingleNotePlayer player) throws InterruptedException {
+    protected void reset() {
 
         position = 0;
-        if(song == null)
-            return;
-
-        isPlaying = true;
-        taskID = Bukkit.getScheduler().scheduleSyncRepeatingTask(CraftBookPlugin.inst(), new Runnable() {
-
-            @Override
-            public void run() {
+        wait = 0;
+    }
 
-                if (position >= song.size()) {
-                    Bukkit.getScheduler().cancelTask(taskID);
-                    isPlaying = false;
-                    return;
-                }
-                player.play(song.get(position));
-                position++;
-            }
+    @Override
+    protected boolean nextNotes(List<Note> notes) {
 
-        }, delay, delay);
+        if(song == null)
+            return false;
+
+        // One note every delay ticks, the first one after the first delay.
+        if(++wait < Math.max(1, delay))
+            return true;
+        wait = 0;
+
+        if (position >= song.size())
+            return false;
+        notes.add(song.get(position));
+        position++;
+        return true;
     }
 
     public ArrayList<Note> parseTune(String tune) {
@@ -201,13 +196,4 @@ public class StringJingleSequencer implements JingleSequencer {
                 return Instrument.PIANO;
         }
     }
-
-    @Override
-    public void stop() {
-
-    }
-
-    public boolean isSongPlaying () {
-        return isPlaying;
-    }
 }
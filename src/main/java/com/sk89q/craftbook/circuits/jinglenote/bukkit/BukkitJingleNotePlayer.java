@@ -1,6 +1,9 @@
 package com.sk89q.craftbook.circuits.jinglenote.bukkit;
 
+import java.util.List;
+
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
 import org.bukkit.Sound;
 import org.bukkit.entity.Player;
 
@@ -32,6 +35,22 @@ public class BukkitJingleNotePlayer extends JingleNotePlayer {
         p.playSound(p.getLocation(), toSound(note.getInstrument()), note.getVelocity(), note.getNote());
     }
 
+    @Override
+    public void play (List<Note> notes) {
+
+        if (p == null || !p.isOnline())
+            p = Bukkit.getPlayerExact(player);
+
+        if (p == null || !p.isOnline())
+            return;
+
+        Location location = p.getLocation();
+        if(area != null) if(!area.isWithinArea(location)) return;
+
+        for (Note note : notes)
+            p.playSound(location, toSound(note.getInstrument()), note.getVelocity(), note.getNote());
+    }
+
     public Sound toSound(Instrument instrument) {
 
         switch(instrument) {
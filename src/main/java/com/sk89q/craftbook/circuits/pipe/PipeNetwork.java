@@ -0,0 +1,193 @@
+package com.sk89q.craftbook.circuits.pipe;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.inventory.ItemStack;
+
+import com.sk89q.craftbook.util.LocationUtil;
+
+/**
+ * The pipe network reachable from a single sticky piston, with the outputs in the order items are pushed into them.
+ */
+public class PipeNetwork {
+
+    private final Block source;
+    private final Block sourceFacing;
+
+    private final HashSet<ItemStack> filters = new HashSet<ItemStack>();
+    private final HashSet<ItemStack> exceptions = new HashSet<ItemStack>();
+
+    private final List<PipeOutput> outputs = new ArrayList<PipeOutput>();
+
+    // Packed positions of all blocks that the search went through.
+    private final Set<Long> visited = new HashSet<Long>();
+    // Packed positions of all blocks that can change the layout of this network.
+    private final Set<Long> watched = new HashSet<Long>();
+    private final Set<Long> chunks = new HashSet<Long>();
+
+    public PipeNetwork(Block source, Block sourceFacing) {
+
+        this.source = source;
+        this.sourceFacing = sourceFacing;
+    }
+
+    public Block getSource() {
+
+        return source;
+    }
+
+    public World getWorld() {
+
+        return source.getWorld();
+    }
+
+    public HashSet<ItemStack> getFilters() {
+
+        return filters;
+    }
+
+    public HashSet<ItemStack> getExceptions() {
+
+        return exceptions;
+    }
+
+    public List<PipeOutput> getOutputs() {
+
+        return outputs;
+    }
+
+    public Set<Long> getChunks() {
+
+        return chunks;
+    }
+
+    /**
+     * Marks a block as visited by the search.
+     *
+     * @param block The block
+     *
+     * @return true if the block had not been visited yet.
+     */
+    public boolean visit(Block block) {
+
+        return visited.add(LocationUtil.packBlockPosition(block.getX(), block.getY(), block.getZ()));
+    }
+
+    public boolean isVisited(Block block) {
+
+        return visited.contains(LocationUtil.packBlockPosition(block.getX(), block.getY(), block.getZ()));
+    }
+
+    public void addOutput(PipeOutput output) {
+
+        outputs.add(output);
+    }
+
+    /**
+     * Called once the search is done, to work out which blocks the network depends on.
+     */
+    public void complete() {
+
+        Set<Long> members = new HashSet<Long>(visited);
+        members.add(LocationUtil.packBlockPosition(source.getX(), source.getY(), source.getZ()));
+
+        for (long member : members) {
+            int x = LocationUtil.unpackBlockX(member);
+            int y = LocationUtil.unpackBlockY(member);
+            int z = LocationUtil.unpackBlockZ(member);
+            for (int dx = -1; dx < 2; dx++) {
+                for (int dz = -1; dz < 2; dz++) {
+                    for (int dy = -1; dy < 2; dy++) {
+                        watched.add(LocationUtil.packBlockPosition(x + dx, y + dy, z + dz));
+                    }
+                    chunks.add(LocationUtil.packChunkPosition(x + dx >> 4, z + dz >> 4));
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if a change to the given block may change this network.
+     *
+     * @param block The changed block
+     *
+     * @return If the network should be rebuilt
+     */
+    public boolean isAffectedBy(Block block) {
+
+        return block.getWorld().equals(getWorld()) && watched.contains(LocationUtil.packBlockPosition(block.getX(), block.getY(), block.getZ()));
+    }
+
+    /**
+     * Checks that the network still looks like it did when it was built. This catches changes that were made without
+     * firing any events.
+     *
+     * @param sourceFacing The block the source piston is facing now
+     *
+     * @return If the network can still be used
+     */
+    public boolean isValid(Block sourceFacing) {
+
+        if (!this.sourceFacing.equals(sourceFacing))
+            return false;
+        for (PipeOutput output : outputs)
+            if (output.getBlock().getType() != output.getType())
+                return false;
+        return true;
+    }
+
+    public static class PipeOutput {
+
+        private final Block block;
+        private final Material type;
+        private final BlockFace facing;
+        private final HashSet<ItemStack> filters;
+        private final HashSet<ItemStack> exceptions;
+
+        public PipeOutput(Block block, BlockFace facing, HashSet<ItemStack> filters, HashSet<ItemStack> exceptions) {
+
+            this.block = block;
+            this.type = block.getType();
+            this.facing = facing;
+            this.filters = filters;
+            this.exceptions = exceptions;
+        }
+
+        public Block getBlock() {
+
+            return block;
+        }
+
+        public Material getType() {
+
+            return type;
+        }
+
+        /**
+         * Gets the direction this output pushes items in.
+         *
+         * @return The facing of the piston, or null if this output is a dropper.
+         */
+        public BlockFace getFacing() {
+
+            return facing;
+        }
+
+        public HashSet<ItemStack> getFilters() {
+
+            return filters;
+        }
+
+        public HashSet<ItemStack> getExceptions() {
+
+            return exceptions;
+        }
+    }
+}
@@ -2,10 +2,12 @@ package com.sk89q.craftbook.circuits.pipe;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.bukkit.Bukkit;
@@ -19,7 +21,14 @@ import org.bukkit.block.Furnace;
 import org.bukkit.block.Jukebox;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPhysicsEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.event.block.SignChangeEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
 import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.material.Directional;
@@ -31,6 +40,7 @@ import com.sk89q.craftbook.LocalPlayer;
 import com.sk89q.craftbook.bukkit.BukkitConfiguration;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.BukkitUtil;
+import com.sk89q.craftbook.circuits.pipe.PipeNetwork.PipeOutput;
 import com.sk89q.craftbook.util.BlockUtil;
 import com.sk89q.craftbook.util.InventoryUtil;
 import com.sk89q.craftbook.util.ItemSyntax;
@@ -43,9 +53,14 @@ import com.sk89q.craftbook.util.events.SourcedBlockRedstoneEvent;
 
 public class Pipes extends AbstractCraftBookMechanic {
 
+    private Map<Location, PipeNetwork> networks = new HashMap<Location, PipeNetwork>();
+    private Map<Long, List<PipeNetwork>> networksByChunk = new HashMap<Long, List<PipeNetwork>>();
+
     @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGH)
     public void onSignChange(SignChangeEvent event) {
 
+        invalidateNetworks(event.getBlock());
+
         if(!event.getLine(1).equalsIgnoreCase("[pipe]")) return;
 
         LocalPlayer player = CraftBookPlugin.inst().wrapPlayer(event.getPlayer());
@@ -86,7 +101,88 @@ public class Pipes extends AbstractCraftBookMechanic {
         return null;
     }
 
-    public void searchNearbyPipes(Block block, Set<Location> visitedPipes, List<ItemStack> items, Set<ItemStack> filters, Set<ItemStack> exceptions) {
+    /**
+     * Gets the network for the given sticky piston, searching it if it is not cached or no longer valid.
+     *
+     * @param block The sticky piston
+     * @param fac The block the piston is facing
+     *
+     * @return The network
+     */
+    public PipeNetwork getNetwork(Block block, Block fac) {
+
+        PipeNetwork network = networks.get(block.getLocation());
+        if (network != null && !network.isValid(fac)) {
+            removeNetwork(network);
+            network = null;
+        }
+        if (network == null) {
+            network = new PipeNetwork(block, fac);
+            parseFilters(getSignOnPiston(block), network.getFilters(), network.getExceptions());
+            network.visit(fac);
+            searchNearbyPipes(block, network);
+            network.complete();
+
+            networks.put(block.getLocation(), network);
+            for (long chunk : network.getChunks()) {
+                List<PipeNetwork> chunkNetworks = networksByChunk.get(chunk);
+                if (chunkNetworks == null) {
+                    chunkNetworks = new ArrayList<PipeNetwork>();
+                    networksByChunk.put(chunk, chunkNetworks);
+                }
+                chunkNetworks.add(network);
+            }
+        }
+        return network;
+    }
+
+    private void removeNetwork(PipeNetwork network) {
+
+        networks.remove(network.getSource().getLocation());
+        for (long chunk : network.getChunks()) {
+            List<PipeNetwork> chunkNetworks = networksByChunk.get(chunk);
+            if (chunkNetworks == null) continue;
+            chunkNetworks.remove(network);
+            if (chunkNetworks.isEmpty())
+                networksByChunk.remove(chunk);
+        }
+    }
+
+    /**
+     * Forgets any network that may be changed by a change to the given block.
+     *
+     * @param block The changed block
+     */
+    public void invalidateNetworks(Block block) {
+
+        if (networks.isEmpty()) return;
+
+        List<PipeNetwork> chunkNetworks = networksByChunk.get(LocationUtil.packChunkPosition(block.getX() >> 4, block.getZ() >> 4));
+        if (chunkNetworks == null) return;
+
+        for (PipeNetwork network : new ArrayList<PipeNetwork>(chunkNetworks)) {
+            if (network.isAffectedBy(block))
+                removeNetwork(network);
+        }
+    }
+
+    private void parseFilters(ChangedSign sign, HashSet<ItemStack> filters, HashSet<ItemStack> exceptions) {
+
+        if(sign != null) {
+
+            for(String line3 : RegexUtil.COMMA_PATTERN.split(sign.getLine(2))) {
+                filters.add(ItemSyntax.getItem(line3.trim()));
+            }
+            for(String line4 : RegexUtil.COMMA_PATTERN.split(sign.getLine(3))) {
+                exceptions.add(ItemSyntax.getItem(line4.trim()));
+            }
+        }
+
+        filters.removeAll(Collections.singleton(null));
+        exceptions.removeAll(Collections.singleton(null));
+    }
+
+    public void searchNearbyPipes(Block block, PipeNetwork network) {
 
         BukkitConfiguration config = CraftBookPlugin.inst().getConfiguration();
 
@@ -97,9 +193,6 @@ public class Pipes extends AbstractCraftBookMechanic {
             for (int y = -1; y < 2; y++) {
                 for (int z = -1; z < 2; z++) {
 
-                    if(items.isEmpty())
-                        return;
-
                     if (!config.pipesDiagonal) {
                         if (x != 0 && y != 0) continue;
                         if (x != 0 && z != 0) continue;
@@ -134,9 +227,7 @@ public class Pipes extends AbstractCraftBookMechanic {
 
                     if (!isValidPipeBlock(off.getType())) continue;
 
-                    if (visitedPipes.contains(off.getLocation())) continue;
-
-                    visitedPipes.add(off.getLocation());
+                    if (!network.visit(off)) continue;
 
                     if(block.getType() == Material.STAINED_GLASS && off.getType() == Material.STAINED_GLASS && block.getData() != off.getData()) continue;
 
@@ -144,11 +235,11 @@ public class Pipes extends AbstractCraftBookMechanic {
                         searchQueue.add(off);
                     else if (off.getType() == Material.THIN_GLASS || off.getType() == Material.STAINED_GLASS_PANE) {
                         if (!isValidPipeBlock(off.getRelative(x, y, z).getType())) continue;
-                        if (visitedPipes.contains(off.getRelative(x, y, z).getLocation())) continue;
+                        if (network.isVisited(off.getRelative(x, y, z))) continue;
                         if(off.getType() == Material.STAINED_GLASS_PANE) {
                             if((block.getType() == Material.STAINED_GLASS || block.getType() == Material.STAINED_GLASS_PANE) && off.getData() != block.getData() || (off.getRelative(x, y, z).getType() == Material.STAINED_GLASS || off.getRelative(x, y, z).getType() == Material.STAINED_GLASS_PANE) && off.getData() != off.getRelative(x, y, z).getData()) continue;
                         }
-                        visitedPipes.add(off.getRelative(x, y, z).getLocation());
+                        network.visit(off.getRelative(x, y, z));
                         searchQueue.add(off.getRelative(x, y, z));
                     } else if(off.getType() == Material.PISTON_BASE)
                         searchQueue.add(0, off); //Pistons are treated with higher priority.
@@ -159,37 +250,48 @@ public class Pipes extends AbstractCraftBookMechanic {
         //Use the queue to search blocks.
         for(Block bl : searchQueue) {
             if (bl.getType() == Material.GLASS || bl.getType() == Material.STAINED_GLASS)
-                searchNearbyPipes(bl, visitedPipes, items, filters, exceptions);
-            else if (bl.getType() == Material.PISTON_BASE) {
+                searchNearbyPipes(bl, network);
+            else if (bl.getType() == Material.PISTON_BASE || bl.getType() == Material.DROPPER) {
 
-                PistonBaseMaterial p = (PistonBaseMaterial) bl.getState().getData();
-
-                ChangedSign sign = getSignOnPiston(bl);
+                BlockFace facing = null;
+                if (bl.getType() == Material.PISTON_BASE)
+                    facing = ((PistonBaseMaterial) bl.getState().getData()).getFacing();
 
                 HashSet<ItemStack> pFilters = new HashSet<ItemStack>();
                 HashSet<ItemStack> pExceptions = new HashSet<ItemStack>();
 
-                if(sign != null) {
+                parseFilters(getSignOnPiston(bl), pFilters, pExceptions);
 
-                    for(String line3 : RegexUtil.COMMA_PATTERN.split(sign.getLine(2))) {
-                        pFilters.add(ItemSyntax.getItem(line3.trim()));
-                    }
-                    for(String line4 : RegexUtil.COMMA_PATTERN.split(sign.getLine(3))) {
-                        pExceptions.add(ItemSyntax.getItem(line4.trim()));
-                    }
+                network.addOutput(new PipeOutput(bl, facing, pFilters, pExceptions));
+            }
+        }
+    }
 
-                    pFilters.removeAll(Collections.singleton(null));
-                    pExceptions.removeAll(Collections.singleton(null));
-                }
+    /**
+     * Pushes items through a network, into each output in turn until there are none left.
+     *
+     * @param network The network
+     * @param items The items to push. Any items that could not be placed are left in here.
+     */
+    public void pushItems(PipeNetwork network, List<ItemStack> items) {
+
+        for (PipeOutput output : network.getOutputs()) {
 
-                List<ItemStack> filteredItems = new ArrayList<ItemStack>(VerifyUtil.<ItemStack>withoutNulls(ItemUtil.filterItems(items, pFilters, pExceptions)));
+            if (items.isEmpty())
+                return;
 
-                if(filteredItems.isEmpty())
-                    continue;
+            Block bl = output.getBlock();
 
-                List<ItemStack> newItems = new ArrayList<ItemStack>();
+            List<ItemStack> filteredItems = new ArrayList<ItemStack>(VerifyUtil.<ItemStack>withoutNulls(ItemUtil.filterItems(items, output.getFilters(), output.getExceptions())));
 
-                Block fac = bl.getRelative(p.getFacing());
+            if(filteredItems.isEmpty())
+                continue;
+
+            List<ItemStack> newItems = new ArrayList<ItemStack>();
+
+            if (output.getFacing() != null) {
+
+                Block fac = bl.getRelative(output.getFacing());
                 if (fac.getState() instanceof InventoryHolder) {
                     newItems.addAll(InventoryUtil.addItemsToInventory((InventoryHolder) fac.getState(), filteredItems.toArray(new ItemStack[filteredItems.size()])));
                 } else if(fac.getType() == Material.JUKEBOX) {
@@ -212,38 +314,9 @@ public class Pipes extends AbstractCraftBookMechanic {
 
                     newItems.addAll(event.getItems());
                 }
-
-                items.removeAll(filteredItems);
-                items.addAll(newItems);
-
-                if (!items.isEmpty()) searchNearbyPipes(block, visitedPipes, items, filters, exceptions);
-            } else if (bl.getType() == Material.DROPPER) {
-
-                ChangedSign sign = getSignOnPiston(bl);
-
-                HashSet<ItemStack> pFilters = new HashSet<ItemStack>();
-                HashSet<ItemStack> pExceptions = new HashSet<ItemStack>();
-
-                if(sign != null) {
-
-                    for(String line3 : RegexUtil.COMMA_PATTERN.split(sign.getLine(2))) {
-                        pFilters.add(ItemSyntax.getItem(line3.trim()));
-                    }
-                    for(String line4 : RegexUtil.COMMA_PATTERN.split(sign.getLine(3))) {
-                        pExceptions.add(ItemSyntax.getItem(line4.trim()));
-                    }
-
-                    pFilters.removeAll(Collections.singleton(null));
-                    pExceptions.removeAll(Collections.singleton(null));
-                }
-
-                List<ItemStack> filteredItems = new ArrayList<ItemStack>(VerifyUtil.<ItemStack>withoutNulls(ItemUtil.filterItems(items, pFilters, pExceptions)));
-
-                if(filteredItems.isEmpty())
-                    continue;
+            } else {
 
                 Dropper dropper = (Dropper) bl.getState();
-                List<ItemStack> newItems = new ArrayList<ItemStack>();
 
                 newItems.addAll(dropper.getInventory().addItem(filteredItems.toArray(new ItemStack[filteredItems.size()])).values());
 
@@ -251,12 +324,10 @@ public class Pipes extends AbstractCraftBookMechanic {
                     if(ItemUtil.isStackValid(stack))
                         for(int i = 0; i < stack.getAmount(); i++)
                             dropper.drop();
-
-                items.removeAll(filteredItems);
-                items.addAll(newItems);
-
-                if (!items.isEmpty()) searchNearbyPipes(block, visitedPipes, items, filters, exceptions);
             }
+
+            items.removeAll(filteredItems);
+            items.addAll(newItems);
         }
     }
 
@@ -267,28 +338,6 @@ public class Pipes extends AbstractCraftBookMechanic {
 
     public void startPipe(Block block, List<ItemStack> items, boolean request) {
 
-        Set<ItemStack> filters = new HashSet<ItemStack>();
-        Set<ItemStack> exceptions = new HashSet<ItemStack>();
-
-        ChangedSign sign = getSignOnPiston(block);
-
-        if(sign != null) {
-
-            for(String line3 : RegexUtil.COMMA_PATTERN.split(sign.getLine(2))) {
-
-                filters.add(ItemSyntax.getItem(line3.trim()));
-            }
-            for(String line4 : RegexUtil.COMMA_PATTERN.split(sign.getLine(3))) {
-
-                exceptions.add(ItemSyntax.getItem(line4.trim()));
-            }
-        }
-
-        filters.removeAll(Collections.singleton(null));
-        exceptions.removeAll(Collections.singleton(null));
-
-        Set<Location> visitedPipes = new HashSet<Location>();
-
         if (block.getType() == Material.PISTON_STICKY_BASE) {
 
             List<ItemStack> leftovers = new ArrayList<ItemStack>();
@@ -296,6 +345,10 @@ public class Pipes extends AbstractCraftBookMechanic {
             PistonBaseMaterial p = (PistonBaseMaterial) block.getState().getData();
             Block fac = block.getRelative(p.getFacing());
 
+            PipeNetwork network = getNetwork(block, fac);
+            Set<ItemStack> filters = network.getFilters();
+            Set<ItemStack> exceptions = network.getExceptions();
+
             if (fac.getType() == Material.CHEST || fac.getType() == Material.TRAPPED_CHEST || fac.getType() == Material.DROPPER || fac.getType() == Material.DISPENSER || fac.getType() == Material.HOPPER) {
 
                 for (ItemStack stack : ((InventoryHolder) fac.getState()).getInventory().getContents()) {
@@ -315,10 +368,8 @@ public class Pipes extends AbstractCraftBookMechanic {
                 PipeSuckEvent event = new PipeSuckEvent(block, items, fac);
                 Bukkit.getPluginManager().callEvent(event);
                 items = event.getItems();
-                if(!event.isCancelled()) {
-                    visitedPipes.add(fac.getLocation());
-                    searchNearbyPipes(block, visitedPipes, items, filters, exceptions);
-                }
+                if(!event.isCancelled())
+                    pushItems(network, items);
 
                 if (!items.isEmpty()) {
                     for (ItemStack item : items) {
@@ -337,10 +388,8 @@ public class Pipes extends AbstractCraftBookMechanic {
                 PipeSuckEvent event = new PipeSuckEvent(block, items, fac);
                 Bukkit.getPluginManager().callEvent(event);
                 items = event.getItems();
-                if(!event.isCancelled()) {
-                    visitedPipes.add(fac.getLocation());
-                    searchNearbyPipes(block, visitedPipes, items, filters, exceptions);
-                }
+                if(!event.isCancelled())
+                    pushItems(network, items);
 
                 if (!items.isEmpty()) {
                     for (ItemStack item : items) {
@@ -361,10 +410,8 @@ public class Pipes extends AbstractCraftBookMechanic {
                 Bukkit.getPluginManager().callEvent(event);
                 items = event.getItems();
 
-                if(!event.isCancelled()) {
-                    visitedPipes.add(fac.getLocation());
-                    searchNearbyPipes(block, visitedPipes, items, filters, exceptions);
-                }
+                if(!event.isCancelled())
+                    pushItems(network, items);
 
                 if (!items.isEmpty()) {
                     for (ItemStack item : items) {
@@ -376,10 +423,8 @@ public class Pipes extends AbstractCraftBookMechanic {
                 PipeSuckEvent event = new PipeSuckEvent(block, items, fac);
                 Bukkit.getPluginManager().callEvent(event);
                 items = event.getItems();
-                if(!event.isCancelled() && !items.isEmpty()) {
-                    visitedPipes.add(fac.getLocation());
-                    searchNearbyPipes(block, visitedPipes, items, filters, exceptions);
-                }
+                if(!event.isCancelled() && !items.isEmpty())
+                    pushItems(network, items);
                 leftovers.addAll(items);
             }
 
@@ -424,4 +469,67 @@ public class Pipes extends AbstractCraftBookMechanic {
             startPipe(event.getBlock(), event.getItems(), true);
         }
     }
-}
\ No newline at end of file
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockPlace(BlockPlaceEvent event) {
+
+        invalidateNetworks(event.getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockBreak(BlockBreakEvent event) {
+
+        invalidateNetworks(event.getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockPhysics(BlockPhysicsEvent event) {
+
+        if (networks.isEmpty()) return;
+
+        // Redstone updates are by far the most common, and never change the layout of a pipe.
+        Material changed = event.getChangedType();
+        if (changed == Material.AIR || isValidPipeBlock(changed) || changed == Material.SIGN_POST
+                || changed == CraftBookPlugin.inst().getConfiguration().pipeInsulator.getType())
+            invalidateNetworks(event.getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onPistonExtend(BlockPistonExtendEvent event) {
+
+        invalidateNetworks(event.getBlock());
+        for (Block block : event.getBlocks()) {
+            invalidateNetworks(block);
+            invalidateNetworks(block.getRelative(event.getDirection()));
+        }
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onPistonRetract(BlockPistonRetractEvent event) {
+
+        invalidateNetworks(event.getBlock());
+        invalidateNetworks(event.getBlock().getRelative(event.getDirection()));
+        invalidateNetworks(event.getRetractLocation().getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onEntityExplode(EntityExplodeEvent event) {
+
+        for (Block block : event.blockList())
+            invalidateNetworks(block);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+
+        if (networks.isEmpty()) return;
+
+        List<PipeNetwork> chunkNetworks = networksByChunk.get(LocationUtil.packChunkPosition(event.getChunk().getX(), event.getChunk().getZ()));
+        if (chunkNetworks == null) return;
+
+        for (PipeNetwork network : new ArrayList<PipeNetwork>(chunkNetworks)) {
+            if (network.getWorld().equals(event.getWorld()))
+                removeNetwork(network);
+        }
+    }
+}
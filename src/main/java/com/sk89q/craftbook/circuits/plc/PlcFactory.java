@@ -92,5 +92,7 @@ public class PlcFactory<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>>
 
     @Override
     public void unload () {
+
+        PlcStateStore.unload();
     }
 }
@@ -16,11 +16,11 @@
 
 package com.sk89q.craftbook.circuits.plc;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.file.Files;
@@ -59,18 +59,14 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
 
     private static final Logger logger = Logger.getLogger("Minecraft.CraftBook");
 
-    private static final int PLC_STORE_VERSION = 1;
-
     private Lang lang;
-    private StateT state;
+    private PlcState<StateT> storage;
     private String codeString;
+    private String codeHash;
     private CodeT code;
 
     private ChangedSign sign;
 
-    private boolean error = false;
-    private String errorString = "no error";
-
     PlcIC(ChangedSign s, Lang l) throws ICVerificationException {
 
         sign = s;
@@ -95,12 +91,12 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
         try {
             if (codeString != null) {
                 code = lang.compile(codeString);
+                codeHash = hashCode(codeString);
             }
         } catch (ICVerificationException e) {
             throw new RuntimeException("inconsistent compile check!", e);
         }
-        state = lang.initState();
-        tryLoadState();
+        loadState();
     }
 
     private boolean isShared() {
@@ -142,7 +138,7 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
         return new File(targetDir, getFileName());
     }
 
-    private String hashCode(String code) {
+    static String hashCode(String code) {
 
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-1");
@@ -163,72 +159,45 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
         }
     }
 
-    private void tryLoadState() {
+    private void loadState() {
 
-        try {
-            loadState();
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "Failed to load PLC state", e);
-            state = lang.initState();
-            getStorageLocation().delete();
+        storage = PlcStateStore.get(getStorageLocation(), lang);
+        if (!storage.matches(lang, isShared() ? null : getID(), codeHash)) {
+            // Prevent state and errors from different ICs from affecting this one.
+            storage.reset(lang);
         }
     }
 
-    private void loadState() throws IOException {
+    private void saveState() {
 
-        if (!getStorageLocation().exists()) return; // Prevent error spam
-
-        DataInputStream in = new DataInputStream(new FileInputStream(getStorageLocation()));
-        try {
-            switch (in.readInt()) {
-                case 1:
-                    error = in.readBoolean();
-                    errorString = in.readUTF();
-                case 0:
-                    String langName = in.readUTF();
-                    String id = in.readUTF();
-                    String code = hashCode(in.readUTF());
-                    if ((lang.getName().equals(langName) || lang.supports(langName))
-                            && (isShared() || id.equals(getID()) && hashCode(codeString).equals(code))) {
-                        lang.loadState(state, in);
-                    } else {
-                        // Prevent errors from different ICs from affecting this one.
-                        error = false;
-                        errorString = "no error";
-                    }
-                    break;
-                default:
-                    throw new IOException("incompatible version");
-            }
-        } finally {
-            in.close();
-        }
+        storage.lang = lang;
+        storage.langName = lang.getName();
+        storage.id = storage.error ? "(error)" : getID();
+        storage.codeHash = codeHash == null ? "" : codeHash;
+        PlcStateStore.markDirty(storage);
     }
 
-    private void trySaveState() {
-
-        try {
-            saveState();
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "Failed to save PLC state", e);
-            state = lang.initState();
-        }
-    }
+    /**
+     * Moves this IC over to the state file it should now use, if its sign changed.
+     */
+    private void relocateState() {
 
-    private void saveState() throws IOException {
+        PlcState<StateT> target = PlcStateStore.get(getStorageLocation(), lang);
+        if (target == storage) return;
 
-        DataOutputStream out = new DataOutputStream(new FileOutputStream(getStorageLocation()));
-        try {
-            out.writeInt(PLC_STORE_VERSION);
-            out.writeBoolean(error);
-            out.writeUTF(errorString);
-            out.writeUTF(lang.getName());
-            out.writeUTF(error ? "(error)" : getID());
-            out.writeUTF(hashCode(codeString));
-            lang.writeState(state, out);
-        } finally {
-            out.close();
+        if (storage != null) {
+            // Copy the state, as the old one may still be shared with other ICs.
+            target.state = lang.initState();
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                lang.writeState(storage.state, new DataOutputStream(bytes));
+                lang.loadState(target.state, new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Failed to copy PLC state", e);
+                target.state = lang.initState();
+            }
         }
+        storage = target;
     }
 
     private String getBookCode(Block chestBlock) throws CodeNotFoundException {
@@ -306,23 +275,20 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
         sign.setLine(3, shortMessage);
         sign.update(false);
 
-        error = true;
-        errorString = detailedMessage;
+        relocateState();
+        storage.error = true;
+        storage.errorString = detailedMessage;
 
-        trySaveState();
+        saveState();
     }
 
     @Override
     public void trigger(ChipState chip) {
 
         try {
-            if (isShared()) {
-                tryLoadState();
-            }
+            lang.execute(chip, storage.state, code);
 
-            lang.execute(chip, state, code);
-
-            trySaveState();
+            saveState();
         } catch (PlcException e) {
             error(e.getMessage(), e.detailedMessage);
         } catch (Exception e) {
@@ -403,15 +369,15 @@ class PlcIC<StateT, CodeT, Lang extends PlcLanguage<StateT, CodeT>> implements I
         if (CraftBookPlugin.inst().hasPermission(p, "craftbook.plc.debug")) {
             p.sendMessage(ChatColor.GREEN + "Programmable Logic Controller debug information");
             BlockWorldVector l = sign.getBlockVector();
-            p.sendMessage(ChatColor.RED + "Status:" + ChatColor.RESET + " " + (error ? "Error Encountered" : "OK"));
+            p.sendMessage(ChatColor.RED + "Status:" + ChatColor.RESET + " " + (storage.error ? "Error Encountered" : "OK"));
             p.sendMessage(ChatColor.RED + "Location:" + ChatColor.RESET + " (" + l.getBlockX() + ", " +
                     "" + l.getBlockY() + ", " + l.getBlockZ() + ")");
             p.sendMessage(ChatColor.RED + "Language:" + ChatColor.RESET + " " + lang.getName());
             p.sendMessage(ChatColor.RED + "Full Storage Name:" + ChatColor.RESET + " " + getFileName());
-            if (error) {
-                p.sendMessage(errorString);
+            if (storage.error) {
+                p.sendMessage(storage.errorString);
             } else {
-                p.sendMessage(lang.dumpState(state));
+                p.sendMessage(lang.dumpState(storage.state));
             }
         } else {
             p.sendMessage(ChatColor.RED + "You do not have the necessary permissions to do that.");
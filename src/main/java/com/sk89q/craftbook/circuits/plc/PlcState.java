@@ -0,0 +1,118 @@
+package com.sk89q.craftbook.circuits.plc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The in-memory copy of a PLC state file. ICs sharing a storage name share the same instance.
+ *
+ * @param <StateT> The language state type
+ */
+class PlcState<StateT> {
+
+    private static final Logger logger = Logger.getLogger("Minecraft.CraftBook");
+
+    private static final int PLC_STORE_VERSION = 1;
+
+    final File file;
+
+    StateT state;
+    boolean error = false;
+    String errorString = "no error";
+
+    // Who last wrote this state. Only known once the file has been read, or the state saved.
+    PlcLanguage<StateT, ?> lang;
+    String langName;
+    String id;
+    String codeHash;
+
+    boolean dirty = false;
+
+    // The newest batch that wrote this state. Guarded by the store's write lock.
+    long writtenGeneration = 0;
+
+    PlcState(File file, StateT state) {
+
+        this.file = file;
+        this.state = state;
+    }
+
+    /**
+     * Checks whether this state was written by the given IC, and can be used by it.
+     *
+     * @param lang The language of the IC
+     * @param id The ID of the IC, or null if the IC uses shared storage.
+     * @param codeHash The hash of the IC's code
+     *
+     * @return If the state can be used
+     */
+    boolean matches(PlcLanguage<StateT, ?> lang, String id, String codeHash) {
+
+        return langName != null && (lang.getName().equals(langName) || lang.supports(langName))
+                && (id == null || id.equals(this.id) && codeHash != null && codeHash.equals(this.codeHash));
+    }
+
+    void reset(PlcLanguage<StateT, ?> lang) {
+
+        state = lang.initState();
+        error = false;
+        errorString = "no error";
+    }
+
+    void load(PlcLanguage<StateT, ?> lang) {
+
+        if (!file.exists()) return; // Prevent error spam
+
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                int version = in.readInt();
+                switch (version) {
+                    case 1:
+                        error = in.readBoolean();
+                        errorString = in.readUTF();
+                    case 0:
+                        langName = in.readUTF();
+                        id = in.readUTF();
+                        // Version 0 files stored the code itself rather than its hash.
+                        codeHash = version == 0 ? PlcIC.hashCode(in.readUTF()) : in.readUTF();
+                        if (lang.getName().equals(langName) || lang.supports(langName)) {
+                            lang.loadState(state, in);
+                            this.lang = lang;
+                        }
+                        break;
+                    default:
+                        throw new IOException("incompatible version");
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to load PLC state", e);
+            langName = null;
+            reset(lang);
+            file.delete();
+        }
+    }
+
+    byte[] serialize() throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(PLC_STORE_VERSION);
+        out.writeBoolean(error);
+        out.writeUTF(errorString);
+        out.writeUTF(langName);
+        out.writeUTF(id);
+        out.writeUTF(codeHash);
+        lang.writeState(state, out);
+        out.close();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,188 @@
+package com.sk89q.craftbook.circuits.plc;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+
+/**
+ * Holds every loaded PLC state in memory, and writes changed states to disk in batches off the main thread.
+ *
+ * States are only held weakly, so a state is forgotten once it has been written and no IC uses it anymore.
+ */
+class PlcStateStore {
+
+    private static final Logger logger = Logger.getLogger("Minecraft.CraftBook");
+
+    private static final Map<File, StateReference> states = new HashMap<File, StateReference>();
+    private static final ReferenceQueue<PlcState<?>> released = new ReferenceQueue<PlcState<?>>();
+    private static final Set<PlcState<?>> dirty = new LinkedHashSet<PlcState<?>>();
+
+    private static final Object writeLock = new Object();
+    private static volatile boolean writing = false;
+    private static long generation = 0;
+
+    private static BukkitTask flushTask;
+
+    /**
+     * Gets the state stored in the given file, reading it from disk if it is not loaded yet.
+     *
+     * @param file The state file
+     * @param lang The language used to read the state
+     *
+     * @return The state
+     */
+    @SuppressWarnings("unchecked")
+    static <StateT> PlcState<StateT> get(File file, PlcLanguage<StateT, ?> lang) {
+
+        purge();
+
+        StateReference ref = states.get(file);
+        PlcState<StateT> state = ref == null ? null : (PlcState<StateT>) ref.get();
+        if (state == null) {
+            state = new PlcState<StateT>(file, lang.initState());
+            state.load(lang);
+            states.put(file, new StateReference(state));
+        }
+        return state;
+    }
+
+    /**
+     * Forgets the states that are no longer used by any IC. Changed states are held by the store until they are
+     * written, so only states that are already on disk are ever released.
+     */
+    private static void purge() {
+
+        Reference<? extends PlcState<?>> ref;
+        while ((ref = released.poll()) != null) {
+            File file = ((StateReference) ref).file;
+            if (states.get(file) == ref) states.remove(file);
+        }
+    }
+
+    static void markDirty(PlcState<?> state) {
+
+        if (!state.dirty) {
+            state.dirty = true;
+            dirty.add(state);
+        }
+
+        if (flushTask == null) {
+            long interval = Math.max(1, CraftBookPlugin.inst().getConfiguration().ICPlcSaveInterval);
+            flushTask = Bukkit.getScheduler().runTaskTimer(CraftBookPlugin.inst(), new Runnable() {
+
+                @Override
+                public void run() {
+
+                    flush(false);
+                }
+            }, interval, interval);
+        }
+    }
+
+    /**
+     * Writes all changed states to disk.
+     *
+     * @param sync If true, the states are written before this returns. Otherwise they are written asynchronously.
+     */
+    static void flush(boolean sync) {
+
+        purge();
+
+        if (dirty.isEmpty()) return;
+        // Don't queue up batches while the disk is slow.
+        if (!sync && writing) return;
+
+        // The states are serialized here on the main thread, as they may be changed by ICs at any time.
+        // The batch holds on to its states until they are written, so they can't be forgotten and read back stale.
+        final long batchGeneration = ++generation;
+        final Map<PlcState<?>, byte[]> batch = new LinkedHashMap<PlcState<?>, byte[]>();
+        for (PlcState<?> state : dirty) {
+            state.dirty = false;
+            try {
+                batch.put(state, state.serialize());
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Failed to save PLC state", e);
+            }
+        }
+        dirty.clear();
+
+        if (sync) {
+            write(batch, batchGeneration);
+        } else {
+            writing = true;
+            Bukkit.getScheduler().runTaskAsynchronously(CraftBookPlugin.inst(), new Runnable() {
+
+                @Override
+                public void run() {
+
+                    try {
+                        write(batch, batchGeneration);
+                    } finally {
+                        writing = false;
+                    }
+                }
+            });
+        }
+    }
+
+    private static void write(Map<PlcState<?>, byte[]> batch, long batchGeneration) {
+
+        synchronized (writeLock) {
+            for (Map.Entry<PlcState<?>, byte[]> entry : batch.entrySet()) {
+                PlcState<?> state = entry.getKey();
+                // An asynchronous batch may only get here after a newer synchronous one, so it must not undo it.
+                if (state.writtenGeneration > batchGeneration) continue;
+                state.writtenGeneration = batchGeneration;
+                try {
+                    FileOutputStream out = new FileOutputStream(state.file);
+                    try {
+                        out.write(entry.getValue());
+                    } finally {
+                        out.close();
+                    }
+                } catch (IOException e) {
+                    logger.log(Level.SEVERE, "Failed to save PLC state", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes all changed states to disk, and forgets all loaded states.
+     */
+    static void unload() {
+
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        flush(true);
+        states.clear();
+    }
+
+    private static class StateReference extends WeakReference<PlcState<?>> {
+
+        final File file;
+
+        StateReference(PlcState<?> state) {
+
+            super(state, released);
+            file = state.file;
+        }
+    }
+}
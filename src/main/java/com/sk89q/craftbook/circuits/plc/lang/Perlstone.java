@@ -20,24 +20,89 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.EmptyStackException;
-import java.util.Stack;
+import java.util.Arrays;
 
 import org.bukkit.ChatColor;
 
-import com.sk89q.craftbook.bukkit.util.BukkitUtil;
 import com.sk89q.craftbook.circuits.ic.ChipState;
 import com.sk89q.craftbook.circuits.ic.ICVerificationException;
 import com.sk89q.craftbook.circuits.plc.PlcException;
 import com.sk89q.craftbook.circuits.plc.PlcLanguage;
 
-public class Perlstone implements PlcLanguage<boolean[], WithLineInfo<String>[]> {
+public class Perlstone implements PlcLanguage<boolean[], PerlstoneFunction[]> {
 
     private static final int MAX_INSTRUCTION_COUNT = 10000;
     private static final int MAX_STACK_SIZE = 64;
     private static final int MAX_RECURSION = 16;
     private static final int PERLSTONE_STORE_VERSION = 0;
 
+    private static final int TABLE_PERSISTENT = 0;
+    private static final int TABLE_TEMP = 1;
+    private static final int TABLE_LOCAL = 2;
+
+    // Marks table addresses that are relative to the current shift of their table.
+    private static final int ADDRESS_SHIFTED = 32;
+
+    private static final int OP_TRUE = 0;
+    private static final int OP_FALSE = 1;
+    private static final int OP_A = 2;
+    private static final int OP_B = 3;
+    private static final int OP_C = 4;
+    private static final int OP_DEC_SHIFT = 5;
+    private static final int OP_INC_SHIFT = 6;
+    private static final int OP_RESET_SHIFT = 7;
+    // The load and store opcodes are laid out in the same order as the TABLE_ constants.
+    private static final int OP_LOAD_P = 8;
+    private static final int OP_LOAD_T = 9;
+    private static final int OP_LOAD_L = 10;
+    private static final int OP_STORE_P = 11;
+    private static final int OP_STORE_T = 12;
+    private static final int OP_STORE_L = 13;
+    private static final int OP_DUP = 14;
+    private static final int OP_POP = 15;
+    private static final int OP_PEEK = 16;
+    private static final int OP_SWAP = 17;
+    private static final int OP_NOT = 18;
+    private static final int OP_XOR = 19;
+    private static final int OP_AND = 20;
+    private static final int OP_OR = 21;
+    private static final int OP_EQ = 22;
+    private static final int OP_TABLE = 23;
+    private static final int OP_CALL = 24;
+    private static final int OP_TAIL_CALL = 25;
+    private static final int OP_JUMP_IF_FALSE = 26;
+    private static final int OP_JUMP_IF_TRUE = 27;
+    private static final int OP_STOP = 28;
+    private static final int OP_RETURN = 29;
+    private static final int OP_COUNT = 30;
+
+    // How many values each opcode pops. Peeks and calls check their operands themselves.
+    private static final int[] STACK_DEPTH = new int[OP_COUNT];
+
+    static {
+        STACK_DEPTH[OP_STORE_P] = 1;
+        STACK_DEPTH[OP_STORE_T] = 1;
+        STACK_DEPTH[OP_STORE_L] = 1;
+        STACK_DEPTH[OP_DUP] = 1;
+        STACK_DEPTH[OP_POP] = 1;
+        STACK_DEPTH[OP_SWAP] = 2;
+        STACK_DEPTH[OP_NOT] = 1;
+        STACK_DEPTH[OP_XOR] = 2;
+        STACK_DEPTH[OP_AND] = 2;
+        STACK_DEPTH[OP_OR] = 2;
+        STACK_DEPTH[OP_EQ] = 2;
+        STACK_DEPTH[OP_TABLE] = 2;
+        STACK_DEPTH[OP_JUMP_IF_FALSE] = 1;
+        STACK_DEPTH[OP_JUMP_IF_TRUE] = 1;
+        STACK_DEPTH[OP_RETURN] = 1;
+    }
+
+    private static final int RESULT_NONE = -1;
+    private static final int RESULT_FALSE = 0;
+    private static final int RESULT_TRUE = 1;
+
+    private static final LineInfo NO_LINE = new LineInfo(0, 0);
+
     @Override
     public String getName() {
 
@@ -112,134 +177,224 @@ public class Perlstone implements PlcLanguage<boolean[], WithLineInfo<String>[]>
     }
 
     @Override
-    public WithLineInfo<String>[] compile(String code) throws ICVerificationException {
+    public PerlstoneFunction[] compile(String code) throws ICVerificationException {
 
         WithLineInfo<String>[] functions = splitFunctions(markLines(code));
+        PerlstoneFunction[] compiled = new PerlstoneFunction[functions.length];
         for (int l = 0; l < functions.length; l++) {
-            WithLineInfo<String> line = functions[l];
-            char[] chars = line.code.toCharArray();
-            LineInfo[] li = line.lineInfo;
-            int bracketCount = 0;
-            if (chars.length == 0) {
-                continue;
-            }
-            for (int i = 0; i < chars.length; i++) {
-                try {
-                    char c = chars[i];
-                    switch (c) {
-                        case '[':
-                            bracketCount++;
-                            break;
-                        case ']':
-                            if (bracketCount == 0)
-                                throw new ICVerificationException("Too many closing braces " + "on line " + li[i]
-                                        .line + " at column " + li[i].col);
-                            bracketCount--;
-                            break;
-                        case '+':
-                        case '-':
-                        case 'A':
-                        case 'B':
-                        case 'C':
-                        case 'd':
-                        case 'p':
-                        case 'x':
-                        case '!':
-                        case '|':
-                        case '=':
-                        case '&':
-                        case '^':
-                        case 's':
-                        case 'r':
-                            break;
-
-                        case '<':
-                        case '>':
-                        case 'e':
-                        case 'S':
-                        case 'L':
+            compiled[l] = compileFunction(l, functions[l]);
+        }
+        return compiled;
+    }
+
+    private PerlstoneFunction compileFunction(int l, WithLineInfo<String> line) throws ICVerificationException {
+
+        char[] chars = line.code.toCharArray();
+        LineInfo[] li = line.lineInfo;
+
+        int[] code = new int[chars.length];
+        char[] symbols = new char[chars.length];
+        LineInfo[] lineInfo = new LineInfo[chars.length];
+        int length = 0;
+
+        // Instruction indexes of the [ opcodes that are still waiting for their ]
+        int[] brackets = new int[chars.length];
+        int bracketCount = 0;
+
+        for (int i = 0; i < chars.length; i++) {
+            char c = chars[i];
+            int start = i;
+            int insn;
+            try {
+                switch (c) {
+                    case '[':
+                        // The jump target is filled in once the matching ] is found.
+                        brackets[bracketCount++] = length;
+                        insn = OP_JUMP_IF_FALSE;
+                        break;
+                    case ']': {
+                        if (bracketCount == 0)
+                            throw new ICVerificationException("Too many closing braces " + "on line " + li[i]
+                                    .line + " at column " + li[i].col);
+                        int open = brackets[--bracketCount];
+                        code[open] = encode(OP_JUMP_IF_FALSE, length + 1);
+                        insn = encode(OP_JUMP_IF_TRUE, open + 1);
+                    }
+                    break;
+
+                    case '+':
+                        insn = OP_TRUE;
+                        break;
+                    case '-':
+                        insn = OP_FALSE;
+                        break;
+                    case 'A':
+                        insn = OP_A;
+                        break;
+                    case 'B':
+                        insn = OP_B;
+                        break;
+                    case 'C':
+                        insn = OP_C;
+                        break;
+                    case 'd':
+                        insn = OP_DUP;
+                        break;
+                    case 'p':
+                        insn = OP_POP;
+                        break;
+                    case 'x':
+                        insn = OP_SWAP;
+                        break;
+                    case '!':
+                        insn = OP_NOT;
+                        break;
+                    case '|':
+                        insn = OP_OR;
+                        break;
+                    case '=':
+                        insn = OP_EQ;
+                        break;
+                    case '&':
+                        insn = OP_AND;
+                        break;
+                    case '^':
+                        insn = OP_XOR;
+                        break;
+                    case 's':
+                        insn = OP_STOP;
+                        break;
+                    case 'r':
+                        insn = OP_RETURN;
+                        break;
+
+                    case '<':
+                        insn = encode(OP_DEC_SHIFT, decodeTable(chars[++i], c, li[i]));
+                        break;
+                    case '>':
+                        insn = encode(OP_INC_SHIFT, decodeTable(chars[++i], c, li[i]));
+                        break;
+                    case 'e':
+                        insn = encode(OP_RESET_SHIFT, decodeTable(chars[++i], c, li[i]));
+                        break;
+
+                    case 'S':
+                    case 'L': {
+                        char modifier = chars[++i];
+                        int table = decodeTable(modifier, c, li[i]);
+                        char p = chars[++i];
+                        if (!(p >= '0' && p <= '9') && !(p >= 'a' && p <= 'v'))
+                            throw new ICVerificationException("Bad table index " + chars[i] + " for opcode "
+                                    + c + " " + "on line "
+                                    + li[i].line + " at column " + li[i].col);
+                        int address = p <= '9' ? p - '0' : p - 'a' + 10;
+                        // Lower case modifiers apply the table's current shift.
+                        if (Character.isLowerCase(modifier)) {
+                            address |= ADDRESS_SHIFTED;
+                        }
+                        insn = encode((c == 'S' ? OP_STORE_P : OP_LOAD_P) + table, address);
+                    }
+                    break;
+
+                    case 'v': {
+                        char n = chars[++i];
+                        if (!(n >= '0' && n <= '9'))
+                            throw new ICVerificationException("Bad peek depth " + chars[i] + " " + "on line " +
+                                    li[i].line + " at column "
+                                    + li[i].col);
+                        insn = encode(OP_PEEK, parseNumber(n));
+                    }
+                    break;
+
+                    case '.': {
+                        int table = 0;
+                        for (int j = 0; j < 4; j++) {
                             switch (chars[++i]) {
-                                case 'p':
-                                case 'r':
-                                case 'l':
-                                case 'P':
-                                case 'R':
-                                case 'L':
+                                case '+':
+                                case '1':
+                                    table |= 1 << j;
                                     break;
+                                case '-':
+                                case '0':
+                                    break;
+
                                 default:
-                                    throw new ICVerificationException("Unknown modifier " + chars[i] + " to opcode "
-                                            + c + " " + "on line "
-                                            + li[i].line + " at column " + li[i].col);
-                            }
-                            if (c == 'S' || c == 'L') {
-                                char p = chars[++i];
-                                if (!(p >= '0' || p <= '9') && !(p >= 'a' || p <= 'v'))
-                                    throw new ICVerificationException("Bad table index " + chars[i] + " for opcode "
-                                            + c + " " + "on line "
-                                            + li[i].line + " at column " + li[i].col);
+                                    throw new ICVerificationException("Bad logic table value " + chars[i] + " " +
+                                            "on line " + li[i].line
+                                            + " at column " + li[i].col);
                             }
-                            break;
-
-                        case 'v': {
-                            char n = chars[++i];
-                            if (!(n >= '0' || n <= '9'))
-                                throw new ICVerificationException("Bad peek depth " + chars[i] + " " + "on line " +
-                                        li[i].line + " at column "
-                                        + li[i].col);
                         }
-                        break;
-
-                        case '.':
-                            for (int j = 0; j < 4; j++) {
-                                switch (chars[++i]) {
-                                    case '+':
-                                    case '-':
-                                    case '1':
-                                    case '0':
-                                        break;
-
-                                    default:
-                                        throw new ICVerificationException("Bad logic table value " + chars[i] + " " +
-                                                "on line " + li[i].line
-                                                + " at column " + li[i].col);
-                                }
-                            }
-                            break;
-
-                        case 'c':
-                        case 't':
-                            for (int j = 0; j < 2; j++) {
-                                char n = chars[++i];
-                                if (!(n >= '0' || n <= '9'))
-                                    throw new ICVerificationException("Invalid character " + chars[i] + " in function" +
-                                            " number " + "on line "
-                                            + li[i].line + " at column " + li[i].col);
-                            }
-                            {
-                                char n = chars[++i];
-                                if (!(n >= '0' || n <= '9'))
-                                    throw new ICVerificationException("Invalid character " + chars[i] + " in argument " +
-                                            "count " + "on line "
-                                            + li[i].line + " at column " + li[i].col);
-                            }
-                            break;
+                        insn = encode(OP_TABLE, table);
+                    }
+                    break;
 
-                        default:
-                            throw new ICVerificationException("Unknown opcode " + c + " " + "on line " + li[i].line +
-                                    " at column " + li[i].col);
+                    case 'c':
+                    case 't': {
+                        int n = 0;
+                        for (int j = 0; j < 2; j++) {
+                            char d = chars[++i];
+                            if (!(d >= '0' && d <= '9'))
+                                throw new ICVerificationException("Invalid character " + chars[i] + " in function" +
+                                        " number " + "on line "
+                                        + li[i].line + " at column " + li[i].col);
+                            n = n * 10 + parseNumber(d);
+                        }
+                        char d = chars[++i];
+                        if (!(d >= '0' && d <= '9'))
+                            throw new ICVerificationException("Invalid character " + chars[i] + " in argument " +
+                                    "count " + "on line "
+                                    + li[i].line + " at column " + li[i].col);
+                        insn = encode(c == 'c' ? OP_CALL : OP_TAIL_CALL, n << 4 | parseNumber(d));
                     }
-                } catch (ArrayIndexOutOfBoundsException e) {
-                    BukkitUtil.printStacktrace(e);
-                    i = li.length - 1;
-                    throw new ICVerificationException("Unexpected function end " + "around line " + li[i].line);
+                    break;
+
+                    default:
+                        throw new ICVerificationException("Unknown opcode " + c + " " + "on line " + li[i].line +
+                                " at column " + li[i].col);
                 }
+            } catch (ArrayIndexOutOfBoundsException e) {
+                // The code ended in the middle of an instruction.
+                i = li.length - 1;
+                throw new ICVerificationException("Unexpected function end " + "around line " + li[i].line);
             }
-            if (bracketCount != 0)
-                throw new ICVerificationException("Missing closing braces in function #" + l + " " + "               " +
-                        "           starting on line "
-                        + li[0].line + " and ending on line " + li[li.length - 1].line);
+            code[length] = insn;
+            symbols[length] = c;
+            lineInfo[length] = li[start];
+            length++;
+        }
+        if (bracketCount != 0)
+            throw new ICVerificationException("Missing closing braces in function #" + l + " " + "               " +
+                    "           starting on line "
+                    + li[0].line + " and ending on line " + li[li.length - 1].line);
+
+        return new PerlstoneFunction(Arrays.copyOf(code, length), Arrays.copyOf(symbols, length),
+                Arrays.copyOf(lineInfo, length));
+    }
+
+    private int encode(int opcode, int operand) {
+
+        return opcode | operand << 8;
+    }
+
+    private int decodeTable(char modifier, char opcode, LineInfo li) throws ICVerificationException {
+
+        switch (modifier) {
+            case 'p':
+            case 'P':
+                return TABLE_PERSISTENT;
+            case 't':
+            case 'T':
+            case 'r':
+            case 'R':
+                return TABLE_TEMP;
+            case 'l':
+            case 'L':
+                return TABLE_LOCAL;
+            default:
+                throw new ICVerificationException("Unknown modifier " + modifier + " to opcode "
+                        + opcode + " " + "on line "
+                        + li.line + " at column " + li.col);
         }
-        return functions;
     }
 
     @Override
@@ -263,24 +418,24 @@ public class Perlstone implements PlcLanguage<boolean[], WithLineInfo<String>[]>
     }
 
     @Override
-    public void execute(ChipState chip, boolean[] state, WithLineInfo<String>[] code) throws PlcException {
+    public void execute(ChipState chip, boolean[] state, PerlstoneFunction[] code) throws PlcException {
 
-        boolean[] tt = new boolean[32];
         boolean a = chip.getInputCount() > 0 && chip.getInput(0);
         boolean b = chip.getInputCount() > 1 && chip.getInput(1);
         boolean c = chip.getInputCount() > 2 && chip.getInput(2);
+        Execution exec = new Execution(a, b, c, packTable(state));
 
-        for (int i = 0; i < chip.getOutputCount(); i++) {
-            if (i < code.length) {
-                Boolean r = executeFunction(i, state, tt, code, a, b, c, new boolean[0], new int[1], 0);
-                if (r == null) {
-                    chip.setOutput(i, false);
+        try {
+            for (int i = 0; i < chip.getOutputCount(); i++) {
+                if (i < code.length) {
+                    exec.instructions = 0;
+                    chip.setOutput(i, executeFunction(i, code, exec, 0, 0, 0) == RESULT_TRUE);
                 } else {
-                    chip.setOutput(i, r);
+                    chip.setOutput(i, false);
                 }
-            } else {
-                chip.setOutput(i, false);
             }
+        } finally {
+            unpackTable(exec.pt, state);
         }
     }
 
@@ -290,50 +445,44 @@ public class Perlstone implements PlcLanguage<boolean[], WithLineInfo<String>[]>
         return false;
     }
 
-    private int mod(int a, int b) {
+    private int parseNumber(char c) {
 
-        return (a % b + b) % b;
+        return c - '0';
     }
 
-    private int decodeAddress(char c, int shift) {
+    private int packTable(boolean[] table) {
 
-        if (c >= '0' && c <= '9') return mod(c - '0' + shift, 32);
-        else return mod(c - 'a' + 10 + shift, 32);
+        int bits = 0;
+        for (int i = 0; i < table.length && i < 32; i++) {
+            if (table[i]) {
+                bits |= 1 << i;
+            }
+        }
+        return bits;
     }
 
-    private int parseNumber(char c) {
+    private void unpackTable(int bits, boolean[] table) {
 
-        return c - '0';
+        for (int i = 0; i < table.length && i < 32; i++) {
+            table[i] = (bits >>> i & 1) != 0;
+        }
     }
 
-    private boolean parseTableChar(char c) throws PlcException {
-
-        switch (c) {
-            case '+':
-                return true;
-            case '-':
-                return false;
-            case '1':
-                return true;
-            case '0':
-                return false;
+    private int address(int operand, int shift) {
 
-                // Shouldn't happen because of validation.
-            default:
-                throw new PlcException("invalid table", "Invalid character in logic table.");
-        }
+        if ((operand & ADDRESS_SHIFTED) == 0) return operand;
+        return ((operand & 31) + shift) & 31;
     }
 
-    private String errmsg(String err, int fno, char opcode, LineInfo li, boolean[] pt, boolean[] tt, boolean[] lt,
-            int pshift, int tshift,
-            int lshift, Stack<Boolean> stack, int tc) {
+    private String errmsg(String err, int fno, char opcode, LineInfo li, Execution exec, int lt, int pshift,
+            int tshift, int lshift, int base, int sp, int tc) {
 
         String errm = "";
         if (!err.startsWith(ChatColor.RED + "Detailed Error Message: ")) {
             errm += ChatColor.RED + "Detailed Error Message: " + ChatColor.RESET + err + "\n";
-            errm += ChatColor.RED + "Persistent Variable Table: \n " + ChatColor.RESET + dumpStateText(pt) + "\n";
+            errm += ChatColor.RED + "Persistent Variable Table: \n " + ChatColor.RESET + dumpStateText(exec.pt) + "\n";
             errm += ChatColor.RED + " - Shift: " + ChatColor.RESET + pshift + "\n";
-            errm += ChatColor.RED + "Temp Variable Table: \n " + ChatColor.RESET + dumpStateText(tt) + "\n";
+            errm += ChatColor.RED + "Temp Variable Table: \n " + ChatColor.RESET + dumpStateText(exec.tt) + "\n";
             errm += ChatColor.RED + " - Shift: " + ChatColor.RESET + tshift + "\n";
         } else {
             errm += err + "\n";
@@ -347,114 +496,82 @@ public class Perlstone implements PlcLanguage<boolean[], WithLineInfo<String>[]>
                 + fno + "\n";
         errm += ChatColor.RED + "Local Variable Table: \n " + ChatColor.RESET + dumpStateText(lt) + "\n";
         errm += ChatColor.RED + " - Shift: " + ChatColor.RESET + lshift + "\n";
-        errm += ChatColor.RED + "Function Stack: " + ChatColor.RESET + dumpStateText(stack.toArray(new Boolean[stack
-                                                                                                               .size()]));
+        errm += ChatColor.RED + "Function Stack: " + ChatColor.RESET + dumpStateText(exec.stack, base, sp);
         return errm;
     }
 
-    // Use wrapper type to be able to express "no return" as null
-    private Boolean executeFunction(int fno, boolean[] pt, boolean[] tt, WithLineInfo<String>[] funs, boolean a,
-            boolean b, boolean c,
-            boolean[] args, int[] opc, int rec) throws PlcException {
+    // Returns one of the RESULT_ constants so that "no return" can be told apart from false.
+    private int executeFunction(int fno, PerlstoneFunction[] funs, Execution exec, int base, int argc, int rec)
+            throws PlcException {
 
         int tailcalls = 0;
 
         // Wrap in an while(true) to allow the t opcode to be a tail call.
         outer:
             while (true) {
-                String fn = funs[fno].code;
-                LineInfo[] lis = funs[fno].lineInfo;
-                char[] code = fn.toCharArray();
-                int[] jt = new int[code.length]; // Jump table so that [ and ] aren't that messy
-                /* scope */
-                {
-                    Stack<Integer> bracketStack = new Stack<Integer>();
-                    for (int i = 0; i < code.length; i++) {
-                        char ch = code[i];
-                        if (ch == '[') {
-                            bracketStack.push(i);
-                        } else if (ch == ']') {
-                            int j = bracketStack.pop();
-                            jt[i] = j;
-                            jt[j] = i;
-                        }
-                    }
-                }
+                PerlstoneFunction fn = funs[fno];
+                int[] code = fn.code;
+                boolean[] stack = exec.stack;
 
+                // The arguments are already in place at the bottom of this function's part of the stack.
+                int sp = base + argc;
                 int ip = 0;
-                Stack<Boolean> executionStack = new Stack<Boolean>();
-                for (boolean arg1 : args) {
-                    executionStack.push(arg1);
-                }
-                boolean[] lt = new boolean[32];
+                int pc = -1;
+                int lt = 0;
                 int pshift = 0;
                 int tshift = 0;
                 int lshift = 0;
-                char op = '?';
 
-                LineInfo li = new LineInfo(0, 0);
                 try {
                     if (rec > MAX_RECURSION)
                         throw new PlcException("stack overflow", "Aborted due to too many recursive non-tail calls.");
                     try {
                         while (ip < code.length) {
-                            opc[0]++;
-                            if (opc[0] == MAX_INSTRUCTION_COUNT)
+                            exec.instructions++;
+                            if (exec.instructions == MAX_INSTRUCTION_COUNT)
                                 throw new PlcException("ran too long", "Aborted due to running too many instructions in " +
                                         "one update");
-                            if (executionStack.size() > MAX_STACK_SIZE)
+                            if (sp - base > MAX_STACK_SIZE)
                                 throw new PlcException("stack too big", "Aborted due to too many values pushed onto stack" +
                                         ".");
-                            op = code[ip];
-                            li = lis[ip];
+                            pc = ip;
+                            int insn = code[ip++];
+                            int op = insn & 0xFF;
+                            int operand = insn >> 8;
+                            if (sp - base < STACK_DEPTH[op])
+                                throw new PlcException("empty stack", "Popped while stack was empty.");
+
                             switch (op) {
-                                case '+':
-                                    executionStack.push(true);
+                                case OP_TRUE:
+                                    stack[sp++] = true;
                                     break;
-                                case '-':
-                                    executionStack.push(false);
+                                case OP_FALSE:
+                                    stack[sp++] = false;
                                     break;
 
-                                case 'A':
-                                    executionStack.push(a);
+                                case OP_A:
+                                    stack[sp++] = exec.a;
                                     break;
-                                case 'B':
-                                    executionStack.push(b);
+                                case OP_B:
+                                    stack[sp++] = exec.b;
                                     break;
-                                case 'C':
-                                    executionStack.push(c);
+                                case OP_C:
+                                    stack[sp++] = exec.c;
                                     break;
 
-                                case '<':
-                                case '>':
-                                case 'e': {
-                                    int mul = 1;
-                                    int add = 0;
-                                    switch (code[ip]) {
-                                        case '<':
-                                            add = -1;
-                                            break;
-                                        case '>':
-                                            add = +1;
-                                            break;
-                                        case 'e':
-                                            mul = 0;
-                                            break;
-                                        default:
-                                            break;
-                                    }
-
-                                    switch (code[++ip]) {
-                                        case 'p':
-                                        case 'P':
+                                case OP_DEC_SHIFT:
+                                case OP_INC_SHIFT:
+                                case OP_RESET_SHIFT: {
+                                    int mul = op == OP_RESET_SHIFT ? 0 : 1;
+                                    int add = op == OP_DEC_SHIFT ? -1 : op == OP_INC_SHIFT ? 1 : 0;
+                                    switch (operand) {
+                                        case TABLE_PERSISTENT:
                                             pshift = mul * pshift + add;
                                             break;
-                                        case 't':
-                                        case 'T':
+                                        case TABLE_TEMP:
                                             tshift = mul * tshift + add;
                                             break;
-                                        case 'l':
-                                        case 'L':
+                                        case TABLE_LOCAL:
                                             lshift = mul * lshift + add;
                                             break;
                                         default:
@@ -463,176 +580,160 @@ public class Perlstone implements PlcLanguage<boolean[], WithLineInfo<String>[]>
                                 }
                                 break;
 
-                                case 'S':
-                                case 'L': {
-                                    boolean[] table = null;
-                                    int shift = 0;
-
-                                    switch (code[++ip]) {
-                                        case 'p':
-                                            shift = pshift;
-                                        case 'P':
-                                            table = pt;
-                                            break;
-                                        case 't':
-                                            shift = tshift;
-                                        case 'T':
-                                            table = tt;
-                                            break;
-                                        case 'l':
-                                            shift = lshift;
-                                        case 'L':
-                                            table = lt;
-                                            break;
-                                        default:
-                                            break;
-                                    }
-                                    if(table == null)
-                                        break;
-
-                                    int add = decodeAddress(code[++ip], shift);
-                                    if (op == 'S')
-                                        table[add] = executionStack.pop();
-                                    else
-                                        executionStack.push(table[add]);
+                                case OP_LOAD_P:
+                                    stack[sp++] = (exec.pt >>> address(operand, pshift) & 1) != 0;
+                                    break;
+                                case OP_LOAD_T:
+                                    stack[sp++] = (exec.tt >>> address(operand, tshift) & 1) != 0;
+                                    break;
+                                case OP_LOAD_L:
+                                    stack[sp++] = (lt >>> address(operand, lshift) & 1) != 0;
+                                    break;
+                                case OP_STORE_P: {
+                                    int mask = 1 << address(operand, pshift);
+                                    exec.pt = stack[--sp] ? exec.pt | mask : exec.pt & ~mask;
+                                }
+                                break;
+                                case OP_STORE_T: {
+                                    int mask = 1 << address(operand, tshift);
+                                    exec.tt = stack[--sp] ? exec.tt | mask : exec.tt & ~mask;
+                                }
+                                break;
+                                case OP_STORE_L: {
+                                    int mask = 1 << address(operand, lshift);
+                                    lt = stack[--sp] ? lt | mask : lt & ~mask;
                                 }
                                 break;
 
-                                case 'd':
-                                    executionStack.push(executionStack.peek());
+                                case OP_DUP:
+                                    stack[sp] = stack[sp - 1];
+                                    sp++;
                                     break;
-                                case 'p':
-                                    executionStack.pop();
+                                case OP_POP:
+                                    sp--;
                                     break;
-                                case 'v':
-                                    try {
-                                        int level = parseNumber(code[++ip]);
-                                        executionStack.push(executionStack.get(executionStack.size() - 1 - level));
-                                    } catch (ArrayIndexOutOfBoundsException e) {
+                                case OP_PEEK:
+                                    if (operand >= sp - base)
                                         throw new PlcException("bad stack pos", "Attempted to call peek on too small a " +
                                                 "stack.");
-                                    }
-                                    break;
-                                case 'x':
-                                    boolean x = executionStack.pop();
-                                    boolean y = executionStack.pop();
-                                    executionStack.push(x);
-                                    executionStack.push(y);
-                                    break;
-                                default:
+                                    stack[sp] = stack[sp - 1 - operand];
+                                    sp++;
                                     break;
+                                case OP_SWAP: {
+                                    boolean x = stack[sp - 1];
+                                    stack[sp - 1] = stack[sp - 2];
+                                    stack[sp - 2] = x;
+                                }
+                                break;
 
-                                case '!':
-                                    executionStack.push(!executionStack.pop());
+                                case OP_NOT:
+                                    stack[sp - 1] = !stack[sp - 1];
                                     break;
-
-                                    // Using the short-circuiting versions would cause it to sometimes pop one less
-                                    // value than it should.
-                                case '^':
-                                    executionStack.push(executionStack.pop() ^ executionStack.pop());
+                                case OP_XOR:
+                                    sp--;
+                                    stack[sp - 1] ^= stack[sp];
                                     break;
-                                case '&':
-                                    executionStack.push(executionStack.pop() & executionStack.pop());
+                                case OP_AND:
+                                    sp--;
+                                    stack[sp - 1] &= stack[sp];
                                     break;
-                                case '|':
-                                    executionStack.push(executionStack.pop() | executionStack.pop());
+                                case OP_OR:
+                                    sp--;
+                                    stack[sp - 1] |= stack[sp];
                                     break;
-                                case '=':
-                                    executionStack.push(executionStack.pop() == executionStack.pop());
+                                case OP_EQ:
+                                    sp--;
+                                    stack[sp - 1] = stack[sp - 1] == stack[sp];
                                     break;
 
-                                case '.':
-                                    boolean ta = parseTableChar(code[++ip]);
-                                    boolean tb = parseTableChar(code[++ip]);
-                                    boolean tc = parseTableChar(code[++ip]);
-                                    boolean td = parseTableChar(code[++ip]);
-
-                                    boolean e = executionStack.pop();
-                                    boolean f = executionStack.pop();
-
-                                    if (!e && !f) {
-                                        executionStack.push(ta);
-                                    } else if (!e && f) {
-                                        executionStack.push(tb);
-                                    } else if (e && !f) {
-                                        executionStack.push(tc);
-                                    } else {
-                                        executionStack.push(td);
-                                    }
-                                    break;
+                                case OP_TABLE: {
+                                    boolean e = stack[--sp];
+                                    boolean f = stack[--sp];
+                                    stack[sp++] = (operand >>> ((e ? 2 : 0) | (f ? 1 : 0)) & 1) != 0;
+                                }
+                                break;
 
-                                case 'c':
-                                case 't':
-                                    int n = parseNumber(code[++ip]) * 10 + parseNumber(code[++ip]);
-                                    int nArgs = parseNumber(code[++ip]);
-                                    boolean[] arg = new boolean[nArgs];
+                                case OP_CALL:
+                                case OP_TAIL_CALL: {
+                                    int n = operand >> 4;
+                                    int nArgs = operand & 0xF;
 
-                                    if (n < 0 || n >= funs.length)
+                                    if (n >= funs.length)
                                         throw new PlcException("func not found", "Attempted to call nonexistent function " +
                                                 "#" + n);
-
-                                    if (op == 'c') {
-                                        for (int i = nArgs - 1; i >= 0; i--) {
-                                            arg[i] = executionStack.pop();
-                                        }
-                                        Boolean v = executeFunction(n, pt, tt, funs, a, b, c, arg, opc, rec + 1);
-                                        if (v != null) {
-                                            executionStack.push(v);
+                                    if (sp - base < nArgs)
+                                        throw new PlcException("empty stack", "Popped while stack was empty.");
+
+                                    sp -= nArgs;
+                                    if (op == OP_CALL) {
+                                        // The callee's frame starts at its arguments, directly above our own values.
+                                        exec.ensureCapacity(sp + MAX_STACK_SIZE + 1);
+                                        int v = executeFunction(n, funs, exec, sp, nArgs, rec + 1);
+                                        stack = exec.stack;
+                                        if (v != RESULT_NONE) {
+                                            stack[sp++] = v == RESULT_TRUE;
                                         }
                                         break;
                                     } else {
+                                        System.arraycopy(stack, sp, stack, base, nArgs);
                                         fno = n;
-                                        args = arg;
+                                        argc = nArgs;
                                         tailcalls++;
                                         continue outer;
                                     }
+                                }
 
-                                case '[':
-                                    if (!executionStack.pop()) {
-                                        ip = jt[ip];
+                                case OP_JUMP_IF_FALSE:
+                                    if (!stack[--sp]) {
+                                        ip = operand;
                                     }
                                     break;
-                                case ']':
-                                    if (executionStack.pop()) {
-                                        ip = jt[ip];
+                                case OP_JUMP_IF_TRUE:
+                                    if (stack[--sp]) {
+                                        ip = operand;
                                     }
                                     break;
 
-                                case 's':
-                                    return null;
-                                case 'r':
-                                    return executionStack.pop();
+                                case OP_STOP:
+                                    return RESULT_NONE;
+                                case OP_RETURN:
+                                    return stack[sp - 1] ? RESULT_TRUE : RESULT_FALSE;
+                                default:
+                                    break;
                             }
-                            ip++;
                         }
-                    } catch (EmptyStackException e) {
-                        throw new PlcException("empty stack", "Popped while stack was empty.");
                     } catch (StackOverflowError e) {
                         throw new PlcException("stack overflow", "Java stack overflow.");
                     }
                 } catch (PlcException e) {
-                    throw new PlcException(e.getMessage(), errmsg(e.detailedMessage, fno, op, li, pt, tt, lt, pshift,
-                            tshift, lshift, executionStack,
-                            tailcalls));
+                    char op = pc < 0 ? '?' : fn.symbols[pc];
+                    LineInfo li = pc < 0 ? NO_LINE : fn.lineInfo[pc];
+                    throw new PlcException(e.getMessage(), errmsg(e.detailedMessage, fno, op, li, exec, lt, pshift,
+                            tshift, lshift, base, sp, tailcalls));
                 }
-                return null;
+                return RESULT_NONE;
             }
     }
 
     private String dumpStateText(boolean[] state) {
 
-        char[] c = new char[state.length];
-        for (int i = 0; i < state.length; i++) {
-            c[i] = state[i] ? '1' : '0';
+        return dumpStateText(state, 0, state.length);
+    }
+
+    private String dumpStateText(boolean[] state, int from, int to) {
+
+        char[] c = new char[to - from];
+        for (int i = from; i < to; i++) {
+            c[i - from] = state[i] ? '1' : '0';
         }
         return new String(c);
     }
 
-    private String dumpStateText(Boolean[] state) {
+    private String dumpStateText(int table) {
 
-        char[] c = new char[state.length];
-        for (int i = 0; i < state.length; i++) {
-            c[i] = state[i] ? '1' : '0';
+        char[] c = new char[32];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = (table >>> i & 1) != 0 ? '1' : '0';
         }
         return new String(c);
     }
@@ -642,4 +743,34 @@ public class Perlstone implements PlcLanguage<boolean[], WithLineInfo<String>[]>
 
         return ChatColor.RED + "Persistent Variable Table: \n " + ChatColor.RESET + dumpStateText(state);
     }
+
+    /**
+     * Values shared by every function call made while evaluating a single chip.
+     */
+    private static class Execution {
+
+        public final boolean a;
+        public final boolean b;
+        public final boolean c;
+
+        public int pt;
+        public int tt;
+        public int instructions;
+        public boolean[] stack = new boolean[MAX_STACK_SIZE + 1];
+
+        Execution(boolean a, boolean b, boolean c, int pt) {
+
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.pt = pt;
+        }
+
+        public void ensureCapacity(int size) {
+
+            if (size > stack.length) {
+                stack = Arrays.copyOf(stack, Math.max(size, stack.length * 2));
+            }
+        }
+    }
 }
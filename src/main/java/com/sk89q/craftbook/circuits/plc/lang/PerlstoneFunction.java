@@ -0,0 +1,21 @@
+package com.sk89q.craftbook.circuits.plc.lang;
+
+/**
+ * A single Perlstone function compiled into a dense instruction array.
+ *
+ * Each instruction holds its opcode in the low 8 bits and its operand in the remaining bits. The source character
+ * and position of every instruction are kept alongside so that runtime errors can still point at the original code.
+ */
+class PerlstoneFunction {
+
+    public final int[] code;
+    public final char[] symbols;
+    public final LineInfo[] lineInfo;
+
+    PerlstoneFunction(int[] code, char[] symbols, LineInfo[] lineInfo) {
+
+        this.code = code;
+        this.symbols = symbols;
+        this.lineInfo = lineInfo;
+    }
+}
@@ -5,13 +5,20 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.minecraft.server.v1_7_R1.EntityPlayer;
 
 import org.bukkit.craftbukkit.v1_7_R1.entity.CraftPlayer;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.util.yaml.YAMLFormat;
@@ -20,11 +27,25 @@ import com.sk89q.util.yaml.YAMLProcessor;
 /**
  * @author Me4502
  */
-public class LanguageManager {
+public class LanguageManager implements Listener {
+
+    // How long a player's locale is trusted before it is read again, as the client can change it at any time.
+    private static final long LOCALE_REFRESH = 5000L;
+
+    private static Field localeField;
+    private static boolean localeFieldResolved = false;
 
     HashMap<String, YAMLProcessor> languageMap = new HashMap<String, YAMLProcessor>();
 
+    // The messages of each loaded language, with the defaults filled in, compiled once when the language is loaded.
+    private final HashMap<String, MessageTable> tables = new HashMap<String, MessageTable>();
+
+    private MessageTable defaultTable;
+
+    private final Map<String, CachedLocale> playerLocales = new ConcurrentHashMap<String, CachedLocale>();
+
     public void init() {
+        defaultTable = new MessageTable(defaultMessages);
         checkForLanguages();
     }
 
@@ -33,6 +54,8 @@ public class LanguageManager {
         for(YAMLProcessor proc : languageMap.values()) {
             proc.save();
         }
+        tables.clear();
+        playerLocales.clear();
     }
 
     public void checkForLanguages() {
@@ -63,69 +86,172 @@ public class LanguageManager {
                 lang.getString(s.getKey(), s.getValue());
 
             languageMap.put(language, lang);
+
+            Map<String, String> messages = new HashMap<String, String>(defaultMessages);
+            flatten(null, lang.getMap(), messages);
+            tables.put(language, new MessageTable(messages));
+        }
+    }
+
+    /**
+     * Collects every message of a language file, with its nested keys joined by dots.
+     */
+    private static void flatten(String prefix, Map<?, ?> node, Map<String, String> messages) {
+
+        if(node == null) return;
+        for(Entry<?, ?> entry : node.entrySet()) {
+            if(entry.getKey() == null || entry.getValue() == null) continue;
+            String key = prefix == null ? entry.getKey().toString() : prefix + "." + entry.getKey();
+            if(entry.getValue() instanceof Map)
+                flatten(key, (Map<?, ?>) entry.getValue(), messages);
+            else
+                messages.put(key, entry.getValue().toString());
         }
     }
 
     public String getString(String message, String language) {
 
         //message = ChatColor.stripColor(message);
-        if(language == null || !languageMap.containsKey(language))
+        if(message == null) return null;
+        if(language == null || !tables.containsKey(language))
             language = CraftBookPlugin.inst().getConfiguration().language;
-        YAMLProcessor languageData = languageMap.get(language);
-        String def = defaultMessages.get(message);
-        if(languageData == null) {
-            if(!CraftBookPlugin.inst().getConfiguration().languageScanText || def != null) {
-                return def == null ? message : def;
-            } else {
-                String trans = message;
-                for(Entry<String, String> tran : defaultMessages.entrySet()) {
-                    trans = trans.replace(tran.getKey(), tran.getValue());
-                }
-                return trans;
-            }
-        } else {
-            String translated = null;
-            if(def == null || languageData.getString(message) != null)
-                translated = languageData.getString(message);
-            else {
-                translated = languageData.getString(message, def);
-                languageMap.put(language, languageData);
-            }
+        MessageTable table = tables.get(language);
+        if(table == null)
+            table = defaultTable;
+
+        String translated = table.messages.get(message);
+        if(translated != null)
+            return translated;
+        if(!CraftBookPlugin.inst().getConfiguration().languageScanText)
+            return message;
+        return table.replaceAll(message);
+    }
 
-            if(!CraftBookPlugin.inst().getConfiguration().languageScanText || translated != null) {
-                if(translated != null)
-                    return translated;
-                else
-                    return def == null ? message : def;
-            } else {
-                String trans = message;
-                for(String tran : languageData.getMap().keySet()) {
-                    String trand = defaultMessages.get(tran) != null ? languageData.getString(tran, defaultMessages.get(tran)) : languageData.getString(tran);
-                    if(tran == null || trand == null) continue;
-                    trans = trans.replace(tran, trand);
-                    languageMap.put(language, languageData);
-                }
-                return trans;
-            }
+    public String getPlayersLanguage(Player p) {
+
+        CachedLocale cached = playerLocales.get(p.getName());
+        long now = System.currentTimeMillis();
+        if(cached == null || now - cached.resolved > LOCALE_REFRESH) {
+            cached = new CachedLocale(readLocale(p), now);
+            playerLocales.put(p.getName(), cached);
         }
+        return cached.locale;
     }
 
-    public String getPlayersLanguage(Player p) {
+    private static String readLocale(Player p) {
 
         try {
-            Field d = EntityPlayer.class.getDeclaredField("locale");
-            d.setAccessible(true);
-            return (String) d.get(((CraftPlayer) p).getHandle());
+            if(!localeFieldResolved) {
+                localeFieldResolved = true;
+                Field field = EntityPlayer.class.getDeclaredField("locale");
+                field.setAccessible(true);
+                localeField = field;
+            }
+            return (String) localeField.get(((CraftPlayer) p).getHandle());
         } catch (Throwable e) {
             return CraftBookPlugin.inst().getConfiguration().language;
         }
     }
 
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+
+        playerLocales.put(event.getPlayer().getName(), new CachedLocale(readLocale(event.getPlayer()), System.currentTimeMillis()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+
+        playerLocales.remove(event.getPlayer().getName());
+    }
+
     public Set<String> getLanguages() {
 
         return languageMap.keySet();
     }
 
+    private static final class CachedLocale {
+
+        private final String locale;
+        private final long resolved;
+
+        private CachedLocale(String locale, long resolved) {
+
+            this.locale = locale;
+            this.resolved = resolved;
+        }
+    }
+
+    /**
+     * The messages of a language, along with a trie of their keys so that every key in a piece of text can be
+     * replaced in a single pass over it.
+     */
+    private static final class MessageTable {
+
+        private final Map<String, String> messages;
+        private final KeyNode root = new KeyNode();
+
+        private MessageTable(Map<String, String> messages) {
+
+            this.messages = messages;
+            for(Entry<String, String> entry : messages.entrySet()) {
+                String key = entry.getKey();
+                if(key.isEmpty()) continue;
+                KeyNode node = root;
+                for(int i = 0; i < key.length(); i++) {
+                    Character c = key.charAt(i);
+                    KeyNode next = node.children.get(c);
+                    if(next == null) {
+                        next = new KeyNode();
+                        node.children.put(c, next);
+                    }
+                    node = next;
+                }
+                node.replacement = entry.getValue();
+            }
+        }
+
+        /**
+         * Replaces every key found in the text with its message, preferring the longest key at each position.
+         */
+        private String replaceAll(String text) {
+
+            StringBuilder builder = null;
+            int copied = 0;
+            int i = 0;
+            while(i < text.length()) {
+                KeyNode node = root;
+                String replacement = null;
+                int end = i;
+                for(int j = i; j < text.length(); j++) {
+                    node = node.children.get(text.charAt(j));
+                    if(node == null) break;
+                    if(node.replacement != null) {
+                        replacement = node.replacement;
+                        end = j + 1;
+                    }
+                }
+                if(replacement == null) {
+                    i++;
+                    continue;
+                }
+                if(builder == null)
+                    builder = new StringBuilder(text.length() + 16);
+                builder.append(text, copied, i).append(replacement);
+                i = copied = end;
+            }
+            if(builder == null)
+                return text;
+            return builder.append(text, copied, text.length()).toString();
+        }
+    }
+
+    private static final class KeyNode {
+
+        private final Map<Character, KeyNode> children = new HashMap<Character, KeyNode>(4);
+        private String replacement;
+    }
+
     @SuppressWarnings("serial")
     public static final HashMap<String, String> defaultMessages = new HashMap<String, String>(32, 1.0f) {{
         put("area.permissions", "You don't have permissions to do that in this area!");
@@ -2,6 +2,8 @@ package com.sk89q.craftbook.common;
 
 import java.io.File;
 import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map.Entry;
 
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
@@ -29,11 +31,23 @@ public class VariableManager extends AbstractCraftBookMechanic {
      */
     protected HashMap<Tuple2<String, String>, String> variableStore;
 
+    /**
+     * The same variables as variableStore, keyed by lower case name and namespace.
+     */
+    protected HashMap<Tuple2<String, String>, String> lowerCaseStore;
+
+    /**
+     * Incremented whenever any variable changes.
+     */
+    private static volatile int version = 0;
+
     @Override
     public boolean enable() {
 
         instance = this;
         variableStore = new HashMap<Tuple2<String, String>, String>();
+        lowerCaseStore = new HashMap<Tuple2<String, String>, String>();
+        version++;
         CraftBookPlugin.logDebugMessage("Initializing Variables!", "startup.variables");
 
         try {
@@ -58,6 +72,8 @@ public class VariableManager extends AbstractCraftBookMechanic {
             variableConfiguration = null;
         }
         variableStore.clear();
+        lowerCaseStore.clear();
+        version++;
         instance = null;
     }
 
@@ -71,14 +87,56 @@ public class VariableManager extends AbstractCraftBookMechanic {
         return variableStore.get(new Tuple2<String, String>(variable, namespace));
     }
 
+    /**
+     * Gets a variable, ignoring the case of the name and namespace.
+     * 
+     * @param variable The variable name
+     * @param namespace The namespace
+     * @return The value, or null if there is no such variable.
+     */
+    public String getVariableIgnoreCase(String variable, String namespace) {
+
+        return lowerCaseStore.get(toLowerCase(variable, namespace));
+    }
+
     public String setVariable(String variable, String namespace, String value) {
 
+        version++;
+        lowerCaseStore.put(toLowerCase(variable, namespace), value);
         return variableStore.put(new Tuple2<String, String>(variable, namespace), value);
     }
 
     public String removeVariable(String variable, String namespace) {
 
-        return variableStore.remove(new Tuple2<String, String>(variable, namespace));
+        version++;
+        String old = variableStore.remove(new Tuple2<String, String>(variable, namespace));
+        if(old != null) {
+            Tuple2<String, String> lowerCase = toLowerCase(variable, namespace);
+            lowerCaseStore.remove(lowerCase);
+            // Another variable may only differ from this one by case.
+            for(Entry<Tuple2<String, String>, String> var : variableStore.entrySet()) {
+                if(toLowerCase(var.getKey().a, var.getKey().b).equals(lowerCase)) {
+                    lowerCaseStore.put(lowerCase, var.getValue());
+                    break;
+                }
+            }
+        }
+        return old;
+    }
+
+    /**
+     * Gets a number that changes whenever any variable is set or removed.
+     * 
+     * @return The current variable version.
+     */
+    public static int getVersion() {
+
+        return version;
+    }
+
+    private static Tuple2<String, String> toLowerCase(String variable, String namespace) {
+
+        return new Tuple2<String, String>(variable.toLowerCase(Locale.ENGLISH), namespace.toLowerCase(Locale.ENGLISH));
     }
 
     public HashMap<Tuple2<String, String>, String> getVariableStore() {
@@ -3,16 +3,19 @@ package com.sk89q.craftbook.mech;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.entity.Projectile;
 import org.bukkit.event.Cancellable;
@@ -37,6 +40,7 @@ import org.bukkit.event.player.PlayerPickupItemEvent;
 import org.bukkit.event.player.PlayerRespawnEvent;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.permissions.PermissionAttachment;
+import org.bukkit.scheduler.BukkitTask;
 
 import com.sk89q.craftbook.AbstractCraftBookMechanic;
 import com.sk89q.craftbook.LocalPlayer;
@@ -61,7 +65,19 @@ public class CommandItems extends AbstractCraftBookMechanic {
 
     private Set<CommandItemDefinition> definitions;
 
-    private Map<Tuple2<String, String>, Integer> cooldownPeriods;
+    /**
+     * The definitions that can be triggered by each kind of event.
+     */
+    private Map<EventKind, DefinitionIndex> indexes;
+
+    /**
+     * The definitions that keep their item on death.
+     */
+    private DefinitionIndex deathIndex;
+
+    private CooldownWheel cooldowns;
+
+    private BukkitTask cooldownTask;
 
     public CommandItemDefinition getDefinitionByName(String name) {
 
@@ -74,8 +90,13 @@ public class CommandItems extends AbstractCraftBookMechanic {
 
     @Override
     public void disable () {
+        if(cooldownTask != null)
+            cooldownTask.cancel();
+        cooldownTask = null;
         definitions = null;
-        cooldownPeriods = null;
+        indexes = null;
+        deathIndex = null;
+        cooldowns = null;
         config = null;
         INSTANCE = null;
     }
@@ -86,7 +107,11 @@ public class CommandItems extends AbstractCraftBookMechanic {
         INSTANCE = this;
 
         definitions = new HashSet<CommandItemDefinition>();
-        cooldownPeriods = new HashMap<Tuple2<String, String>, Integer>();
+        indexes = new EnumMap<EventKind, DefinitionIndex>(EventKind.class);
+        for(EventKind kind : EventKind.values())
+            indexes.put(kind, new DefinitionIndex());
+        deathIndex = new DefinitionIndex();
+        cooldowns = new CooldownWheel();
 
         CraftBookPlugin.inst().createDefaultConfiguration(new File(CraftBookPlugin.inst().getDataFolder(), "command-items.yml"), "command-items.yml");
         if(!new File(CraftBookPlugin.inst().getDataFolder(), "command-items.yml").exists()) try {
@@ -120,24 +145,17 @@ public class CommandItems extends AbstractCraftBookMechanic {
 
         CraftBookPlugin.logger().info("Successfully added " + amount + " CommandItems!");
 
-        if(definitions.size() > 0)
-            Bukkit.getScheduler().runTaskTimer(CraftBookPlugin.inst(), new Runnable() {
+        if(definitions.size() > 0) {
+            final CooldownWheel wheel = cooldowns;
+            cooldownTask = Bukkit.getScheduler().runTaskTimer(CraftBookPlugin.inst(), new Runnable() {
 
                 @Override
                 public void run () {
 
-                    Iterator<Entry<Tuple2<String, String>, Integer>> iterator = cooldownPeriods.entrySet().iterator();
-
-                    while(iterator.hasNext()) {
-
-                        Entry<Tuple2<String, String>, Integer> entry = iterator.next();
-                        if(entry.getValue() > 1)
-                            cooldownPeriods.put(entry.getKey(), entry.getValue() - 1);
-                        else
-                            iterator.remove();
-                    }
+                    wheel.advance();
                 }
             }, 1, 20);
+        }
 
         if(CraftBookPlugin.inst().getPersistentStorage().get("command-items.death-items") == null)
             CraftBookPlugin.inst().getPersistentStorage().set("command-items.death-items", new HashMap<String, List<ItemStack>>());
@@ -147,7 +165,14 @@ public class CommandItems extends AbstractCraftBookMechanic {
 
     public boolean addDefinition(CommandItemDefinition def) {
 
-        return definitions.add(def);
+        if(!definitions.add(def))
+            return false;
+
+        for(EventKind kind : getEventKinds(def.clickType))
+            indexes.get(kind).add(def);
+        if(def.keepOnDeath)
+            deathIndex.add(def);
+        return true;
     }
 
     public void save() {
@@ -268,8 +293,8 @@ public class CommandItems extends AbstractCraftBookMechanic {
         while(stackIt.hasNext()) {
             final ItemStack stack = stackIt.next();
             performCommandItems(stack, event.getEntity(), event);
-            for(CommandItemDefinition def : definitions) {
-                if(ItemUtil.areItemsIdentical(stack, def.getItem()) && def.keepOnDeath) {
+            for(CommandItemDefinition def : deathIndex.get(stack)) {
+                if(ItemUtil.areItemsIdentical(stack, def.getItem())) {
                     stackIt.remove();
                     Map<String, List<ItemStack>> items = (Map<String, List<ItemStack>>) CraftBookPlugin.inst().getPersistentStorage().get("command-items.death-items");
                     List<ItemStack> its = items.get(event.getEntity().getName());
@@ -277,6 +302,7 @@ public class CommandItems extends AbstractCraftBookMechanic {
                     its.add(stack);
                     items.put(event.getEntity().getName(), its);
                     CraftBookPlugin.inst().getPersistentStorage().set("command-items.death-items", items);
+                    break;
                 }
             }
         }
@@ -318,81 +344,12 @@ public class CommandItems extends AbstractCraftBookMechanic {
 
         LocalPlayer lplayer = CraftBookPlugin.inst().wrapPlayer(player);
 
-        for(CommandItemDefinition def : definitions) {
+        // Only definitions for this kind of event and this item are looked at.
+        for(CommandItemDefinition def : indexes.get(EventKind.of(event)).get(item)) {
             current: {
             if(ItemUtil.areItemsIdentical(def.stack, item)) {
                 final CommandItemDefinition comdef = def;
 
-                if(comdef.clickType != ClickType.ANY) {
-
-                    //Mouse
-
-                    if(comdef.clickType == ClickType.CLICK_RIGHT && (!(event instanceof PlayerInteractEvent) || !(((PlayerInteractEvent) event).getAction() == Action.RIGHT_CLICK_AIR || ((PlayerInteractEvent) event).getAction() == Action.RIGHT_CLICK_BLOCK)))
-                        break current;
-
-                    if(comdef.clickType == ClickType.CLICK_LEFT && (!(event instanceof PlayerInteractEvent) || !(((PlayerInteractEvent) event).getAction() == Action.LEFT_CLICK_AIR || ((PlayerInteractEvent) event).getAction() == Action.LEFT_CLICK_BLOCK)))
-                        break current;
-
-                    if(comdef.clickType == ClickType.CLICK_EITHER && (!(event instanceof PlayerInteractEvent) || !(((PlayerInteractEvent) event).getAction() == Action.LEFT_CLICK_AIR || ((PlayerInteractEvent) event).getAction() == Action.LEFT_CLICK_BLOCK || ((PlayerInteractEvent) event).getAction() == Action.RIGHT_CLICK_AIR || ((PlayerInteractEvent) event).getAction() == Action.RIGHT_CLICK_BLOCK)))
-                        break current;
-
-                    //Entity
-
-                    if(comdef.clickType == ClickType.ENTITY_RIGHT && !(event instanceof PlayerInteractEntityEvent))
-                        break current;
-
-                    if(comdef.clickType == ClickType.ENTITY_LEFT && (!(event instanceof EntityDamageByEntityEvent) || !(((EntityDamageByEntityEvent) event).getDamager() instanceof Player)))
-                        break current;
-
-                    if(comdef.clickType == ClickType.ENTITY_EITHER && !(event instanceof PlayerInteractEntityEvent) && (!(event instanceof EntityDamageByEntityEvent) || !(((EntityDamageByEntityEvent) event).getDamager() instanceof Player)))
-                        break current;
-
-                    if(comdef.clickType == ClickType.ENTITY_ARROW && (!(event instanceof EntityDamageByEntityEvent) || !(((EntityDamageByEntityEvent) event).getDamager() instanceof Projectile)))
-                        break current;
-
-                    //Block
-
-                    if(comdef.clickType == ClickType.BLOCK_BREAK && !(event instanceof BlockBreakEvent))
-                        break current;
-
-                    if(comdef.clickType == ClickType.BLOCK_PLACE && !(event instanceof BlockPlaceEvent))
-                        break current;
-
-                    if(comdef.clickType == ClickType.BLOCK_EITHER && !(event instanceof BlockPlaceEvent) && !(event instanceof BlockBreakEvent))
-                        break current;
-
-                    //Item
-
-                    if(comdef.clickType == ClickType.ITEM_CONSUME && !(event instanceof PlayerItemConsumeEvent))
-                        break current;
-
-                    if(comdef.clickType == ClickType.ITEM_DROP && !(event instanceof PlayerDropItemEvent))
-                        break current;
-
-                    if(comdef.clickType == ClickType.ITEM_BREAK && !(event instanceof PlayerItemBreakEvent))
-                        break current;
-
-                    if(comdef.clickType == ClickType.ITEM_PICKUP && !(event instanceof PlayerPickupItemEvent))
-                        break current;
-
-                    if((comdef.clickType == ClickType.ITEM_CLICK_EITHER || comdef.clickType == ClickType.ITEM_CLICK_LEFT || comdef.clickType == ClickType.ITEM_CLICK_RIGHT) && !(event instanceof InventoryClickEvent))
-                        break current;
-                    else if (event instanceof InventoryClickEvent) {
-                        if(comdef.clickType == ClickType.ITEM_CLICK_LEFT && !((InventoryClickEvent) event).getClick().isLeftClick())
-                            break current;
-                        else if(comdef.clickType == ClickType.ITEM_CLICK_RIGHT && !((InventoryClickEvent) event).getClick().isRightClick())
-                            break current;
-                    }
-
-                    //Player
-
-                    if(comdef.clickType == ClickType.PLAYER_DEATH && !(event instanceof PlayerDeathEvent))
-                        break current;
-
-                    if(comdef.clickType == ClickType.PLAYER_CHAT && !(event instanceof AsyncPlayerChatEvent))
-                        break current;
-                }
-
                 if(comdef.requireSneaking == TernaryState.TRUE && !lplayer.isSneaking())
                     break current;
                 if(comdef.requireSneaking == TernaryState.FALSE && lplayer.isSneaking())
@@ -404,8 +361,9 @@ public class CommandItems extends AbstractCraftBookMechanic {
                     break current;
                 }
 
-                if(cooldownPeriods.containsKey(new Tuple2<String, String>(lplayer.getName(), comdef.name))) {
-                    lplayer.printError(lplayer.translate("mech.command-items.wait") + " " + cooldownPeriods.get(new Tuple2<String, String>(lplayer.getName(), comdef.name)) + " " + lplayer.translate("mech.command-items.wait-seconds"));
+                int remaining = cooldowns.getRemaining(lplayer.getName(), comdef.name);
+                if(remaining > 0) {
+                    lplayer.printError(lplayer.translate("mech.command-items.wait") + " " + remaining + " " + lplayer.translate("mech.command-items.wait-seconds"));
                     break current;
                 }
 
@@ -434,7 +392,7 @@ public class CommandItems extends AbstractCraftBookMechanic {
                     doCommand(command, event, comdef, player);
 
                 if(comdef.cooldown > 0 && !lplayer.hasPermission("craftbook.mech.commanditems.bypasscooldown"))
-                    cooldownPeriods.put(new Tuple2<String, String>(lplayer.getName(), comdef.name), comdef.cooldown);
+                    cooldowns.start(lplayer.getName(), comdef.name, comdef.cooldown);
 
                 if(comdef.delayedCommands.length > 0)
                     Bukkit.getScheduler().runTaskLater(CraftBookPlugin.inst(), new Runnable() {
@@ -488,6 +446,257 @@ public class CommandItems extends AbstractCraftBookMechanic {
         }
     }
 
+    /**
+     * Gets the kinds of event that can trigger a definition with the given click type.
+     */
+    private static EventKind[] getEventKinds(ClickType clickType) {
+
+        switch(clickType) {
+            case CLICK_LEFT:
+                return new EventKind[] {EventKind.CLICK_LEFT};
+            case CLICK_RIGHT:
+                return new EventKind[] {EventKind.CLICK_RIGHT};
+            case CLICK_EITHER:
+                return new EventKind[] {EventKind.CLICK_LEFT, EventKind.CLICK_RIGHT};
+            case ENTITY_RIGHT:
+                return new EventKind[] {EventKind.ENTITY_INTERACT};
+            case ENTITY_LEFT:
+                return new EventKind[] {EventKind.ENTITY_DAMAGE};
+            case ENTITY_ARROW:
+                return new EventKind[] {EventKind.ENTITY_SHOOT};
+            case ENTITY_EITHER:
+                return new EventKind[] {EventKind.ENTITY_INTERACT, EventKind.ENTITY_DAMAGE};
+            case BLOCK_BREAK:
+                return new EventKind[] {EventKind.BLOCK_BREAK};
+            case BLOCK_PLACE:
+                return new EventKind[] {EventKind.BLOCK_PLACE};
+            case BLOCK_EITHER:
+                return new EventKind[] {EventKind.BLOCK_BREAK, EventKind.BLOCK_PLACE};
+            case ITEM_CONSUME:
+                return new EventKind[] {EventKind.ITEM_CONSUME};
+            case ITEM_DROP:
+                return new EventKind[] {EventKind.ITEM_DROP};
+            case ITEM_BREAK:
+                return new EventKind[] {EventKind.ITEM_BREAK};
+            case ITEM_PICKUP:
+                return new EventKind[] {EventKind.ITEM_PICKUP};
+            case ITEM_CLICK_LEFT:
+                return new EventKind[] {EventKind.INVENTORY_LEFT};
+            case ITEM_CLICK_RIGHT:
+                return new EventKind[] {EventKind.INVENTORY_RIGHT};
+            case ITEM_CLICK_EITHER:
+                return new EventKind[] {EventKind.INVENTORY_LEFT, EventKind.INVENTORY_RIGHT, EventKind.INVENTORY_OTHER};
+            case PLAYER_DEATH:
+                return new EventKind[] {EventKind.PLAYER_DEATH};
+            case PLAYER_CHAT:
+                return new EventKind[] {EventKind.PLAYER_CHAT};
+            default:
+                return EventKind.values();
+        }
+    }
+
+    /**
+     * Gets a key that is the same for all items that are identical by {@link ItemUtil#areItemsIdentical}, made of the
+     * material, the data and the display name. Lore and enchantments are left to areItemsIdentical.
+     *
+     * @param item The item.
+     * @return The key, or null if the data or display name of the item matches anything.
+     */
+    private static String getItemKey(ItemStack item) {
+
+        byte data = item.getData().getData();
+        if(data < 0)
+            return null;
+
+        String name = "";
+        if(item.hasItemMeta() && item.getItemMeta().hasDisplayName()) {
+            name = item.getItemMeta().getDisplayName();
+            if(name.equalsIgnoreCase("$IGNORE"))
+                return null;
+            name = ChatColor.translateAlternateColorCodes('&', ItemUtil.stripResetChar(name.trim().replace("'", "")));
+        }
+
+        return item.getType().ordinal() + ":" + data + ":" + name;
+    }
+
+    /**
+     * The kinds of event that definitions can be triggered by.
+     */
+    private enum EventKind {
+
+        CLICK_LEFT,CLICK_RIGHT,ENTITY_INTERACT,ENTITY_DAMAGE,ENTITY_SHOOT,BLOCK_BREAK,BLOCK_PLACE,ITEM_CONSUME,ITEM_DROP,ITEM_BREAK,ITEM_PICKUP,INVENTORY_LEFT,INVENTORY_RIGHT,INVENTORY_OTHER,PLAYER_DEATH,PLAYER_CHAT,OTHER;
+
+        public static EventKind of(Event event) {
+
+            if(event instanceof PlayerInteractEvent) {
+                Action action = ((PlayerInteractEvent) event).getAction();
+                if(action == Action.LEFT_CLICK_AIR || action == Action.LEFT_CLICK_BLOCK)
+                    return CLICK_LEFT;
+                if(action == Action.RIGHT_CLICK_AIR || action == Action.RIGHT_CLICK_BLOCK)
+                    return CLICK_RIGHT;
+            } else if(event instanceof PlayerInteractEntityEvent)
+                return ENTITY_INTERACT;
+            else if(event instanceof EntityDamageByEntityEvent) {
+                if(((EntityDamageByEntityEvent) event).getDamager() instanceof Player)
+                    return ENTITY_DAMAGE;
+                if(((EntityDamageByEntityEvent) event).getDamager() instanceof Projectile)
+                    return ENTITY_SHOOT;
+            } else if(event instanceof BlockBreakEvent)
+                return BLOCK_BREAK;
+            else if(event instanceof BlockPlaceEvent)
+                return BLOCK_PLACE;
+            else if(event instanceof PlayerItemConsumeEvent)
+                return ITEM_CONSUME;
+            else if(event instanceof PlayerDropItemEvent)
+                return ITEM_DROP;
+            else if(event instanceof PlayerItemBreakEvent)
+                return ITEM_BREAK;
+            else if(event instanceof PlayerPickupItemEvent)
+                return ITEM_PICKUP;
+            else if(event instanceof InventoryClickEvent) {
+                if(((InventoryClickEvent) event).getClick().isLeftClick())
+                    return INVENTORY_LEFT;
+                if(((InventoryClickEvent) event).getClick().isRightClick())
+                    return INVENTORY_RIGHT;
+                return INVENTORY_OTHER;
+            } else if(event instanceof PlayerDeathEvent)
+                return PLAYER_DEATH;
+            else if(event instanceof AsyncPlayerChatEvent)
+                return PLAYER_CHAT;
+            return OTHER;
+        }
+    }
+
+    /**
+     * Definitions keyed by the item they are used with.
+     */
+    private static final class DefinitionIndex {
+
+        // Definitions keyed by the item key of their item.
+        private final Map<String, List<CommandItemDefinition>> exact = new HashMap<String, List<CommandItemDefinition>>();
+
+        // Definitions whose item matches any data or any name, keyed by material.
+        private final Map<Material, List<CommandItemDefinition>> wildcard = new EnumMap<Material, List<CommandItemDefinition>>(Material.class);
+
+        // All definitions, keyed by material.
+        private final Map<Material, List<CommandItemDefinition>> all = new EnumMap<Material, List<CommandItemDefinition>>(Material.class);
+
+        public void add(CommandItemDefinition def) {
+
+            if(!ItemUtil.isStackValid(def.stack))
+                return;
+
+            String key = getItemKey(def.stack);
+            if(key == null)
+                add(wildcard, def.stack.getType(), def);
+            else {
+                List<CommandItemDefinition> defs = exact.get(key);
+                if(defs == null) {
+                    defs = new ArrayList<CommandItemDefinition>(1);
+                    exact.put(key, defs);
+                }
+                defs.add(def);
+            }
+            add(all, def.stack.getType(), def);
+        }
+
+        private static void add(Map<Material, List<CommandItemDefinition>> map, Material type, CommandItemDefinition def) {
+
+            List<CommandItemDefinition> defs = map.get(type);
+            if(defs == null) {
+                defs = new ArrayList<CommandItemDefinition>(1);
+                map.put(type, defs);
+            }
+            defs.add(def);
+        }
+
+        /**
+         * Gets the definitions that may be used with an item. These still have to be compared to the item.
+         */
+        public List<CommandItemDefinition> get(ItemStack item) {
+
+            if(!ItemUtil.isStackValid(item))
+                return Collections.emptyList();
+
+            String key = getItemKey(item);
+            List<CommandItemDefinition> defs = key == null ? all.get(item.getType()) : exact.get(key);
+            if(key != null) {
+                List<CommandItemDefinition> wild = wildcard.get(item.getType());
+                if(wild != null) {
+                    if(defs == null)
+                        defs = wild;
+                    else {
+                        defs = new ArrayList<CommandItemDefinition>(defs);
+                        defs.addAll(wild);
+                    }
+                }
+            }
+            return defs == null ? Collections.<CommandItemDefinition>emptyList() : defs;
+        }
+    }
+
+    /**
+     * Remembers when the cooldown of each player and definition runs out. Cooldowns are counted in seconds, and kept
+     * in a wheel of slots by the second they run out on, so that each second only the cooldowns running out are looked
+     * at.
+     */
+    private static final class CooldownWheel {
+
+        private static final int WHEEL_SIZE = 64;
+        private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+        private final Map<Tuple2<String, String>, Long> expiries = new HashMap<Tuple2<String, String>, Long>();
+
+        private final List<Tuple2<String, String>>[] wheel;
+
+        private long currentSecond = 0;
+
+        @SuppressWarnings("unchecked")
+        public CooldownWheel() {
+
+            wheel = new List[WHEEL_SIZE];
+            for(int i = 0; i < WHEEL_SIZE; i++)
+                wheel[i] = new ArrayList<Tuple2<String, String>>();
+        }
+
+        // Chat events are fired off the main thread.
+        public synchronized int getRemaining(String player, String definition) {
+
+            Long expiry = expiries.get(new Tuple2<String, String>(player, definition));
+            return expiry == null || expiry <= currentSecond ? 0 : (int) (expiry - currentSecond);
+        }
+
+        public synchronized void start(String player, String definition, int seconds) {
+
+            Tuple2<String, String> key = new Tuple2<String, String>(player, definition);
+            long expiry = currentSecond + seconds;
+            expiries.put(key, expiry);
+            wheel[(int) (expiry & WHEEL_MASK)].add(key);
+        }
+
+        public synchronized void advance() {
+
+            currentSecond++;
+
+            int slot = (int) (currentSecond & WHEEL_MASK);
+            List<Tuple2<String, String>> due = wheel[slot];
+            if(due.isEmpty())
+                return;
+            wheel[slot] = new ArrayList<Tuple2<String, String>>();
+
+            for(Tuple2<String, String> key : due) {
+                Long expiry = expiries.get(key);
+                if(expiry == null || (int) (expiry & WHEEL_MASK) != slot)
+                    continue;
+                if(expiry > currentSecond)
+                    // Runs out on a later rotation of the wheel.
+                    wheel[slot].add(key);
+                else
+                    expiries.remove(key);
+            }
+        }
+    }
+
     public static class CommandItemDefinition {
 
         private String name;
@@ -16,24 +16,35 @@
 
 package com.sk89q.craftbook.mech;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import org.bukkit.Bukkit;
 import org.bukkit.GameMode;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.OfflinePlayer;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.block.Action;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.event.block.SignChangeEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 import org.bukkit.material.Button;
 import org.bukkit.scheduler.BukkitTask;
 import org.bukkit.util.Vector;
@@ -45,6 +56,7 @@ import com.sk89q.craftbook.bukkit.BukkitPlayer;
 import com.sk89q.craftbook.bukkit.BukkitVehicle;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.BukkitUtil;
+import com.sk89q.craftbook.util.LocationUtil;
 import com.sk89q.craftbook.util.RegexUtil;
 import com.sk89q.craftbook.util.SignUtil;
 import com.sk89q.worldedit.blocks.BlockType;
@@ -52,6 +64,9 @@ import com.sk89q.worldedit.blocks.BlockType;
 /**
  * The default elevator mechanism -- wall signs in a vertical column that teleport the player vertically when triggered.
  *
+ * The heights of the lifts in each column are cached, and smooth movement of every player is driven by one shared task,
+ * so that any amount of elevators can be used at the same time.
+ *
  * @author sk89q
  * @author hash
  */
@@ -60,12 +75,21 @@ public class Elevator extends AbstractCraftBookMechanic {
     @Override
     public boolean enable() {
         flyingPlayers = new HashSet<String>();
+        movements = new HashMap<String, Movement>();
+        floors = new HashMap<World, Map<Long, Map<Long, int[]>>>();
         return true;
     }
 
     @Override
     public void disable() {
 
+        if(task != null) {
+            task.cancel();
+            task = null;
+        }
+        movements = null;
+        floors = null;
+
         Iterator<String> it = flyingPlayers.iterator();
         while(it.hasNext()) {
             OfflinePlayer op = Bukkit.getOfflinePlayer(it.next());
@@ -84,6 +108,8 @@ public class Elevator extends AbstractCraftBookMechanic {
     @EventHandler
     public void onPlayerLeave(PlayerQuitEvent event) {
 
+        movements.remove(event.getPlayer().getName());
+
         //Clean up mechanics that store players that we don't want anymore.
         Iterator<String> it = flyingPlayers.iterator();
         while(it.hasNext()) {
@@ -134,6 +160,45 @@ public class Elevator extends AbstractCraftBookMechanic {
         }
     }
 
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onSignChanged(SignChangeEvent event) {
+
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockPlace(BlockPlaceEvent event) {
+
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockBreak(BlockBreakEvent event) {
+
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onEntityExplode(EntityExplodeEvent event) {
+
+        for(Block block : event.blockList())
+            invalidate(block);
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+
+        Map<Long, Map<Long, int[]>> chunks = floors.get(event.getWorld());
+        if(chunks != null)
+            chunks.remove(LocationUtil.packChunkPosition(event.getChunk().getX(), event.getChunk().getZ()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldUnload(WorldUnloadEvent event) {
+
+        floors.remove(event.getWorld());
+    }
+
     public static enum Direction {
         NONE, UP, DOWN, RECV
     }
@@ -161,48 +226,18 @@ public class Elevator extends AbstractCraftBookMechanic {
         // find destination sign
         BlockFace shift = dir == Direction.UP ? BlockFace.UP : BlockFace.DOWN;
         int f = dir == Direction.UP ? event.getClickedBlock().getWorld().getMaxHeight() : 0;
-        Block destination = event.getClickedBlock();
         // heading up from top or down from bottom
-        if (destination.getY() == f) {
+        if (event.getClickedBlock().getY() == f) {
             localPlayer.printError("mech.lift.no-destination");
             return;
         }
-        boolean loopd = false;
-        while (true) {
-            destination = destination.getRelative(shift);
-            Direction derp = isLift(destination);
-            if (derp != Direction.NONE && isValidLift(BukkitUtil.toChangedSign(event.getClickedBlock()), BukkitUtil.toChangedSign(destination)))
-                break; // found it!
-
-            if (destination.getY() == event.getClickedBlock().getY()) {
-                localPlayer.printError("mech.lift.no-destination");
-                return;
-            }
-            if (CraftBookPlugin.inst().getConfiguration().elevatorLoop && !loopd) {
-                if (destination.getY() == event.getClickedBlock().getWorld().getMaxHeight()) { // hit the top of the world
-                    org.bukkit.Location low = destination.getLocation();
-                    low.setY(0);
-                    destination = destination.getWorld().getBlockAt(low);
-                    loopd = true;
-                } else if (destination.getY() == 0) { // hit the bottom of the world
-                    org.bukkit.Location low = destination.getLocation();
-                    low.setY(event.getClickedBlock().getWorld().getMaxHeight());
-                    destination = destination.getWorld().getBlockAt(low);
-                    loopd = true;
-                }
-            } else {
-                if (destination.getY() == event.getClickedBlock().getWorld().getMaxHeight()) {
-                    localPlayer.printError("mech.lift.no-destination");
-                    return;
-                }
-                else if (destination.getY() == 0) {
-                    localPlayer.printError("mech.lift.no-destination");
-                    return;
-                }
-            }
+        Block destination = findDestination(event.getClickedBlock(), dir == Direction.UP);
+        if (destination == null) {
+            localPlayer.printError("mech.lift.no-destination");
+            return;
         }
 
-        if(task != null) {
+        if(movements.containsKey(event.getPlayer().getName())) {
             localPlayer.printError("mech.lift.busy");
             return;
         }
@@ -219,6 +254,113 @@ public class Elevator extends AbstractCraftBookMechanic {
         event.setCancelled(true);
     }
 
+    /**
+     * Finds the lift that a lift sends players to.
+     *
+     * @param lift The sign or button that was used
+     * @param up Whether to look above or below the lift
+     * @return The destination lift, or null if there is none
+     */
+    private Block findDestination(Block lift, boolean up) {
+
+        boolean loop = CraftBookPlugin.inst().getConfiguration().elevatorLoop;
+        ChangedSign start = BukkitUtil.toChangedSign(lift);
+
+        // The cached heights are checked as they are used, and the column is scanned again once if they are out of date.
+        for (int attempt = 0; attempt < 2; attempt++) {
+
+            if (attempt > 0)
+                invalidateColumn(lift.getWorld(), lift.getX(), lift.getZ());
+
+            int[] heights = getFloors(lift.getWorld(), lift.getX(), lift.getZ());
+            int index = Arrays.binarySearch(heights, lift.getY());
+            if (index < 0) continue;
+
+            int count = loop ? heights.length - 1 : up ? heights.length - index - 1 : index;
+            boolean stale = false;
+            for (int i = 1; i <= count; i++) {
+                int next = ((up ? index + i : index - i) % heights.length + heights.length) % heights.length;
+                Block destination = lift.getWorld().getBlockAt(lift.getX(), heights[next], lift.getZ());
+                if (isLift(destination) == Direction.NONE) {
+                    stale = true;
+                    break;
+                }
+                if (isValidLift(start, BukkitUtil.toChangedSign(destination)))
+                    return destination;
+            }
+            if (!stale)
+                return null;
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the heights of all lifts in a column, scanning the column if it is not cached.
+     *
+     * @return The heights, in ascending order
+     */
+    private int[] getFloors(World world, int x, int z) {
+
+        Map<Long, Map<Long, int[]>> chunks = floors.get(world);
+        if (chunks == null) {
+            chunks = new HashMap<Long, Map<Long, int[]>>();
+            floors.put(world, chunks);
+        }
+        long chunkKey = LocationUtil.packChunkPosition(x >> 4, z >> 4);
+        Map<Long, int[]> columns = chunks.get(chunkKey);
+        if (columns == null) {
+            columns = new HashMap<Long, int[]>();
+            chunks.put(chunkKey, columns);
+        }
+
+        long key = LocationUtil.packChunkPosition(x, z);
+        int[] heights = columns.get(key);
+        if (heights == null) {
+            List<Integer> found = new ArrayList<Integer>();
+            for (int y = 0; y < world.getMaxHeight(); y++)
+                if (isLift(world.getBlockAt(x, y, z)) != Direction.NONE)
+                    found.add(y);
+            heights = new int[found.size()];
+            for (int i = 0; i < heights.length; i++)
+                heights[i] = found.get(i);
+            columns.put(key, heights);
+        }
+        return heights;
+    }
+
+    private void invalidateColumn(World world, int x, int z) {
+
+        Map<Long, Map<Long, int[]>> chunks = floors.get(world);
+        if (chunks == null) return;
+        Map<Long, int[]> columns = chunks.get(LocationUtil.packChunkPosition(x >> 4, z >> 4));
+        if (columns != null)
+            columns.remove(LocationUtil.packChunkPosition(x, z));
+    }
+
+    /**
+     * Forgets the cached lifts that a changed block could be a part of.
+     *
+     * @param block The sign or button that changed
+     */
+    private void invalidate(Block block) {
+
+        if (floors.isEmpty()) return;
+
+        boolean sign = SignUtil.isSign(block);
+        if (!sign && block.getType() != Material.STONE_BUTTON && block.getType() != Material.WOOD_BUTTON) return;
+
+        invalidateColumn(block.getWorld(), block.getX(), block.getZ());
+
+        // Buttons use the sign two blocks behind them.
+        if (sign && CraftBookPlugin.inst().getConfiguration().elevatorButtonEnabled) {
+            invalidateColumn(block.getWorld(), block.getX() + 2, block.getZ());
+            invalidateColumn(block.getWorld(), block.getX() - 2, block.getZ());
+            invalidateColumn(block.getWorld(), block.getX(), block.getZ() + 2);
+            invalidateColumn(block.getWorld(), block.getX(), block.getZ() - 2);
+        }
+    }
+
     private void makeItSo(LocalPlayer player, Block destination, BlockFace shift) {
         // start with the block shifted vertically from the player
         // to the destination sign's height (plus one).
@@ -265,72 +407,18 @@ public class Elevator extends AbstractCraftBookMechanic {
 
         if(CraftBookPlugin.inst().getConfiguration().elevatorSlowMove) {
 
-            final Location lastLocation = BukkitUtil.toLocation(player.getPosition());
-
-            task = CraftBookPlugin.inst().getServer().getScheduler().runTaskTimer(CraftBookPlugin.inst(), new Runnable() {
+            Movement movement = new Movement(player, newLocation, BukkitUtil.toLocation(player.getPosition()), destination, shift);
+            movements.put(((BukkitPlayer) player).getPlayer().getName(), movement);
 
-                @Override
-                public void run () {
+            if(task == null) {
+                task = CraftBookPlugin.inst().getServer().getScheduler().runTaskTimer(CraftBookPlugin.inst(), new Runnable() {
 
-                    OfflinePlayer op = ((BukkitPlayer)player).getPlayer();
-                    if(!op.isOnline()) {
-                        task.cancel();
-                        task = null;
-                        return;
-                    }
-                    Player p = op.getPlayer();
-                    if(!flyingPlayers.contains(p.getName()))
-                        flyingPlayers.add(p.getName());
-                    p.setAllowFlight(true);
-                    p.setFlying(true);
-                    p.setFallDistance(0f);
-                    p.setNoDamageTicks(2);
-                    double speed = CraftBookPlugin.inst().getConfiguration().elevatorMoveSpeed;
-                    newLocation.setPitch(p.getLocation().getPitch());
-                    newLocation.setYaw(p.getLocation().getYaw());
-
-                    if(Math.abs(newLocation.getY() - p.getLocation().getY()) < 0.7) {
-                        p.teleport(newLocation);
-                        teleportFinish(player, destination, shift);
-                        p.setFlying(false);
-                        p.setAllowFlight(p.getGameMode() == GameMode.CREATIVE);
-                        task.cancel();
-                        task = null;
-                        flyingPlayers.remove(p.getName());
-                        return;
+                    @Override
+                    public void run () {
+                        tickMovements();
                     }
-
-                    if(lastLocation.getBlockX() != p.getLocation().getBlockX() || lastLocation.getBlockZ() != p.getLocation().getBlockZ()) {
-                        player.print("mech.lift.leave");
-                        p.setFlying(false);
-                        p.setAllowFlight(p.getGameMode() == GameMode.CREATIVE);
-                        task.cancel();
-                        task = null;
-                        flyingPlayers.remove(p.getName());
-                        return;
-                    }
-
-                    if(newLocation.getY() > p.getLocation().getY()) {
-                        p.setVelocity(new Vector(0, speed,0));
-                        if(!BlockType.canPassThrough(p.getLocation().add(0, 2, 0).getBlock().getTypeId()))
-                            p.teleport(p.getLocation().add(0, speed, 0));
-                    } else if (newLocation.getY() < p.getLocation().getY()) {
-                        p.setVelocity(new Vector(0, -speed,0));
-                        if(!BlockType.canPassThrough(p.getLocation().add(0, -1, 0).getBlock().getTypeId()))
-                            p.teleport(p.getLocation().add(0, -speed, 0));
-                    } else {
-                        p.setFlying(false);
-                        p.setAllowFlight(p.getGameMode() == GameMode.CREATIVE);
-                        teleportFinish(player, destination, shift);
-                        task.cancel();
-                        task = null;
-                        flyingPlayers.remove(p.getName());
-                        return;
-                    }
-
-                    lastLocation.setY(p.getLocation().getY());
-                }
-            }, 1, 1);
+                }, 1, 1);
+            }
         } else {
             // Teleport!
             if (player.isInsideVehicle()) {
@@ -347,8 +435,118 @@ public class Elevator extends AbstractCraftBookMechanic {
         }
     }
 
+    /**
+     * The players that are currently being moved by an elevator, by name.
+     */
+    private Map<String, Movement> movements;
+
+    // The heights of the lifts in each column, keyed by world, then by packed chunk position and then by packed column position.
+    private Map<World, Map<Long, Map<Long, int[]>>> floors;
+
     private BukkitTask task;
 
+    private void tickMovements() {
+
+        Iterator<Movement> it = movements.values().iterator();
+        while(it.hasNext()) {
+            Movement movement = it.next();
+            boolean moving;
+            try {
+                moving = movement.tick();
+            } catch(Throwable t) {
+                BukkitUtil.printStacktrace(t);
+                moving = false;
+            }
+            if(!moving)
+                it.remove();
+        }
+
+        if(movements.isEmpty() && task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * A player being moved smoothly to another floor.
+     */
+    private final class Movement {
+
+        private final LocalPlayer player;
+        private final Location newLocation;
+        private final Location lastLocation;
+        private final Block destination;
+        private final BlockFace shift;
+
+        private Movement(LocalPlayer player, Location newLocation, Location lastLocation, Block destination, BlockFace shift) {
+
+            this.player = player;
+            this.newLocation = newLocation;
+            this.lastLocation = lastLocation;
+            this.destination = destination;
+            this.shift = shift;
+        }
+
+        /**
+         * Moves the player for one tick.
+         *
+         * @return false once the player has stopped moving
+         */
+        private boolean tick() {
+
+            OfflinePlayer op = ((BukkitPlayer)player).getPlayer();
+            if(!op.isOnline())
+                return false;
+            Player p = op.getPlayer();
+            if(!flyingPlayers.contains(p.getName()))
+                flyingPlayers.add(p.getName());
+            p.setAllowFlight(true);
+            p.setFlying(true);
+            p.setFallDistance(0f);
+            p.setNoDamageTicks(2);
+            double speed = CraftBookPlugin.inst().getConfiguration().elevatorMoveSpeed;
+            newLocation.setPitch(p.getLocation().getPitch());
+            newLocation.setYaw(p.getLocation().getYaw());
+
+            if(Math.abs(newLocation.getY() - p.getLocation().getY()) < 0.7) {
+                p.teleport(newLocation);
+                teleportFinish(player, destination, shift);
+                stop(p);
+                return false;
+            }
+
+            if(lastLocation.getBlockX() != p.getLocation().getBlockX() || lastLocation.getBlockZ() != p.getLocation().getBlockZ()) {
+                player.print("mech.lift.leave");
+                stop(p);
+                return false;
+            }
+
+            if(newLocation.getY() > p.getLocation().getY()) {
+                p.setVelocity(new Vector(0, speed,0));
+                if(!BlockType.canPassThrough(p.getLocation().add(0, 2, 0).getBlock().getTypeId()))
+                    p.teleport(p.getLocation().add(0, speed, 0));
+            } else if (newLocation.getY() < p.getLocation().getY()) {
+                p.setVelocity(new Vector(0, -speed,0));
+                if(!BlockType.canPassThrough(p.getLocation().add(0, -1, 0).getBlock().getTypeId()))
+                    p.teleport(p.getLocation().add(0, -speed, 0));
+            } else {
+                teleportFinish(player, destination, shift);
+                stop(p);
+                return false;
+            }
+
+            lastLocation.setY(p.getLocation().getY());
+            return true;
+        }
+
+        private void stop(Player p) {
+
+            p.setFlying(false);
+            p.setAllowFlight(p.getGameMode() == GameMode.CREATIVE);
+            flyingPlayers.remove(p.getName());
+        }
+    }
+
     public void teleportFinish(LocalPlayer player, Block destination, BlockFace shift) {
         // Now, we want to read the sign so we can tell the player
         // his or her floor, but as that may not be avilable, we can
@@ -1,15 +1,21 @@
 package com.sk89q.craftbook.mech;
 
 import java.lang.reflect.InvocationTargetException;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.scheduler.BukkitTask;
 
 import com.comphenix.protocol.ProtocolLibrary;
 import com.comphenix.protocol.events.PacketContainer;
@@ -17,12 +23,25 @@ import com.sk89q.craftbook.AbstractCraftBookMechanic;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.BukkitUtil;
 import com.sk89q.craftbook.util.ItemInfo;
+import com.sk89q.craftbook.util.LocationUtil;
 
+/**
+ * Shows footprints behind players walking over certain blocks.
+ *
+ * Footprints are queued per world and chunk as players move, and sent once per tick. Each footprint is only sent to
+ * the players whose chunk is within the view distance of the footprint's chunk.
+ */
 public class Footprints extends AbstractCraftBookMechanic {
 
     private static boolean disabled = false;
 
-    public Set<String> footsteps = new HashSet<String>();
+    // The time at which each player may leave their next footprint.
+    private final Map<String, Long> footsteps = new HashMap<String, Long>();
+
+    // The footprints left this tick, keyed by world and then by packed chunk position.
+    private final Map<World, Map<Long, List<Footprint>>> queued = new HashMap<World, Map<Long, List<Footprint>>>();
+
+    private BukkitTask task;
 
     @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
     public void onPlayerMove(final PlayerMoveEvent event) {
@@ -46,53 +65,200 @@ public class Footprints extends AbstractCraftBookMechanic {
 
         if(CraftBookPlugin.inst().getConfiguration().footprintsBlocks.contains(new ItemInfo(below))) {
 
-            if(footsteps.contains(event.getPlayer().getName()))
+            long now = System.currentTimeMillis();
+            Long next = footsteps.get(event.getPlayer().getName());
+            if(next != null && next > now)
                 return;
 
             if(!event.getPlayer().hasPermission("craftbook.mech.footprints.use"))
                 return;
 
-            try {
-                PacketContainer packet = ProtocolLibrary.getProtocolManager().createPacket(63);
-                packet.getStrings().write(0, "footstep");
-                packet.getFloat().write(0, (float) event.getPlayer().getLocation().getX())
-                .write(1, (float) (event.getPlayer().getLocation().getY() + yOffset))
-                .write(2, (float) event.getPlayer().getLocation().getZ())
-                .write(3, 0F)
-                .write(4, 0F)
-                .write(5, 0F)
-                .write(6, 0F);
-                packet.getIntegers().write(0, 1);
-                for (Player play : CraftBookPlugin.inst().getServer().getOnlinePlayers()) {
-                    if(!play.canSee(event.getPlayer()))
-                        continue;
-                    if(!play.hasPermission("craftbook.mech.footprints.see"))
-                        continue;
-                    if (play.getWorld().equals(event.getPlayer().getPlayer().getWorld())) {
-                        try {
-                            ProtocolLibrary.getProtocolManager().sendServerPacket(play, packet);
-                        } catch (InvocationTargetException e) {
-                            BukkitUtil.printStacktrace(e);
+            Location location = event.getPlayer().getLocation();
+            queue(new Footprint(event.getPlayer(), (float) location.getX(), (float) (location.getY() + yOffset), (float) location.getZ()));
+
+            footsteps.put(event.getPlayer().getName(), now + (event.getPlayer().isSprinting() ? 7 : 10) * 50L);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+
+        footsteps.remove(event.getPlayer().getName());
+    }
+
+    private void queue(Footprint footprint) {
+
+        World world = footprint.player.getWorld();
+        Map<Long, List<Footprint>> chunks = queued.get(world);
+        if(chunks == null) {
+            chunks = new HashMap<Long, List<Footprint>>();
+            queued.put(world, chunks);
+        }
+        long key = LocationUtil.packChunkPosition(footprint.getChunkX(), footprint.getChunkZ());
+        List<Footprint> footprints = chunks.get(key);
+        if(footprints == null) {
+            footprints = new ArrayList<Footprint>();
+            chunks.put(key, footprints);
+        }
+        footprints.add(footprint);
+
+        if(task == null) {
+            task = CraftBookPlugin.inst().getServer().getScheduler().runTaskTimer(CraftBookPlugin.inst(), new Runnable() {
+
+                @Override
+                public void run () {
+                    flush();
+                }
+            }, 1, 1);
+        }
+    }
+
+    /**
+     * Sends every footprint queued since the last flush to the players that can see it.
+     */
+    private void flush() {
+
+        if(queued.isEmpty()) {
+            if(task != null) {
+                task.cancel();
+                task = null;
+            }
+            return;
+        }
+
+        try {
+            int view = CraftBookPlugin.inst().getServer().getViewDistance();
+            for(Map.Entry<World, Map<Long, List<Footprint>>> world : queued.entrySet()) {
+
+                Map<Long, Viewers> viewers = getViewers(world.getKey());
+                if(viewers.isEmpty()) continue;
+
+                // Look up the surrounding chunks only when that is cheaper than checking every occupied chunk.
+                boolean scanViewers = viewers.size() < (2 * view + 1) * (2 * view + 1);
+
+                for(List<Footprint> footprints : world.getValue().values()) {
+
+                    int chunkX = footprints.get(0).getChunkX();
+                    int chunkZ = footprints.get(0).getChunkZ();
+                    PacketContainer[] packets = new PacketContainer[footprints.size()];
+
+                    if(scanViewers) {
+                        for(Viewers nearby : viewers.values())
+                            if(Math.abs(nearby.chunkX - chunkX) <= view && Math.abs(nearby.chunkZ - chunkZ) <= view)
+                                send(nearby.players, footprints, packets);
+                    } else {
+                        for(int x = chunkX - view; x <= chunkX + view; x++) {
+                            for(int z = chunkZ - view; z <= chunkZ + view; z++) {
+                                Viewers nearby = viewers.get(LocationUtil.packChunkPosition(x, z));
+                                if(nearby != null)
+                                    send(nearby.players, footprints, packets);
+                            }
                         }
                     }
                 }
+            }
+        } catch (Throwable e) {
+            CraftBookPlugin.logger().warning("Footprints do not work without ProtocolLib!");
+            disabled = true;
+        }
+
+        queued.clear();
+    }
 
-                footsteps.add(event.getPlayer().getName());
-                CraftBookPlugin.inst().getServer().getScheduler().runTaskLater(CraftBookPlugin.inst(), new Runnable() {
+    /**
+     * Indexes the players of a world that may see footprints by the chunk they are in.
+     */
+    private static Map<Long, Viewers> getViewers(World world) {
 
-                    @Override
-                    public void run () {
-                        footsteps.remove(event.getPlayer().getName());
-                    }
-                }, event.getPlayer().isSprinting() ? 7 : 10);
-            } catch (Throwable e) {
-                CraftBookPlugin.logger().warning("Footprints do not work without ProtocolLib!");
-                disabled = true;
-                return;
+        Map<Long, Viewers> viewers = new HashMap<Long, Viewers>();
+        for(Player player : world.getPlayers()) {
+            if(!player.hasPermission("craftbook.mech.footprints.see"))
+                continue;
+            Location location = player.getLocation();
+            int chunkX = location.getBlockX() >> 4, chunkZ = location.getBlockZ() >> 4;
+            long key = LocationUtil.packChunkPosition(chunkX, chunkZ);
+            Viewers nearby = viewers.get(key);
+            if(nearby == null) {
+                nearby = new Viewers(chunkX, chunkZ);
+                viewers.put(key, nearby);
+            }
+            nearby.players.add(player);
+        }
+        return viewers;
+    }
+
+    private static void send(List<Player> players, List<Footprint> footprints, PacketContainer[] packets) {
+
+        for(Player player : players) {
+            for(int i = 0; i < packets.length; i++) {
+                Footprint footprint = footprints.get(i);
+                if(!player.canSee(footprint.player))
+                    continue;
+                if(packets[i] == null)
+                    packets[i] = footprint.createPacket();
+                try {
+                    ProtocolLibrary.getProtocolManager().sendServerPacket(player, packets[i]);
+                } catch (InvocationTargetException e) {
+                    BukkitUtil.printStacktrace(e);
+                }
             }
         }
     }
 
+    private static final class Footprint {
+
+        final Player player;
+        final float x, y, z;
+
+        Footprint(Player player, float x, float y, float z) {
+
+            this.player = player;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        int getChunkX() {
+
+            return (int) Math.floor(x) >> 4;
+        }
+
+        int getChunkZ() {
+
+            return (int) Math.floor(z) >> 4;
+        }
+
+        PacketContainer createPacket() {
+
+            PacketContainer packet = ProtocolLibrary.getProtocolManager().createPacket(63);
+            packet.getStrings().write(0, "footstep");
+            packet.getFloat().write(0, x)
+            .write(1, y)
+            .write(2, z)
+            .write(3, 0F)
+            .write(4, 0F)
+            .write(5, 0F)
+            .write(6, 0F);
+            packet.getIntegers().write(0, 1);
+            return packet;
+        }
+    }
+
+    /**
+     * The players within a single chunk that may see footprints.
+     */
+    private static final class Viewers {
+
+        final int chunkX, chunkZ;
+        final List<Player> players = new ArrayList<Player>();
+
+        Viewers(int chunkX, int chunkZ) {
+
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+    }
+
     @Override
     public boolean enable () {
 
@@ -103,6 +269,11 @@ public class Footprints extends AbstractCraftBookMechanic {
 
     @Override
     public void disable () {
+        if(task != null) {
+            task.cancel();
+            task = null;
+        }
         footsteps.clear();
+        queued.clear();
     }
 }
\ No newline at end of file
@@ -16,17 +16,29 @@
 
 package com.sk89q.craftbook.mech;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.bukkit.GameMode;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.block.Action;
 import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.event.block.SignChangeEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 import org.bukkit.inventory.ItemStack;
 
 import com.sk89q.craftbook.AbstractCraftBookMechanic;
@@ -37,13 +49,11 @@ import com.sk89q.craftbook.bukkit.util.BukkitUtil;
 import com.sk89q.craftbook.util.BlockUtil;
 import com.sk89q.craftbook.util.EventUtil;
 import com.sk89q.craftbook.util.ItemInfo;
+import com.sk89q.craftbook.util.LocationUtil;
 import com.sk89q.craftbook.util.ProtectionUtil;
 import com.sk89q.craftbook.util.SignUtil;
 import com.sk89q.craftbook.util.events.SignClickEvent;
 import com.sk89q.craftbook.util.events.SourcedBlockRedstoneEvent;
-import com.sk89q.worldedit.BlockWorldVector;
-import com.sk89q.worldedit.Vector;
-import com.sk89q.worldedit.regions.CuboidRegion;
 
 /**
  * Handler for gates. Gates are merely fence blocks. When they are closed or open, a nearby fence will be found,
@@ -56,11 +66,22 @@ import com.sk89q.worldedit.regions.CuboidRegion;
  */
 public class Gate extends AbstractCraftBookMechanic {
 
+    /**
+     * The gates found around each sign, keyed by world and then by the packed position of the sign.
+     */
+    private final Map<World, Map<Long, GateTopology>> topologies = new HashMap<World, Map<Long, GateTopology>>();
+
+    @Override
+    public void disable() {
+
+        topologies.clear();
+    }
+
     /**
      * Toggles the gate closest to a location.
      *
      * @param player
-     * @param pt
+     * @param block The sign block.
      * @param smallSearchSize
      * @param close null to toggle, true to close, false to open
      *
@@ -68,167 +89,224 @@ public class Gate extends AbstractCraftBookMechanic {
      */
     public boolean toggleGates(LocalPlayer player, Block block, boolean smallSearchSize, Boolean close) {
 
-        int x = block.getX();
-        int y = block.getY();
-        int z = block.getZ();
-
-        boolean foundGate = false;
-
-        Set<GateColumn> visitedColumns = new HashSet<GateColumn>();
+        ChangedSign sign = BukkitUtil.toChangedSign(block);
+        if (sign == null) {
+            CraftBookPlugin.logDebugMessage("Invalid Sign!", "gates.search");
+            return false;
+        }
 
-        if (smallSearchSize) {
-            // Toggle nearby gates
-            for (int x1 = x - 1; x1 <= x + 1; x1++) {
-                for (int y1 = y - 2; y1 <= y + 1; y1++) {
-                    for (int z1 = z - 1; z1 <= z + 1; z1++) {
-                        if (recurseColumn(player, BukkitUtil.toChangedSign(block), block.getWorld().getBlockAt(x1, y1, z1), visitedColumns, close, smallSearchSize)) {
-                            foundGate = true;
-                        }
-                    }
+        GateTopology topology = getTopology(sign, block, smallSearchSize);
+        if (topology.gates.isEmpty()) return false;
+
+        boolean safeDestruction = CraftBookPlugin.inst().getConfiguration().safeDestruction;
+        boolean infinite = sign.getLine(3).equalsIgnoreCase("infinite");
+        boolean noReplace = sign.getLine(2).equalsIgnoreCase("NoReplace");
+
+        // Blocks held by a sign behind this one are moved onto this one first.
+        int stock = 0;
+        if (safeDestruction && !infinite) {
+            Block other = SignUtil.getNextSign(block, sign.getLine(1), 4);
+            if (other != null) {
+                ChangedSign otherSign = BukkitUtil.toChangedSign(other);
+                if (otherSign.getLine(3).equalsIgnoreCase("infinite"))
+                    infinite = true;
+                else {
+                    addBlocks(sign, getBlocks(otherSign));
+                    setBlocks(otherSign, 0);
                 }
             }
-        } else {
-            // Toggle nearby gates
-            for (int x1 = x - CraftBookPlugin.inst().getConfiguration().gateSearchRadius; x1 <= x + CraftBookPlugin.inst().getConfiguration().gateSearchRadius; x1++) {
-                for (int y1 = y - CraftBookPlugin.inst().getConfiguration().gateSearchRadius; y1 <= y + CraftBookPlugin.inst().getConfiguration().gateSearchRadius*2; y1++) {
-                    for (int z1 = z - CraftBookPlugin.inst().getConfiguration().gateSearchRadius; z1 <= z + CraftBookPlugin.inst().getConfiguration().gateSearchRadius; z1++) {
-                        if (recurseColumn(player, BukkitUtil.toChangedSign(block), block.getWorld().getBlockAt(x1, y1, z1), visitedColumns, close, smallSearchSize)) {
-                            foundGate = true;
+            stock = getBlocks(sign);
+        }
+        int startingStock = stock;
+
+        World world = block.getWorld();
+        boolean success = true;
+
+        gates:
+        for (List<int[]> gate : topology.gates) {
+
+            int[] first = gate.get(0);
+            boolean closeGate = close != null ? close : !isGateBlock(topology.type, world.getBlockAt(first[0], first[2] - 1, first[1]));
+
+            for (int[] column : gate) {
+
+                // If we want to close the gate then we replace air/water blocks below with fence blocks; otherwise, we
+                // want to replace fence blocks below with air.
+                Block top = world.getBlockAt(column[0], column[2], column[1]);
+                int id = closeGate ? top.getTypeId() : 0;
+                byte data = closeGate ? top.getData() : 0;
+
+                CraftBookPlugin.logDebugMessage("Setting column at " + column[0] + ":" + column[2] + ":" + column[1] + " to " + (closeGate ? "closed" : "open"), "gates.search");
+
+                for (int y = column[2] - 1; y >= column[3]; y--) {
+
+                    Block blo = world.getBlockAt(column[0], y, column[1]);
+
+                    if (noReplace) {
+                        // If NoReplace is on line 3 of sign, do not replace blocks.
+                        if (blo.getType() != Material.AIR && !isGateBlock(topology.type, blo))
+                            break;
+                    } else // Allowing water allows the use of gates as flood gates
+                        if (!canPassThrough(topology.type, blo))
+                            break;
+
+                    if (blo.getTypeId() == id && blo.getData() == data)
+                        continue;
+
+                    if (safeDestruction) {
+                        if (!closeGate) {
+                            if (isGateBlock(topology.type, blo))
+                                stock++;
+                        } else if (!infinite) {
+                            if (stock <= 0) {
+                                if (player != null) {
+                                    player.printError("mech.not-enough-blocks");
+                                    success = false;
+                                    break gates;
+                                }
+                                break;
+                            }
+                            stock--;
                         }
                     }
+
+                    blo.setTypeIdAndData(id, data, true);
                 }
             }
         }
 
-        // bag.flushChanges();
+        if (safeDestruction && !infinite && stock != startingStock)
+            setBlocks(sign, stock);
 
-        return foundGate && visitedColumns.size() > 0;
+        return success;
     }
 
     /**
-     * Toggles one column of gate.
-     *
-     * @param player The Player
-     * @param sign The sign block.
-     * @param block A part of the column.
-     * @param visitedColumns Previously visited columns.
-     * @param close Should close or open.
-     *
-     * @return true if a gate column was found and blocks were changed; false otherwise.
+     * Gets the gates around a sign, finding them again only if the blocks around the sign have changed.
      */
-    private boolean recurseColumn(LocalPlayer player, ChangedSign sign, Block block, Set<GateColumn> visitedColumns, Boolean close, boolean smallSearchSize) {
+    private GateTopology getTopology(ChangedSign sign, Block signBlock, boolean smallSearchSize) {
 
-        if (CraftBookPlugin.inst().getConfiguration().gateLimitColumns && visitedColumns.size() > CraftBookPlugin.inst().getConfiguration().gateColumnLimit)
-            return false;
+        Map<Long, GateTopology> signs = topologies.get(signBlock.getWorld());
+        if (signs == null) {
+            signs = new HashMap<Long, GateTopology>();
+            topologies.put(signBlock.getWorld(), signs);
+        }
 
-        if (!isValidGateBlock(sign, smallSearchSize, new ItemInfo(block), true)) return false;
+        long key = LocationUtil.packBlockPosition(signBlock.getX(), signBlock.getY(), signBlock.getZ());
+        GateTopology topology = signs.get(key);
+        if (topology != null && topology.isValid(sign, signBlock.getWorld(), smallSearchSize))
+            return topology;
 
-        CraftBookPlugin.logDebugMessage("Found a possible gate column at " + block.getX() + ":" + block.getY() + ":" + block.getZ(), "gates.search");
+        ItemInfo type = getGateBlock(sign, smallSearchSize);
+        if (type != null && type.getType() == Material.AIR)
+            type = null;
 
-        int x = block.getX();
-        int z = block.getZ();
+        topology = findGates(sign.getLine(0), signBlock, type, smallSearchSize);
+        signs.put(key, topology);
+        return topology;
+    }
 
-        GateColumn column = new GateColumn(sign, block, smallSearchSize);
+    /**
+     * Finds the gates around a sign. Every fence block in the search area is used as a starting point, from which
+     * connected columns are followed until no more are found.
+     *
+     * @param typeLine The first line of the sign.
+     * @param signBlock The sign block.
+     * @param type The gate block, or null for any of the configured gate blocks.
+     * @param smallSearchSize Search small or large.
+     */
+    private GateTopology findGates(String typeLine, Block signBlock, ItemInfo type, boolean smallSearchSize) {
 
-        // The block above the gate cannot be air -- it has to be some
-        // non-fence block
-        if (block.getWorld().getBlockAt(x, column.getStartingY() + 1, z).getType() == Material.AIR) return false;
+        World world = signBlock.getWorld();
+        int x = signBlock.getX();
+        int y = signBlock.getY();
+        int z = signBlock.getZ();
 
-        if (visitedColumns.contains(column)) return false;
+        int radius = smallSearchSize ? 1 : CraftBookPlugin.inst().getConfiguration().gateSearchRadius;
+        int minY = smallSearchSize ? y - 2 : y - radius;
+        int maxY = smallSearchSize ? y + 1 : y + radius * 2;
 
-        visitedColumns.add(column);
+        GateTopology topology = new GateTopology(typeLine, type, smallSearchSize, x - radius, minY, z - radius, x + radius, maxY, z + radius);
 
-        if (close == null)
-            close = !isValidGateBlock(sign, smallSearchSize, new ItemInfo(block.getWorld().getBlockAt(x, column.getStartingY() - 1, z)), true);
+        int limit = CraftBookPlugin.inst().getConfiguration().gateLimitColumns ? CraftBookPlugin.inst().getConfiguration().gateColumnLimit : Integer.MAX_VALUE;
 
-        CraftBookPlugin.logDebugMessage("Valid column at " + block.getX() + ":" + block.getY() + ":" + block.getZ() + " is being " + (close ? "closed" : "opened"), "gates.search");
-        CraftBookPlugin.logDebugMessage("Column Top: " + column.getStartingY() + " End: " + column.getEndingY(), "gates.search");
-        // Recursively go to connected fence blocks of the same level
-        // and 'close' or 'open' them
-        return toggleColumn(player, sign, block, column, close, visitedColumns, smallSearchSize);
-    }
+        // Columns are keyed by their x and z coordinates.
+        Set<Long> visited = new HashSet<Long>();
+        ArrayDeque<Block> pending = new ArrayDeque<Block>();
 
-    /**
-     * Actually does the closing/opening. Also recurses to nearby columns.
-     *
-     * @param player The player.
-     * @param signBlock The sign block.
-     * @param block The top point of the gate.
-     * @param close To open or close.
-     * @param visitedColumns Previously searched columns.
-     */
-    private boolean toggleColumn(LocalPlayer player, ChangedSign sign, Block block, GateColumn column, boolean close, Set<GateColumn> visitedColumns, boolean smallSearchSize) {
-
-        // If we want to close the gate then we replace air/water blocks
-        // below with fence blocks; otherwise, we want to replace fence
-        // blocks below with air
-        ItemInfo item;
-        if (close)
-            item = new ItemInfo(column.getStartingPoint());
-        else
-            item = new ItemInfo(Material.AIR, 0);
+        for (int x1 = x - radius; x1 <= x + radius; x1++) {
+            for (int y1 = minY; y1 <= maxY; y1++) {
+                for (int z1 = z - radius; z1 <= z + radius; z1++) {
 
-        CraftBookPlugin.logDebugMessage("Setting column at " + block.getX() + ":" + block.getY() + ":" + block.getZ() + " to " + item.toString(), "gates.search");
+                    List<int[]> gate = new ArrayList<int[]>();
+                    pending.push(world.getBlockAt(x1, y1, z1));
 
-        for (Vector bl : column.getRegion()) {
+                    while (!pending.isEmpty()) {
+                        Block block = pending.pop();
 
-            Block blo = BukkitUtil.toBlock(new BlockWorldVector(BukkitUtil.toWorldVector(block).getWorld(), bl));
+                        if (visited.size() > limit) {
+                            pending.clear();
+                            break;
+                        }
+                        if (visited.contains(LocationUtil.packChunkPosition(block.getX(), block.getZ()))) continue;
 
-            //sign = BukkitUtil.toChangedSign(sign.getSign().getBlock());
+                        int[] column = findColumn(type, block);
+                        if (column == null) continue;
 
-            if(sign == null) {
-                CraftBookPlugin.logDebugMessage("Invalid Sign!", "gates.search");
-                return false;
-            }
+                        CraftBookPlugin.logDebugMessage("Found a gate column at " + column[0] + ":" + column[2] + ":" + column[1] + " ending at " + column[3], "gates.search");
 
-            ChangedSign otherSign = null;
-
-            Block ot = SignUtil.getNextSign(block, sign.getLine(1), 4);
-            if(ot != null)
-                otherSign = BukkitUtil.toChangedSign(ot);
-
-            if (sign.getLine(2).equalsIgnoreCase("NoReplace")) {
-                // If NoReplace is on line 3 of sign, do not replace blocks.
-                if (blo.getType() != Material.AIR && !isValidGateBlock(sign, smallSearchSize, new ItemInfo(blo), true))
-                    break;
-            } else // Allowing water allows the use of gates as flood gates
-                if (!canPassThrough(sign, smallSearchSize, blo))
-                    break;
-
-            // bag.setBlockID(w, x, y1, z, ID);
-            if (CraftBookPlugin.inst().getConfiguration().safeDestruction) {
-                if (!close || hasEnoughBlocks(sign, otherSign)) {
-                    if (!close && isValidGateBlock(sign, smallSearchSize, new ItemInfo(blo), true))
-                        addBlocks(sign, 1);
-                    else if (close && canPassThrough(sign, smallSearchSize, blo) && isValidGateBlock(sign, smallSearchSize, item, true) && !item.isSame(blo))
-                        removeBlocks(sign, 1);
-                    blo.setTypeIdAndData(item.getId(), (byte) item.getData(), true);
-                } else if (close && !hasEnoughBlocks(sign, otherSign) && isValidGateBlock(sign, smallSearchSize, item, true))
-                    if (player != null) {
-                        player.printError("mech.not-enough-blocks");
-                        return false;
-                    }
-            } else
-                blo.setTypeIdAndData(item.getId(), (byte) item.getData(), true);
+                        visited.add(LocationUtil.packChunkPosition(column[0], column[1]));
+                        gate.add(column);
+                        topology.include(column);
 
-            CraftBookPlugin.logDebugMessage("Set block " + bl.getX() + ":" + bl.getY() + ":" + bl.getZ() + " to " + item.toString(), "gates.search");
+                        // Connected columns can hang from any block of this one, or from the blocks above it.
+                        for (int y2 = column[3]; y2 <= column[2] + 1; y2++) {
+                            pending.push(world.getBlockAt(column[0], y2, column[1] - 1));
+                            pending.push(world.getBlockAt(column[0], y2, column[1] + 1));
+                            pending.push(world.getBlockAt(column[0] - 1, y2, column[1]));
+                            pending.push(world.getBlockAt(column[0] + 1, y2, column[1]));
+                        }
+                    }
 
-            recurseColumn(player, sign, blo.getRelative(1, 0, 0), visitedColumns, close, smallSearchSize);
-            recurseColumn(player, sign, blo.getRelative(-1, 0, 0), visitedColumns, close, smallSearchSize);
-            recurseColumn(player, sign, blo.getRelative(0, 0, 1), visitedColumns, close, smallSearchSize);
-            recurseColumn(player, sign, blo.getRelative(0, 0, -1), visitedColumns, close, smallSearchSize);
+                    if (!gate.isEmpty())
+                        topology.gates.add(gate);
+                }
+            }
         }
 
-        recurseColumn(player, sign, column.getStartingPoint().getRelative(1, 0, 0), visitedColumns, close, smallSearchSize);
-        recurseColumn(player, sign, column.getStartingPoint().getRelative(-1, 0, 0), visitedColumns, close, smallSearchSize);
-        recurseColumn(player, sign, column.getStartingPoint().getRelative(0, 0, 1), visitedColumns, close, smallSearchSize);
-        recurseColumn(player, sign, column.getStartingPoint().getRelative(0, 0, -1), visitedColumns, close, smallSearchSize);
+        return topology;
+    }
 
-        recurseColumn(player, sign, column.getStartingPoint().getRelative(1, 1, 0), visitedColumns, close, smallSearchSize);
-        recurseColumn(player, sign, column.getStartingPoint().getRelative(-1, 1, 0), visitedColumns, close, smallSearchSize);
-        recurseColumn(player, sign, column.getStartingPoint().getRelative(0, 1, 1), visitedColumns, close, smallSearchSize);
-        recurseColumn(player, sign, column.getStartingPoint().getRelative(0, 1, -1), visitedColumns, close, smallSearchSize);
-        return true;
+    /**
+     * Finds the column of gate that a block is a part of.
+     *
+     * @param type The gate block, or null for any of the configured gate blocks.
+     * @param block A part of the column.
+     *
+     * @return the x, z, top y and bottom y of the column, or null if the block is not part of a column.
+     */
+    private int[] findColumn(ItemInfo type, Block block) {
+
+        if (!isGateBlock(type, block)) return null;
+
+        World world = block.getWorld();
+        int x = block.getX();
+        int y = block.getY();
+        int z = block.getZ();
+        int height = CraftBookPlugin.inst().getConfiguration().gateColumnHeight;
+
+        int top = y;
+        for (int maxY = Math.min(world.getMaxHeight(), y + height); top < maxY && isGateBlock(type, world.getBlockAt(x, top + 1, z)); )
+            top++;
+
+        // The block above the gate cannot be air -- it has to be some non-fence block
+        if (world.getBlockAt(x, top + 1, z).getType() == Material.AIR) return null;
+
+        int bottom = y;
+        for (int minY = Math.max(0, y - height); bottom > minY && canPassThrough(type, world.getBlockAt(x, bottom - 1, z)); )
+            bottom--;
+
+        return new int[] {x, z, top, bottom};
     }
 
     /**
@@ -435,22 +513,38 @@ public class Gate extends AbstractCraftBookMechanic {
         }
     }
 
-    private boolean canPassThrough(ChangedSign sign, boolean smallSearchSize, Block t) {
-
-        Material[] passableBlocks = new Material[9];
-        passableBlocks[0] = Material.WATER;
-        passableBlocks[1] = Material.STATIONARY_WATER;
-        passableBlocks[2] = Material.LAVA;
-        passableBlocks[3] = Material.STATIONARY_LAVA;
-        passableBlocks[4] = Material.SNOW;
-        passableBlocks[5] = Material.LONG_GRASS;
-        passableBlocks[6] = Material.VINE;
-        passableBlocks[7] = Material.DEAD_BUSH;
-        passableBlocks[8] = Material.AIR;
-
-        for (Material aPassableBlock : passableBlocks) { if (aPassableBlock == t.getType()) return true; }
+    /**
+     * Checks if a block is a block of the gate.
+     *
+     * @param type The gate block, or null for any of the configured gate blocks.
+     * @param block The block to check.
+     */
+    private static boolean isGateBlock(ItemInfo type, Block block) {
+
+        if (type != null)
+            return type.isSame(block);
+        for (ItemInfo gateBlock : CraftBookPlugin.inst().getConfiguration().gateBlocks)
+            if (gateBlock.isSame(block))
+                return true;
+        return false;
+    }
 
-        return isValidGateBlock(sign, smallSearchSize, new ItemInfo(t), true);
+    private static boolean canPassThrough(ItemInfo type, Block t) {
+
+        switch (t.getType()) {
+            case WATER:
+            case STATIONARY_WATER:
+            case LAVA:
+            case STATIONARY_LAVA:
+            case SNOW:
+            case LONG_GRASS:
+            case VINE:
+            case DEAD_BUSH:
+            case AIR:
+                return true;
+            default:
+                return isGateBlock(type, t);
+        }
     }
 
     public ItemInfo getGateBlock(ChangedSign sign, boolean smallSearchSize) {
@@ -565,77 +659,127 @@ public class Gate extends AbstractCraftBookMechanic {
             return hasEnoughBlocks(s);
     }
 
-    protected class GateColumn {
+    /**
+     * Forgets every gate that a changed block could be a part of.
+     *
+     * @param block The block that changed.
+     */
+    private void invalidate(Block block) {
 
-        private final ChangedSign sign;
-        private final Block block;
-        private final boolean smallSearchSize;
+        Map<Long, GateTopology> signs = topologies.get(block.getWorld());
+        if (signs == null) return;
 
-        public GateColumn(ChangedSign sign, Block block, boolean smallSearchSize) {
+        Iterator<GateTopology> iter = signs.values().iterator();
+        while (iter.hasNext())
+            if (iter.next().contains(block.getX(), block.getY(), block.getZ()))
+                iter.remove();
+    }
 
-            this.sign = sign;
-            this.block = block;
-            this.smallSearchSize = smallSearchSize;
-        }
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockPlaced(BlockPlaceEvent event) {
 
-        public Block getStartingPoint() {
+        invalidate(event.getBlock());
+    }
 
-            return block.getWorld().getBlockAt(block.getX(), getStartingY(), block.getZ());
-        }
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockBroken(BlockBreakEvent event) {
 
-        public Block getEndingPoint() {
+        invalidate(event.getBlock());
+    }
 
-            return block.getWorld().getBlockAt(block.getX(), getEndingY(), block.getZ());
-        }
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onSignChanged(SignChangeEvent event) {
 
-        public int getStartingY() {
+        invalidate(event.getBlock());
+    }
 
-            int curY = block.getY();
-            int maxY = Math.min(block.getWorld().getMaxHeight(), block.getY() + CraftBookPlugin.inst().getConfiguration().gateColumnHeight);
-            for (int y1 = block.getY() + 1; y1 <= maxY; y1++) {
-                if (isValidGateBlock(sign, smallSearchSize, new ItemInfo(block.getWorld().getBlockAt(block.getX(), y1, block.getZ())), true))
-                    curY = y1;
-                else
-                    break;
-            }
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onPistonExtend(BlockPistonExtendEvent event) {
 
-            return curY;
+        for (Block block : event.getBlocks()) {
+            invalidate(block);
+            invalidate(block.getRelative(event.getDirection()));
         }
+    }
 
-        public int getEndingY() {
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onPistonRetract(BlockPistonRetractEvent event) {
 
-            int minY = Math.max(0, block.getY() - CraftBookPlugin.inst().getConfiguration().gateColumnHeight);
-            for (int y = block.getY(); y >= minY; y--)
-                if (!canPassThrough(sign, smallSearchSize, block.getWorld().getBlockAt(block.getX(), y, block.getZ()))) return y + 1;
-            return 0;
-        }
+        invalidate(event.getBlock().getRelative(event.getDirection()));
+        invalidate(event.getRetractLocation().getBlock());
+    }
 
-        public int getX() {
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onEntityExplode(EntityExplodeEvent event) {
 
-            return block.getX();
-        }
+        for (Block block : event.blockList())
+            invalidate(block);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldUnload(WorldUnloadEvent event) {
+
+        topologies.remove(event.getWorld());
+    }
 
-        public int getZ() {
+    /**
+     * The gates found around a sign, and the area they were found in.
+     */
+    private static final class GateTopology {
+
+        private final String typeLine;
+        private final ItemInfo type;
+        private final boolean smallSearchSize;
+
+        // The columns of each gate, in the order they were found. Each holds the x, z, top y and bottom y of a column.
+        private final List<List<int[]>> gates = new ArrayList<List<int[]>>();
+
+        // The search area and every block that the columns were found from.
+        private int minX, minY, minZ, maxX, maxY, maxZ;
+
+        private GateTopology(String typeLine, ItemInfo type, boolean smallSearchSize, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
 
-            return block.getZ();
+            this.typeLine = typeLine;
+            this.type = type;
+            this.smallSearchSize = smallSearchSize;
+            this.minX = minX;
+            this.minY = minY;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.maxZ = maxZ;
         }
 
-        public CuboidRegion getRegion() {
+        private void include(int[] column) {
 
-            return new CuboidRegion(BukkitUtil.toWorldVector(getStartingPoint().getRelative(0, -1, 0)), BukkitUtil.toWorldVector(getEndingPoint()));
+            // Neighbouring columns, the block above the top and the block below the bottom all decide the shape.
+            minX = Math.min(minX, column[0] - 1);
+            maxX = Math.max(maxX, column[0] + 1);
+            minZ = Math.min(minZ, column[1] - 1);
+            maxZ = Math.max(maxZ, column[1] + 1);
+            maxY = Math.max(maxY, column[2] + 1);
+            minY = Math.min(minY, column[3] - 1);
         }
 
-        @Override
-        public boolean equals(Object o) {
+        private boolean contains(int x, int y, int z) {
 
-            if(!(o instanceof GateColumn)) return false;
-            return ((GateColumn) o).getX() == getX() && ((GateColumn) o).getZ() == getZ() && block.getWorld().getName().equals(((GateColumn) o).block.getWorld().getName());
+            return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
         }
 
-        @Override
-        public int hashCode() {
-            // Constants correspond to glibc's lcg algorithm parameters
-            return (getX() * 1103515245 + 12345 ^ getZ() * 1103515245 + 12345) * 1103515245 + 12345;
+        private boolean isValid(ChangedSign sign, World world, boolean smallSearchSize) {
+
+            if (smallSearchSize != this.smallSearchSize || !sign.getLine(0).equals(typeLine))
+                return false;
+
+            // Catches changes that fire no events, such as blocks set by other plugins.
+            for (List<int[]> gate : gates) {
+                for (int[] column : gate) {
+                    if (!isGateBlock(type, world.getBlockAt(column[0], column[2], column[1]))
+                            || world.getBlockAt(column[0], column[2] + 1, column[1]).getType() == Material.AIR)
+                        return false;
+                }
+            }
+            return true;
         }
     }
 }
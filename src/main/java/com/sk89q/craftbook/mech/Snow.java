@@ -1,12 +1,18 @@
 package com.sk89q.craftbook.mech;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.logging.Level;
+import java.util.Set;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockState;
 import org.bukkit.entity.Player;
@@ -18,6 +24,8 @@ import org.bukkit.event.block.BlockFormEvent;
 import org.bukkit.event.block.BlockPhysicsEvent;
 import org.bukkit.event.entity.ProjectileHitEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
@@ -26,6 +34,7 @@ import org.bukkit.scheduler.BukkitTask;
 import com.sk89q.craftbook.AbstractCraftBookMechanic;
 import com.sk89q.craftbook.LocalPlayer;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import com.sk89q.craftbook.bukkit.util.BukkitUtil;
 import com.sk89q.craftbook.util.EventUtil;
 import com.sk89q.craftbook.util.ItemInfo;
 import com.sk89q.craftbook.util.ItemUtil;
@@ -36,24 +45,78 @@ import com.sk89q.worldedit.blocks.BlockID;
 /**
  * Snow fall mechanism. Builds up/tramples snow
  *
+ * All snow is simulated from a single task on the main thread. Piling snow columns and falling snow are kept in a tick
+ * wheel, and whatever does not fit within the configured time budget of a tick is carried over to the next one. Changed
+ * snow layers are collected per chunk and sent once at the end of the tick, to the players that can see the chunk.
+ *
  * @author Me4502
  */
 public class Snow extends AbstractCraftBookMechanic {
 
-    private Map<Location, BukkitTask> tasks;
+    /**
+     * The amount of slots in the tick wheel. Must be a power of two.
+     */
+    private static final int WHEEL_SIZE = 256;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    /**
+     * The snow columns that pile up whilst it storms, keyed by world, then by packed chunk position and then by packed
+     * block position.
+     */
+    private Map<World, Map<Long, Map<Long, Column>>> columns;
+
+    /**
+     * The snow layers that changed this tick, keyed by world and then by packed chunk position.
+     */
+    private Map<World, Map<Long, ChangedChunk>> changes;
+
+    private List<Scheduled>[] wheel;
+    private List<Scheduled> spareSlot;
+
+    /**
+     * Work that was due, but could not run within the time budget of its tick.
+     */
+    private ArrayDeque<Scheduled> deferred;
+
+    /**
+     * The amount of entries in the wheel and the deferred queue.
+     */
+    private int pending;
+
+    private long currentTick;
 
+    private BukkitTask task;
+
+    @SuppressWarnings("unchecked")
     @Override
     public boolean enable() {
-        tasks = new HashMap<Location, BukkitTask>();
+
+        columns = new HashMap<World, Map<Long, Map<Long, Column>>>();
+        changes = new HashMap<World, Map<Long, ChangedChunk>>();
+        wheel = new List[WHEEL_SIZE];
+        for(int i = 0; i < WHEEL_SIZE; i++)
+            wheel[i] = new ArrayList<Scheduled>();
+        spareSlot = new ArrayList<Scheduled>();
+        deferred = new ArrayDeque<Scheduled>();
+        pending = 0;
+        currentTick = 0;
 
         return true;
     }
 
     @Override
     public void disable() {
-        for(BukkitTask task : tasks.values())
+
+        if(task != null) {
             task.cancel();
-        tasks = null;
+            task = null;
+        }
+        if(changes != null)
+            flushChanges();
+        columns = null;
+        changes = null;
+        wheel = null;
+        deferred = null;
     }
 
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
@@ -167,40 +230,245 @@ public class Snow extends AbstractCraftBookMechanic {
 
     public void schedule(Location loc) {
 
-        if (tasks.containsKey(loc)) return;
-        long delay = CraftBookPlugin.inst().getRandom().nextInt(60) + 40; // 100 is max possible
-        BukkitTask taskID = CraftBookPlugin.inst().getServer().getScheduler().runTaskTimer(CraftBookPlugin.inst(), new MakeSnow(loc), delay * 20L, delay * 20L);
-        if (taskID.getTaskId() == -1)
-            CraftBookPlugin.logger().log(Level.SEVERE, "Snow Mechanic failed to schedule!");
-        else tasks.put(loc, taskID);
+        int x = loc.getBlockX(), y = loc.getBlockY(), z = loc.getBlockZ();
+        Map<Long, Column> chunk = getColumns(loc.getWorld(), x >> 4, z >> 4, true);
+        long position = LocationUtil.packBlockPosition(x, y, z);
+        if (chunk.containsKey(position)) return;
+
+        int period = (CraftBookPlugin.inst().getRandom().nextInt(60) + 40) * 20; // 100 seconds is max possible
+        Column column = new Column(loc.getWorld(), x >> 4, z >> 4, position, period);
+        chunk.put(position, column);
+        schedule(column, period);
+    }
+
+    private Map<Long, Column> getColumns(World world, int chunkX, int chunkZ, boolean create) {
+
+        Map<Long, Map<Long, Column>> chunks = columns.get(world);
+        if (chunks == null) {
+            if (!create) return null;
+            chunks = new HashMap<Long, Map<Long, Column>>();
+            columns.put(world, chunks);
+        }
+
+        long key = LocationUtil.packChunkPosition(chunkX, chunkZ);
+        Map<Long, Column> chunk = chunks.get(key);
+        if (chunk == null && create) {
+            chunk = new HashMap<Long, Column>();
+            chunks.put(key, chunk);
+        }
+        return chunk;
+    }
+
+    private void removeColumn(Column column) {
+
+        column.removed = true;
+        Map<Long, Column> chunk = getColumns(column.world, column.chunkX, column.chunkZ, false);
+        if (chunk == null) return;
+        chunk.remove(column.position);
+        if (chunk.isEmpty()) {
+            Map<Long, Map<Long, Column>> chunks = columns.get(column.world);
+            chunks.remove(LocationUtil.packChunkPosition(column.chunkX, column.chunkZ));
+            if (chunks.isEmpty())
+                columns.remove(column.world);
+        }
+    }
+
+    private void removeColumns(Map<Long, Column> chunk) {
+
+        if (chunk == null) return;
+        for (Column column : chunk.values())
+            column.removed = true;
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+
+        Map<Long, Map<Long, Column>> chunks = columns.get(event.getWorld());
+        if (chunks == null) return;
+        removeColumns(chunks.remove(LocationUtil.packChunkPosition(event.getChunk().getX(), event.getChunk().getZ())));
+        if (chunks.isEmpty())
+            columns.remove(event.getWorld());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldUnload(WorldUnloadEvent event) {
+
+        Map<Long, Map<Long, Column>> chunks = columns.remove(event.getWorld());
+        if (chunks != null)
+            for (Map<Long, Column> chunk : chunks.values())
+                removeColumns(chunk);
+        changes.remove(event.getWorld());
+    }
+
+    /**
+     * Places an entry into the wheel, to run after the given amount of ticks.
+     *
+     * @param entry The entry
+     * @param delay The delay in ticks
+     */
+    private void schedule(Scheduled entry, int delay) {
+
+        entry.dueTick = currentTick + Math.max(1, delay);
+        wheel[(int) (entry.dueTick & WHEEL_MASK)].add(entry);
+        pending++;
+        startTask();
+    }
+
+    private void startTask() {
+
+        if (task != null) return;
+        task = Bukkit.getScheduler().runTaskTimer(CraftBookPlugin.inst(), new Runnable() {
+
+            @Override
+            public void run() {
+
+                tick();
+            }
+        }, 1, 1);
+    }
+
+    /**
+     * Advances the tick wheel by one tick, running all snow that is due, and then sends the changed snow layers.
+     */
+    private void tick() {
+
+        currentTick++;
+
+        long budget = CraftBookPlugin.inst().getConfiguration().snowTickBudget * 1000000L;
+        long start = budget > 0 ? System.nanoTime() : 0;
+        boolean exhausted = false;
+
+        int slot = (int) (currentTick & WHEEL_MASK);
+        List<Scheduled> due = wheel[slot];
+        wheel[slot] = spareSlot;
+
+        // Work carried over from previous ticks goes first, so that it cannot be starved.
+        while (!exhausted && !deferred.isEmpty()) {
+            pending--;
+            run(deferred.poll());
+            if (budget > 0 && System.nanoTime() - start > budget)
+                exhausted = true;
+        }
+
+        for (int i = 0; i < due.size(); i++) {
+
+            Scheduled entry = due.get(i);
+            if (entry.removed) {
+                pending--;
+                continue;
+            }
+
+            if (entry.dueTick > currentTick) {
+                // Due on a later rotation of the wheel.
+                wheel[(int) (entry.dueTick & WHEEL_MASK)].add(entry);
+                continue;
+            }
+
+            if (exhausted) {
+                deferred.add(entry);
+                continue;
+            }
+
+            pending--;
+            run(entry);
+            if (budget > 0 && System.nanoTime() - start > budget)
+                exhausted = true;
+        }
+
+        due.clear();
+        spareSlot = due;
+
+        flushChanges();
+
+        if (pending == 0 && task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    private void run(Scheduled entry) {
+
+        if (entry.removed) return;
+        try {
+            entry.run();
+        } catch (Throwable t) {
+            BukkitUtil.printStacktrace(t);
+            if (entry instanceof Column)
+                removeColumn((Column) entry);
+        }
+    }
+
+    /**
+     * Work done by the snow task.
+     */
+    private abstract static class Scheduled {
+
+        long dueTick;
+        boolean removed = false;
+
+        abstract void run();
     }
 
-    public class MakeSnow implements Runnable {
+    /**
+     * A block that gathers snow every so often whilst it storms.
+     */
+    private final class Column extends Scheduled {
 
-        final Location event;
+        final World world;
+        final int chunkX, chunkZ;
+        final long position;
+        final int period;
 
-        public MakeSnow(Location event) {
+        Column(World world, int chunkX, int chunkZ, long position, int period) {
 
-            this.event = event;
+            this.world = world;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.position = position;
+            this.period = period;
         }
 
         @Override
-        public void run() {
-
-            if (!tasks.containsKey(event)) return;
-            if (event.getWorld().hasStorm()) {
-                if (event.getBlock().getData() > (byte) 7) return;
-                if (event.subtract(0, 1, 0).getBlock().getType() == Material.AIR) return;
-
-                event.add(0, 1, 0);
-                if (!(event.getBlock().getType() == Material.SNOW) && !(event.getBlock().getType() == Material.SNOW_BLOCK)) return;
-                incrementData(event.getBlock(), 0);
-            } else {
-                BukkitTask taskID = tasks.get(event);
-                if (taskID == null) return;
-                taskID.cancel();
-                tasks.remove(event);
+        void run() {
+
+            if (!world.hasStorm() || !world.isChunkLoaded(chunkX, chunkZ)) {
+                removeColumn(this);
+                return;
             }
+
+            schedule(this, period);
+
+            Block block = world.getBlockAt(LocationUtil.unpackBlockX(position), LocationUtil.unpackBlockY(position), LocationUtil.unpackBlockZ(position));
+            if (block.getData() > (byte) 7) return;
+            if (block.getRelative(0, -1, 0).getType() == Material.AIR) return;
+            if (!(block.getType() == Material.SNOW) && !(block.getType() == Material.SNOW_BLOCK)) return;
+            incrementData(block, 0);
+        }
+    }
+
+    /**
+     * Snow that is shown for a moment whilst it falls down onto the block below.
+     */
+    private final class Fall extends Scheduled {
+
+        final Block block;
+        final int depth;
+        final boolean remove;
+
+        Fall(Block block, int depth, boolean remove) {
+
+            this.block = block;
+            this.depth = depth;
+            this.remove = remove;
+        }
+
+        @Override
+        void run() {
+
+            if (!block.getWorld().isChunkLoaded(block.getX() >> 4, block.getZ() >> 4)) return;
+            if (remove)
+                block.setTypeId(0, false);
+            incrementData(block.getRelative(0, -1, 0), depth + 1);
         }
     }
 
@@ -324,16 +592,7 @@ public class Snow extends AbstractCraftBookMechanic {
                 }
             } else
                 remove = false;
-            final boolean fremove = remove;
-            Bukkit.getScheduler().runTaskLater(CraftBookPlugin.inst(), new Runnable() {
-
-                @Override
-                public void run () {
-                    if(fremove)
-                        block.setTypeId(0, false);
-                    incrementData(block.getRelative(0, -1, 0), depth+1);
-                }
-            }, CraftBookPlugin.inst().getConfiguration().snowFallAnimationSpeed);
+            schedule(new Fall(block, depth, remove), CraftBookPlugin.inst().getConfiguration().snowFallAnimationSpeed);
             return;
         }
 
@@ -371,10 +630,92 @@ public class Snow extends AbstractCraftBookMechanic {
     public void setBlockDataWithNotify(Block block, byte data) {
 
         block.setTypeIdAndData(block.getTypeId(), data, false);
-        for (Player p : block.getWorld().getPlayers()) {
-            if (p.getWorld() != block.getWorld()) continue;
-            if (LocationUtil.getDistanceSquared(p.getLocation(), block.getLocation()) < CraftBookPlugin.inst().getServer().getViewDistance() * 16 * CraftBookPlugin.inst().getServer().getViewDistance() * 16)
-                p.sendBlockChange(block.getLocation(), block.getType(), data);
+
+        Map<Long, ChangedChunk> chunks = changes.get(block.getWorld());
+        if (chunks == null) {
+            chunks = new HashMap<Long, ChangedChunk>();
+            changes.put(block.getWorld(), chunks);
+        }
+        long key = LocationUtil.packChunkPosition(block.getX() >> 4, block.getZ() >> 4);
+        ChangedChunk chunk = chunks.get(key);
+        if (chunk == null) {
+            chunk = new ChangedChunk(block.getX() >> 4, block.getZ() >> 4);
+            chunks.put(key, chunk);
+        }
+        chunk.positions.add(LocationUtil.packBlockPosition(block.getX(), block.getY(), block.getZ()));
+
+        // Changes made outside of the snow task are sent on the next tick.
+        startTask();
+    }
+
+    /**
+     * Sends every snow layer that changed since the last call to the players whose view distance covers its chunk. A
+     * layer that changed several times is only sent once, as it is now.
+     */
+    private void flushChanges() {
+
+        if (changes.isEmpty()) return;
+
+        int view = CraftBookPlugin.inst().getServer().getViewDistance();
+        for (Map.Entry<World, Map<Long, ChangedChunk>> worldChanges : changes.entrySet()) {
+
+            World world = worldChanges.getKey();
+            List<Player> players = world.getPlayers();
+            if (players.isEmpty()) continue;
+
+            int[] playerChunks = new int[players.size() * 2];
+            for (int i = 0; i < players.size(); i++) {
+                Location location = players.get(i).getLocation();
+                playerChunks[i * 2] = location.getBlockX() >> 4;
+                playerChunks[i * 2 + 1] = location.getBlockZ() >> 4;
+            }
+
+            for (ChangedChunk chunk : worldChanges.getValue().values()) {
+
+                Location[] locations = null;
+                Material[] types = null;
+                byte[] data = null;
+
+                for (int i = 0; i < players.size(); i++) {
+                    if (Math.abs(playerChunks[i * 2] - chunk.x) > view || Math.abs(playerChunks[i * 2 + 1] - chunk.z) > view)
+                        continue;
+
+                    if (locations == null) {
+                        locations = new Location[chunk.positions.size()];
+                        types = new Material[locations.length];
+                        data = new byte[locations.length];
+                        Iterator<Long> positions = chunk.positions.iterator();
+                        for (int j = 0; j < locations.length; j++) {
+                            long position = positions.next();
+                            Block block = world.getBlockAt(LocationUtil.unpackBlockX(position), LocationUtil.unpackBlockY(position), LocationUtil.unpackBlockZ(position));
+                            locations[j] = block.getLocation();
+                            types[j] = block.getType();
+                            data[j] = block.getData();
+                        }
+                    }
+
+                    Player player = players.get(i);
+                    for (int j = 0; j < locations.length; j++)
+                        player.sendBlockChange(locations[j], types[j], data[j]);
+                }
+            }
+        }
+
+        changes.clear();
+    }
+
+    /**
+     * The snow layers of a chunk that changed this tick.
+     */
+    private static final class ChangedChunk {
+
+        final int x, z;
+        final Set<Long> positions = new HashSet<Long>();
+
+        ChangedChunk(int x, int z) {
+
+            this.x = x;
+            this.z = z;
         }
     }
 
@@ -1,10 +1,13 @@
 package com.sk89q.craftbook.mech.area;
 
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.Locale;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.regex.Pattern;
 
+import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.event.EventHandler;
@@ -29,6 +32,18 @@ import com.sk89q.worldedit.data.DataException;
  */
 public class Area extends AbstractCraftBookMechanic {
 
+    /**
+     * The signs of areas that are being pasted or cleared.
+     */
+    private static final Set<Location> toggling = new HashSet<Location>();
+
+    @Override
+    public void disable() {
+
+        CuboidPasteJob.finishAll();
+        toggling.clear();
+    }
+
     @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGH)
     public void onSignChange(SignChangeEvent event) {
 
@@ -136,6 +151,10 @@ public class Area extends AbstractCraftBookMechanic {
 
         if (!checkSign(sign)) return false;
 
+        // The sign is only updated once the area is done, so wait for that before toggling it again.
+        Location location = BukkitUtil.toSign(sign).getLocation();
+        if (!toggling.add(location)) return false;
+
         try {
             World world = BukkitUtil.toSign(sign).getWorld();
             String namespace = sign.getLine(0);
@@ -151,16 +170,15 @@ public class Area extends AbstractCraftBookMechanic {
                 // if this is a save area save it before toggling off
                 if (save) {
                     copy.copy();
-                    CopyManager.getInstance().save(world, namespace, id, copy);
+                    CopyManager.getInstance().save(world, namespace, id, copy, inactiveID);
                 }
                 // if we are toggling to the second area we dont clear the old area
                 if (!inactiveID.isEmpty() && !inactiveID.equals("--")) {
                     copy = CopyManager.getInstance().load(world, namespace, inactiveID);
-                    copy.paste();
+                    copy.paste(getToggleCallback(location, sign, false));
                 } else {
-                    copy.clear();
+                    copy.clear(getToggleCallback(location, sign, false));
                 }
-                setToggledState(sign, false);
             } else {
 
                 // toggle the area on
@@ -168,19 +186,21 @@ public class Area extends AbstractCraftBookMechanic {
                 if (save && !inactiveID.isEmpty() && !inactiveID.equals("--")) {
                     copy = CopyManager.getInstance().load(world, namespace, inactiveID);
                     copy.copy();
-                    CopyManager.getInstance().save(world, namespace, inactiveID, copy);
+                    CopyManager.getInstance().save(world, namespace, inactiveID, copy, id);
                 }
 
                 copy = CopyManager.getInstance().load(world, namespace, id);
-                copy.paste();
-                setToggledState(sign, true);
+                copy.paste(getToggleCallback(location, sign, true));
             }
             return true;
         } catch (CuboidCopyException e) {
+            toggling.remove(location);
             CraftBookPlugin.logger().log(Level.SEVERE, "Failed to toggle Area: " + e.getMessage());
         } catch (DataException e) {
+            toggling.remove(location);
             CraftBookPlugin.logger().log(Level.SEVERE, "Failed to toggle Area: " + e.getMessage());
         } catch (IOException e) {
+            toggling.remove(location);
             CraftBookPlugin.logger().log(Level.SEVERE, "Failed to toggle Area: " + e.getMessage());
         }
         return false;
@@ -193,6 +213,9 @@ public class Area extends AbstractCraftBookMechanic {
         boolean toggleOn = coldCheckToggleState(sign);
         boolean save = sign.getLine(1).equalsIgnoreCase("[SaveArea]");
 
+        Location location = BukkitUtil.toSign(sign).getLocation();
+        if (!toggling.add(location)) return false;
+
         try {
             World world = BukkitUtil.toSign(sign).getWorld();
             String namespace = sign.getLine(0);
@@ -208,16 +231,15 @@ public class Area extends AbstractCraftBookMechanic {
                 // if this is a save area save it before toggling off
                 if (save) {
                     copy.copy();
-                    CopyManager.getInstance().save(world, namespace, id, copy);
+                    CopyManager.getInstance().save(world, namespace, id, copy, inactiveID);
                 }
                 // if we are toggling to the second area we dont clear the old area
                 if (!inactiveID.isEmpty() && !inactiveID.equals("--")) {
                     copy = CopyManager.getInstance().load(world, namespace, inactiveID);
-                    copy.paste();
+                    copy.paste(getToggleCallback(location, sign, false));
                 } else {
-                    copy.clear();
+                    copy.clear(getToggleCallback(location, sign, false));
                 }
-                setToggledState(sign, false);
             } else {
 
                 // toggle the area on
@@ -225,18 +247,20 @@ public class Area extends AbstractCraftBookMechanic {
                 if (save && !inactiveID.isEmpty() && !inactiveID.equals("--")) {
                     copy = CopyManager.getInstance().load(world, namespace, inactiveID);
                     copy.copy();
-                    CopyManager.getInstance().save(world, namespace, inactiveID, copy);
+                    CopyManager.getInstance().save(world, namespace, inactiveID, copy, id);
                 } else
                     copy = CopyManager.getInstance().load(world, namespace, id);
-                copy.paste();
-                setToggledState(sign, true);
+                copy.paste(getToggleCallback(location, sign, true));
             }
             return true;
         } catch (CuboidCopyException e) {
+            toggling.remove(location);
             CraftBookPlugin.logger().log(Level.SEVERE, "Failed to cold toggle Area: " + e.getMessage());
         } catch (DataException e) {
+            toggling.remove(location);
             CraftBookPlugin.logger().log(Level.SEVERE, "Failed to cold toggle Area: " + e.getMessage());
         } catch (IOException e) {
+            toggling.remove(location);
             CraftBookPlugin.logger().log(Level.SEVERE, "Failed to cold toggle Area: " + e.getMessage());
         }
         return false;
@@ -268,6 +292,19 @@ public class Area extends AbstractCraftBookMechanic {
         return pattern.matcher(line3).matches() || !(line4.equals("--") || pattern.matcher(line4).matches());
     }
 
+    private static Runnable getToggleCallback(final Location location, final ChangedSign sign, final boolean state) {
+
+        return new Runnable() {
+
+            @Override
+            public void run() {
+
+                toggling.remove(location);
+                setToggledState(sign, state);
+            }
+        };
+    }
+
     private static void setToggledState(ChangedSign sign, boolean state) {
 
         int toToggleOn = state ? 2 : 3;
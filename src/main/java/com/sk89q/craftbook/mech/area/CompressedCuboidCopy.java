@@ -0,0 +1,422 @@
+package com.sk89q.craftbook.mech.area;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import com.sk89q.worldedit.Vector;
+
+/**
+ * Stores a copy of a cuboid, compressed one chunk section at a time.
+ *
+ * Each section is stored as a palette of the blocks found in it, followed by runs of palette entries. A copy can also
+ * be stored as a delta against another copy of the same cuboid, such as the other state of a toggle area. Blocks that
+ * are the same in both copies then use palette entry 0, and are read from the other copy.
+ *
+ * Copies loaded from a file are kept encoded, and each section is only decoded when it is pasted. They are read onto the
+ * heap rather than memory-mapped, as a mapped file can not be replaced on every platform while the copy is in use.
+ */
+@SuppressWarnings("deprecation")
+public class CompressedCuboidCopy extends CuboidCopy {
+
+    public static final byte VERSION = 2;
+
+    private static final int SAME_AS_BASE = 0;
+
+    private List<int[]> sections;
+
+    // The encoded sections. Section i runs from offsets[i] to offsets[i + 1].
+    private ByteBuffer buffer;
+    private int[] offsets;
+
+    // The copy this one is a delta against, or null.
+    private CompressedCuboidCopy base;
+    private String baseId;
+    // If the base was loaded for this copy alone, rather than shared with the cache.
+    private boolean ownsBase = false;
+
+    // The copies in memory that are a delta against this one.
+    private final List<CompressedCuboidCopy> dependents = new ArrayList<CompressedCuboidCopy>();
+
+    /**
+     * Construct the object. This is to create a new copy at a certain location.
+     *
+     * @param origin
+     * @param size
+     */
+    public CompressedCuboidCopy(Vector origin, Vector size, World world) {
+
+        super(origin, size, world);
+        sections = CuboidPasteJob.getSections(origin, width, height, length);
+        offsets = new int[sections.size() + 1];
+        buffer = ByteBuffer.allocate(0);
+    }
+
+    /**
+     * Used to create a copy when loaded from file.
+     */
+    protected CompressedCuboidCopy(World world) {
+
+        this.world = world;
+    }
+
+    /**
+     * Gets the id of the copy that the given file is stored as a delta against.
+     *
+     * @param file The file of a copy
+     * @return The id, or null if the copy is not a delta or not in this format
+     */
+    public static String readBaseId(File file) throws IOException {
+
+        DataInputStream reader = new DataInputStream(new FileInputStream(file));
+        try {
+            if (reader.readByte() != VERSION) return null;
+            if (reader.skipBytes(6 * 4) != 6 * 4) return null;
+            String id = reader.readUTF();
+            return id.isEmpty() ? null : id;
+        } finally {
+            reader.close();
+        }
+    }
+
+    public boolean isDelta() {
+
+        return base != null;
+    }
+
+    /**
+     * Checks if the given copy covers the same cuboid as this one.
+     */
+    public boolean isSameCuboid(CuboidCopy copy) {
+
+        return copy.origin.equals(origin) && copy.width == width && copy.height == height && copy.length == length;
+    }
+
+    @Override
+    public void save(File file) throws IOException {
+
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        DataOutputStream writer = new DataOutputStream(new FileOutputStream(temp));
+        try {
+            writer.writeByte(VERSION);
+            writer.writeInt(origin.getBlockX());
+            writer.writeInt(origin.getBlockY());
+            writer.writeInt(origin.getBlockZ());
+            writer.writeInt(width);
+            writer.writeInt(height);
+            writer.writeInt(length);
+            writer.writeUTF(base == null ? "" : baseId);
+            writer.writeInt(sections.size());
+            for (int offset : offsets)
+                writer.writeInt(offset);
+            ByteBuffer data = buffer.duplicate();
+            data.position(0);
+            byte[] chunk = new byte[8192];
+            while (data.hasRemaining()) {
+                int count = Math.min(chunk.length, data.remaining());
+                data.get(chunk, 0, count);
+                writer.write(chunk, 0, count);
+            }
+        } finally {
+            writer.close();
+        }
+
+        if (!temp.renameTo(file)) {
+            file.delete();
+            if (!temp.renameTo(file))
+                throw new IOException("Failed to replace " + file.getName());
+        }
+    }
+
+    @Override
+    public void loadFromFile(File file) throws IOException, CuboidCopyException {
+
+        byte[] bytes;
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            bytes = new byte[(int) in.length()];
+            in.readFully(bytes);
+        } finally {
+            in.close();
+        }
+        ByteBuffer data = ByteBuffer.wrap(bytes);
+
+        try {
+            if (data.get() != VERSION) throw new CuboidCopyException("File error: Unknown version");
+            origin = new Vector(data.getInt(), data.getInt(), data.getInt());
+            width = data.getInt();
+            height = data.getInt();
+            length = data.getInt();
+            size = new Vector(width, height, length);
+            byte[] id = new byte[data.getShort() & 0xFFFF];
+            data.get(id);
+            baseId = id.length == 0 ? null : new String(id, "UTF-8");
+
+            sections = CuboidPasteJob.getSections(origin, width, height, length);
+            if (data.getInt() != sections.size()) throw new CuboidCopyException("File error: Bad size");
+            offsets = new int[sections.size() + 1];
+            for (int i = 0; i < offsets.length; i++)
+                offsets[i] = data.getInt();
+            buffer = data.slice();
+            if (offsets[sections.size()] != buffer.capacity()) throw new CuboidCopyException("File error: Bad size");
+        } catch (BufferUnderflowException e) {
+            throw new CuboidCopyException("File error: Bad size");
+        }
+
+        if (baseId != null) {
+            // Not taken from the cache, as the cached copy may change before this one is stored in full.
+            CuboidCopy copy = CuboidCopy.load(new File(file.getParentFile(), baseId + ".cbcopy"), world);
+            if (!(copy instanceof CompressedCuboidCopy) || !isSameCuboid(copy))
+                throw new CuboidCopyException("File error: " + baseId + " does not match " + file.getName());
+            base = (CompressedCuboidCopy) copy;
+            base.dependents.add(this);
+            ownsBase = true;
+        }
+    }
+
+    /**
+     * Gets the approximate amount of memory used by this copy. This includes the copy it is a delta against, if that
+     * copy was loaded for it alone.
+     */
+    @Override
+    public long getMemorySize() {
+
+        long size = buffer.capacity() + offsets.length * 4 + sections.size() * 40;
+        if (ownsBase) size += base.getMemorySize();
+        return size;
+    }
+
+    @Override
+    public void copy() {
+
+        releaseDependents();
+
+        byte[] types = new byte[4096];
+        byte[] data = new byte[4096];
+        Encoder encoder = new Encoder();
+
+        for (int[] bounds : sections) {
+            int i = 0;
+            for (int y = bounds[1]; y <= bounds[4]; y++) {
+                for (int z = bounds[2]; z <= bounds[5]; z++) {
+                    for (int x = bounds[0]; x <= bounds[3]; x++, i++) {
+                        Block block = world.getBlockAt(origin.getBlockX() + x, origin.getBlockY() + y, origin.getBlockZ() + z);
+                        types[i] = (byte) block.getTypeId();
+                        data[i] = block.getData();
+                    }
+                }
+            }
+            encoder.add(types, data, i, null, null);
+        }
+
+        encoder.finish();
+        setBase(null, null);
+    }
+
+    /**
+     * Stores this copy as a delta against another copy of the same cuboid.
+     *
+     * @param other The other copy, which must not be a delta itself
+     * @param otherId The id of the other copy in the same namespace
+     */
+    public void encodeAgainst(CompressedCuboidCopy other, String otherId) {
+
+        if (other == this || other.isDelta() || !isSameCuboid(other))
+            throw new IllegalArgumentException("Can not store a delta against " + otherId);
+        releaseDependents();
+        encode(other);
+        setBase(other, otherId);
+    }
+
+    /**
+     * Stores this copy on its own, if it is a delta against another copy.
+     */
+    public void materialize() {
+
+        if (base == null) return;
+        encode(null);
+        setBase(null, null);
+    }
+
+    private void setBase(CompressedCuboidCopy base, String baseId) {
+
+        if (this.base != null)
+            this.base.dependents.remove(this);
+        this.base = base;
+        this.baseId = baseId;
+        ownsBase = false;
+        if (base != null)
+            base.dependents.add(this);
+    }
+
+    /**
+     * Stores every copy that is a delta against this one in full, before this one changes.
+     */
+    private void releaseDependents() {
+
+        for (CompressedCuboidCopy dependent : dependents.toArray(new CompressedCuboidCopy[dependents.size()]))
+            dependent.materialize();
+    }
+
+    private void encode(CompressedCuboidCopy against) {
+
+        byte[] types = new byte[4096];
+        byte[] data = new byte[4096];
+        byte[] baseTypes = against == null ? null : new byte[4096];
+        byte[] baseData = against == null ? null : new byte[4096];
+        Encoder encoder = new Encoder();
+
+        for (int section = 0; section < sections.size(); section++) {
+            int[] bounds = sections.get(section);
+            readSection(section, bounds, types, data);
+            if (against != null)
+                against.readSection(section, bounds, baseTypes, baseData);
+            encoder.add(types, data, CuboidPasteJob.getVolume(bounds), baseTypes, baseData);
+        }
+
+        encoder.finish();
+    }
+
+    private void readSection(int section, int[] bounds, byte[] types, byte[] data) {
+
+        if (base != null)
+            base.readSection(section, bounds, types, data);
+
+        ByteBuffer in = buffer.duplicate();
+        in.position(offsets[section]);
+
+        int paletteSize = readVarInt(in);
+        byte[] paletteTypes = new byte[paletteSize + 1];
+        byte[] paletteData = new byte[paletteSize + 1];
+        for (int i = 1; i <= paletteSize; i++) {
+            paletteTypes[i] = in.get();
+            paletteData[i] = in.get();
+        }
+
+        int volume = CuboidPasteJob.getVolume(bounds);
+        int i = 0;
+        while (i < volume) {
+            int run = readVarInt(in);
+            int entry = readVarInt(in);
+            if (entry == SAME_AS_BASE) {
+                i += run;
+                continue;
+            }
+            for (int end = i + run; i < end; i++) {
+                types[i] = paletteTypes[entry];
+                data[i] = paletteData[entry];
+            }
+        }
+    }
+
+    @Override
+    public void paste(Runnable callback) {
+
+        new CuboidPasteJob(world, origin, width, height, length, new CuboidPasteJob.SectionSource() {
+
+            @Override
+            public void readSection(int section, int[] bounds, byte[] types, byte[] data) {
+
+                CompressedCuboidCopy.this.readSection(section, bounds, types, data);
+            }
+        }, callback).start();
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+
+        while ((value & ~0x7F) != 0) {
+            out.write(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Encodes sections one after another, and replaces the encoded sections of the copy once done.
+     */
+    private class Encoder {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream runs = new ByteArrayOutputStream();
+        private final Map<Integer, Integer> palette = new HashMap<Integer, Integer>();
+        private final int[] newOffsets = new int[sections.size() + 1];
+        private int section = 0;
+
+        private void add(byte[] types, byte[] data, int volume, byte[] baseTypes, byte[] baseData) {
+
+            newOffsets[section++] = out.size();
+            palette.clear();
+            runs.reset();
+
+            int[] order = new int[volume];
+            int runEntry = -1;
+            int runLength = 0;
+            for (int i = 0; i < volume; i++) {
+                int entry;
+                if (baseTypes != null && types[i] == baseTypes[i] && data[i] == baseData[i])
+                    entry = SAME_AS_BASE;
+                else {
+                    int key = (types[i] & 0xFF) << 8 | data[i] & 0xFF;
+                    Integer index = palette.get(key);
+                    if (index == null) {
+                        index = palette.size() + 1;
+                        palette.put(key, index);
+                        order[index - 1] = key;
+                    }
+                    entry = index;
+                }
+
+                if (entry != runEntry && runLength > 0) {
+                    writeVarInt(runs, runLength);
+                    writeVarInt(runs, runEntry);
+                    runLength = 0;
+                }
+                runEntry = entry;
+                runLength++;
+            }
+            if (runLength > 0) {
+                writeVarInt(runs, runLength);
+                writeVarInt(runs, runEntry);
+            }
+
+            writeVarInt(out, palette.size());
+            for (int i = 0; i < palette.size(); i++) {
+                out.write(order[i] >> 8);
+                out.write(order[i]);
+            }
+            byte[] encodedRuns = runs.toByteArray();
+            out.write(encodedRuns, 0, encodedRuns.length);
+        }
+
+        private void finish() {
+
+            newOffsets[section] = out.size();
+            offsets = newOffsets;
+            buffer = ByteBuffer.wrap(out.toByteArray());
+        }
+    }
+}
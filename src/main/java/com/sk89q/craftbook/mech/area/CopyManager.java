@@ -19,7 +19,10 @@ package com.sk89q.craftbook.mech.area;
 import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 import org.bukkit.World;
@@ -40,10 +43,15 @@ public class CopyManager {
     private static final Pattern NAME_PATTERN = Pattern.compile("^[a-z0-9_]+$", Pattern.CASE_INSENSITIVE);
 
     /**
-     * Cache.
+     * Cache of all worlds, in order of last use. Bounded by the memory used by the copies rather than their amount.
      */
-    private final HashMap<String, HistoryHashMap<String, CuboidCopy>> cache = new HashMap<String,
-            HistoryHashMap<String, CuboidCopy>>();
+    private final LinkedHashMap<String, CuboidCopy> cache = new LinkedHashMap<String, CuboidCopy>(16, 0.75f, true);
+
+    /**
+     * The memory size of each cached copy when it was cached, and the total.
+     */
+    private final Map<String, Long> cacheSizes = new HashMap<String, Long>();
+    private long cacheSize = 0;
 
     /**
      * Remembers missing copies so as to not look for them on disk.
@@ -127,15 +135,13 @@ public class CopyManager {
             if (lastCheck > System.currentTimeMillis()) throw new MissingCuboidCopyException(id);
         }
 
-        HistoryHashMap<String, CuboidCopy> cache = getCache(world.getUID().toString());
-
-        CuboidCopy copy = cache.get(cacheKey);
+        CuboidCopy copy = cache.get(world.getUID() + "/" + cacheKey);
 
         if (copy == null) {
             File folder = new File(new File(plugin.getDataFolder(), "areas"), namespace);
             copy = CuboidCopy.load(new File(folder, id + getFileSuffix()), world);
             missing.remove(cacheKey);
-            cache.put(cacheKey, copy);
+            cache(world, cacheKey, copy);
             return copy;
         }
 
@@ -152,7 +158,21 @@ public class CopyManager {
      */
     public void save(World world, String namespace, String id, CuboidCopy copyFlat) throws IOException, DataException {
 
-        HistoryHashMap<String, CuboidCopy> cache = getCache(world.getUID().toString());
+        save(world, namespace, id, copyFlat, null);
+    }
+
+    /**
+     * Save a copy to disk. The copy will be cached. If possible, the copy is stored as a delta against the other
+     * state of the same area.
+     *
+     * @param id
+     * @param copyFlat
+     * @param pairId the id of the other state of the area, or null
+     *
+     * @throws IOException
+     */
+    public void save(World world, String namespace, String id, CuboidCopy copyFlat, String pairId) throws IOException,
+    DataException {
 
         File folder = new File(new File(plugin.getDataFolder(), "areas"), namespace);
 
@@ -164,9 +184,94 @@ public class CopyManager {
 
         String cacheKey = namespace + "/" + id;
 
+        // Copies stored as a delta against this one have to be stored in full before it changes.
+        storeDependents(world, folder, namespace, id);
+
+        if (copyFlat instanceof CompressedCuboidCopy && pairId != null) {
+            pairId = pairId.toLowerCase(Locale.ENGLISH);
+            if (!pairId.equals(id) && isExistingArea(plugin.getDataFolder(), namespace, pairId)) {
+                try {
+                    CuboidCopy pair = load(world, namespace, pairId);
+                    if (pair instanceof CompressedCuboidCopy && !((CompressedCuboidCopy) pair).isDelta()
+                            && ((CompressedCuboidCopy) pair).isSameCuboid(copyFlat))
+                        ((CompressedCuboidCopy) copyFlat).encodeAgainst((CompressedCuboidCopy) pair, pairId);
+                } catch (CuboidCopyException e) {
+                    // Store it in full instead.
+                }
+            }
+        }
+
         copyFlat.save(new File(folder, id + getFileSuffix()));
-        missing.remove(cacheKey);
-        cache.put(cacheKey, copyFlat);
+        getMissing(world.getUID().toString()).remove(cacheKey);
+        cache(world, cacheKey, copyFlat);
+    }
+
+    /**
+     * Deletes a copy from disk, and removes it from the cache. Copies stored as a delta against it are stored in full
+     * first.
+     *
+     * @param namespace
+     * @param id
+     *
+     * @return true if the copy was deleted
+     *
+     * @throws IOException if a copy stored as a delta against it could not be stored in full
+     */
+    public boolean delete(World world, String namespace, String id) throws IOException {
+
+        File folder = new File(new File(plugin.getDataFolder(), "areas"), namespace);
+        id = id.toLowerCase(Locale.ENGLISH);
+
+        storeDependents(world, folder, namespace, id);
+        evict(namespace, id);
+        return new File(folder, id + getFileSuffix()).delete();
+    }
+
+    /**
+     * Removes copies from the cache, in every world.
+     *
+     * @param namespace
+     * @param id the id of the copy, or null for every copy in the namespace
+     */
+    public void evict(String namespace, String id) {
+
+        String prefix = namespace + "/" + (id == null ? "" : id.toLowerCase(Locale.ENGLISH));
+        Iterator<String> iter = cache.keySet().iterator();
+        while (iter.hasNext()) {
+            String key = iter.next();
+            // Keys start with the world UID.
+            String cacheKey = key.substring(key.indexOf('/') + 1);
+            if (id == null ? cacheKey.startsWith(prefix) : cacheKey.equals(prefix)) {
+                iter.remove();
+                cacheSize -= cacheSizes.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Stores every copy that is a delta against the given copy in full.
+     */
+    private void storeDependents(World world, File folder, String namespace, String id) throws IOException {
+
+        if (plugin.getConfiguration().areaUseSchematics) return;
+
+        File[] files = folder.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.endsWith(".cbcopy") || name.equals(id + ".cbcopy")) continue;
+            if (!id.equals(CompressedCuboidCopy.readBaseId(file))) continue;
+            String dependentId = name.substring(0, name.length() - ".cbcopy".length());
+            try {
+                CuboidCopy dependent = load(world, namespace, dependentId);
+                ((CompressedCuboidCopy) dependent).materialize();
+                dependent.save(file);
+            } catch (CuboidCopyException e) {
+                throw new IOException("Failed to store " + name + " in full: " + e.getMessage());
+            }
+            // The copies cached for other worlds are still deltas against the old copy.
+            evict(namespace, dependentId);
+        }
     }
 
     /**
@@ -198,15 +303,22 @@ public class CopyManager {
         }
     }
 
-    private HistoryHashMap<String, CuboidCopy> getCache(String world) {
+    private void cache(World world, String cacheKey, CuboidCopy copy) {
 
-        HistoryHashMap<String, CuboidCopy> worldCache = cache.get(world);
-        if (worldCache != null) {
-            return worldCache;
-        } else {
-            worldCache = new HistoryHashMap<String, CuboidCopy>(10);
-            cache.put(world, worldCache);
-            return worldCache;
+        String key = world.getUID() + "/" + cacheKey;
+        long size = copy.getMemorySize();
+
+        cache.put(key, copy);
+        Long old = cacheSizes.put(key, size);
+        cacheSize += size - (old == null ? 0 : old);
+
+        long max = plugin.getConfiguration().areaMaxCacheSize * 1024L * 1024L;
+        Iterator<Map.Entry<String, CuboidCopy>> iter = cache.entrySet().iterator();
+        while (cacheSize > max && cache.size() > 1 && iter.hasNext()) {
+            String eldest = iter.next().getKey();
+            if (eldest.equals(key)) continue;
+            iter.remove();
+            cacheSize -= cacheSizes.remove(eldest);
         }
     }
 
@@ -1,18 +1,13 @@
 package com.sk89q.craftbook.mech.area;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
-import org.bukkit.Material;
 import org.bukkit.World;
-import org.bukkit.block.Block;
-import org.bukkit.inventory.InventoryHolder;
 
 import com.sk89q.craftbook.bukkit.util.BukkitUtil;
 import com.sk89q.worldedit.Vector;
-import com.sk89q.worldedit.blocks.BlockType;
 import com.sk89q.worldedit.data.DataException;
 
 /**
@@ -61,7 +56,12 @@ public abstract class CuboidCopy {
         CuboidCopy copy = null;
         if (extension.equalsIgnoreCase(".cbcopy")) {
             // this copies only blocks and not sign text or chest contents
-            copy = new FlatCuboidCopy();
+            try {
+                copy = readVersion(file) == CompressedCuboidCopy.VERSION ? new CompressedCuboidCopy(world) : new FlatCuboidCopy();
+            } catch (IOException e) {
+                BukkitUtil.printStacktrace(e);
+                throw new CuboidCopyException(e.getMessage());
+            }
         } else if (extension.equalsIgnoreCase(".schematic")) {
             copy = new MCEditCuboidCopy(world);
         }
@@ -79,45 +79,46 @@ public abstract class CuboidCopy {
         return copy;
     }
 
+    private static int readVersion(File file) throws IOException {
+
+        FileInputStream in = new FileInputStream(file);
+        try {
+            return in.read();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Gets the approximate amount of memory used by this copy.
+     *
+     * @return the size in bytes
+     */
+    public long getMemorySize() {
+
+        return (long) width * height * length * 2;
+    }
+
     /**
      * Clear the area.
      */
     public void clear() {
 
-        if (world == null || origin == null) return;
-        List<Vector> queued = new ArrayList<Vector>();
-
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                for (int z = 0; z < length; z++) {
-                    Vector pt = origin.add(x, y, z);
-                    if (pt == null) {
-                        continue;
-                    }
-                    if (BlockType.shouldPlaceLast(world.getBlockTypeIdAt(BukkitUtil.toLocation(world, pt)))) {
-                        Block block = world.getBlockAt(BukkitUtil.toLocation(world, pt));
-                        if (block instanceof InventoryHolder) {
-                            InventoryHolder holder = (InventoryHolder) block;
-                            holder.getInventory().clear();
-                        }
-                        block.setType(Material.AIR);
-                    } else {
-                        // Can't destroy these blocks yet
-                        queued.add(pt);
-                    }
-                }
-            }
-        }
+        clear(null);
+    }
 
-        for (Vector pt : queued) {
-            Block block = world.getBlockAt(BukkitUtil.toLocation(world, pt));
-            if (block instanceof InventoryHolder) {
+    /**
+     * Clears the area over the next ticks.
+     *
+     * @param callback Run once the area is clear, or null
+     */
+    public void clear(Runnable callback) {
 
-                InventoryHolder holder = (InventoryHolder) block;
-                holder.getInventory().clear();
-            }
-            block.setType(Material.AIR);
+        if (world == null || origin == null) {
+            if (callback != null) callback.run();
+            return;
         }
+        new CuboidPasteJob(world, origin, width, height, length, null, callback).start();
     }
 
     /**
@@ -158,7 +159,17 @@ public abstract class CuboidCopy {
     /**
      * Pastes the cuboid copy into the world on its point of origin.
      */
-    public abstract void paste();
+    public void paste() {
+
+        paste(null);
+    }
+
+    /**
+     * Pastes the cuboid copy into the world on its point of origin. The paste may be spread over the next ticks.
+     *
+     * @param callback Run once the paste is done, or null
+     */
+    public abstract void paste(Runnable callback);
 
     /**
      * Copies the cuboid from the world caching its state and blocks.
@@ -0,0 +1,313 @@
+package com.sk89q.craftbook.mech.area;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.scheduler.BukkitTask;
+
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import com.sk89q.craftbook.bukkit.util.BukkitUtil;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BlockType;
+
+/**
+ * Writes the blocks of a cuboid copy into the world over several ticks.
+ *
+ * The cuboid is written one chunk section at a time, with up to the configured amount of blocks each tick. Blocks are
+ * written without physics, except for blocks that need another block to stay in place. Those are written in a second
+ * phase once every section is done, and with physics so that they update their neighbours.
+ */
+@SuppressWarnings("deprecation")
+public class CuboidPasteJob {
+
+    private static final List<CuboidPasteJob> jobs = new ArrayList<CuboidPasteJob>();
+
+    private static BukkitTask task;
+
+    private final World world;
+    private final int originX, originY, originZ;
+    private final int width, height, length;
+
+    // The blocks to write, or null to clear the area.
+    private final SectionSource source;
+
+    // Writes the whole cuboid in one go instead, for copies that can not be split into sections. Null once it ran.
+    private Runnable paste;
+
+    private final Runnable callback;
+
+    private final List<int[]> sections;
+    private int section = 0;
+
+    private final byte[] types = new byte[4096];
+    private final byte[] data = new byte[4096];
+
+    // The blocks that are written in the second phase, in the order they were found. Each holds the packed position
+    // relative to the origin, the type and the data.
+    private long[] last = new long[64];
+    private int lastCount = 0;
+    private int lastIndex = 0;
+
+    /**
+     * Creates a job that writes the given blocks into the world. The job does not run until it is started.
+     *
+     * @param world The world
+     * @param origin The lowest corner of the cuboid
+     * @param width The size of the cuboid along the x axis
+     * @param height The size of the cuboid along the y axis
+     * @param length The size of the cuboid along the z axis
+     * @param source The blocks to write, or null to fill the cuboid with air
+     * @param callback Run once every block has been written, or null
+     */
+    public CuboidPasteJob(World world, Vector origin, int width, int height, int length, SectionSource source, Runnable callback) {
+
+        this.world = world;
+        originX = origin.getBlockX();
+        originY = origin.getBlockY();
+        originZ = origin.getBlockZ();
+        this.width = width;
+        this.height = height;
+        this.length = length;
+        this.source = source;
+        this.callback = callback;
+
+        sections = getSections(origin, width, height, length);
+    }
+
+    /**
+     * Creates a job that writes a cuboid in one go, once the jobs queued before it are done. The job does not run until
+     * it is started.
+     *
+     * @param world The world
+     * @param paste Writes the blocks
+     * @param callback Run once every block has been written, or null
+     */
+    public CuboidPasteJob(World world, Runnable paste, Runnable callback) {
+
+        this.world = world;
+        originX = originY = originZ = 0;
+        width = height = length = 0;
+        source = null;
+        this.paste = paste;
+        this.callback = callback;
+
+        sections = new ArrayList<int[]>();
+    }
+
+    /**
+     * Splits a cuboid into the chunk sections it covers, in the order they are written in.
+     *
+     * @param origin The lowest corner of the cuboid
+     * @param width The size of the cuboid along the x axis
+     * @param height The size of the cuboid along the y axis
+     * @param length The size of the cuboid along the z axis
+     * @return The bounds of each section relative to the origin, as minX, minY, minZ, maxX, maxY, maxZ.
+     */
+    public static List<int[]> getSections(Vector origin, int width, int height, int length) {
+
+        int originX = origin.getBlockX(), originY = origin.getBlockY(), originZ = origin.getBlockZ();
+        List<int[]> sections = new ArrayList<int[]>();
+
+        for (int cx = originX >> 4; cx <= originX + width - 1 >> 4; cx++) {
+            for (int cz = originZ >> 4; cz <= originZ + length - 1 >> 4; cz++) {
+                for (int cy = originY >> 4; cy <= originY + height - 1 >> 4; cy++) {
+                    sections.add(new int[] {
+                            Math.max(0, (cx << 4) - originX), Math.max(0, (cy << 4) - originY), Math.max(0, (cz << 4) - originZ),
+                            Math.min(width - 1, (cx << 4) + 15 - originX), Math.min(height - 1, (cy << 4) + 15 - originY), Math.min(length - 1, (cz << 4) + 15 - originZ)
+                    });
+                }
+            }
+        }
+
+        return sections;
+    }
+
+    /**
+     * Gets the amount of blocks in a section.
+     *
+     * @param bounds The bounds of the section
+     * @return The amount of blocks
+     */
+    public static int getVolume(int[] bounds) {
+
+        return (bounds[3] - bounds[0] + 1) * (bounds[4] - bounds[1] + 1) * (bounds[5] - bounds[2] + 1);
+    }
+
+    /**
+     * Queues this job. It is run after all jobs queued before it.
+     */
+    public void start() {
+
+        if (paste == null && (width <= 0 || height <= 0 || length <= 0)) {
+            finish();
+            return;
+        }
+
+        jobs.add(this);
+
+        if (task == null) {
+            task = Bukkit.getScheduler().runTaskTimer(CraftBookPlugin.inst(), new Runnable() {
+
+                @Override
+                public void run() {
+
+                    tick();
+                }
+            }, 1, 1);
+        }
+    }
+
+    private static void tick() {
+
+        int budget = Math.max(1, CraftBookPlugin.inst().getConfiguration().areaBlocksPerTick);
+
+        while (budget > 0 && !jobs.isEmpty()) {
+            CuboidPasteJob job = jobs.get(0);
+            try {
+                budget = job.run(budget);
+            } catch (Throwable t) {
+                BukkitUtil.printStacktrace(t);
+                job.paste = null;
+                job.section = job.sections.size();
+                job.lastIndex = job.lastCount;
+            }
+            if (job.isDone()) {
+                jobs.remove(0);
+                job.finish();
+            }
+        }
+
+        if (jobs.isEmpty() && task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Writes every block of every queued job right away.
+     */
+    public static void finishAll() {
+
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+
+        while (!jobs.isEmpty()) {
+            CuboidPasteJob job = jobs.remove(0);
+            try {
+                job.run(Integer.MAX_VALUE);
+            } catch (Throwable t) {
+                BukkitUtil.printStacktrace(t);
+            }
+            job.finish();
+        }
+    }
+
+    private boolean isDone() {
+
+        return paste == null && section >= sections.size() && lastIndex >= lastCount;
+    }
+
+    private void finish() {
+
+        if (callback != null)
+            callback.run();
+    }
+
+    /**
+     * Writes blocks until the budget runs out.
+     *
+     * @param budget The amount of blocks that may be written
+     * @return The amount of blocks left in the budget
+     */
+    private int run(int budget) {
+
+        if (paste != null) {
+            Runnable action = paste;
+            paste = null;
+            action.run();
+            // The blocks aren't counted, so the rest of the tick is left to it.
+            return 0;
+        }
+
+        // A whole section is written at once, so that it is never left half done for a tick.
+        while (budget > 0 && section < sections.size()) {
+            int[] bounds = sections.get(section);
+            budget -= getVolume(bounds);
+            writeSection(section++, bounds);
+        }
+
+        while (budget > 0 && section >= sections.size() && lastIndex < lastCount) {
+            long entry = last[lastIndex++];
+            int index = (int) (entry >>> 16);
+            int x = index % width, z = index / width % length, y = index / (width * length);
+            int type = (int) (entry >> 8 & 0xFF);
+            world.getBlockAt(originX + x, originY + y, originZ + z).setTypeIdAndData(type, BlockType.usesData(type) ? (byte) entry : 0, true);
+            budget--;
+        }
+
+        return budget;
+    }
+
+    private void writeSection(int section, int[] bounds) {
+
+        if (source != null)
+            source.readSection(section, bounds, types, data);
+
+        int i = 0;
+        for (int y = bounds[1]; y <= bounds[4]; y++) {
+            for (int z = bounds[2]; z <= bounds[5]; z++) {
+                for (int x = bounds[0]; x <= bounds[3]; x++, i++) {
+                    int type = source == null ? 0 : types[i] & 0xFF;
+                    byte blockData = source == null || !BlockType.usesData(type) ? 0 : data[i];
+
+                    Block block = world.getBlockAt(originX + x, originY + y, originZ + z);
+                    int existing = block.getTypeId();
+                    if (existing != type && BlockType.isContainerBlock(existing)) {
+                        // Don't drop the contents of containers that are replaced.
+                        BlockState state = block.getState();
+                        if (state instanceof InventoryHolder)
+                            ((InventoryHolder) state).getInventory().clear();
+                    }
+
+                    // Blocks that need support are removed first, so that none are left floating.
+                    if (existing != 0 && BlockType.shouldPlaceLast(existing)) {
+                        block.setTypeIdAndData(0, (byte) 0, false);
+                        existing = 0;
+                    }
+
+                    if (BlockType.shouldPlaceLast(type)) {
+                        if (lastCount == last.length)
+                            last = Arrays.copyOf(last, last.length * 2);
+                        last[lastCount++] = (long) (y * width * length + z * width + x) << 16 | type << 8 | blockData & 0xFF;
+                    } else if (existing != type || block.getData() != blockData) {
+                        block.setTypeIdAndData(type, blockData, false);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Supplies the blocks of a cuboid one chunk section at a time.
+     */
+    public interface SectionSource {
+
+        /**
+         * Reads the blocks of a section.
+         *
+         * @param section The index of the section, in the order given by {@link CuboidPasteJob#getSections}
+         * @param bounds The bounds of the section
+         * @param types Filled with the block types, ordered by y, then z, then x
+         * @param data Filled with the block data, in the same order
+         */
+        void readSection(int section, int[] bounds, byte[] types, byte[] data);
+    }
+}
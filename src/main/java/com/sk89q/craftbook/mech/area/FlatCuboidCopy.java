@@ -22,13 +22,10 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
 
 import org.bukkit.World;
 
-import com.sk89q.craftbook.util.Tuple2;
 import com.sk89q.worldedit.Vector;
-import com.sk89q.worldedit.blocks.BlockType;
 import com.sk89q.worldedit.bukkit.BukkitUtil;
 
 /**
@@ -158,45 +155,24 @@ public class FlatCuboidCopy extends CuboidCopy {
      * Paste to world.
      */
     @Override
-    public void paste() {
+    public void paste(Runnable callback) {
 
-        ArrayList<Tuple2<Vector, byte[]>> queueAfter = new ArrayList<Tuple2<Vector, byte[]>>();
-        ArrayList<Tuple2<Vector, byte[]>> queueLast = new ArrayList<Tuple2<Vector, byte[]>>();
+        new CuboidPasteJob(world, origin, width, height, length, new CuboidPasteJob.SectionSource() {
 
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                for (int z = 0; z < length; z++) {
-                    int index = y * width * length + z * width + x;
-                    Vector pt = origin.add(x, y, z);
+            @Override
+            public void readSection(int section, int[] bounds, byte[] types, byte[] sectionData) {
 
-                    if (BlockType.shouldPlaceLast(world.getBlockTypeIdAt(BukkitUtil.toLocation(world, pt)))) {
-                        world.getBlockAt(BukkitUtil.toLocation(world, pt)).setTypeId(0);
-                    }
-
-                    if (BlockType.shouldPlaceLast(blocks[index])) {
-                        queueLast.add(new Tuple2<Vector, byte[]>(pt, new byte[] {blocks[index], data[index]}));
-                    } else {
-                        queueAfter.add(new Tuple2<Vector, byte[]>(pt, new byte[] {blocks[index], data[index]}));
+                int i = 0;
+                for (int y = bounds[1]; y <= bounds[4]; y++) {
+                    for (int z = bounds[2]; z <= bounds[5]; z++) {
+                        for (int x = bounds[0]; x <= bounds[3]; x++, i++) {
+                            int index = y * width * length + z * width + x;
+                            types[i] = blocks[index];
+                            sectionData[i] = data[index];
+                        }
                     }
                 }
             }
-        }
-
-        for (Tuple2<Vector, byte[]> entry : queueAfter) {
-            byte[] v = entry.b;
-            world.getBlockAt(BukkitUtil.toLocation(world, entry.a)).setTypeId(v[0]);
-            if (BlockType.usesData(v[0])) {
-                world.getBlockAt(BukkitUtil.toLocation(world, entry.a)).setData(v[1]);
-            }
-        }
-
-        for (Tuple2<Vector, byte[]> entry : queueLast) {
-            byte[] v = entry.b;
-            world.getBlockAt(BukkitUtil.toLocation(world, entry.a)).setTypeId(v[0]);
-            if (BlockType.usesData(v[0])) {
-                world.getBlockAt(BukkitUtil.toLocation(world, entry.a)).setData(v[1]);
-            }
-        }
-
+        }, callback).start();
     }
 }
\ No newline at end of file
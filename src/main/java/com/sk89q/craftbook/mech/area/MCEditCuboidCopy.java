@@ -9,10 +9,8 @@ import com.sk89q.worldedit.CuboidClipboard;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.Vector;
-import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.bukkit.BukkitWorld;
 import com.sk89q.worldedit.data.DataException;
-import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.schematic.SchematicFormat;
 
 /**
@@ -52,31 +50,32 @@ public class MCEditCuboidCopy extends CuboidCopy {
     }
 
     @Override
-    public void paste() {
-
-        try {
-            EditSession editSession = new EditSession(new BukkitWorld(world), -1);
-            editSession.enableQueue();
-            clipboard.place(editSession, origin, false);
-            editSession.flushQueue();
-        } catch (MaxChangedBlocksException e) {
-            // is never thrown because we are on infinite mode
-        }
+    public long getMemorySize() {
+
+        // Each block of a clipboard is an object of its own.
+        return (long) width * height * length * 32;
     }
 
     @Override
-    public void clear() {
-
-        try {
-            CuboidRegion region = new CuboidRegion(origin, origin.add(size.getX() - 1, size.getY() - 1,
-                    size.getZ() - 1));
-            EditSession editSession = new EditSession(new BukkitWorld(world), -1);
-            editSession.enableQueue();
-            editSession.setBlocks(region, new BaseBlock(0));
-            editSession.flushQueue();
-        } catch (MaxChangedBlocksException e) {
-            // is never thrown
-        }
+    public void paste(Runnable callback) {
+
+        // Schematics can hold sign text and container contents, so these are still pasted by WorldEdit in one go.
+        // They are queued like every other paste, so that they never run ahead of a job on the same area.
+        new CuboidPasteJob(world, new Runnable() {
+
+            @Override
+            public void run() {
+
+                try {
+                    EditSession editSession = new EditSession(new BukkitWorld(world), -1);
+                    editSession.enableQueue();
+                    clipboard.place(editSession, origin, false);
+                    editSession.flushQueue();
+                } catch (MaxChangedBlocksException e) {
+                    // is never thrown because we are on infinite mode
+                }
+            }
+        }, callback).start();
     }
 
     @Override
@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -12,6 +13,7 @@ import java.util.Map.Entry;
 
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
+import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -33,6 +35,7 @@ import com.sk89q.craftbook.AbstractCraftBookMechanic;
 import com.sk89q.craftbook.LocalPlayer;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
 import com.sk89q.craftbook.bukkit.util.BukkitUtil;
+import com.sk89q.craftbook.circuits.gates.world.items.AutomaticCrafter;
 import com.sk89q.craftbook.mech.crafting.RecipeManager.RecipeType;
 import com.sk89q.craftbook.util.ItemUtil;
 import com.sk89q.craftbook.util.ParsingUtil;
@@ -50,6 +53,16 @@ public class CustomCrafting extends AbstractCraftBookMechanic {
 
     public static final Map<Recipe, RecipeManager.Recipe> advancedRecipes = new HashMap<Recipe, RecipeManager.Recipe>();
 
+    /**
+     * The recipes with advanced data, keyed by the fingerprint of their result and ingredients.
+     */
+    private static final Map<String, List<CompiledRecipe>> recipeIndex = new HashMap<String, List<CompiledRecipe>>();
+
+    /**
+     * The furnace recipes with advanced data, keyed by their input.
+     */
+    private static final Map<Material, List<CompiledRecipe>> furnaceIndex = new EnumMap<Material, List<CompiledRecipe>>(Material.class);
+
     @Override
     public boolean enable() {
 
@@ -61,6 +74,7 @@ public class CustomCrafting extends AbstractCraftBookMechanic {
             if(addRecipe(r))
                 recipes++;
         plugin.getLogger().info("Registered " + recipes + " custom recipes!");
+        AutomaticCrafter.clearRecipeIndex();
 
         return true;
     }
@@ -69,6 +83,8 @@ public class CustomCrafting extends AbstractCraftBookMechanic {
     public void disable () {
 
         advancedRecipes.clear();
+        recipeIndex.clear();
+        furnaceIndex.clear();
         RecipeManager.INSTANCE = null;
     }
 
@@ -98,6 +114,7 @@ public class CustomCrafting extends AbstractCraftBookMechanic {
             plugin.getServer().addRecipe(sh);
             if(r.hasAdvancedData()) {
                 advancedRecipes.put(sh, r);
+                index(new CompiledRecipe(sh, r));
                 CraftBookPlugin.logDebugMessage("Adding a new recipe with advanced data!", "advanced-data.init");
             }
 
@@ -127,26 +144,13 @@ public class CustomCrafting extends AbstractCraftBookMechanic {
         CraftBookPlugin.logDebugMessage("Pre-Crafting has been initiated!", "advanced-data");
         try {
             boolean hasFailed = false;
-            for(Recipe rec : advancedRecipes.keySet()) {
+            for(CompiledRecipe compiled : findRecipes(event.getRecipe())) {
 
-                if(ItemUtil.areRecipesIdentical(rec, event.getRecipe())) {
-
-                    thisrecipe: {
-                    RecipeManager.Recipe recipe = advancedRecipes.get(rec);
+                thisrecipe: {
+                    RecipeManager.Recipe recipe = compiled.recipe;
 
                     ItemStack[] tests = ((CraftingInventory)event.getView().getTopInventory()).getMatrix();
-                    CraftingItemStack[] tests2;
-                    if(recipe.getType() == RecipeType.SHAPED) {
-                        List<CraftingItemStack> stacks = new ArrayList<CraftingItemStack>();
-
-                        for(String s : recipe.getShape())
-                            for(char c : s.toCharArray())
-                                for(Entry<CraftingItemStack, Character> entry : recipe.getShapedIngredients().entrySet())
-                                    if(entry.getValue().charValue() == c)
-                                        stacks.add(entry.getKey());
-                        tests2 = stacks.toArray(new CraftingItemStack[stacks.size()]);
-                    } else
-                        tests2 = recipe.getIngredients().toArray(new CraftingItemStack[recipe.getIngredients().size()]);
+                    CraftingItemStack[] tests2 = compiled.ingredients;
 
                     ArrayList<ItemStack> leftovers = new ArrayList<ItemStack>();
                     leftovers.addAll(Arrays.asList(tests));
@@ -191,10 +195,9 @@ public class CustomCrafting extends AbstractCraftBookMechanic {
                     }
 
                     CraftBookPlugin.logDebugMessage("A recipe with custom data is being crafted!", "advanced-data");
-                    bits = applyAdvancedEffects(event.getRecipe().getResult(),rec, p);
+                    bits = applyAdvancedEffects(event.getRecipe().getResult(), recipe, p);
                     break;
                 }
-                }
             }
             if(hasFailed)
                 throw new InvalidCraftingException("Unmet Item Meta");
@@ -219,14 +222,17 @@ public class CustomCrafting extends AbstractCraftBookMechanic {
         if(event.getAction() != InventoryAction.PLACE_ALL && event.getAction() != InventoryAction.PLACE_ONE && event.getAction() != InventoryAction.PLACE_SOME) return;
         if(event.getSlot() != 0) return;
 
+        if(event.getCurrentItem() == null) return;
+        List<CompiledRecipe> candidates = furnaceIndex.get(event.getCurrentItem().getType());
+        if(candidates == null) return;
+
         boolean shouldCancel = false;
 
-        for(Recipe rec : advancedRecipes.keySet()) {
-            if(!(rec instanceof FurnaceRecipe)) continue;
-            FurnaceRecipe frec = (FurnaceRecipe) rec;
+        for(CompiledRecipe compiled : candidates) {
+            FurnaceRecipe frec = (FurnaceRecipe) compiled.bukkitRecipe;
             if(ItemUtil.areBaseItemsIdentical(frec.getInput(), event.getCurrentItem())) {
 
-                RecipeManager.Recipe recipe = advancedRecipes.get(rec);
+                RecipeManager.Recipe recipe = compiled.recipe;
                 if(ItemUtil.areItemsIdentical(event.getCurrentItem(), recipe.getIngredients().get(0).getItemStack())) {
                     shouldCancel = false;
                     break;
@@ -246,13 +252,15 @@ public class CustomCrafting extends AbstractCraftBookMechanic {
 
         ItemStack bits = null;
         CraftBookPlugin.logDebugMessage("Smelting has been initiated!", "advanced-data");
-        for(Recipe rec : advancedRecipes.keySet()) {
+        if(event.getSource() == null) return;
+        List<CompiledRecipe> candidates = furnaceIndex.get(event.getSource().getType());
+        if(candidates == null) return;
+        for(CompiledRecipe compiled : candidates) {
 
-            if(!(rec instanceof FurnaceRecipe)) continue;
             try {
-                if(checkFurnaceRecipes((FurnaceRecipe) rec, event.getSource(), event.getResult())) {
+                if(checkFurnaceRecipes((FurnaceRecipe) compiled.bukkitRecipe, event.getSource(), event.getResult())) {
 
-                    RecipeManager.Recipe recipe = advancedRecipes.get(rec);
+                    RecipeManager.Recipe recipe = compiled.recipe;
 
                     ArrayList<ItemStack> leftovers = new ArrayList<ItemStack>();
                     leftovers.add(event.getSource());
@@ -279,7 +287,7 @@ public class CustomCrafting extends AbstractCraftBookMechanic {
                         continue;
 
                     CraftBookPlugin.logDebugMessage("A recipe with custom data is being smelted!", "advanced-data");
-                    bits = applyAdvancedEffects(event.getResult(),rec, null);
+                    bits = applyAdvancedEffects(event.getResult(), recipe, null);
                     break;
                 }
             } catch(InvalidCraftingException e){
@@ -299,15 +307,12 @@ public class CustomCrafting extends AbstractCraftBookMechanic {
 
         CraftBookPlugin.logDebugMessage("Crafting has been initiated!", "advanced-data");
         Player p = (Player) event.getWhoClicked();
-        for(Recipe rec : advancedRecipes.keySet()) {
-
-            if(ItemUtil.areRecipesIdentical(rec, event.getRecipe())) {
-                CraftBookPlugin.logDebugMessage("A recipe with custom data is being crafted!", "advanced-data");
-                RecipeManager.Recipe recipe = advancedRecipes.get(rec);
-                applyPostData(recipe, p, event);
-                event.setCurrentItem(applyAdvancedEffects(event.getCurrentItem(), event.getRecipe(), (Player) event.getWhoClicked()));
-                break;
-            }
+        for(CompiledRecipe compiled : findRecipes(event.getRecipe())) {
+
+            CraftBookPlugin.logDebugMessage("A recipe with custom data is being crafted!", "advanced-data");
+            applyPostData(compiled.recipe, p, event);
+            event.setCurrentItem(applyAdvancedEffects(event.getCurrentItem(), compiled.recipe, (Player) event.getWhoClicked()));
+            break;
         }
     }
 
@@ -361,17 +366,109 @@ public class CustomCrafting extends AbstractCraftBookMechanic {
 
     public static ItemStack craftItem(Recipe recipe) {
 
-        for(Recipe rec : advancedRecipes.keySet()) {
-            if(ItemUtil.areRecipesIdentical(rec, recipe))
-                return applyAdvancedEffects(recipe.getResult(),rec, null);
-        }
+        for(CompiledRecipe compiled : findRecipes(recipe))
+            return applyAdvancedEffects(recipe.getResult(), compiled.recipe, null);
 
         return recipe.getResult();
     }
 
-    private static ItemStack applyAdvancedEffects(ItemStack stack, Recipe rep, Player player) {
+    private static void index(CompiledRecipe compiled) {
 
-        RecipeManager.Recipe recipe = advancedRecipes.get(rep);
+        if(compiled.bukkitRecipe instanceof FurnaceRecipe) {
+            Material input = ((FurnaceRecipe) compiled.bukkitRecipe).getInput().getType();
+            List<CompiledRecipe> recipes = furnaceIndex.get(input);
+            if(recipes == null) {
+                recipes = new ArrayList<CompiledRecipe>(1);
+                furnaceIndex.put(input, recipes);
+            }
+            recipes.add(compiled);
+            return;
+        }
+
+        String fingerprint = getFingerprint(compiled.bukkitRecipe);
+        if(fingerprint == null)
+            return;
+        List<CompiledRecipe> recipes = recipeIndex.get(fingerprint);
+        if(recipes == null) {
+            recipes = new ArrayList<CompiledRecipe>(1);
+            recipeIndex.put(fingerprint, recipes);
+        }
+        recipes.add(compiled);
+    }
+
+    /**
+     * Finds the recipes with advanced data that are identical to a crafting recipe.
+     *
+     * @param recipe The recipe being crafted.
+     * @return The matching recipes, in the order they were added.
+     */
+    private static List<CompiledRecipe> findRecipes(Recipe recipe) {
+
+        if(recipe == null || recipeIndex.isEmpty())
+            return Collections.emptyList();
+
+        String fingerprint = getFingerprint(recipe);
+        List<CompiledRecipe> candidates = fingerprint == null ? null : recipeIndex.get(fingerprint);
+        if(candidates == null)
+            return Collections.emptyList();
+
+        // Recipes with the same fingerprint are very rare, but can still differ in the details.
+        List<CompiledRecipe> recipes = new ArrayList<CompiledRecipe>(candidates.size());
+        for(CompiledRecipe compiled : candidates)
+            if(ItemUtil.areRecipesIdentical(compiled.bukkitRecipe, recipe))
+                recipes.add(compiled);
+        return recipes;
+    }
+
+    /**
+     * Gets a key that is the same for identical recipes. It holds the type of the result, and the types and data of
+     * the ingredients, in grid order for shaped recipes and sorted for shapeless recipes.
+     *
+     * @param recipe The recipe.
+     * @return The key, or null if the recipe is not a crafting recipe.
+     */
+    private static String getFingerprint(Recipe recipe) {
+
+        if(recipe.getResult() == null)
+            return null;
+
+        StringBuilder key = new StringBuilder();
+        key.append(recipe.getResult().getType().ordinal());
+
+        if(recipe instanceof ShapedRecipe) {
+            ShapedRecipe shaped = (ShapedRecipe) recipe;
+            Map<Character, ItemStack> ingredients = shaped.getIngredientMap();
+            key.append('S').append(shaped.getShape().length);
+            for(String row : shaped.getShape()) {
+                for(char c : row.toCharArray()) {
+                    ItemStack ingredient = ingredients.get(c);
+                    if(ingredient != null)
+                        key.append(':').append(getIngredientKey(ingredient));
+                }
+            }
+        } else if(recipe instanceof ShapelessRecipe) {
+            List<ItemStack> ingredients = ((ShapelessRecipe) recipe).getIngredientList();
+            int[] keys = new int[ingredients.size()];
+            int count = 0;
+            for(ItemStack ingredient : ingredients)
+                if(ingredient != null)
+                    keys[count++] = getIngredientKey(ingredient);
+            Arrays.sort(keys, 0, count);
+            key.append('L');
+            for(int i = 0; i < count; i++)
+                key.append(':').append(keys[i]);
+        } else
+            return null;
+
+        return key.toString();
+    }
+
+    private static int getIngredientKey(ItemStack ingredient) {
+
+        return ingredient.getType().ordinal() << 16 | ingredient.getDurability() & 0xFFFF;
+    }
+
+    private static ItemStack applyAdvancedEffects(ItemStack stack, RecipeManager.Recipe recipe, Player player) {
 
         if(recipe == null)
             return stack;
@@ -390,4 +487,34 @@ public class CustomCrafting extends AbstractCraftBookMechanic {
 
         return false;
     }
-}
\ No newline at end of file
+
+    /**
+     * A recipe with advanced data, with the parts needed to check a crafting grid against it worked out ahead of time.
+     */
+    private static final class CompiledRecipe {
+
+        private final Recipe bukkitRecipe;
+        private final RecipeManager.Recipe recipe;
+
+        // The ingredients in grid order for shaped recipes, or as listed otherwise.
+        private final CraftingItemStack[] ingredients;
+
+        private CompiledRecipe(Recipe bukkitRecipe, RecipeManager.Recipe recipe) {
+
+            this.bukkitRecipe = bukkitRecipe;
+            this.recipe = recipe;
+
+            if(recipe.getType() == RecipeType.SHAPED) {
+                List<CraftingItemStack> stacks = new ArrayList<CraftingItemStack>();
+
+                for(String s : recipe.getShape())
+                    for(char c : s.toCharArray())
+                        for(Entry<CraftingItemStack, Character> entry : recipe.getShapedIngredients().entrySet())
+                            if(entry.getValue().charValue() == c)
+                                stacks.add(entry.getKey());
+                ingredients = stacks.toArray(new CraftingItemStack[stacks.size()]);
+            } else
+                ingredients = recipe.getIngredients().toArray(new CraftingItemStack[recipe.getIngredients().size()]);
+        }
+    }
+}
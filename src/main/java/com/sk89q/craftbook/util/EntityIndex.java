@@ -0,0 +1,158 @@
+package com.sk89q.craftbook.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+
+/**
+ * A snapshot of where the entities and players of a world are, bucketed by chunk section. The snapshot is taken the
+ * first time it is needed in a tick and shared by every {@link SearchArea} query until the next tick.
+ */
+public class EntityIndex {
+
+    private static final Map<World, EntityIndex> indexes = new HashMap<World, EntityIndex>();
+
+    private static final int MAX_SECTION = 15;
+
+    private final World world;
+
+    // Entity buckets, keyed by packed chunk position. Each chunk holds one list per section, or null if empty.
+    private final Map<Long, List<Entity>[]> entities = new HashMap<Long, List<Entity>[]>();
+
+    // Player buckets, keyed by packed section position.
+    private Map<Long, List<Player>> players = null;
+
+    private EntityIndex(World world) {
+
+        this.world = world;
+    }
+
+    /**
+     * Gets the index for a world, creating it if this is the first query this tick.
+     *
+     * @param world The world
+     * @return The index
+     */
+    public static EntityIndex get(World world) {
+
+        EntityIndex index = indexes.get(world);
+        if(index == null) {
+            index = new EntityIndex(world);
+            indexes.put(world, index);
+        }
+        return index;
+    }
+
+    /**
+     * Throws away all snapshots. Called once every tick.
+     */
+    public static void nextTick() {
+
+        if(!indexes.isEmpty())
+            indexes.clear();
+    }
+
+    /**
+     * Gets the buckets of all entities that may be inside the given bounds.
+     *
+     * @return The buckets. The entities in them still need to be checked against the exact area.
+     */
+    public List<List<Entity>> getEntities(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+
+        List<List<Entity>> buckets = new ArrayList<List<Entity>>();
+        int minSection = getSection(minY), maxSection = getSection(maxY);
+
+        for(int cx = minX >> 4; cx <= maxX >> 4; cx++) {
+            for(int cz = minZ >> 4; cz <= maxZ >> 4; cz++) {
+                List<Entity>[] sections = getChunk(cx, cz);
+                if(sections == null) continue;
+                for(int section = minSection; section <= maxSection; section++)
+                    if(sections[section] != null)
+                        buckets.add(sections[section]);
+            }
+        }
+
+        return buckets;
+    }
+
+    /**
+     * Gets the buckets of all players that may be inside the given bounds.
+     *
+     * @return The buckets. The players in them still need to be checked against the exact area.
+     */
+    public List<List<Player>> getPlayers(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+
+        if(players == null) {
+            players = new HashMap<Long, List<Player>>();
+            for(Player player : world.getPlayers()) {
+                Location location = player.getLocation();
+                long key = LocationUtil.packBlockPosition(location.getBlockX() >> 4, getSection(location.getBlockY()), location.getBlockZ() >> 4);
+                List<Player> bucket = players.get(key);
+                if(bucket == null) {
+                    bucket = new ArrayList<Player>();
+                    players.put(key, bucket);
+                }
+                bucket.add(player);
+            }
+        }
+
+        List<List<Player>> buckets = new ArrayList<List<Player>>();
+        if(players.isEmpty())
+            return buckets;
+
+        int minSection = getSection(minY), maxSection = getSection(maxY);
+        // With few players, checking each bucket is cheaper than checking each section of the area.
+        if(players.size() < (long) ((maxX >> 4) - (minX >> 4) + 1) * ((maxZ >> 4) - (minZ >> 4) + 1) * (maxSection - minSection + 1)) {
+            for(Map.Entry<Long, List<Player>> bucket : players.entrySet()) {
+                long key = bucket.getKey();
+                int cx = LocationUtil.unpackBlockX(key), section = LocationUtil.unpackBlockY(key), cz = LocationUtil.unpackBlockZ(key);
+                if(cx >= minX >> 4 && cx <= maxX >> 4 && cz >= minZ >> 4 && cz <= maxZ >> 4 && section >= minSection && section <= maxSection)
+                    buckets.add(bucket.getValue());
+            }
+        } else {
+            for(int cx = minX >> 4; cx <= maxX >> 4; cx++)
+                for(int cz = minZ >> 4; cz <= maxZ >> 4; cz++)
+                    for(int section = minSection; section <= maxSection; section++) {
+                        List<Player> bucket = players.get(LocationUtil.packBlockPosition(cx, section, cz));
+                        if(bucket != null)
+                            buckets.add(bucket);
+                    }
+        }
+
+        return buckets;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Entity>[] getChunk(int cx, int cz) {
+
+        long key = LocationUtil.packChunkPosition(cx, cz);
+        if(entities.containsKey(key))
+            return entities.get(key);
+
+        List<Entity>[] sections = null;
+        // Unloaded chunks are not loaded just to look for entities.
+        if(world.isChunkLoaded(cx, cz)) {
+            for(Entity entity : world.getChunkAt(cx, cz).getEntities()) {
+                if(sections == null)
+                    sections = new List[MAX_SECTION + 1];
+                int section = getSection(entity.getLocation().getBlockY());
+                if(sections[section] == null)
+                    sections[section] = new ArrayList<Entity>();
+                sections[section].add(entity);
+            }
+        }
+        entities.put(key, sections);
+        return sections;
+    }
+
+    private static int getSection(int y) {
+
+        return Math.max(0, Math.min(MAX_SECTION, y >> 4));
+    }
+}
@@ -275,4 +275,44 @@ public final class LocationUtil {
 
         return new BlockFace[] {BlockFace.UP, BlockFace.DOWN, BlockFace.NORTH, BlockFace.SOUTH, BlockFace.EAST, BlockFace.WEST, BlockFace.NORTH_EAST, BlockFace.NORTH_WEST, BlockFace.SOUTH_EAST, BlockFace.SOUTH_WEST};
     }
+
+    /**
+     * Packs a block position into a single long. X and Z are stored in 26 bits each, and Y in 12 bits.
+     *
+     * @param x The block X
+     * @param y The block Y
+     * @param z The block Z
+     * @return The packed position
+     */
+    public static long packBlockPosition(int x, int y, int z) {
+
+        return ((long) x & 0x3FFFFFFL) << 38 | ((long) z & 0x3FFFFFFL) << 12 | (long) y & 0xFFFL;
+    }
+
+    public static int unpackBlockX(long packed) {
+
+        return (int) (packed >> 38);
+    }
+
+    public static int unpackBlockY(long packed) {
+
+        return (int) (packed & 0xFFFL);
+    }
+
+    public static int unpackBlockZ(long packed) {
+
+        return (int) (packed << 26 >> 38);
+    }
+
+    /**
+     * Packs a chunk position into a single long.
+     *
+     * @param chunkX The chunk X
+     * @param chunkZ The chunk Z
+     * @return The packed chunk position
+     */
+    public static long packChunkPosition(int chunkX, int chunkZ) {
+
+        return (long) chunkX << 32 | chunkZ & 0xFFFFFFFFL;
+    }
 }
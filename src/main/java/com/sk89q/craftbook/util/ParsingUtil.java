@@ -2,13 +2,11 @@ package com.sk89q.craftbook.util;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map.Entry;
 
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
-import com.sk89q.craftbook.bukkit.commands.VariableCommands;
 import com.sk89q.craftbook.common.VariableManager;
 
 public class ParsingUtil {
@@ -57,34 +55,6 @@ public class ParsingUtil {
 
         CraftBookPlugin.logDebugMessage("Attempting to parse variables. Input line: " + line, "variables.line-parsing");
 
-        for(String var : getPossibleVariables(line)) {
-
-            CraftBookPlugin.logDebugMessage("Possible variable: " + var + " detected!", "variables.line-parsing");
-
-            String key, value;
-
-            if(var.contains("|") && RegexUtil.PIPE_PATTERN.split(var).length >= 2) {
-                String[] bits = RegexUtil.PIPE_PATTERN.split(var);
-                key = bits[0];
-                value = bits[1];
-                CraftBookPlugin.logDebugMessage("Variable " + value + " at " + key + " detected!", "variables.line-parsing");
-            } else {
-                key = "global";
-                value = var;
-                CraftBookPlugin.logDebugMessage("Global Variable " + value + " detected!", "variables.line-parsing");
-            }
-
-            if(player != null)
-                if(!VariableCommands.hasVariablePermission(player, key, value, "use"))
-                    continue;
-            CraftBookPlugin.logDebugMessage(var + " permissions granted!", "variables.line-parsing");
-
-            for(Entry<Tuple2<String, String>, String> bit : VariableManager.instance.getVariableStore().entrySet()) {
-                if(bit.getKey().b.equalsIgnoreCase(key) && bit.getKey().a.equalsIgnoreCase(value))
-                    line = line.replace("%" + var + "%", bit.getValue());
-            }
-        }
-
-        return line;
+        return new VariableTemplate(line).render(player);
     }
 }
\ No newline at end of file
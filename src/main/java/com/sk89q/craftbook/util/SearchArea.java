@@ -6,7 +6,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.World;
@@ -121,9 +120,14 @@ public class SearchArea {
 
         List<Player> players = new ArrayList<Player>();
 
-        for(Player player : Bukkit.getOnlinePlayers())
-            if(isWithinArea(player.getLocation()))
-                players.add(player);
+        int[] bounds = getBounds();
+        if(bounds == null)
+            return players;
+
+        for(List<Player> bucket : EntityIndex.get(getWorld()).getPlayers(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]))
+            for(Player player : bucket)
+                if(isWithinArea(player.getLocation()))
+                    players.add(player);
 
         return players;
     }
@@ -138,25 +142,52 @@ public class SearchArea {
 
         List<Entity> entities = new ArrayList<Entity>();
 
-        for(Chunk chunk : getChunksInArea())
-            for(Entity ent : chunk.getEntities()) {
-                if(!ent.isValid() || !isWithinArea(ent.getLocation())) continue;
+        int[] bounds = getBounds();
+        if(bounds == null)
+            return entities;
 
-                boolean isType = false;
-                for(EntityType type : types) {
-                    if(type.is(ent)) {
-                        isType = true;
-                        break;
-                    }
-                }
-                if(!isType) continue;
-
-                entities.add(ent);
-            }
+        for(List<Entity> bucket : EntityIndex.get(getWorld()).getEntities(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]))
+            for(Entity ent : bucket)
+                if(isMatchingEntity(ent, types))
+                    entities.add(ent);
 
         return entities;
     }
 
+    /**
+     * Counts the entities in the area that are of specific types, without building a list of them.
+     * 
+     * @param types The list of types.
+     * @return The number of entities that are of at least one of the types.
+     */
+    public int countEntitiesInArea(Collection<EntityType> types) {
+
+        int count = 0;
+
+        int[] bounds = getBounds();
+        if(bounds == null)
+            return count;
+
+        for(List<Entity> bucket : EntityIndex.get(getWorld()).getEntities(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]))
+            for(Entity ent : bucket)
+                if(isMatchingEntity(ent, types))
+                    count++;
+
+        return count;
+    }
+
+    private boolean isMatchingEntity(Entity ent, Collection<EntityType> types) {
+
+        if(!ent.isValid() || !isWithinArea(ent.getLocation()))
+            return false;
+
+        for(EntityType type : types)
+            if(type.is(ent))
+                return true;
+
+        return false;
+    }
+
     @SuppressWarnings("serial")
     public List<Entity> getEntitiesInArea() {
 
@@ -182,6 +213,34 @@ public class SearchArea {
         return false;
     }
 
+    /**
+     * Gets the block bounds that contain this SearchArea.
+     * 
+     * @return The minimum x, y and z followed by the maximum x, y and z, or null if this area is not valid.
+     */
+    private int[] getBounds() {
+
+        if(hasRegion()) {
+
+            Vector min = getRegion().getMinimumPoint();
+            Vector max = getRegion().getMaximumPoint();
+            return new int[] {min.getBlockX(), min.getBlockY(), min.getBlockZ(), max.getBlockX(), max.getBlockY(), max.getBlockZ()};
+        } else if (hasRadiusAndCenter()) {
+
+            // Polygon areas use the x radius for part of the z check, so both horizontal radii are covered. The extra
+            // block covers spherical areas, which round the distance down.
+            double horizontal = Math.max(Math.abs(getRadius().getX()), Math.abs(getRadius().getZ())) + 1;
+            double vertical = Math.abs(getRadius().getY()) + 1;
+            if(getRadius().getX() == getRadius().getY() && getRadius().getY() == getRadius().getZ())
+                vertical = horizontal = Math.abs(getRadius().getBlockX()) + 1;
+            return new int[] {
+                    (int) Math.floor(getCenter().getX() - horizontal), (int) Math.floor(getCenter().getY() - vertical), (int) Math.floor(getCenter().getZ() - horizontal),
+                    (int) Math.floor(getCenter().getX() + horizontal), (int) Math.floor(getCenter().getY() + vertical), (int) Math.floor(getCenter().getZ() + horizontal)};
+        }
+
+        return null;
+    }
+
     /**
      * Get a set of chunks inside this SearchArea.
      * 
@@ -0,0 +1,117 @@
+package com.sk89q.craftbook.util;
+
+import org.bukkit.command.CommandSender;
+
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import com.sk89q.craftbook.bukkit.commands.VariableCommands;
+import com.sk89q.craftbook.common.VariableManager;
+
+/**
+ * A line of text with its variable references parsed ahead of time, so that it can be filled in repeatedly without
+ * parsing it again.
+ */
+public class VariableTemplate {
+
+    private final String source;
+
+    /**
+     * The line split around every %. Every segment but the first follows a %.
+     */
+    private final String[] segments;
+
+    /**
+     * The namespace and name of the variable each segment refers to, or null if it can not be a variable.
+     */
+    private final String[] namespaces;
+    private final String[] names;
+
+    private String cached;
+    private int cachedVersion;
+
+    public VariableTemplate(String source) {
+
+        this.source = source;
+
+        int count = 1;
+        for(int i = 0; i < source.length(); i++)
+            if(source.charAt(i) == '%')
+                count++;
+
+        segments = new String[count];
+        namespaces = new String[count];
+        names = new String[count];
+
+        int start = 0;
+        for(int i = 0; i < count; i++) {
+            int end = source.indexOf('%', start);
+            if(end < 0)
+                end = source.length();
+            segments[i] = source.substring(start, end);
+            start = end + 1;
+
+            // Only segments that are closed by another % can be variables.
+            if(i == 0 || i == count - 1)
+                continue;
+            String var = segments[i];
+            if(var.isEmpty() || var.equals("|") || !var.trim().equals(var))
+                continue;
+
+            if(var.contains("|") && RegexUtil.PIPE_PATTERN.split(var).length >= 2) {
+                String[] bits = RegexUtil.PIPE_PATTERN.split(var);
+                namespaces[i] = bits[0];
+                names[i] = bits[1];
+            } else {
+                namespaces[i] = "global";
+                names[i] = var;
+            }
+        }
+    }
+
+    public String getSource() {
+
+        return source;
+    }
+
+    /**
+     * Fills in the variables of this line.
+     *
+     * @param sender The sender whose permissions are checked for each variable. Can be null.
+     * @return The line with all known variables replaced by their values.
+     */
+    public String render(CommandSender sender) {
+
+        if(segments.length < 3 || CraftBookPlugin.inst() == null || VariableManager.instance == null)
+            return source;
+
+        int version = VariableManager.getVersion();
+        if(sender == null && cached != null && cachedVersion == version)
+            return cached;
+
+        StringBuilder builder = new StringBuilder(source.length());
+        builder.append(segments[0]);
+        int i = 1;
+        while(i < segments.length) {
+            String value = null;
+            if(names[i] != null && (sender == null || VariableCommands.hasVariablePermission(sender, namespaces[i], names[i], "use")))
+                value = VariableManager.instance.getVariableIgnoreCase(names[i], namespaces[i]);
+
+            if(value != null) {
+                // Both %s were used up, so the next segment is plain text.
+                builder.append(value);
+                if(i + 1 < segments.length)
+                    builder.append(segments[i + 1]);
+                i += 2;
+            } else {
+                builder.append('%').append(segments[i]);
+                i++;
+            }
+        }
+
+        String line = builder.toString();
+        if(sender == null) {
+            cached = line;
+            cachedVersion = version;
+        }
+        return line;
+    }
+}
@@ -84,6 +84,9 @@ public class YAMLConfiguration extends LocalConfiguration {
         config.setComment("circuits.ics.break-on-error", "Break the IC sign when an error occurs from that specific IC.");
         ICBreakOnError = config.getBoolean("circuits.ics.break-on-error", false);
 
+        config.setComment("circuits.ics.plc-save-interval", "The time in ticks between writing changed PLC states to disk. States are always written when CraftBook is disabled.");
+        ICPlcSaveInterval = config.getInt("circuits.ics.plc-save-interval", 100);
+
 
         // Circuits Configuration Listener
         config.setComment("circuits.wiring.netherrack-enabled", "Enables the redstone netherrack mechanic, which lights netherrack when it is powered.");
@@ -162,6 +165,12 @@ public class YAMLConfiguration extends LocalConfiguration {
         config.setComment("mechanics.area.max-per-user", "Sets the max amount of ToggleAreas that can be within one namespace.");
         areaMaxAreaPerUser = config.getInt("mechanics.area.max-per-user", 30);
 
+        config.setComment("mechanics.area.blocks-per-tick", "Sets the max amount of blocks that ToggleAreas change each tick. Larger areas are toggled over several ticks.");
+        areaBlocksPerTick = config.getInt("mechanics.area.blocks-per-tick", 4096);
+
+        config.setComment("mechanics.area.max-cache-size", "Sets the max amount of memory in megabytes used to keep ToggleArea copies loaded.");
+        areaMaxCacheSize = config.getInt("mechanics.area.max-cache-size", 32);
+
 
         // Better Leads Configuration Listener
         config.setComment("mechanics.better-leads.enable", "Enables BetterLeads Mechanics.");
@@ -525,6 +534,7 @@ public class YAMLConfiguration extends LocalConfiguration {
         snowJumpTrample = config.getBoolean("mechanics.snow.jump-trample", false);
         snowRealisticReplacables = ItemInfo.parseListFromString(config.getStringList("mechanics.snow.replacable-blocks", Arrays.asList("DEAD_BUSH", "LONG_GRASS", "YELLOW_FLOWER", "RED_ROSE", "BROWN_MUSHROOM", "RED_MUSHROOM", "FIRE")));
         snowFallAnimationSpeed = config.getInt("mechanics.snow.falldown-animation-speed", 5);
+        snowTickBudget = config.getInt("mechanics.snow.tick-budget", 2);
 
 
         // Teleporter Configuration Listener
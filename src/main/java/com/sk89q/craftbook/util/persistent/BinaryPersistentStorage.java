@@ -0,0 +1,646 @@
+package com.sk89q.craftbook.util.persistent;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+import org.bukkit.configuration.serialization.ConfigurationSerialization;
+
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+import com.sk89q.craftbook.bukkit.util.BukkitUtil;
+
+/**
+ * A {@link PersistentStorage} that keeps its data in a compact binary format. Data is split into one file per top-level
+ * key, and every change is appended to a journal so that nothing is lost if the server crashes. Changed files are
+ * rewritten from the journal periodically, off the main thread.
+ */
+public class BinaryPersistentStorage extends PersistentStorage {
+
+    private static final int MAGIC = 0x43425053;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String SHARD_EXTENSION = ".dat";
+    private static final String JOURNAL_NAME = "journal.log";
+
+    // Location of the journal record that clears all data.
+    private static final String CLEAR_ALL = "";
+
+    private static final int TYPE_NULL = 0;
+    private static final int TYPE_BOOLEAN = 1;
+    private static final int TYPE_BYTE = 2;
+    private static final int TYPE_SHORT = 3;
+    private static final int TYPE_INT = 4;
+    private static final int TYPE_LONG = 5;
+    private static final int TYPE_FLOAT = 6;
+    private static final int TYPE_DOUBLE = 7;
+    private static final int TYPE_STRING = 8;
+    private static final int TYPE_LIST = 9;
+    private static final int TYPE_MAP = 10;
+    private static final int TYPE_SERIALIZABLE = 11;
+
+    private File directory;
+
+    // Only used on the main thread.
+    private Map<String, Object> data;
+
+    // Only used on the writer thread.
+    private ScheduledExecutorService writer;
+    private Map<String, Map<String, byte[]>> shards;
+    private Set<String> dirtyShards;
+    private DataOutputStream journal;
+
+    @Override
+    public void open () {
+
+        CraftBookPlugin.logger().info("Loading persistant data from binary storage!");
+
+        directory = new File(CraftBookPlugin.inst().getDataFolder(), "persistance");
+        boolean fresh = !directory.exists();
+        directory.mkdirs();
+
+        data = new LinkedHashMap<String, Object>();
+        shards = new LinkedHashMap<String, Map<String, byte[]>>();
+        dirtyShards = new HashSet<String>();
+
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.getName().endsWith(SHARD_EXTENSION)) continue;
+                try {
+                    loadShard(file);
+                } catch (IOException e) {
+                    BukkitUtil.printStacktrace(e);
+                    CraftBookPlugin.logger().warning("Persistant Data file " + file.getName() + " is corrupt! Its data will be reset!");
+                }
+            }
+        }
+        replayJournal();
+
+        try {
+            journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(directory, JOURNAL_NAME), true)));
+        } catch (IOException e) {
+            BukkitUtil.printStacktrace(e);
+            CraftBookPlugin.logger().warning("Failed to open the persistant data journal! Changes will only be saved periodically.");
+        }
+
+        writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread (Runnable runnable) {
+
+                Thread thread = new Thread(runnable, "CraftBook Persistant Data Writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        long interval = Math.max(1, CraftBookPlugin.inst().getConfiguration().persistentStorageSnapshotInterval);
+        writer.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run () {
+
+                writeSnapshot();
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+
+        File yaml = new File(CraftBookPlugin.inst().getDataFolder(), "persistance.yml");
+        if (fresh && yaml.exists()) {
+            CraftBookPlugin.logger().info("Converting persistant data from YAML to binary storage!");
+            YAMLPersistentStorage old = new YAMLPersistentStorage();
+            old.open();
+            importData(old.exportData(), true);
+            old.close();
+        }
+
+        if(getVersion() != getCurrentVersion()) { //Convert.
+            CraftBookPlugin.logger().info("Converting database of type: " + getType() + " from version " + getVersion() + " to " + getCurrentVersion());
+            convertVersion(getCurrentVersion());
+        }
+    }
+
+    @Override
+    public void close () {
+
+        CraftBookPlugin.logger().info("Saving persistant data to binary storage!");
+
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(30, TimeUnit.SECONDS))
+                CraftBookPlugin.logger().warning("Timed out waiting for persistant data to be written!");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Objects handed out by get() may have been changed since they were set, so everything is written out again.
+        // Every file that exists now is rewritten, so that the files of removed keys are deleted rather than left behind.
+        Set<String> known = new HashSet<String>(shards.keySet());
+        shards.clear();
+        dirtyShards.clear();
+        dirtyShards.addAll(known);
+        for (Entry<String, Object> entry : data.entrySet()) {
+            try {
+                Map<String, byte[]> shard = new LinkedHashMap<String, byte[]>();
+                shard.put(entry.getKey(), serialize(entry.getValue()));
+                shards.put(entry.getKey(), shard);
+                dirtyShards.add(entry.getKey());
+            } catch (IOException e) {
+                // Keep the last file that was written for it.
+                dirtyShards.remove(entry.getKey());
+                BukkitUtil.printStacktrace(e);
+                CraftBookPlugin.logger().warning("Failed to save persistant data for " + entry.getKey() + "!");
+            }
+        }
+        writeSnapshot();
+
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException ignored) {
+            }
+            journal = null;
+        }
+
+        data = null;
+        shards = null;
+        dirtyShards = null;
+        writer = null;
+    }
+
+    @Override
+    public String getType () {
+        return "BINARY";
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Object get (String location) {
+
+        String[] path = location.split("\\.");
+        Object node = data;
+        for (String key : path) {
+            if (!(node instanceof Map)) return null;
+            node = ((Map<String, Object>) node).get(key);
+        }
+        return node;
+    }
+
+    @Override
+    public void set (String location, Object data) {
+
+        byte[] bytes;
+        try {
+            bytes = serialize(data);
+        } catch (IOException e) {
+            BukkitUtil.printStacktrace(e);
+            CraftBookPlugin.logger().warning("Failed to save persistant data at " + location + "!");
+            return;
+        }
+
+        apply(location, data);
+        queueRecord(location, bytes);
+    }
+
+    @Override
+    public boolean isValid () {
+        return data != null;
+    }
+
+    @Override
+    public int getVersion () {
+
+        Object version = get("version");
+        return version instanceof Number ? ((Number) version).intValue() : getCurrentVersion();
+    }
+
+    @Override
+    public int getCurrentVersion () {
+        return 1;
+    }
+
+    @Override
+    public void convertVersion (int version) {
+        //Not yet needed.
+    }
+
+    @Override
+    public void importData (Map<String, Object> data, boolean replace) {
+
+        if (replace) {
+            this.data.clear();
+            queueRecord(CLEAR_ALL, null);
+        }
+        for (Entry<String, Object> dat : data.entrySet())
+            set(dat.getKey(), dat.getValue());
+    }
+
+    @Override
+    public Map<String, Object> exportData () {
+        return new LinkedHashMap<String, Object>(data);
+    }
+
+    /**
+     * Sets a value in the in-memory data, creating any missing parents.
+     */
+    @SuppressWarnings("unchecked")
+    private void apply (String location, Object value) {
+
+        String[] path = location.split("\\.");
+        Map<String, Object> node = data;
+        for (int i = 0; i < path.length - 1; i++) {
+            Object child = node.get(path[i]);
+            if (!(child instanceof Map)) {
+                if (value == null) return;
+                child = new LinkedHashMap<String, Object>();
+                node.put(path[i], child);
+            }
+            node = (Map<String, Object>) child;
+        }
+        if (value == null)
+            node.remove(path[path.length - 1]);
+        else
+            node.put(path[path.length - 1], value);
+    }
+
+    private void queueRecord (final String location, final byte[] value) {
+
+        if (writer == null) return;
+        writer.execute(new Runnable() {
+
+            @Override
+            public void run () {
+
+                if (journal != null) {
+                    try {
+                        writeRecord(journal, location, value);
+                        journal.flush();
+                    } catch (IOException e) {
+                        BukkitUtil.printStacktrace(e);
+                        CraftBookPlugin.logger().warning("Failed to write to the persistant data journal!");
+                    }
+                }
+                addRecord(location, value);
+            }
+        });
+    }
+
+    /**
+     * Adds a record to the copy of the data that is kept for writing out, dropping any older records it replaces.
+     */
+    private void addRecord (String location, byte[] value) {
+
+        if (location.equals(CLEAR_ALL)) {
+            for (Map<String, byte[]> shard : shards.values())
+                shard.clear();
+            dirtyShards.addAll(shards.keySet());
+            return;
+        }
+
+        String shardName = getShardName(location);
+        Map<String, byte[]> shard = shards.get(shardName);
+        if (shard == null) {
+            shard = new LinkedHashMap<String, byte[]>();
+            shards.put(shardName, shard);
+        }
+
+        // A record replaces any earlier record for the same location, or anything below it.
+        Iterator<String> iter = shard.keySet().iterator();
+        while (iter.hasNext()) {
+            String existing = iter.next();
+            if (existing.equals(location) || existing.startsWith(location + "."))
+                iter.remove();
+        }
+        shard.put(location, value);
+        dirtyShards.add(shardName);
+    }
+
+    /**
+     * Rewrites every changed data file, and empties the journal. Must be called on the writer thread, or once the
+     * writer has stopped.
+     */
+    private void writeSnapshot () {
+
+        if (dirtyShards.isEmpty()) return;
+
+        for (String shardName : dirtyShards) {
+            Map<String, byte[]> shard = shards.get(shardName);
+            try {
+                File file = new File(directory, encodeShardName(shardName));
+                if (shard == null || shard.isEmpty()) {
+                    file.delete();
+                    shards.remove(shardName);
+                    continue;
+                }
+                File temp = new File(directory, file.getName() + ".tmp");
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+                try {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT_VERSION);
+                    out.writeInt(shard.size());
+                    for (Entry<String, byte[]> record : shard.entrySet())
+                        writeRecord(out, record.getKey(), record.getValue());
+                } finally {
+                    out.close();
+                }
+                if (!temp.renameTo(file)) {
+                    file.delete();
+                    if (!temp.renameTo(file))
+                        throw new IOException("Failed to replace " + file.getName());
+                }
+            } catch (IOException e) {
+                BukkitUtil.printStacktrace(e);
+                CraftBookPlugin.logger().warning("Failed to save persistant data for " + shardName + "! It will be recovered from the journal.");
+                return;
+            }
+        }
+        dirtyShards.clear();
+
+        // Everything in the journal is now in the data files.
+        try {
+            if (journal != null) {
+                journal.close();
+                journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(directory, JOURNAL_NAME), false)));
+            }
+        } catch (IOException e) {
+            BukkitUtil.printStacktrace(e);
+            journal = null;
+        }
+    }
+
+    private void loadShard (File file) throws IOException {
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION)
+                throw new IOException("Unknown data format");
+            int count = in.readInt();
+            for (int i = 0; i < count; i++)
+                loadRecord(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private void replayJournal () {
+
+        File file = new File(directory, JOURNAL_NAME);
+        if (!file.exists()) return;
+
+        // The length of the records that were read in full.
+        long valid = 0;
+        try {
+            CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+            DataInputStream in = new DataInputStream(counter);
+            try {
+                while (true) {
+                    loadRecord(in);
+                    valid = counter.count;
+                }
+            } catch (EOFException ignored) {
+                // The end of the journal, or a record that was cut off by a crash.
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            BukkitUtil.printStacktrace(e);
+            CraftBookPlugin.logger().warning("Persistant Data journal is corrupt! Recent changes may be lost!");
+        }
+
+        // New records are appended to the journal, so anything after the last whole record has to go first. Otherwise
+        // the next replay would read the new records out of line with the broken one.
+        if (file.length() > valid) {
+            try {
+                RandomAccessFile out = new RandomAccessFile(file, "rw");
+                try {
+                    out.setLength(valid);
+                } finally {
+                    out.close();
+                }
+            } catch (IOException e) {
+                BukkitUtil.printStacktrace(e);
+                CraftBookPlugin.logger().warning("Failed to repair the persistant data journal!");
+            }
+        }
+    }
+
+    private void loadRecord (DataInputStream in) throws IOException {
+
+        String location = in.readUTF();
+        int length = in.readInt();
+        byte[] value = null;
+        if (length >= 0) {
+            value = new byte[length];
+            in.readFully(value);
+        }
+
+        if (location.equals(CLEAR_ALL))
+            data.clear();
+        else
+            apply(location, deserialize(value));
+        addRecord(location, value);
+    }
+
+    private static void writeRecord (DataOutputStream out, String location, byte[] value) throws IOException {
+
+        out.writeUTF(location);
+        if (value == null)
+            out.writeInt(-1);
+        else {
+            out.writeInt(value.length);
+            out.write(value);
+        }
+    }
+
+    private static String getShardName (String location) {
+
+        int index = location.indexOf('.');
+        return index < 0 ? location : location.substring(0, index);
+    }
+
+    private static String encodeShardName (String shardName) throws UnsupportedEncodingException {
+
+        return URLEncoder.encode(shardName, "UTF-8") + SHARD_EXTENSION;
+    }
+
+    private static byte[] serialize (Object value) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeValue(out, value);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize (byte[] value) throws IOException {
+
+        if (value == null) return null;
+        return readValue(new DataInputStream(new ByteArrayInputStream(value)));
+    }
+
+    private static void writeValue (DataOutputStream out, Object value) throws IOException {
+
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(TYPE_BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Short) {
+            out.writeByte(TYPE_SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            out.writeByte(TYPE_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof String) {
+            // writeUTF is limited to 64KB, so strings are written as raw UTF-8.
+            byte[] bytes = ((String) value).getBytes("UTF-8");
+            out.writeByte(TYPE_STRING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.writeByte(TYPE_LIST);
+            out.writeInt(list.size());
+            for (Object element : list)
+                writeValue(out, element);
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(TYPE_MAP);
+            out.writeInt(map.size());
+            for (Entry<?, ?> entry : map.entrySet()) {
+                writeValue(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        } else if (value instanceof ConfigurationSerializable) {
+            out.writeByte(TYPE_SERIALIZABLE);
+            out.writeUTF(ConfigurationSerialization.getAlias(((ConfigurationSerializable) value).getClass()));
+            writeValue(out, ((ConfigurationSerializable) value).serialize());
+        } else {
+            throw new IOException("Unsupported data type: " + value.getClass().getName());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object readValue (DataInputStream in) throws IOException {
+
+        int type = in.readByte();
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_BOOLEAN:
+                return in.readBoolean();
+            case TYPE_BYTE:
+                return in.readByte();
+            case TYPE_SHORT:
+                return in.readShort();
+            case TYPE_INT:
+                return in.readInt();
+            case TYPE_LONG:
+                return in.readLong();
+            case TYPE_FLOAT:
+                return in.readFloat();
+            case TYPE_DOUBLE:
+                return in.readDouble();
+            case TYPE_STRING: {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return new String(bytes, "UTF-8");
+            }
+            case TYPE_LIST: {
+                int size = in.readInt();
+                List<Object> list = new ArrayList<Object>(size);
+                for (int i = 0; i < size; i++)
+                    list.add(readValue(in));
+                return list;
+            }
+            case TYPE_MAP: {
+                int size = in.readInt();
+                Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+                for (int i = 0; i < size; i++)
+                    map.put(readValue(in), readValue(in));
+                return map;
+            }
+            case TYPE_SERIALIZABLE: {
+                String alias = in.readUTF();
+                Map<String, Object> map = (Map<String, Object>) readValue(in);
+                map.put(ConfigurationSerialization.SERIALIZED_TYPE_KEY, alias);
+                return ConfigurationSerialization.deserializeObject(map);
+            }
+            default:
+                throw new IOException("Unknown data type: " + type);
+        }
+    }
+
+    /**
+     * Counts the bytes read through it.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count = 0;
+
+        private CountingInputStream (InputStream in) {
+
+            super(in);
+        }
+
+        @Override
+        public int read () throws IOException {
+
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read (byte[] b, int off, int len) throws IOException {
+
+            int read = super.read(b, off, len);
+            if (read > 0) count += read;
+            return read;
+        }
+
+        @Override
+        public long skip (long n) throws IOException {
+
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -79,7 +79,11 @@ public abstract class PersistentStorage {
 
         Map<String, Object> data = exportData();
         PersistentStorage stor = createFromType(type);
+        if(stor == null)
+            return;
+        stor.open();
         stor.importData(data, true);
+        close();
         CraftBookPlugin.inst().setPersistentStorage(stor);
     }
 
@@ -109,6 +113,8 @@ public abstract class PersistentStorage {
             return new YAMLPersistentStorage();
         if(type.equalsIgnoreCase("DUMMY"))
             return new DummyPersistentStorage();
+        if(type.equalsIgnoreCase("BINARY"))
+            return new BinaryPersistentStorage();
         else
             return null;
     }
@@ -12,6 +12,9 @@ import com.sk89q.craftbook.util.EntityUtil;
 import com.sk89q.craftbook.util.ItemInfo;
 import com.sk89q.craftbook.util.RedstoneUtil;
 import com.sk89q.craftbook.util.RedstoneUtil.Power;
+import com.sk89q.craftbook.vehicles.cart.events.CartBlockEnterEvent;
+import com.sk89q.craftbook.vehicles.cart.events.CartBlockImpactEvent;
+import com.sk89q.craftbook.vehicles.cart.events.CartBlockRedstoneEvent;
 
 /**
  * Implementers of CartMechanism are intended to be singletons and do all their logic at interation time (like
@@ -125,6 +128,36 @@ public abstract class CartBlockMechanism extends AbstractCraftBookMechanic {
         return null;
     }
 
+    /**
+     * Called by the {@link com.sk89q.craftbook.bukkit.VehicleCore} when a cart moves over a rail whose base is the
+     * block of this mechanism.
+     *
+     * @param event the event.
+     */
+    public void onVehicleImpact(CartBlockImpactEvent event) {
+
+    }
+
+    /**
+     * Called by the {@link com.sk89q.craftbook.bukkit.VehicleCore} when the redstone power of a block of this
+     * mechanism changes.
+     *
+     * @param event the event.
+     */
+    public void onBlockRedstone(CartBlockRedstoneEvent event) {
+
+    }
+
+    /**
+     * Called by the {@link com.sk89q.craftbook.bukkit.VehicleCore} when an entity enters a cart that is on a rail whose
+     * base is the block of this mechanism.
+     *
+     * @param event the event.
+     */
+    public void onVehicleEnter(CartBlockEnterEvent event) {
+
+    }
+
     public abstract String getName();
 
     public abstract String[] getApplicableSigns();
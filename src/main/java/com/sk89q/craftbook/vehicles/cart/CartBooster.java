@@ -1,6 +1,5 @@
 package com.sk89q.craftbook.vehicles.cart;
 
-import org.bukkit.event.EventHandler;
 import org.bukkit.util.Vector;
 
 import com.sk89q.craftbook.util.ItemInfo;
@@ -17,7 +16,7 @@ public class CartBooster extends CartBlockMechanism {
 
     private final double multiplier;
 
-    @EventHandler
+    @Override
     public void onVehicleImpact(CartBlockImpactEvent event) {
 
         // care?
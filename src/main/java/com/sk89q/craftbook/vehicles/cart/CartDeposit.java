@@ -8,7 +8,6 @@ import java.util.List;
 
 import org.bukkit.block.Chest;
 import org.bukkit.entity.minecart.StorageMinecart;
-import org.bukkit.event.EventHandler;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 
@@ -27,7 +26,7 @@ public class CartDeposit extends CartBlockMechanism {
         super(material);
     }
 
-    @EventHandler
+    @Override
     public void onVehicleImpact(CartBlockImpactEvent event) {
 
         // care?
@@ -12,7 +12,6 @@ import org.bukkit.entity.minecart.ExplosiveMinecart;
 import org.bukkit.entity.minecart.HopperMinecart;
 import org.bukkit.entity.minecart.PoweredMinecart;
 import org.bukkit.entity.minecart.StorageMinecart;
-import org.bukkit.event.EventHandler;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.util.Vector;
@@ -59,14 +58,14 @@ public class CartDispenser extends CartBlockMechanism {
         super(material);
     }
 
-    @EventHandler
-    public void onCartImpact(CartBlockImpactEvent event) {
+    @Override
+    public void onVehicleImpact(CartBlockImpactEvent event) {
 
         performMechanic(event.getMinecart(), event.getBlocks());
     }
 
-    @EventHandler
-    public void onRedstoneImpact(CartBlockRedstoneEvent event) {
+    @Override
+    public void onBlockRedstone(CartBlockRedstoneEvent event) {
 
         performMechanic(event.getMinecart(), event.getBlocks());
     }
@@ -2,7 +2,6 @@ package com.sk89q.craftbook.vehicles.cart;
 
 import org.bukkit.block.Block;
 import org.bukkit.entity.Entity;
-import org.bukkit.event.EventHandler;
 
 import com.sk89q.craftbook.util.ItemInfo;
 import com.sk89q.craftbook.util.RedstoneUtil.Power;
@@ -16,7 +15,7 @@ public class CartEjector extends CartBlockMechanism {
         super(material);
     }
 
-    @EventHandler
+    @Override
     public void onVehicleImpact(CartBlockImpactEvent event) {
 
         // care?
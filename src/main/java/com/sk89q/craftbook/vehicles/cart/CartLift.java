@@ -4,7 +4,6 @@ import org.bukkit.Location;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.entity.Minecart;
-import org.bukkit.event.EventHandler;
 
 import com.sk89q.craftbook.ChangedSign;
 import com.sk89q.craftbook.bukkit.util.BukkitUtil;
@@ -19,7 +18,7 @@ public class CartLift extends CartBlockMechanism {
         super(material);
     }
 
-    @EventHandler
+    @Override
     public void onVehicleImpact(CartBlockImpactEvent event) {
 
         // validate
@@ -1,7 +1,6 @@
 package com.sk89q.craftbook.vehicles.cart;
 
 import org.bukkit.entity.Minecart;
-import org.bukkit.event.EventHandler;
 
 import com.sk89q.craftbook.ChangedSign;
 import com.sk89q.craftbook.LocalPlayer;
@@ -16,7 +15,7 @@ public class CartMaxSpeed extends CartBlockMechanism {
         super(material);
     }
 
-    @EventHandler
+    @Override
     public void onVehicleImpact(CartBlockImpactEvent event) {
 
         // care?
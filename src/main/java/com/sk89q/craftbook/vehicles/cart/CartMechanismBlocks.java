@@ -44,9 +44,21 @@ public class CartMechanismBlocks {
      */
     public CartMechanismBlocks(Block rail, Block base, Block sign) {
 
+        this(rail, base, sign, null);
+    }
+
+    /**
+     * Declarative constructor, with the lines of the sign as they were when it was last read. No arguments are
+     * validated in any way.
+     *
+     * @param lines the raw lines of the sign, or null to read them from the sign when needed.
+     */
+    public CartMechanismBlocks(Block rail, Block base, Block sign, String[] lines) {
+
         this.rail = rail;
         this.base = base;
         this.sign = sign;
+        this.lines = lines;
     }
 
     /**
@@ -80,6 +92,30 @@ public class CartMechanismBlocks {
 
         if (!RailUtil.isTrack(rail.getType()))
             throw new InvalidMechanismException("rail argument must be a rail!");
+        BlockFace face = getBaseFace(rail);
+
+        if (SignUtil.isSign(rail.getRelative(face, 2))) return new CartMechanismBlocks(rail, rail.getRelative(face, 1), rail.getRelative(face, 2));
+        else if (SignUtil.isSign(rail.getRelative(face, 3)))
+            return new CartMechanismBlocks(rail, rail.getRelative(face, 1), rail.getRelative(face, 3));
+        else if (SignUtil.isSign(rail.getRelative(face, 1).getRelative(BlockFace.EAST, 1)))
+            return new CartMechanismBlocks(rail, rail.getRelative(face, 1), rail.getRelative(face, 1).getRelative(BlockFace.EAST, 1));
+        else if (SignUtil.isSign(rail.getRelative(face, 1).getRelative(BlockFace.WEST, 1)))
+            return new CartMechanismBlocks(rail, rail.getRelative(face, 1), rail.getRelative(face, 1).getRelative(BlockFace.WEST, 1));
+        else if (SignUtil.isSign(rail.getRelative(face, 1).getRelative(BlockFace.NORTH, 1)))
+            return new CartMechanismBlocks(rail, rail.getRelative(face, 1), rail.getRelative(face, 1).getRelative(BlockFace.NORTH, 1));
+        else if (SignUtil.isSign(rail.getRelative(face, 1).getRelative(BlockFace.SOUTH, 1)))
+            return new CartMechanismBlocks(rail, rail.getRelative(face, 1), rail.getRelative(face, 1).getRelative(BlockFace.SOUTH, 1));
+        return new CartMechanismBlocks(rail, rail.getRelative(face, 1), null);
+    }
+
+    /**
+     * Gets the side of a rail that its base is on. This is below the rail, except for ladders and vines which are
+     * based on the block they are attached to.
+     *
+     * @param rail the block containing the rails.
+     */
+    public static BlockFace getBaseFace(Block rail) {
+
         BlockFace face = BlockFace.DOWN;
 
         if (rail.getType() == Material.LADDER)
@@ -94,18 +130,7 @@ public class CartMechanismBlocks {
             }
         }
 
-        if (SignUtil.isSign(rail.getRelative(face, 2))) return new CartMechanismBlocks(rail, rail.getRelative(face, 1), rail.getRelative(face, 2));
-        else if (SignUtil.isSign(rail.getRelative(face, 3)))
-            return new CartMechanismBlocks(rail, rail.getRelative(face, 1), rail.getRelative(face, 3));
-        else if (SignUtil.isSign(rail.getRelative(face, 1).getRelative(BlockFace.EAST, 1)))
-            return new CartMechanismBlocks(rail, rail.getRelative(face, 1), rail.getRelative(face, 1).getRelative(BlockFace.EAST, 1));
-        else if (SignUtil.isSign(rail.getRelative(face, 1).getRelative(BlockFace.WEST, 1)))
-            return new CartMechanismBlocks(rail, rail.getRelative(face, 1), rail.getRelative(face, 1).getRelative(BlockFace.WEST, 1));
-        else if (SignUtil.isSign(rail.getRelative(face, 1).getRelative(BlockFace.NORTH, 1)))
-            return new CartMechanismBlocks(rail, rail.getRelative(face, 1), rail.getRelative(face, 1).getRelative(BlockFace.NORTH, 1));
-        else if (SignUtil.isSign(rail.getRelative(face, 1).getRelative(BlockFace.SOUTH, 1)))
-            return new CartMechanismBlocks(rail, rail.getRelative(face, 1), rail.getRelative(face, 1).getRelative(BlockFace.SOUTH, 1));
-        return new CartMechanismBlocks(rail, rail.getRelative(face, 1), null);
+        return face;
     }
 
     /**
@@ -158,6 +183,8 @@ public class CartMechanismBlocks {
     public final Block sign;
     public Block from;
 
+    private final String[] lines;
+
     /**
      * This is a stupid but necessary thing since hash completely broke the ability to get the from location of the
      * move event from a mechanism
@@ -178,7 +205,11 @@ public class CartMechanismBlocks {
      */
     public boolean matches(String mechname) {
 
-        return hasSign() && getSign().getLine(1).equalsIgnoreCase("[" + mechname + "]");
+        if (!hasSign()) return false;
+        // Lines with variables are rendered by the sign itself.
+        if (lines != null && lines[1].indexOf('%') < 0)
+            return lines[1].equalsIgnoreCase("[" + mechname + "]");
+        return getSign().getLine(1).equalsIgnoreCase("[" + mechname + "]");
         // the astute will notice there's a problem coming up here with the one dang thing that had to go and break
         // the mold with second line definer.
     }
@@ -0,0 +1,270 @@
+package com.sk89q.craftbook.vehicles.cart;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.Sign;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPhysicsEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.block.SignChangeEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+import com.sk89q.craftbook.util.ItemInfo;
+import com.sk89q.craftbook.util.LocationUtil;
+import com.sk89q.craftbook.util.RailUtil;
+import com.sk89q.craftbook.util.SignUtil;
+import com.sk89q.craftbook.util.exceptions.InvalidMechanismException;
+
+/**
+ * Remembers what lies under each rail a cart has moved over, so that a cart moving along a track does not have to look
+ * for signs around every rail it passes.
+ *
+ * Rails whose base is not the block of any cart mechanism are remembered as plain track, without looking for a sign at
+ * all. Block changes near a mechanism drop it from the cache, and every lookup checks that the rail and base blocks are
+ * still what they were when they were cached.
+ */
+@SuppressWarnings("deprecation")
+public class CartMechanismCache implements Listener {
+
+    // The furthest a sign or base can be from its rail, plus one for physics events fired on a neighbouring block.
+    private static final int RANGE = 4;
+
+    private final List<ItemInfo> materials;
+
+    // Cached rails of each world, keyed by packed chunk position and then by packed block position.
+    private final Map<World, Map<Long, Map<Long, Entry>>> worlds = new HashMap<World, Map<Long, Map<Long, Entry>>>();
+
+    public CartMechanismCache(List<ItemInfo> materials) {
+
+        this.materials = new ArrayList<ItemInfo>(materials);
+    }
+
+    /**
+     * Finds the mechanism blocks of a rail, like {@link CartMechanismBlocks#findByRail(Block)}.
+     *
+     * @param rail the block containing the rails.
+     *
+     * @return the mechanism blocks, or null if the base of the rail is not the block of any cart mechanism.
+     */
+    public CartMechanismBlocks findByRail(Block rail) throws InvalidMechanismException {
+
+        Material railType = rail.getType();
+        if (!RailUtil.isTrack(railType))
+            throw new InvalidMechanismException("rail argument must be a rail!");
+
+        Map<Long, Entry> chunk = getChunk(rail.getWorld(), rail.getX() >> 4, rail.getZ() >> 4, true);
+        long key = LocationUtil.packBlockPosition(rail.getX(), rail.getY(), rail.getZ());
+
+        Entry entry = chunk.get(key);
+        if (entry == null || !entry.isValid(rail, railType)) {
+            entry = createEntry(rail, railType);
+            chunk.put(key, entry);
+        }
+
+        return entry.toBlocks(rail);
+    }
+
+    private Entry createEntry(Block rail, Material railType) throws InvalidMechanismException {
+
+        CartMechanismBlocks blocks = CartMechanismBlocks.findByRail(rail);
+
+        boolean mechanism = false;
+        for (ItemInfo material : materials) {
+            if (blocks.matches(material)) {
+                mechanism = true;
+                break;
+            }
+        }
+
+        if (!mechanism || blocks.sign == null)
+            return new Entry(rail, railType, blocks.base, mechanism, null, null);
+        return new Entry(rail, railType, blocks.base, true, blocks.sign, ((Sign) blocks.sign.getState()).getLines());
+    }
+
+    private Map<Long, Entry> getChunk(World world, int cx, int cz, boolean create) {
+
+        Map<Long, Map<Long, Entry>> chunks = worlds.get(world);
+        if (chunks == null) {
+            if (!create) return null;
+            chunks = new HashMap<Long, Map<Long, Entry>>();
+            worlds.put(world, chunks);
+        }
+
+        long key = LocationUtil.packChunkPosition(cx, cz);
+        Map<Long, Entry> chunk = chunks.get(key);
+        if (chunk == null && create) {
+            chunk = new HashMap<Long, Entry>();
+            chunks.put(key, chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * Forgets the rail at the given block, and every cached mechanism that the block could be a part of.
+     *
+     * @param block the block that changed.
+     */
+    public void invalidate(Block block) {
+
+        if (worlds.isEmpty()) return;
+
+        int x = block.getX(), y = block.getY(), z = block.getZ();
+
+        Map<Long, Entry> own = getChunk(block.getWorld(), x >> 4, z >> 4, false);
+        if (own != null)
+            own.remove(LocationUtil.packBlockPosition(x, y, z));
+
+        for (int cx = x - RANGE >> 4; cx <= x + RANGE >> 4; cx++) {
+            for (int cz = z - RANGE >> 4; cz <= z + RANGE >> 4; cz++) {
+                Map<Long, Entry> chunk = getChunk(block.getWorld(), cx, cz, false);
+                if (chunk == null) continue;
+                Iterator<Map.Entry<Long, Entry>> iter = chunk.entrySet().iterator();
+                while (iter.hasNext()) {
+                    Map.Entry<Long, Entry> entry = iter.next();
+                    // Plain track only depends on its own base block, which is checked on every lookup.
+                    if (!entry.getValue().mechanism) continue;
+                    long key = entry.getKey();
+                    if (Math.abs(LocationUtil.unpackBlockX(key) - x) <= RANGE && Math.abs(LocationUtil.unpackBlockY(key) - y) <= RANGE
+                            && Math.abs(LocationUtil.unpackBlockZ(key) - z) <= RANGE)
+                        iter.remove();
+                }
+            }
+        }
+    }
+
+    public void clear() {
+
+        worlds.clear();
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockPlace(BlockPlaceEvent event) {
+
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockBreak(BlockBreakEvent event) {
+
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onSignChange(SignChangeEvent event) {
+
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockPhysics(BlockPhysicsEvent event) {
+
+        if (worlds.isEmpty()) return;
+
+        // Only signs appearing or disappearing can change a mechanism without changing its rail or base.
+        Material changed = event.getChangedType();
+        if (changed == Material.AIR || changed == Material.SIGN_POST || changed == Material.WALL_SIGN)
+            invalidate(event.getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onPistonExtend(BlockPistonExtendEvent event) {
+
+        for (Block block : event.getBlocks()) {
+            invalidate(block);
+            invalidate(block.getRelative(event.getDirection()));
+        }
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onPistonRetract(BlockPistonRetractEvent event) {
+
+        invalidate(event.getBlock().getRelative(event.getDirection()));
+        invalidate(event.getRetractLocation().getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onEntityExplode(EntityExplodeEvent event) {
+
+        for (Block block : event.blockList())
+            invalidate(block);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+
+        Map<Long, Map<Long, Entry>> chunks = worlds.get(event.getWorld());
+        if (chunks != null)
+            chunks.remove(LocationUtil.packChunkPosition(event.getChunk().getX(), event.getChunk().getZ()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldUnload(WorldUnloadEvent event) {
+
+        worlds.remove(event.getWorld());
+    }
+
+    private static final class Entry {
+
+        private final Material railType;
+        private final byte railData;
+        private final BlockFace face;
+
+        private final Material baseType;
+        private final byte baseData;
+
+        private final boolean mechanism;
+
+        // The position of the sign relative to the rail, if there is one.
+        private final boolean hasSign;
+        private final int signX, signY, signZ;
+        private final String[] lines;
+
+        private Entry(Block rail, Material railType, Block base, boolean mechanism, Block sign, String[] lines) {
+
+            this.railType = railType;
+            railData = rail.getData();
+            face = CartMechanismBlocks.getBaseFace(rail);
+            baseType = base.getType();
+            baseData = base.getData();
+            this.mechanism = mechanism;
+            hasSign = sign != null;
+            signX = hasSign ? sign.getX() - rail.getX() : 0;
+            signY = hasSign ? sign.getY() - rail.getY() : 0;
+            signZ = hasSign ? sign.getZ() - rail.getZ() : 0;
+            this.lines = lines;
+        }
+
+        private boolean isValid(Block rail, Material type) {
+
+            // The data of ladders and vines decides which block they are attached to.
+            if (type != railType || face != BlockFace.DOWN && rail.getData() != railData)
+                return false;
+            Block base = rail.getRelative(face);
+            if (base.getType() != baseType || base.getData() != baseData)
+                return false;
+            return !hasSign || SignUtil.isSign(rail.getRelative(signX, signY, signZ));
+        }
+
+        private CartMechanismBlocks toBlocks(Block rail) {
+
+            if (!mechanism)
+                return null;
+            return new CartMechanismBlocks(rail, rail.getRelative(face), hasSign ? rail.getRelative(signX, signY, signZ) : null, lines);
+        }
+    }
+}
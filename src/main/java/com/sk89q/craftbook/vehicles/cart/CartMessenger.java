@@ -3,7 +3,6 @@ package com.sk89q.craftbook.vehicles.cart;
 import java.util.ArrayList;
 
 import org.bukkit.entity.Player;
-import org.bukkit.event.EventHandler;
 
 import com.sk89q.craftbook.ChangedSign;
 import com.sk89q.craftbook.bukkit.CraftBookPlugin;
@@ -19,12 +18,12 @@ public class CartMessenger extends CartBlockMechanism {
 
     CraftBookPlugin plugin = CraftBookPlugin.inst();
 
-    @EventHandler
+    @Override
     public void onVehicleImpact(CartBlockImpactEvent event) {
 
         // validate
         if (event.isMinor()) return;
-        if (!event.getBlocks().matches(getMaterial()));
+        if (!event.getBlocks().matches(getMaterial())) return;
 
         // care?
         if (event.getMinecart().getPassenger() == null) return;
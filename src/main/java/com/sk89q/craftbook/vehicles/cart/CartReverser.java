@@ -2,7 +2,6 @@ package com.sk89q.craftbook.vehicles.cart;
 import static com.sk89q.craftbook.util.CartUtil.reverse;
 
 import org.bukkit.block.BlockFace;
-import org.bukkit.event.EventHandler;
 import org.bukkit.util.Vector;
 
 import com.sk89q.craftbook.util.ItemInfo;
@@ -16,7 +15,7 @@ public class CartReverser extends CartBlockMechanism {
         super(material);
     }
 
-    @EventHandler
+    @Override
     public void onVehicleImpact(CartBlockImpactEvent event) {
 
         // validate
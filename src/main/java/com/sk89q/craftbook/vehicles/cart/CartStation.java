@@ -7,7 +7,6 @@ import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.entity.Minecart;
 import org.bukkit.entity.Player;
-import org.bukkit.event.EventHandler;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.util.Vector;
 
@@ -25,14 +24,14 @@ public class CartStation extends CartBlockMechanism {
         super(material);
     }
 
-    @EventHandler
+    @Override
     public void onVehicleImpact(CartBlockImpactEvent event) {
 
         stationInteraction(event.getMinecart(), event.getBlocks());
     }
 
-    @EventHandler
-    public void onBlockPower(CartBlockRedstoneEvent event) {
+    @Override
+    public void onBlockRedstone(CartBlockRedstoneEvent event) {
 
         stationInteraction(event.getMinecart(), event.getBlocks());
     }
@@ -80,7 +79,7 @@ public class CartStation extends CartBlockMechanism {
         return new Vector(face.getModX() * 0.2, face.getModY() * 0.2, face.getModZ() * 0.2);
     }
 
-    @EventHandler
+    @Override
     public void onVehicleEnter(CartBlockEnterEvent event) {
 
         // validate
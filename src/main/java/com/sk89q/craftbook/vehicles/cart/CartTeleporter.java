@@ -2,7 +2,6 @@ package com.sk89q.craftbook.vehicles.cart;
 
 import org.bukkit.Location;
 import org.bukkit.World;
-import org.bukkit.event.EventHandler;
 
 import com.sk89q.craftbook.ChangedSign;
 import com.sk89q.craftbook.LocalPlayer;
@@ -18,7 +17,7 @@ public class CartTeleporter extends CartBlockMechanism {
         super(material);
     }
 
-    @EventHandler
+    @Override
     public void onVehicleImpact(CartBlockImpactEvent event) {
         // validate
         if (!event.getBlocks().matches(getMaterial())) return;
@@ -0,0 +1,286 @@
+package com.sk89q.craftbook.circuits.plc.lang;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import com.sk89q.craftbook.circuits.ic.ChipState;
+import com.sk89q.craftbook.circuits.ic.ICVerificationException;
+import com.sk89q.craftbook.circuits.plc.PlcException;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(Perlstone.class)
+public class PerlstoneTest {
+
+    private final Perlstone perlstone = new Perlstone();
+
+    private boolean[] run(String code, boolean[] state, boolean a, boolean b, boolean c) throws Exception {
+
+        TestChipState chip = new TestChipState(a, b, c);
+        perlstone.execute(chip, state, perlstone.compile(code));
+        return chip.outputs;
+    }
+
+    private boolean[] run(String code, boolean a, boolean b, boolean c) throws Exception {
+
+        return run(code, perlstone.initState(), a, b, c);
+    }
+
+    @Test
+    public void testLogic() throws Exception {
+
+        for(int i = 0; i < 4; i++) {
+            boolean a = (i & 1) != 0, b = (i & 2) != 0;
+            boolean[] out = run("AB&r:AB|r:AB=r", a, b, false);
+            assertTrue(out[0] == (a && b));
+            assertTrue(out[1] == (a || b));
+            assertTrue(out[2] == (a == b));
+
+            out = run("AB^r:A!r:C!r", a, b, true);
+            assertTrue(out[0] == (a ^ b));
+            assertTrue(out[1] == !a);
+            assertTrue(!out[2]);
+        }
+    }
+
+    @Test
+    public void testMissingReturn() throws Exception {
+
+        // A function that does not return, and an output without a function, are both false.
+        boolean[] out = run("+:+r", true, true, true);
+        assertTrue(!out[0]);
+        assertTrue(out[1]);
+        assertTrue(!out[2]);
+
+        out = run("+s+r:-!r", false, false, false);
+        assertTrue(!out[0]);
+        assertTrue(out[1]);
+    }
+
+    @Test
+    public void testStackOperations() throws Exception {
+
+        boolean[] out = run("+-xr:-+v1r:+-dp|r", false, false, false);
+        assertTrue(out[0]);
+        assertTrue(!out[1]);
+        assertTrue(out[2]);
+
+        out = run("+--v2r:-++v0v3&r:-+xpr", false, false, false);
+        assertTrue(out[0]);
+        assertTrue(!out[1]);
+        assertTrue(out[2]);
+    }
+
+    @Test
+    public void testLogicTable() throws Exception {
+
+        for(int i = 0; i < 4; i++) {
+            boolean a = (i & 1) != 0, b = (i & 2) != 0;
+            // The top of the stack selects between the second and fourth entries.
+            boolean[] out = run("AB.0110r:AB.+--+r:AB.0010r", a, b, false);
+            assertTrue(out[0] == (a ^ b));
+            assertTrue(out[1] == (a == b));
+            assertTrue(out[2] == (b && !a));
+        }
+    }
+
+    @Test
+    public void testBranches() throws Exception {
+
+        boolean[] out = run("-[+r]-r:+[-]+r:A[+r]-r", true, false, false);
+        assertTrue(!out[0]);
+        assertTrue(out[1]);
+        assertTrue(out[2]);
+
+        out = run("-[+r]-r:+[-]+r:A[+r]-r", false, false, false);
+        assertTrue(!out[2]);
+
+        // Nested blocks, where the inner block is skipped.
+        out = run("+[-[+r]-r]+r:+[+[-r]+r]+r", false, false, false);
+        assertTrue(!out[0]);
+        assertTrue(!out[1]);
+    }
+
+    @Test
+    public void testLoop() throws Exception {
+
+        // Walks the shift of the local table over three set cells, then stores past them.
+        String loop = "+Sl0 +Sl1 +Sl2 Ll0 [ >l Ll0 ] +Sl0 ";
+        boolean[] out = run(loop + "LL3 r:" + loop + "LL4 r:" + loop + "LL2 r", false, false, false);
+        assertTrue(out[0]);
+        assertTrue(!out[1]);
+        assertTrue(out[2]);
+
+        // Shifts wrap around the table.
+        out = run("+SL0 <l Ll1 r:+SLv el Ll0 >l <l r:-SL0 <l Ll1 r", false, false, false);
+        assertTrue(out[0]);
+        assertTrue(!out[1]);
+        assertTrue(!out[2]);
+    }
+
+    @Test
+    public void testFunctions() throws Exception {
+
+        for(int i = 0; i < 4; i++) {
+            boolean a = (i & 1) != 0, b = (i & 2) != 0;
+            // Tail calls pass their arguments on, like normal calls.
+            boolean[] out = run("AB c032 r:AB t032:c040 +r:x!&r:-", a, b, false);
+            assertTrue(out[0] == (b && !a));
+            assertTrue(out[1] == (b && !a));
+            // A function that returns nothing pushes nothing.
+            assertTrue(out[2]);
+        }
+
+        // Each call has its own local table.
+        boolean[] out = run("+SL0 c030 p LL0 r:-:-:-SL0 -r", false, false, false);
+        assertTrue(out[0]);
+    }
+
+    @Test
+    public void testPersistentState() throws Exception {
+
+        boolean[] state = perlstone.initState();
+
+        // Returns the last stored value of A, and stores the new one.
+        String code = "Lp0 A Sp0 r:>p B Sp0 -r:C Spa -r";
+        boolean[] out = run(code, state, true, true, true);
+        assertTrue(!out[0]);
+        assertTrue(state[0]);
+        assertTrue(state[1]);
+        assertTrue(state[10]);
+
+        out = run(code, state, false, false, false);
+        assertTrue(out[0]);
+        assertTrue(!state[0]);
+        assertTrue(!state[1]);
+        assertTrue(!state[10]);
+    }
+
+    @Test
+    public void testTempTable() throws Exception {
+
+        // The temp table is shared by all outputs of one update, and cleared before the next.
+        boolean[] state = perlstone.initState();
+        String code = "A St0 -r:Lt0 r:Lt0 B | r";
+        boolean[] out = run(code, state, true, false, false);
+        assertTrue(out[1]);
+        assertTrue(out[2]);
+
+        out = run("-r:Lt0 r:-r", state, false, false, false);
+        assertTrue(!out[1]);
+    }
+
+    @Test(expected = PlcException.class)
+    public void testInstructionLimit() throws Exception {
+
+        run("+[+]", false, false, false);
+    }
+
+    @Test(expected = PlcException.class)
+    public void testTailCallLimit() throws Exception {
+
+        run("t000", false, false, false);
+    }
+
+    @Test(expected = PlcException.class)
+    public void testRecursionLimit() throws Exception {
+
+        run("c000", false, false, false);
+    }
+
+    @Test(expected = PlcException.class)
+    public void testStackLimit() throws Exception {
+
+        run("+[++]", false, false, false);
+    }
+
+    @Test(expected = PlcException.class)
+    public void testEmptyStack() throws Exception {
+
+        run("&r", false, false, false);
+    }
+
+    @Test
+    public void testCompileErrors() throws Exception {
+
+        String[] invalid = new String[] {"+]", "+[", "Sx0", "Lpz", "v", ".01", "c1", "?"};
+        for(String code : invalid) {
+            try {
+                perlstone.compile(code);
+                throw new AssertionError("Compiled invalid code: " + code);
+            } catch(ICVerificationException e) {
+            }
+        }
+    }
+
+    private static class TestChipState implements ChipState {
+
+        private final boolean[] inputs;
+        private final boolean[] outputs = new boolean[3];
+
+        TestChipState(boolean a, boolean b, boolean c) {
+
+            inputs = new boolean[] {a, b, c};
+        }
+
+        @Override
+        public boolean get(int pin) {
+
+            return pin < 3 ? inputs[pin] : outputs[pin - 3];
+        }
+
+        @Override
+        public boolean getInput(int inputIndex) {
+
+            return inputs[inputIndex];
+        }
+
+        @Override
+        public boolean getOutput(int outputIndex) {
+
+            return outputs[outputIndex];
+        }
+
+        @Override
+        public void set(int pin, boolean value) {
+
+            if(pin < 3)
+                inputs[pin] = value;
+            else
+                outputs[pin - 3] = value;
+        }
+
+        @Override
+        public void setOutput(int outputIndex, boolean value) {
+
+            outputs[outputIndex] = value;
+        }
+
+        @Override
+        public boolean isTriggered(int pin) {
+
+            return false;
+        }
+
+        @Override
+        public boolean isValid(int pin) {
+
+            return true;
+        }
+
+        @Override
+        public int getInputCount() {
+
+            return 3;
+        }
+
+        @Override
+        public int getOutputCount() {
+
+            return 3;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.sk89q.craftbook.mech.area;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyByte;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mock;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import com.sk89q.worldedit.Vector;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({CompressedCuboidCopy.class, CuboidPasteJob.class})
+public class CompressedCuboidCopyTest {
+
+    // Spans two chunk sections along the y axis.
+    private static final Vector ORIGIN = new Vector(3, 10, -2);
+    private static final Vector SIZE = new Vector(5, 20, 4);
+
+    private static final int WOOL = 35;
+
+    // The blocks of the mock world, as type and data.
+    private final Map<Long, int[]> blocks = new HashMap<Long, int[]>();
+    private final Map<Long, Block> blockMocks = new HashMap<Long, Block>();
+
+    private World world;
+    private File folder;
+
+    @Before
+    public void setUp() throws IOException {
+
+        if (Bukkit.getServer() == null) {
+            Server server = mock(Server.class);
+            when(server.getName()).thenReturn("Mock");
+            when(server.getVersion()).thenReturn("MockVer");
+            when(server.getBukkitVersion()).thenReturn("MockVer");
+            when(server.getLogger()).thenReturn(Logger.getGlobal());
+            when(server.getScheduler()).thenReturn(mock(BukkitScheduler.class));
+            Bukkit.setServer(server);
+        }
+
+        world = mock(World.class);
+        when(world.getBlockAt(anyInt(), anyInt(), anyInt())).thenAnswer(new Answer<Block>() {
+
+            @Override
+            public Block answer(InvocationOnMock invocation) {
+
+                Object[] args = invocation.getArguments();
+                return getBlock((Integer) args[0], (Integer) args[1], (Integer) args[2]);
+            }
+        });
+
+        folder = File.createTempFile("craftbook", "");
+        folder.delete();
+        folder.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+
+        File[] files = folder.listFiles();
+        if (files != null)
+            for (File file : files)
+                file.delete();
+        folder.delete();
+    }
+
+    @Test
+    public void testFullRoundTrip() throws Exception {
+
+        fill(0);
+        CompressedCuboidCopy copy = new CompressedCuboidCopy(ORIGIN, SIZE, world);
+        copy.copy();
+        File file = new File(folder, "full.cbcopy");
+        copy.save(file);
+        assertTrue(CompressedCuboidCopy.readBaseId(file) == null);
+
+        blocks.clear();
+        CuboidCopy loaded = CuboidCopy.load(file, world);
+        assertTrue(loaded instanceof CompressedCuboidCopy);
+        assertTrue(!((CompressedCuboidCopy) loaded).isDelta());
+        loaded.paste(null);
+        CuboidPasteJob.finishAll();
+        assertTrue(matches(0));
+
+        // A loaded copy can be saved over its own file.
+        loaded.save(file);
+        blocks.clear();
+        CuboidCopy.load(file, world).paste(null);
+        CuboidPasteJob.finishAll();
+        assertTrue(matches(0));
+    }
+
+    @Test
+    public void testDeltaRoundTrip() throws Exception {
+
+        fill(0);
+        CompressedCuboidCopy base = new CompressedCuboidCopy(ORIGIN, SIZE, world);
+        base.copy();
+        File baseFile = new File(folder, "base.cbcopy");
+        base.save(baseFile);
+
+        fill(1);
+        CompressedCuboidCopy delta = new CompressedCuboidCopy(ORIGIN, SIZE, world);
+        delta.copy();
+        delta.encodeAgainst(base, "base");
+        assertTrue(delta.isDelta());
+        File deltaFile = new File(folder, "delta.cbcopy");
+        delta.save(deltaFile);
+        assertTrue("base".equals(CompressedCuboidCopy.readBaseId(deltaFile)));
+        assertTrue(deltaFile.length() < baseFile.length());
+
+        blocks.clear();
+        CompressedCuboidCopy loaded = (CompressedCuboidCopy) CuboidCopy.load(deltaFile, world);
+        assertTrue(loaded.isDelta());
+        // The copy it was loaded against is held by it alone, so it is counted with it.
+        assertTrue(loaded.getMemorySize() > CuboidCopy.load(baseFile, world).getMemorySize());
+        loaded.paste(null);
+        CuboidPasteJob.finishAll();
+        assertTrue(matches(1));
+
+        // Once stored in full, the delta no longer needs the copy it was made against.
+        loaded.materialize();
+        assertTrue(!loaded.isDelta());
+        loaded.save(deltaFile);
+        assertTrue(CompressedCuboidCopy.readBaseId(deltaFile) == null);
+        assertTrue(baseFile.delete());
+
+        blocks.clear();
+        CuboidCopy.load(deltaFile, world).paste(null);
+        CuboidPasteJob.finishAll();
+        assertTrue(matches(1));
+    }
+
+    /**
+     * Fills the cuboid with a pattern of runs of air, stone and coloured wool. Variant 1 changes some of the blocks of
+     * variant 0.
+     */
+    private void fill(int variant) {
+
+        for (int x = 0; x < SIZE.getBlockX(); x++)
+            for (int y = 0; y < SIZE.getBlockY(); y++)
+                for (int z = 0; z < SIZE.getBlockZ(); z++)
+                    blocks.put(pack(ORIGIN.getBlockX() + x, ORIGIN.getBlockY() + y, ORIGIN.getBlockZ() + z), getPattern(variant, x, y, z));
+    }
+
+    private boolean matches(int variant) {
+
+        for (int x = 0; x < SIZE.getBlockX(); x++) {
+            for (int y = 0; y < SIZE.getBlockY(); y++) {
+                for (int z = 0; z < SIZE.getBlockZ(); z++) {
+                    int[] expected = getPattern(variant, x, y, z);
+                    int[] actual = blocks.get(pack(ORIGIN.getBlockX() + x, ORIGIN.getBlockY() + y, ORIGIN.getBlockZ() + z));
+                    if (actual == null) actual = new int[] {0, 0};
+                    if (actual[0] != expected[0] || actual[1] != expected[1]) return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int[] getPattern(int variant, int x, int y, int z) {
+
+        if (variant == 1 && y > 12 && x < 3) return new int[] {WOOL, (x + z) % 16};
+        if (y < 4) return new int[] {1, 0};
+        if ((x + y + z) % 7 == 0) return new int[] {0, 0};
+        return new int[] {WOOL, y / 3 % 16};
+    }
+
+    private Block getBlock(int x, int y, int z) {
+
+        final long key = pack(x, y, z);
+        Block block = blockMocks.get(key);
+        if (block != null) return block;
+
+        block = mock(Block.class);
+        when(block.getTypeId()).thenAnswer(new Answer<Integer>() {
+
+            @Override
+            public Integer answer(InvocationOnMock invocation) {
+
+                int[] value = blocks.get(key);
+                return value == null ? 0 : value[0];
+            }
+        });
+        when(block.getData()).thenAnswer(new Answer<Byte>() {
+
+            @Override
+            public Byte answer(InvocationOnMock invocation) {
+
+                int[] value = blocks.get(key);
+                return value == null ? 0 : (byte) value[1];
+            }
+        });
+        when(block.setTypeIdAndData(anyInt(), anyByte(), anyBoolean())).thenAnswer(new Answer<Boolean>() {
+
+            @Override
+            public Boolean answer(InvocationOnMock invocation) {
+
+                Object[] args = invocation.getArguments();
+                blocks.put(key, new int[] {(Integer) args[0], (Byte) args[1]});
+                return true;
+            }
+        });
+        blockMocks.put(key, block);
+        return block;
+    }
+
+    private static long pack(int x, int y, int z) {
+
+        return ((long) x & 0xFFFFF) << 40 | ((long) y & 0xFFFFF) << 20 | (long) z & 0xFFFFF;
+    }
+}
@@ -0,0 +1,36 @@
+package com.sk89q.craftbook.util;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(LocationUtil.class)
+public class LocationUtilTest {
+
+    @Test
+    public void testPackBlockPosition() {
+
+        int[][] positions = new int[][] {{0, 0, 0}, {15, 255, 15}, {-1, 64, -1}, {29999999, 12, -29999999}, {-29999999, 200, 29999999}};
+
+        for(int[] position : positions) {
+            long packed = LocationUtil.packBlockPosition(position[0], position[1], position[2]);
+            assertTrue(LocationUtil.unpackBlockX(packed) == position[0]);
+            assertTrue(LocationUtil.unpackBlockY(packed) == position[1]);
+            assertTrue(LocationUtil.unpackBlockZ(packed) == position[2]);
+        }
+
+        assertTrue(LocationUtil.packBlockPosition(1, 2, 3) != LocationUtil.packBlockPosition(3, 2, 1));
+    }
+
+    @Test
+    public void testPackChunkPosition() {
+
+        assertTrue(LocationUtil.packChunkPosition(1, -1) != LocationUtil.packChunkPosition(-1, 1));
+        assertTrue(LocationUtil.packChunkPosition(0, -1) == 0xFFFFFFFFL);
+        assertTrue(LocationUtil.packChunkPosition(-1, 0) == 0xFFFFFFFF00000000L);
+    }
+}
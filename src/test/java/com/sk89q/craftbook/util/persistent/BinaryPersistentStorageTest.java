@@ -0,0 +1,219 @@
+package com.sk89q.craftbook.util.persistent;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mock;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.bukkit.plugin.java.JavaPlugin;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import com.sk89q.craftbook.bukkit.BukkitConfiguration;
+import com.sk89q.craftbook.bukkit.CraftBookPlugin;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({JavaPlugin.class, CraftBookPlugin.class, BinaryPersistentStorage.class})
+public class BinaryPersistentStorageTest {
+
+    private File folder;
+
+    @Before
+    public void setUp() throws IOException {
+
+        folder = File.createTempFile("craftbook", "");
+        folder.delete();
+        folder.mkdirs();
+
+        CraftBookPlugin plugin = CraftBookPlugin.inst();
+        if (plugin == null) {
+            plugin = mock(CraftBookPlugin.class);
+            BukkitConfiguration config = mock(BukkitConfiguration.class);
+            config.persistentStorageSnapshotInterval = 3600;
+            when(plugin.getConfiguration()).thenReturn(config);
+            when(plugin.getLogger()).thenReturn(Logger.getGlobal());
+            CraftBookPlugin.setInstance(plugin);
+        }
+        when(plugin.getDataFolder()).thenReturn(folder);
+    }
+
+    @After
+    public void tearDown() {
+
+        delete(folder);
+    }
+
+    @Test
+    public void testSetAndReload() {
+
+        BinaryPersistentStorage storage = open();
+        storage.set("mechanic.count", 3);
+        storage.set("mechanic.name", "test");
+        storage.set("list", Arrays.asList(1L, "two", 3.0));
+        storage.close();
+
+        storage = open();
+        assertTrue(Integer.valueOf(3).equals(storage.get("mechanic.count")));
+        assertTrue("test".equals(storage.get("mechanic.name")));
+        assertTrue(Arrays.asList(1L, "two", 3.0).equals(storage.get("list")));
+        storage.close();
+    }
+
+    @Test
+    public void testRemoveAndReload() {
+
+        BinaryPersistentStorage storage = open();
+        storage.set("first", 1);
+        storage.set("second.value", 2);
+        storage.set("third", 3);
+        storage.close();
+        assertTrue(countShards() == 3);
+
+        storage = open();
+        storage.set("first", null);
+        storage.set("second.value", null);
+        storage.close();
+
+        storage = open();
+        assertTrue(storage.get("first") == null);
+        assertTrue(storage.get("second.value") == null);
+        assertTrue(Integer.valueOf(3).equals(storage.get("third")));
+
+        Map<String, Object> replacement = new HashMap<String, Object>();
+        replacement.put("fourth", 4);
+        storage.importData(replacement, true);
+        storage.close();
+        assertTrue(countShards() == 1);
+
+        storage = open();
+        assertTrue(storage.get("third") == null);
+        assertTrue(Integer.valueOf(4).equals(storage.get("fourth")));
+        storage.close();
+    }
+
+    @Test
+    public void testTruncatedJournal() throws IOException {
+
+        BinaryPersistentStorage storage = open();
+        storage.set("kept", 1);
+        storage.close();
+
+        // A journal left behind by a crash, with its last record cut off.
+        int goodLength = writeTornJournal();
+
+        storage = open();
+        assertTrue(Integer.valueOf(2).equals(storage.get("added")));
+        assertTrue(Integer.valueOf(5).equals(storage.get("kept")));
+        assertTrue(storage.get("lost") == null);
+        // The cut off record is dropped, so that new records follow the last whole one.
+        assertTrue(getJournal().length() == goodLength);
+        storage.close();
+
+        // The replayed records are written to the data files, and the journal is emptied.
+        assertTrue(getJournal().length() == 0);
+        storage = open();
+        assertTrue(Integer.valueOf(2).equals(storage.get("added")));
+        assertTrue(Integer.valueOf(5).equals(storage.get("kept")));
+        storage.close();
+    }
+
+    @Test
+    public void testChangesAfterTruncatedJournal() throws Exception {
+
+        BinaryPersistentStorage storage = open();
+        storage.set("kept", 1);
+        storage.close();
+
+        int goodLength = writeTornJournal();
+
+        // Crash again after a change, before it is written to the data files.
+        storage = open();
+        storage.set("more", 7);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (getJournal().length() <= goodLength && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+
+        storage = open();
+        assertTrue(Integer.valueOf(2).equals(storage.get("added")));
+        assertTrue(Integer.valueOf(5).equals(storage.get("kept")));
+        assertTrue(Integer.valueOf(7).equals(storage.get("more")));
+        assertTrue(storage.get("lost") == null);
+        storage.close();
+    }
+
+    /**
+     * Writes a journal of two records, followed by a record that was cut off.
+     *
+     * @return The length of the whole records
+     */
+    private int writeTornJournal() throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeIntRecord(out, "added", 2);
+        writeIntRecord(out, "kept", 5);
+        int goodLength = bytes.size();
+        out.writeUTF("lost");
+        out.writeInt(5);
+        out.writeByte(4);
+        out.close();
+
+        FileOutputStream file = new FileOutputStream(getJournal());
+        try {
+            file.write(bytes.toByteArray());
+        } finally {
+            file.close();
+        }
+        return goodLength;
+    }
+
+    private File getJournal() {
+
+        return new File(new File(folder, "persistance"), "journal.log");
+    }
+
+    private BinaryPersistentStorage open() {
+
+        BinaryPersistentStorage storage = new BinaryPersistentStorage();
+        storage.open();
+        return storage;
+    }
+
+    private int countShards() {
+
+        int count = 0;
+        for (File file : new File(folder, "persistance").listFiles())
+            if (file.getName().endsWith(".dat")) count++;
+        return count;
+    }
+
+    private static void writeIntRecord(DataOutputStream out, String location, int value) throws IOException {
+
+        out.writeUTF(location);
+        out.writeInt(5);
+        out.writeByte(4);
+        out.writeInt(value);
+    }
+
+    private static void delete(File file) {
+
+        File[] children = file.listFiles();
+        if (children != null)
+            for (File child : children)
+                delete(child);
+        file.delete();
+    }
+}